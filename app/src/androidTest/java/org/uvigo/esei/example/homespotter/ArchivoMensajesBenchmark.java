@@ -0,0 +1,131 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.ArchivoMensajes;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara el tiempo de abrir una conversación (última página y marcarla como leída) antes y después
+ * de archivar los mensajes antiguos. Los tiempos se escriben en el log con la etiqueta
+ * "ArchivoMensajesBenchmark".
+ */
+public class ArchivoMensajesBenchmark {
+    private static final String TAG = "ArchivoMensajesBenchmark";
+    private static final String NOMBRE_BD = "benchmark_archivo.db";
+    private static final int CONTACTOS = 50;
+    private static final int MENSAJES_POR_CONTACTO = 1000;
+    private static final int TAM_PAGINA = 50;
+    private static final int REPETICIONES = 5;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private SQLiteOpenHelper dbHelper;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context.deleteDatabase(NOMBRE_BD);
+        dbHelper = new SQLiteOpenHelper(context, NOMBRE_BD, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(NOMBRE_BD);
+    }
+
+    @Test
+    public void testAbrirConversacionAntesYDespuesDeArchivar() {
+        poblar();
+        MensajesEntity mensajesEntity = new MensajesEntity(db);
+        List<Mensaje> paginaAntes = mensajesEntity.obtenerUltimaPagina(1, 2, 0, TAM_PAGINA);
+
+        long antes = medirAbrirConversaciones(mensajesEntity);
+
+        long inicio = System.nanoTime();
+        int archivados = new ArchivoMensajes(db).archivar();
+        long archivar = (System.nanoTime() - inicio) / 1_000_000;
+
+        long despues = medirAbrirConversaciones(mensajesEntity);
+
+        Log.i(TAG, String.format("Archivar %d de %d mensajes: %d ms", archivados, CONTACTOS * MENSAJES_POR_CONTACTO, archivar));
+        Log.i(TAG, String.format("Abrir %d conversaciones: %d ms (antes) vs %d ms (después de archivar)",
+                CONTACTOS * REPETICIONES, antes, despues));
+
+        assertEquals("Deberían archivarse los que pasan del máximo por hilo.",
+                CONTACTOS * (MENSAJES_POR_CONTACTO - ArchivoMensajes.MAXIMO_POR_HILO), archivados);
+
+        // La conversación se ve igual después de archivar
+        List<Mensaje> paginaDespues = mensajesEntity.obtenerUltimaPagina(1, 2, 0, TAM_PAGINA);
+        assertEquals(paginaAntes.size(), paginaDespues.size());
+        for (int i = 0; i < paginaAntes.size(); i++) {
+            assertEquals(paginaAntes.get(i).getIdMensaje(), paginaDespues.get(i).getIdMensaje());
+        }
+    }
+
+    /**
+     * Conversaciones de CONTACTOS usuarios con el usuario 1, recientes (dentro de la antigüedad
+     * máxima) y leídas, de modo que solo se archiva lo que pasa de MAXIMO_POR_HILO.
+     */
+    private void poblar() {
+        long inicio = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30);
+        SQLiteStatement insertar = db.compileStatement("INSERT INTO TABLA_MENSAJES " +
+                "(remitente_id, destinatario_id, contenido, fecha, leido) VALUES (?, ?, ?, ?, 1)");
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < MENSAJES_POR_CONTACTO; i++) {
+                for (int contacto = 2; contacto < CONTACTOS + 2; contacto++) {
+                    boolean recibido = i % 2 == 0;
+                    insertar.bindLong(1, recibido ? contacto : 1);
+                    insertar.bindLong(2, recibido ? 1 : contacto);
+                    insertar.bindString(3, "Mensaje " + i + " con " + contacto);
+                    insertar.bindLong(4, inicio + i * 1000L);
+                    insertar.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insertar.close();
+        }
+    }
+
+    private long medirAbrirConversaciones(MensajesEntity mensajesEntity) {
+        // Calentamiento: compila las sentencias y carga las páginas en caché
+        mensajesEntity.obtenerUltimaPagina(1, 2, 0, TAM_PAGINA);
+
+        long inicio = System.nanoTime();
+        for (int r = 0; r < REPETICIONES; r++) {
+            for (int contacto = 2; contacto < CONTACTOS + 2; contacto++) {
+                List<Mensaje> pagina = mensajesEntity.obtenerUltimaPagina(1, contacto, 0, TAM_PAGINA);
+                assertEquals(TAM_PAGINA, pagina.size());
+                mensajesEntity.marcarConversacionLeida(1, contacto, 0, pagina.get(pagina.size() - 1).getIdMensaje());
+            }
+        }
+        return (System.nanoTime() - inicio) / 1_000_000;
+    }
+}
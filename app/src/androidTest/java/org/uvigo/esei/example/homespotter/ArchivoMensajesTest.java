@@ -0,0 +1,175 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.ArchivoMensajes;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Chat;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ArchivoMensajesTest {
+    private static final long DIA = TimeUnit.DAYS.toMillis(1);
+
+    private SQLiteDatabase db;
+    private MensajesEntity mensajesEntity;
+    private ArchivoMensajes archivo;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        mensajesEntity = new MensajesEntity(db);
+        archivo = new ArchivoMensajes(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private void insertar(int remitenteId, int destinatarioId, String contenido, long fecha, boolean leido) {
+        db.execSQL("INSERT INTO TABLA_MENSAJES (remitente_id, destinatario_id, contenido, fecha, leido) VALUES (?, ?, ?, ?, ?)",
+                new Object[]{remitenteId, destinatarioId, contenido, fecha, leido ? 1 : 0});
+    }
+
+    private int contar(String tabla) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + tabla, null);
+        cursor.moveToFirst();
+        int total = cursor.getInt(0);
+        cursor.close();
+        return total;
+    }
+
+    @Test
+    public void testArchivaMensajesAntiguos() {
+        long ahora = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            insertar(1 + i % 2, 2 - i % 2, "Antiguo " + i, ahora - 100 * DIA + i, true);
+        }
+        insertar(1, 2, "Reciente 1", ahora - 1000, true);
+        insertar(2, 1, "Reciente 2", ahora - 500, false);
+        Chat antes = mensajesEntity.obtenerConversaciones(1).get(0);
+
+        assertEquals("Deberían archivarse los diez mensajes antiguos.", 10, archivo.archivar(30 * DIA, 1, 100, 3));
+        assertEquals(2, contar("TABLA_MENSAJES"));
+        assertEquals(10, contar("TABLA_MENSAJES_ARCHIVO"));
+
+        // Archivar no cambia la conversación
+        Chat despues = mensajesEntity.obtenerConversaciones(1).get(0);
+        assertEquals(antes.getUltimoMensaje(), despues.getUltimoMensaje());
+        assertEquals(antes.getFechaUltimoMensaje(), despues.getFechaUltimoMensaje());
+        assertEquals(1, despues.getNoLeidos());
+
+        assertEquals("Una segunda pasada no debería archivar nada más.", 0, archivo.archivar(30 * DIA, 1, 100, 3));
+    }
+
+    @Test
+    public void testConservaMinimoPorHilo() {
+        long antiguo = System.currentTimeMillis() - 100 * DIA;
+        for (int i = 0; i < 5; i++) {
+            insertar(1, 2, "Antiguo " + i, antiguo + i, true);
+        }
+
+        assertEquals("Deberían quedarse los dos más recientes aunque sean antiguos.", 3, archivo.archivar(30 * DIA, 2, 100, 10));
+        assertEquals(2, contar("TABLA_MENSAJES"));
+        assertEquals("El hilo debería conservarse con su último mensaje.", "Antiguo 4",
+                mensajesEntity.obtenerConversaciones(1).get(0).getUltimoMensaje());
+    }
+
+    @Test
+    public void testArchivaPorMaximoPorHilo() {
+        long ahora = System.currentTimeMillis();
+        for (int i = 0; i < 20; i++) {
+            insertar(1, 2, "Mensaje " + i, ahora + i, true);
+        }
+        insertar(3, 1, "Otro hilo", ahora, true);
+
+        assertEquals("Deberían archivarse los que pasan del máximo por hilo.", 15, archivo.archivar(30 * DIA, 1, 5, 4));
+        assertEquals(6, contar("TABLA_MENSAJES"));
+    }
+
+    @Test
+    public void testNoArchivaDesdeElPrimerNoLeido() {
+        long antiguo = System.currentTimeMillis() - 100 * DIA;
+        insertar(2, 1, "Leído 1", antiguo, true);
+        insertar(2, 1, "Leído 2", antiguo + 1, true);
+        insertar(2, 1, "Sin leer", antiguo + 2, false);
+        insertar(1, 2, "Respuesta", antiguo + 3, true);
+        insertar(1, 2, "Último", antiguo + 4, true);
+
+        // Solo los anteriores al no leído: lo archivado es siempre el principio del hilo
+        assertEquals(2, archivo.archivar(30 * DIA, 1, 100, 10));
+        assertEquals(1, mensajesEntity.contarNoLeidos(1));
+    }
+
+    @Test
+    public void testPaginasContinuanEnElArchivo() {
+        long ahora = System.currentTimeMillis();
+        for (int i = 0; i < 30; i++) {
+            insertar(1 + i % 2, 2 - i % 2, "Mensaje " + i, ahora + i / 2, true);
+        }
+        assertEquals(20, archivo.archivar(30 * DIA, 1, 10, 7));
+
+        // Hacia atrás: la página se completa con los archivados
+        List<Mensaje> ultima = mensajesEntity.obtenerUltimaPagina(1, 2, 0, 8);
+        assertEquals("Mensaje 22", ultima.get(0).getContenido());
+        Mensaje primero = ultima.get(0);
+        List<Mensaje> anterior = mensajesEntity.obtenerPaginaAnterior(1, 2, 0, primero.getFecha(), primero.getIdMensaje(), 8);
+        assertEquals("La página debería mezclar mensajes de las dos tablas.", 8, anterior.size());
+        assertEquals("Mensaje 14", anterior.get(0).getContenido());
+        assertEquals("Mensaje 21", anterior.get(7).getContenido());
+
+        // Recorrer el hilo entero hacia atrás devuelve todos los mensajes, en orden
+        List<Mensaje> todos = new ArrayList<>(ultima);
+        List<Mensaje> pagina = ultima;
+        while (!pagina.isEmpty()) {
+            Mensaje masAntiguo = todos.get(0);
+            pagina = mensajesEntity.obtenerPaginaAnterior(1, 2, 0, masAntiguo.getFecha(), masAntiguo.getIdMensaje(), 8);
+            todos.addAll(0, pagina);
+        }
+        assertEquals(30, todos.size());
+        for (int i = 0; i < 30; i++) {
+            assertEquals("Mensaje " + i, todos.get(i).getContenido());
+        }
+
+        // Hacia delante: desde el archivo se pasa a TABLA_MENSAJES
+        Mensaje archivado = todos.get(15);
+        List<Mensaje> siguiente = mensajesEntity.obtenerPaginaSiguiente(1, 2, 0, archivado.getFecha(), archivado.getIdMensaje(), 8);
+        assertEquals(8, siguiente.size());
+        assertEquals("Mensaje 16", siguiente.get(0).getContenido());
+        assertEquals("Mensaje 23", siguiente.get(7).getContenido());
+    }
+
+    @Test
+    public void testParametrosInvalidos() {
+        insertar(1, 2, "Hola", 0, true);
+        insertar(1, 2, "Adiós", 1, true);
+        assertEquals("Siempre debería conservarse al menos un mensaje por hilo.", 0, archivo.archivar(0, 0, 1, 10));
+        assertEquals(0, archivo.archivar(0, 1, 1, 0));
+        assertEquals(2, contar("TABLA_MENSAJES"));
+    }
+}
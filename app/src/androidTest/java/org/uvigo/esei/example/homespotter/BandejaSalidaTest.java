@@ -0,0 +1,133 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.BandejaSalida;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BandejaSalidaTest {
+    private SQLiteDatabase db;
+    private BandejaSalida bandeja;
+
+    // Resultados recibidos, en el orden en que llegaron
+    private final List<Mensaje> guardados = Collections.synchronizedList(new ArrayList<>());
+    private final List<Mensaje> fallidos = Collections.synchronizedList(new ArrayList<>());
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                // El CHECK permite provocar un error de escritura a mitad de un lote
+                db.execSQL("CREATE TABLE TABLA_MENSAJES (" +
+                        "id_mensaje INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                        "remitente_id INTEGER NOT NULL, " +
+                        "destinatario_id INTEGER NOT NULL, " +
+                        "vivienda_id INTEGER, " +
+                        "contenido TEXT NOT NULL CHECK (contenido <> 'rechazado'), " +
+                        "fecha INTEGER NOT NULL, " +
+                        "leido INTEGER NOT NULL DEFAULT 0);");
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+
+        // Los resultados se entregan en el propio hilo escritor
+        bandeja = new BandejaSalida(new MensajesEntity(db), Runnable::run);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private void enviar(String contenido, CountDownLatch resultados) {
+        Mensaje pendiente = new Mensaje(0, 1, 2, contenido, System.currentTimeMillis(), false);
+        bandeja.enviar(pendiente, new BandejaSalida.ResultadoEnvio() {
+            @Override
+            public void onGuardado(Mensaje guardado) {
+                guardados.add(guardado);
+                resultados.countDown();
+            }
+
+            @Override
+            public void onError(Mensaje noEnviado) {
+                fallidos.add(noEnviado);
+                resultados.countDown();
+            }
+        });
+    }
+
+    private int contarMensajes() {
+        try (Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM TABLA_MENSAJES", null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    @Test
+    public void testEnviosSeguidosSeGuardanTodos() throws InterruptedException {
+        CountDownLatch resultados = new CountDownLatch(20);
+        for (int i = 0; i < 20; i++) {
+            enviar("Mensaje " + i, resultados);
+        }
+
+        assertTrue("Deberían entregarse los resultados de todos los envíos.", resultados.await(10, TimeUnit.SECONDS));
+        assertEquals(20, guardados.size());
+        assertTrue(fallidos.isEmpty());
+        assertEquals(20, contarMensajes());
+
+        // Los mensajes se guardan en el orden en que se enviaron
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Mensaje " + i, guardados.get(i).getContenido());
+            assertFalse("El mensaje guardado debería tener su ID.", guardados.get(i).isPendiente());
+        }
+    }
+
+    @Test
+    public void testMensajeInvalidoNoImpideGuardarLosDemas() throws InterruptedException {
+        CountDownLatch resultados = new CountDownLatch(3);
+        enviar("Hola", resultados);
+        enviar("", resultados);
+        enviar("Adiós", resultados);
+
+        assertTrue(resultados.await(10, TimeUnit.SECONDS));
+        assertEquals("Deberían guardarse los mensajes válidos.", 2, guardados.size());
+        assertEquals("Debería fallar solo el mensaje vacío.", 1, fallidos.size());
+        assertEquals(2, contarMensajes());
+    }
+
+    @Test
+    public void testErrorDeEscrituraSeInformaPorMensaje() throws InterruptedException {
+        CountDownLatch resultados = new CountDownLatch(3);
+        enviar("Primero", resultados);
+        enviar("rechazado", resultados);
+        enviar("Tercero", resultados);
+
+        assertTrue(resultados.await(10, TimeUnit.SECONDS));
+        assertEquals("El error de un mensaje no debería perder los demás.", 2, guardados.size());
+        assertEquals(1, fallidos.size());
+        assertEquals("rechazado", fallidos.get(0).getContenido());
+        assertEquals(2, contarMensajes());
+    }
+}
@@ -0,0 +1,163 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
+import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BusCambiosTest {
+    private SQLiteDatabase db;
+    private ViviendaEntity viviendaEntity;
+    private final List<BusCambios.Cambio> cambios = new ArrayList<>();
+    private BusCambios.Suscripcion suscripcion;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        viviendaEntity = new ViviendaEntity(db);
+
+        suscripcion = BusCambios.suscribir(cambios::add, ViviendaEntity.NOMBRE_TABLA, FotosEntity.NOMBRE_TABLA,
+                FavoritosEntity.NOMBRE_TABLA, MensajesEntity.NOMBRE_TABLA);
+    }
+
+    @After
+    public void tearDown() {
+        suscripcion.cancelar();
+        db.close();
+    }
+
+    private void assertCambio(BusCambios.Cambio cambio, String tabla, BusCambios.Operacion operacion, Integer... ids) {
+        assertEquals(tabla, cambio.getTabla());
+        assertEquals(operacion, cambio.getOperacion());
+        assertEquals(new HashSet<>(Arrays.asList(ids)), cambio.getIds());
+    }
+
+    @Test
+    public void testEscriturasDeViviendas() {
+        long id = viviendaEntity.insertarConFotos("Piso céntrico", "Piso", 100000, "Calle Real 1", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/1a.jpg", "https://example.com/1b.jpg"));
+        assertEquals("Las fotos insertadas con la vivienda no deberían publicar un cambio aparte.", 1, cambios.size());
+        assertCambio(cambios.get(0), ViviendaEntity.NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, (int) id);
+
+        assertTrue(viviendaEntity.modificarVivienda((int) id, null, 95000.0, null, null, null, null));
+        assertCambio(cambios.get(1), ViviendaEntity.NOMBRE_TABLA, BusCambios.Operacion.MODIFICAR, (int) id);
+
+        assertTrue(viviendaEntity.eliminar((int) id));
+        assertCambio(cambios.get(2), ViviendaEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) id);
+
+        assertFalse(viviendaEntity.eliminar((int) id));
+        assertEquals("Una escritura fallida no debería publicar nada.", 3, cambios.size());
+    }
+
+    @Test
+    public void testFotosYFavoritosPublicanLaVivienda() {
+        long id = viviendaEntity.insertarConFotos("Casa con jardín", "Casa", 250000, "Calle Principal 2", "Disponible",
+                "martin@homespotter.com", null, 2, Collections.<String>emptyList());
+        cambios.clear();
+
+        FotosEntity fotosEntity = new FotosEntity(db);
+        assertTrue(fotosEntity.insertar((int) id, "https://example.com/2a.jpg"));
+        assertCambio(cambios.get(0), FotosEntity.NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, (int) id);
+        assertTrue(fotosEntity.eliminar(1));
+        assertCambio(cambios.get(1), FotosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) id);
+
+        FavoritosEntity favoritosEntity = new FavoritosEntity(db);
+        assertTrue(favoritosEntity.insertar(1, (int) id));
+        assertCambio(cambios.get(2), FavoritosEntity.NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, (int) id);
+        assertFalse(favoritosEntity.insertar(1, (int) id));
+        assertEquals("Un favorito que ya existía no debería publicar nada.", 3, cambios.size());
+        assertTrue(favoritosEntity.eliminar(1, (int) id));
+        assertCambio(cambios.get(3), FavoritosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) id);
+    }
+
+    @Test
+    public void testMensajesYCancelacion() {
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2');");
+        MensajesEntity mensajesEntity = new MensajesEntity(db);
+
+        assertTrue(mensajesEntity.insertar(2, 1, "Hola"));
+        assertCambio(cambios.get(0), MensajesEntity.NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, 1);
+
+        assertEquals(1, mensajesEntity.marcarConversacionLeida(1, 2, 1));
+        BusCambios.Cambio leidos = cambios.get(1);
+        assertEquals(BusCambios.Operacion.MODIFICAR, leidos.getOperacion());
+        assertTrue("Un cambio sin IDs debería afectar a cualquier fila.", leidos.afectaA(1));
+        assertEquals("Sin mensajes que marcar no debería publicarse nada.", 0, mensajesEntity.marcarConversacionLeida(1, 2, 1));
+        assertEquals(2, cambios.size());
+
+        suscripcion.cancelar();
+        assertTrue(mensajesEntity.insertar(1, 2, "Adiós"));
+        assertEquals("Una suscripción cancelada no debería recibir más cambios.", 2, cambios.size());
+    }
+
+    @Test
+    public void testEscriturasDentroDeOtraTransaccionNoPublican() {
+        db.beginTransaction();
+        try {
+            long id = viviendaEntity.insertarConFotos("Piso céntrico", "Piso", 100000, "Calle Real 1", "Disponible",
+                    "monica@homespotter.com", null, 1, Collections.<String>emptyList());
+            assertTrue(new FavoritosEntity(db).insertar(2, (int) id));
+            assertTrue(new FotosEntity(db).insertar((int) id, "https://example.com/1a.jpg"));
+            // Sin setTransactionSuccessful: la transacción exterior se deshace
+        } finally {
+            db.endTransaction();
+        }
+
+        assertTrue("Las escrituras de una transacción deshecha no deberían publicarse.", cambios.isEmpty());
+    }
+
+    @Test
+    public void testEliminarUsuarioPublicaLoBorradoEnCascada() {
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2');");
+        long propia = viviendaEntity.insertarConFotos("Piso céntrico", "Piso", 100000, "Calle Real 1", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/1a.jpg"));
+        long ajena = viviendaEntity.insertarConFotos("Casa con jardín", "Casa", 250000, "Calle Principal 2", "Disponible",
+                "martin@homespotter.com", null, 2, Collections.<String>emptyList());
+        assertTrue(new FavoritosEntity(db).insertar(1, (int) ajena));
+        cambios.clear();
+
+        assertTrue(new UsuarioEntity(db).eliminar(1));
+
+        assertEquals("Deberían publicarse las viviendas, fotos, favoritos y mensajes del usuario.", 4, cambios.size());
+        assertCambio(cambios.get(0), ViviendaEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) propia);
+        assertCambio(cambios.get(1), FotosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) propia);
+        assertCambio(cambios.get(2), FavoritosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) propia, (int) ajena);
+        assertCambio(cambios.get(3), MensajesEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR);
+    }
+}
@@ -0,0 +1,136 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.ArchivoMensajes;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+import org.uvigo.esei.example.homespotter.models.MensajeEncontrado;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BusquedaMensajesTest {
+    private SQLiteDatabase db;
+    private MensajesEntity mensajesEntity;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        mensajesEntity = new MensajesEntity(db);
+
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password, foto_perfil) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1', 'monica.jpg');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password, foto_perfil) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2', 'martin.jpg');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Lucia Vidal', 'lucia', 'lucia@homespotter.com', 'password3');");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testBuscarSoloEnLasConversacionesDelUsuario() {
+        mensajesEntity.insertar(2, 1, "La dirección es Calle Príncipe 3");
+        mensajesEntity.insertar(1, 2, "Gracias");
+        mensajesEntity.insertar(3, 2, "Mi calle es la Urzaiz");
+
+        List<MensajeEncontrado> encontrados = mensajesEntity.buscar(1, "calle", 10);
+        assertEquals("Monica no debería encontrar mensajes de conversaciones ajenas.", 1, encontrados.size());
+        MensajeEncontrado encontrado = encontrados.get(0);
+        assertEquals(1, encontrado.getIdMensaje());
+        assertEquals("El contacto debería ser el otro usuario.", 2, encontrado.getContactoId());
+        assertEquals("martin", encontrado.getNombreContacto());
+        assertEquals("martin.jpg", encontrado.getFotoContacto());
+        assertEquals(0, encontrado.getViviendaId());
+        assertTrue(encontrado.getFecha() > 0);
+
+        // Martin participa en las dos conversaciones: primero el mensaje más reciente
+        encontrados = mensajesEntity.buscar(2, "calle", 10);
+        assertEquals(2, encontrados.size());
+        assertEquals(3, encontrados.get(0).getIdMensaje());
+        assertEquals(3, encontrados.get(0).getContactoId());
+        assertEquals(1, encontrados.get(1).getContactoId());
+    }
+
+    @Test
+    public void testBuscarSinTildesYPorPrefijo() {
+        mensajesEntity.insertar(2, 1, "Mi teléfono es 600123456");
+
+        assertEquals(1, mensajesEntity.buscar(1, "TELEFONO", 10).size());
+        assertEquals("Los números deberían buscarse por prefijo.", 1, mensajesEntity.buscar(1, "600", 10).size());
+        assertEquals("Todas las palabras deberían aparecer.", 0, mensajesEntity.buscar(1, "teléfono móvil", 10).size());
+        // El texto del usuario no puede buscar en los participantes
+        assertTrue(mensajesEntity.buscar(1, "u1", 10).isEmpty());
+        assertTrue(mensajesEntity.buscar(1, "\"*:-()", 10).isEmpty());
+    }
+
+    @Test
+    public void testFragmentoResaltado() {
+        mensajesEntity.insertar(2, 1, "La dirección es Calle Príncipe 3");
+
+        String fragmento = mensajesEntity.buscar(1, "principe", 10).get(0).getFragmento();
+        assertTrue("La palabra encontrada debería ir entre marcas de resaltado.", fragmento.contains(
+                MensajeEncontrado.INICIO_RESALTADO + "Príncipe" + MensajeEncontrado.FIN_RESALTADO));
+    }
+
+    @Test
+    public void testBuscarMensajesArchivadosYBorrados() {
+        mensajesEntity.insertar(2, 1, "El portal es el número 7");
+        for (int i = 0; i < 5; i++) {
+            mensajesEntity.insertar(1, 2, "Mensaje " + i);
+        }
+        db.execSQL("UPDATE TABLA_MENSAJES SET leido = 1");
+        assertEquals(5, new ArchivoMensajes(db).archivar(0, 1, 1, 10));
+
+        List<MensajeEncontrado> encontrados = mensajesEntity.buscar(1, "portal", 10);
+        assertEquals("Los mensajes archivados deberían seguir encontrándose.", 1, encontrados.size());
+        assertEquals(2, encontrados.get(0).getContactoId());
+
+        mensajesEntity.eliminar(6);
+        assertTrue("Un mensaje borrado no debería encontrarse.", mensajesEntity.buscar(1, "mensaje 4", 10).isEmpty());
+        db.execSQL("DELETE FROM TABLA_MENSAJES_ARCHIVO WHERE id_mensaje = 1");
+        assertTrue("Un mensaje archivado y borrado no debería encontrarse.", mensajesEntity.buscar(1, "portal", 10).isEmpty());
+    }
+
+    @Test
+    public void testSaltarAlMensajeEncontrado() {
+        for (int i = 0; i < 100; i++) {
+            mensajesEntity.insertar(1 + i % 2, 2 - i % 2, i == 30 ? "Aquí está la llave" : "Mensaje " + i);
+        }
+        MensajeEncontrado encontrado = mensajesEntity.buscar(1, "llave", 10).get(0);
+
+        // Lo que carga la pantalla de conversación: el mensaje y los que lo rodean
+        List<Mensaje> anteriores = mensajesEntity.obtenerPaginaAnterior(1, 2, 0,
+                encontrado.getFecha(), encontrado.getIdMensaje() + 1, 26);
+        List<Mensaje> posteriores = mensajesEntity.obtenerPaginaSiguiente(1, 2, 0,
+                encontrado.getFecha(), encontrado.getIdMensaje(), 24);
+        assertEquals("La página anterior debería terminar en el mensaje encontrado.",
+                encontrado.getIdMensaje(), anteriores.get(anteriores.size() - 1).getIdMensaje());
+        assertEquals(26, anteriores.size());
+        assertEquals(encontrado.getIdMensaje() + 1, posteriores.get(0).getIdMensaje());
+        assertEquals(24, posteriores.size());
+    }
+}
@@ -0,0 +1,154 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara las escrituras con sentencias compiladas reutilizadas frente a ContentValues + db.insert.
+ * Los tiempos se escriben en el log con la etiqueta "CacheSentenciasBenchmark".
+ */
+public class CacheSentenciasBenchmark {
+    private static final String TAG = "CacheSentenciasBenchmark";
+    private static final int INSERCIONES = 10_000;
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testInsercionesMensajes() {
+        MensajesEntity mensajesEntity = new MensajesEntity(db);
+
+        // Calentamiento: compila la sentencia en caché y carga las clases
+        mensajesEntity.insertar(1, 2, "Calentamiento");
+        insertarConContentValues(1, 2, "Calentamiento");
+
+        long inicio = System.nanoTime();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < INSERCIONES; i++) {
+                insertarConContentValues(1, 2, "Mensaje " + i);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        long contentValues = (System.nanoTime() - inicio) / 1_000_000;
+
+        inicio = System.nanoTime();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < INSERCIONES; i++) {
+                assertTrue(mensajesEntity.insertar(1, 2, "Mensaje " + i));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        long sentencias = (System.nanoTime() - inicio) / 1_000_000;
+
+        Log.i(TAG, String.format("%d mensajes: %d ms (ContentValues) vs %d ms (sentencia compilada)", INSERCIONES, contentValues, sentencias));
+        assertEquals(2 * INSERCIONES + 2, contar("TABLA_MENSAJES"));
+    }
+
+    @Test
+    public void testInsercionesConcurrentes() throws InterruptedException {
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Casa en Berres', 'Casa', 200000, 'Calle Principal 123', 'Disponible', 'monica@homespotter.com', 1);");
+
+        // Varios hilos comparten las mismas sentencias compiladas
+        final int hilos = 4;
+        final int porHilo = 500;
+        List<Thread> escritores = new ArrayList<>();
+        for (int h = 0; h < hilos; h++) {
+            final int hilo = h;
+            Thread escritor = new Thread(() -> {
+                MensajesEntity mensajesEntity = new MensajesEntity(db);
+                FotosEntity fotosEntity = new FotosEntity(db);
+                for (int i = 0; i < porHilo; i++) {
+                    mensajesEntity.insertar(1 + hilo % 2, 2 - hilo % 2, "Hilo " + hilo + " mensaje " + i);
+                    fotosEntity.insertar(1, "https://example.com/" + hilo + "_" + i + ".jpg");
+                }
+            });
+            escritores.add(escritor);
+            escritor.start();
+        }
+        for (Thread escritor : escritores) {
+            escritor.join();
+        }
+
+        assertEquals("Deberían insertarse todos los mensajes.", hilos * porHilo, contar("TABLA_MENSAJES"));
+        assertEquals("Deberían insertarse todas las fotos.", hilos * porHilo, contar("TABLA_FOTOS"));
+
+        // Cada fila debe tener los argumentos de su propia llamada: sin URLs repetidas
+        Cursor cursor = db.rawQuery("SELECT COUNT(DISTINCT url_foto) FROM TABLA_FOTOS", null);
+        cursor.moveToFirst();
+        assertEquals("Ninguna foto debería haberse insertado con los argumentos de otro hilo.", hilos * porHilo, cursor.getInt(0));
+        cursor.close();
+    }
+
+    /**
+     * Reproduce la escritura anterior a la caché de sentencias.
+     */
+    private void insertarConContentValues(int remitenteId, int destinatarioId, String contenido) {
+        ContentValues values = new ContentValues();
+        values.put("remitente_id", remitenteId);
+        values.put("destinatario_id", destinatarioId);
+        values.put("contenido", contenido);
+        values.put("fecha", System.currentTimeMillis());
+        values.put("leido", 0);
+
+        db.beginTransaction();
+        try {
+            db.insert("TABLA_MENSAJES", null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private int contar(String tabla) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + tabla, null);
+        cursor.moveToFirst();
+        int total = cursor.getInt(0);
+        cursor.close();
+        return total;
+    }
+}
@@ -0,0 +1,91 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CacheSentenciasTest {
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Casa en Berres', 'Casa', 200000, 'Calle Principal 123', 'Disponible', 'monica@homespotter.com', 1);");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testCompilarMientrasOtroHiloTieneUnaTransaccion() throws InterruptedException {
+        CountDownLatch enTransaccion = new CountDownLatch(1);
+        CountDownLatch terminadas = new CountDownLatch(2);
+        AtomicBoolean insertado = new AtomicBoolean();
+
+        // Hilo A: abre una transacción (la conexión de la base de datos en memoria es única) y,
+        // mientras el hilo B espera la conexión para compilar, pide otra sentencia nueva
+        Thread escritor = new Thread(() -> {
+            db.beginTransaction();
+            try {
+                enTransaccion.countDown();
+                Thread.sleep(200);
+                insertado.set(new FavoritosEntity(db).insertar(1, 1));
+                db.setTransactionSuccessful();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                db.endTransaction();
+                terminadas.countDown();
+            }
+        });
+
+        // Hilo B: compila una sentencia fuera de transacción, esperando a que A libere la conexión
+        Thread lector = new Thread(() -> {
+            try {
+                enTransaccion.await();
+                new MensajesEntity(db).contarNoLeidos(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                terminadas.countDown();
+            }
+        });
+
+        escritor.start();
+        lector.start();
+
+        assertTrue("Compilar una sentencia no debería bloquear a quien tiene la conexión en una transacción.",
+                terminadas.await(10, TimeUnit.SECONDS));
+        assertTrue(insertado.get());
+    }
+}
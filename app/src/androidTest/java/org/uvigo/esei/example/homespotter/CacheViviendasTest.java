@@ -0,0 +1,118 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
+import org.uvigo.esei.example.homespotter.models.Vivienda;
+import org.uvigo.esei.example.homespotter.ui.utils.ViviendaLoader;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CacheViviendasTest {
+    private SQLiteDatabase db;
+    private ViviendaEntity viviendaEntity;
+    private FotosEntity fotosEntity;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        viviendaEntity = new ViviendaEntity(db);
+        fotosEntity = new FotosEntity(db);
+
+        viviendaEntity.insertarConFotos("Piso céntrico", "Piso", 100000, "Calle Real 1", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/1a.jpg", "https://example.com/1b.jpg"));
+        viviendaEntity.insertarConFotos("Casa con jardín", "Casa", 250000, "Calle Principal 2", "Disponible",
+                "martin@homespotter.com", null, 2, Collections.singletonList("https://example.com/2a.jpg"));
+        viviendaEntity.insertarConFotos("Estudio", "Piso", 80000, "Calle Urzaiz 3", "Disponible",
+                "monica@homespotter.com", null, 1, Collections.<String>emptyList());
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testObtenerPorIdsDesdeCache() {
+        List<Vivienda> viviendas = viviendaEntity.obtenerPorIds(Arrays.asList(3, 99, 1));
+        assertEquals("Deberían omitirse los IDs que no existen.", 2, viviendas.size());
+        assertEquals("Deberían devolverse en el orden de los IDs.", 3, viviendas.get(0).getId());
+        assertTrue(viviendas.get(0).getFotos().isEmpty());
+        assertEquals(Arrays.asList("https://example.com/1a.jpg", "https://example.com/1b.jpg"), viviendas.get(1).getFotos());
+
+        // Un cambio hecho sin pasar por las entidades no se ve: la vivienda sale de la caché
+        db.execSQL("UPDATE TABLA_VIVIENDA SET precio = 1 WHERE id_vivienda = 1");
+        viviendas.get(1).getFotos().clear();
+        Vivienda repetida = viviendaEntity.obtenerPorIds(Collections.singletonList(1)).get(0);
+        assertEquals("La vivienda debería salir de la caché.", 100000, repetida.getPrecio(), 0.0);
+        assertEquals("La caché no debería verse afectada por cambios en la vivienda devuelta.", 2, repetida.getFotos().size());
+    }
+
+    @Test
+    public void testEscriturasDescartanLaVivienda() {
+        viviendaEntity.obtenerPorIds(Arrays.asList(1, 2, 3));
+
+        assertTrue(viviendaEntity.modificarVivienda(1, null, 95000.0, null, null, null, null));
+        assertEquals(95000, viviendaEntity.obtenerPorIds(Collections.singletonList(1)).get(0).getPrecio(), 0.0);
+
+        assertTrue(fotosEntity.insertar(3, "https://example.com/3a.jpg"));
+        assertEquals(Collections.singletonList("https://example.com/3a.jpg"),
+                viviendaEntity.obtenerPorIds(Collections.singletonList(3)).get(0).getFotos());
+
+        // La foto 3 es la de la segunda vivienda
+        assertTrue(fotosEntity.eliminar(3));
+        assertTrue(viviendaEntity.obtenerPorIds(Collections.singletonList(2)).get(0).getFotos().isEmpty());
+        assertFalse(fotosEntity.eliminar(3));
+
+        assertTrue(viviendaEntity.eliminar(2));
+        assertTrue("Una vivienda eliminada no debería obtenerse de la caché.",
+                viviendaEntity.obtenerPorIds(Collections.singletonList(2)).isEmpty());
+    }
+
+    @Test
+    public void testListasConsultanIdsYCompletanConLaCache() {
+        new FavoritosEntity(db).insertar(2, 1);
+
+        List<Vivienda> pagina = ViviendaLoader.cargarPagina(viviendaEntity,
+                new ViviendaQuery.Builder().orden(ViviendaEntity.Orden.PRECIO).excluirPropietario(2).usuario(2).build());
+        assertEquals(2, pagina.size());
+        assertEquals("Las viviendas deberían seguir el orden de la consulta.", 3, pagina.get(0).getId());
+        assertFalse(pagina.get(0).isFavorite());
+        assertTrue("El estado de favorito debería ser el del usuario.", pagina.get(1).isFavorite());
+
+        // Con la vivienda en caché, la de otro usuario no es favorita
+        pagina = ViviendaLoader.cargarPagina(viviendaEntity, new ViviendaQuery.Builder().usuario(3).build());
+        assertEquals(3, pagina.size());
+        assertFalse(pagina.get(0).isFavorite());
+
+        List<Vivienda> propias = ViviendaLoader.cargarViviendas(viviendaEntity, 1, true);
+        assertEquals(2, propias.size());
+        assertEquals(1, propias.get(0).getId());
+        assertEquals(3, propias.get(1).getId());
+    }
+}
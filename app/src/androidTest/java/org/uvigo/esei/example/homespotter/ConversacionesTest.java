@@ -0,0 +1,214 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Chat;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConversacionesTest {
+    private static final String SQL_CONVERSACIONES =
+            "SELECT c.contacto_id, u.nombre_usuario, u.foto_perfil, c.vista_previa, c.ultima_fecha, c.no_leidos, " +
+            "c.vivienda_id, v.titulo " +
+            "FROM TABLA_CONVERSACIONES c " +
+            "LEFT JOIN TABLA_USUARIO u ON u.id_usuario = c.contacto_id " +
+            "LEFT JOIN TABLA_VIVIENDA v ON v.id_vivienda = c.vivienda_id " +
+            "WHERE c.usuario_id = ? " +
+            "ORDER BY c.ultimo_mensaje_id DESC";
+    private static final String SQL_MARCAR_CONVERSACION_LEIDA =
+            "UPDATE TABLA_MENSAJES SET leido = 1 WHERE remitente_id = ? AND destinatario_id = ? AND id_mensaje <= ? AND leido = 0";
+
+    private SQLiteDatabase db;
+    private MensajesEntity mensajesEntity;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        mensajesEntity = new MensajesEntity(db);
+
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password, foto_perfil) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1', 'monica.jpg');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password, foto_perfil) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2', 'martin.jpg');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Lucia Vidal', 'lucia', 'lucia@homespotter.com', 'password3');");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testUnaConversacionPorContacto() {
+        mensajesEntity.insertar(1, 2, "Hola Martin");
+        mensajesEntity.insertar(2, 1, "Hola Monica");
+        mensajesEntity.insertar(3, 1, "¿Sigue disponible?");
+        mensajesEntity.insertar(2, 1, "¿Cuándo la vemos?");
+
+        List<Chat> chats = mensajesEntity.obtenerConversaciones(1);
+        assertEquals("Debería haber una conversación por contacto.", 2, chats.size());
+
+        // La conversación más reciente va primero
+        Chat martin = chats.get(0);
+        assertEquals(2, martin.getIdChat());
+        assertEquals("El nombre debería ser el del contacto.", "martin", martin.getNombreUsuario());
+        assertEquals("La foto debería ser la del contacto.", "martin.jpg", martin.getFotoUsuario());
+        assertEquals("Debería mostrarse el último mensaje.", "¿Cuándo la vemos?", martin.getUltimoMensaje());
+        assertTrue("Debería incluirse la fecha del último mensaje.", martin.getFechaUltimoMensaje() > 0);
+        assertEquals("Deberían contarse los dos mensajes recibidos sin leer.", 2, martin.getNoLeidos());
+
+        Chat lucia = chats.get(1);
+        assertEquals(3, lucia.getIdChat());
+        assertEquals(1, lucia.getNoLeidos());
+    }
+
+    @Test
+    public void testNoLeidosSoloCuentaMensajesRecibidos() {
+        mensajesEntity.insertar(1, 2, "Hola Martin");
+        mensajesEntity.insertar(2, 1, "Hola Monica");
+        db.execSQL("UPDATE TABLA_MENSAJES SET leido = 1 WHERE destinatario_id = 1");
+
+        assertEquals("Los mensajes leídos no deberían contarse.", 0, mensajesEntity.obtenerConversaciones(1).get(0).getNoLeidos());
+        assertEquals("El mensaje enviado por Monica cuenta como no leído para Martin.", 1, mensajesEntity.obtenerConversaciones(2).get(0).getNoLeidos());
+    }
+
+    @Test
+    public void testSinConversaciones() {
+        assertTrue("Un usuario sin mensajes no debería tener conversaciones.", mensajesEntity.obtenerConversaciones(1).isEmpty());
+    }
+
+    @Test
+    public void testResumenSeMantieneAlBorrarYLeer() {
+        mensajesEntity.insertar(1, 2, "Hola Martin");
+        mensajesEntity.insertar(2, 1, "Hola Monica");
+        mensajesEntity.insertar(3, 1, "¿Sigue disponible?");
+        assertEquals("Monica debería tener dos mensajes sin leer.", 2, mensajesEntity.contarNoLeidos(1));
+
+        // Leer un mensaje descuenta un no leído
+        mensajesEntity.marcarComoLeido(2);
+        assertEquals(1, mensajesEntity.contarNoLeidos(1));
+
+        // Borrar el último mensaje deja como último el anterior
+        mensajesEntity.eliminar(2);
+        Chat martin = mensajesEntity.obtenerConversaciones(1).get(1);
+        assertEquals("El último mensaje debería ser el anterior al borrado.", "Hola Martin", martin.getUltimoMensaje());
+
+        // Borrar el único mensaje de una conversación la elimina y descuenta sus no leídos
+        mensajesEntity.eliminar(3);
+        assertEquals("Debería quedar solo la conversación con Martin.", 1, mensajesEntity.obtenerConversaciones(1).size());
+        assertEquals(0, mensajesEntity.contarNoLeidos(1));
+    }
+
+    @Test
+    public void testMarcarConversacionLeida() {
+        mensajesEntity.insertar(2, 1, "Hola Monica");
+        mensajesEntity.insertar(1, 2, "Hola Martin");
+        mensajesEntity.insertar(2, 1, "¿Cuándo la vemos?");
+        mensajesEntity.insertar(3, 1, "¿Sigue disponible?");
+        mensajesEntity.insertar(2, 1, "Llegó después");
+        assertEquals(4, mensajesEntity.contarNoLeidos(1));
+
+        assertEquals("Deberían marcarse los dos mensajes recibidos de Martin hasta el indicado.",
+                2, mensajesEntity.marcarConversacionLeida(1, 2, 3));
+        assertEquals("Deberían quedar sin leer el de Lucia y el que llegó después.", 2, mensajesEntity.contarNoLeidos(1));
+        assertEquals("El mensaje enviado por Monica sigue sin leer para Martin.", 1, mensajesEntity.contarNoLeidos(2));
+
+        assertEquals("Los ya leídos no deberían contarse otra vez.", 0, mensajesEntity.marcarConversacionLeida(1, 2, 3));
+        assertEquals(1, mensajesEntity.marcarConversacionLeida(1, 2, 5));
+        assertEquals(0, mensajesEntity.obtenerConversaciones(1).get(0).getNoLeidos());
+    }
+
+    @Test
+    public void testMarcarConversacionLeidaUsaIndices() {
+        PlanConsulta.assertSinEscaneoCompleto(db, SQL_MARCAR_CONVERSACION_LEIDA, new Object[]{2, 1, 100});
+    }
+
+    @Test
+    public void testHiloPorVivienda() {
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Piso en Vigo', 'Piso', 90000, 'Calle Real 1', 'Venta', '600000000', 2);");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Casa en Ourense', 'Casa', 150000, 'Rúa Nova 2', 'Venta', '600000000', 2);");
+
+        mensajesEntity.insertarMensaje(1, 2, 1, "¿Sigue disponible el piso?");
+        mensajesEntity.insertarMensaje(1, 2, 2, "¿Y la casa?");
+        mensajesEntity.insertarMensaje(2, 1, 1, "El piso sí");
+        mensajesEntity.insertar(2, 1, "Hola");
+
+        List<Chat> chats = mensajesEntity.obtenerConversaciones(2);
+        assertEquals("Debería haber un hilo por vivienda y otro sin vivienda.", 3, chats.size());
+        assertNull("El hilo sin vivienda no debería tener título.", chats.get(0).getTituloVivienda());
+        assertEquals(0, chats.get(0).getViviendaId());
+        assertEquals("El piso tiene el mensaje más reciente con vivienda.", "Piso en Vigo", chats.get(1).getTituloVivienda());
+        assertEquals("El piso sí", chats.get(1).getUltimoMensaje());
+        assertEquals(1, chats.get(1).getNoLeidos());
+        assertEquals("Casa en Ourense", chats.get(2).getTituloVivienda());
+        assertEquals(1, chats.get(2).getNoLeidos());
+
+        List<Mensaje> piso = mensajesEntity.obtenerUltimaPagina(1, 2, 1, 50);
+        assertEquals("El hilo del piso solo debería tener sus mensajes.", 2, piso.size());
+        assertEquals("¿Sigue disponible el piso?", piso.get(0).getContenido());
+        assertEquals(1, mensajesEntity.obtenerUltimaPagina(2, 1, 0, 50).size());
+
+        // Leer el hilo del piso no marca los demás
+        assertEquals(1, mensajesEntity.marcarConversacionLeida(2, 1, 1, Integer.MAX_VALUE));
+        assertEquals(1, mensajesEntity.contarNoLeidos(2));
+    }
+
+    @Test
+    public void testBorrarViviendaPasaSusMensajesAlHiloSinVivienda() {
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Piso en Vigo', 'Piso', 90000, 'Calle Real 1', 'Venta', '600000000', 2);");
+        mensajesEntity.insertarMensaje(1, 2, 1, "¿Sigue disponible el piso?");
+        mensajesEntity.insertar(1, 2, "Hola");
+
+        // Lo que hace ON DELETE SET NULL al borrar la vivienda
+        db.execSQL("UPDATE TABLA_MENSAJES SET vivienda_id = NULL WHERE vivienda_id = 1");
+
+        List<Chat> chats = mensajesEntity.obtenerConversaciones(2);
+        assertEquals("Los dos mensajes deberían quedar en un único hilo.", 1, chats.size());
+        assertEquals(0, chats.get(0).getViviendaId());
+        assertEquals("Hola", chats.get(0).getUltimoMensaje());
+        assertEquals(2, chats.get(0).getNoLeidos());
+    }
+
+    @Test
+    public void testVistaPreviaAcotada() {
+        StringBuilder largo = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            largo.append("Mensaje largo ");
+        }
+        mensajesEntity.insertar(1, 2, largo.toString());
+
+        assertEquals("La vista previa debería guardar solo el inicio del mensaje.", 100,
+                mensajesEntity.obtenerConversaciones(1).get(0).getUltimoMensaje().length());
+    }
+
+    @Test
+    public void testConsultaUsaIndices() {
+        PlanConsulta.assertSinEscaneoCompleto(db, SQL_CONVERSACIONES, new Object[]{1});
+    }
+}
@@ -0,0 +1,65 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import org.uvigo.esei.example.homespotter.database.Migraciones;
+
+/**
+ * Esquema de base de datos compartido por las pruebas.
+ */
+public final class EsquemaPrueba {
+
+    private EsquemaPrueba() {
+    }
+
+    /**
+     * Crea las tablas de la versión 1 del esquema, sin datos.
+     *
+     * @param db Base de datos vacía.
+     */
+    public static void crearEsquemaInicial(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE TABLA_USUARIO (" +
+                "id_usuario INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "nombre_completo TEXT NOT NULL, " +
+                "nombre_usuario TEXT NOT NULL, " +
+                "email TEXT UNIQUE NOT NULL, " +
+                "password TEXT NOT NULL, " +
+                "foto_perfil TEXT, " +
+                "tlfno TEXT);");
+        db.execSQL("CREATE TABLE TABLA_VIVIENDA (" +
+                "id_vivienda INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "titulo TEXT NOT NULL, " +
+                "tipo_vivienda TEXT NOT NULL, " +
+                "precio REAL NOT NULL, " +
+                "direccion TEXT NOT NULL, " +
+                "estado TEXT NOT NULL, " +
+                "contacto TEXT NOT NULL, " +
+                "descripcion TEXT, " +
+                "propietario_id INTEGER NOT NULL);");
+        db.execSQL("CREATE TABLE TABLA_FOTOS (" +
+                "id_foto INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "vivienda_id INTEGER NOT NULL, " +
+                "url_foto TEXT NOT NULL);");
+        db.execSQL("CREATE TABLE TABLA_FAVORITOS (" +
+                "usuario_id INTEGER NOT NULL, " +
+                "vivienda_id INTEGER NOT NULL, " +
+                "PRIMARY KEY (usuario_id, vivienda_id));");
+        db.execSQL("CREATE TABLE TABLA_MENSAJES (" +
+                "id_mensaje INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "remitente_id INTEGER NOT NULL, " +
+                "destinatario_id INTEGER NOT NULL, " +
+                "vivienda_id INTEGER, " +
+                "contenido TEXT NOT NULL, " +
+                "fecha TEXT NOT NULL, " +
+                "leido INTEGER NOT NULL DEFAULT 0);");    }
+
+    /**
+     * Crea el esquema completo: la versión 1 y todas las migraciones.
+     *
+     * @param db Base de datos vacía.
+     */
+    public static void crearEsquemaActual(SQLiteDatabase db) {
+        crearEsquemaInicial(db);
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+    }
+}
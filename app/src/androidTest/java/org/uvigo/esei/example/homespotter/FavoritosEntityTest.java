@@ -1,6 +1,7 @@
 package org.uvigo.esei.example.homespotter;
 
 import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.ResultadoInsercion;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -25,9 +26,9 @@ public class FavoritosEntityTest {
             @Override
             public void onCreate(SQLiteDatabase db) {
                 db.execSQL("CREATE TABLE TABLA_FAVORITOS (" +
-                        "id_usuario INTEGER NOT NULL, " +
-                        "id_vivienda INTEGER NOT NULL, " +
-                        "PRIMARY KEY (id_usuario, id_vivienda));");
+                        "usuario_id INTEGER NOT NULL, " +
+                        "vivienda_id INTEGER NOT NULL, " +
+                        "PRIMARY KEY (usuario_id, vivienda_id));");
             }
 
             @Override
@@ -50,10 +51,43 @@ public class FavoritosEntityTest {
         boolean resultado = favoritosEntity.insertar(1, 100);
         assertTrue("El favorito debería haberse insertado correctamente.", resultado);
 
-        Cursor cursor = db.query("TABLA_FAVORITOS", null, "id_usuario = ? AND id_vivienda = ?", new String[]{"1", "100"}, null, null, null);
+        Cursor cursor = db.query("TABLA_FAVORITOS", null, "usuario_id = ? AND vivienda_id = ?", new String[]{"1", "100"}, null, null, null);
         assertTrue("El cursor debería contener un registro.", cursor.moveToFirst());
-        assertEquals("El ID del usuario debería ser 1.", 1, cursor.getInt(cursor.getColumnIndex("id_usuario")));
-        assertEquals("El ID de la vivienda debería ser 100.", 100, cursor.getInt(cursor.getColumnIndex("id_vivienda")));
+        assertEquals("El ID del usuario debería ser 1.", 1, cursor.getInt(cursor.getColumnIndex("usuario_id")));
+        assertEquals("El ID de la vivienda debería ser 100.", 100, cursor.getInt(cursor.getColumnIndex("vivienda_id")));
+        cursor.close();
+    }
+
+    @Test
+    public void testInsertarFavoritoRepetido() {
+        assertEquals("El primer favorito debería insertarse.", ResultadoInsercion.Estado.INSERTADO,
+                favoritosEntity.insertarSiNoExiste(1, 100).getEstado());
+        assertEquals("El favorito repetido debería detectarse como existente.", ResultadoInsercion.Estado.YA_EXISTIA,
+                favoritosEntity.insertarSiNoExiste(1, 100).getEstado());
+        assertFalse("insertar no debería dar por insertado un favorito repetido.", favoritosEntity.insertar(1, 100));
+
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM TABLA_FAVORITOS", null);
+        cursor.moveToFirst();
+        assertEquals("Solo debería haber un favorito.", 1, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testFavoritoRepetidoNoDeshaceLaTransaccionExterior() {
+        favoritosEntity.insertar(1, 100);
+
+        db.beginTransaction();
+        try {
+            assertEquals(ResultadoInsercion.Estado.YA_EXISTIA, favoritosEntity.insertarSiNoExiste(1, 100).getEstado());
+            assertTrue(favoritosEntity.insertar(1, 101));
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM TABLA_FAVORITOS", null);
+        cursor.moveToFirst();
+        assertEquals("El favorito repetido no debería deshacer la transacción exterior.", 2, cursor.getInt(0));
         cursor.close();
     }
 
@@ -67,7 +101,7 @@ public class FavoritosEntityTest {
         assertTrue("El favorito debería haberse eliminado correctamente.", eliminado);
 
         // Verificar que el favorito ya no existe
-        Cursor cursor = db.query("TABLA_FAVORITOS", null, "id_usuario = ? AND id_vivienda = ?", new String[]{"1", "100"}, null, null, null);
+        Cursor cursor = db.query("TABLA_FAVORITOS", null, "usuario_id = ? AND vivienda_id = ?", new String[]{"1", "100"}, null, null, null);
         assertFalse("El cursor no debería contener registros.", cursor.moveToFirst());
         cursor.close();
     }
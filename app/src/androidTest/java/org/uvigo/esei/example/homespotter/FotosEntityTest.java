@@ -11,6 +11,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.uvigo.esei.example.homespotter.database.FotosEntity;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.Assert.*;
 
 public class FotosEntityTest {
@@ -96,4 +101,38 @@ public class FotosEntityTest {
         assertEquals("La segunda URL debería ser https://example.com/foto2.jpg.", "https://example.com/foto2.jpg", cursor.getString(cursor.getColumnIndex("url_foto")));
         cursor.close();
     }
+
+    @Test
+    public void testInsertarLote() {
+        List<Long> ids = fotosEntity.insertarLote(1, Arrays.asList("https://example.com/foto1.jpg", "https://example.com/foto2.jpg"));
+        assertEquals("Deberían devolverse los IDs de las dos fotos.", 2, ids.size());
+
+        // Los IDs devueltos deben corresponder a las URLs en el mismo orden
+        Cursor cursor = db.query("TABLA_FOTOS", new String[]{"url_foto"}, "id_foto = ?", new String[]{String.valueOf(ids.get(1))}, null, null, null);
+        assertTrue("El cursor debería contener un registro.", cursor.moveToFirst());
+        assertEquals("https://example.com/foto2.jpg", cursor.getString(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testInsertarLoteVariasViviendas() {
+        Map<Integer, List<String>> fotos = new LinkedHashMap<>();
+        fotos.put(1, Arrays.asList("https://example.com/foto1.jpg", "https://example.com/foto2.jpg"));
+        fotos.put(2, Arrays.asList("https://example.com/foto3.jpg"));
+
+        Map<Integer, List<Long>> ids = fotosEntity.insertarLote(fotos);
+        assertEquals("La vivienda 1 debería tener dos fotos.", 2, ids.get(1).size());
+        assertEquals("La vivienda 2 debería tener una foto.", 1, ids.get(2).size());
+        assertEquals("Debería haber dos fotos asociadas a la vivienda con ID 1.", 2, fotosEntity.obtenerListaFotos(1).size());
+    }
+
+    @Test
+    public void testInsertarLoteInvalidoNoGuardaNada() {
+        List<Long> ids = fotosEntity.insertarLote(1, Arrays.asList("https://example.com/foto1.jpg", ""));
+        assertTrue("Un lote con una URL vacía no debería insertarse.", ids.isEmpty());
+
+        Cursor cursor = db.query("TABLA_FOTOS", null, null, null, null, null, null);
+        assertEquals("No debería haberse guardado ninguna foto.", 0, cursor.getCount());
+        cursor.close();
+    }
 }
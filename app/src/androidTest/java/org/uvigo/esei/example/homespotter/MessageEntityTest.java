@@ -8,6 +8,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -28,14 +31,25 @@ public class MessageEntityTest {
                         "id_mensaje INTEGER PRIMARY KEY AUTOINCREMENT, " +
                         "remitente_id INTEGER NOT NULL, " +
                         "destinatario_id INTEGER NOT NULL, " +
+                        "vivienda_id INTEGER, " +
                         "contenido TEXT NOT NULL, " +
-                        "fecha TEXT NOT NULL, " +
+                        "fecha INTEGER NOT NULL, " +
                         "leido INTEGER NOT NULL DEFAULT 0);");
+                // Las páginas de un hilo siguen por el archivo al acabarse TABLA_MENSAJES
+                db.execSQL("CREATE TABLE TABLA_MENSAJES_ARCHIVO (" +
+                        "id_mensaje INTEGER PRIMARY KEY, " +
+                        "remitente_id INTEGER NOT NULL, " +
+                        "destinatario_id INTEGER NOT NULL, " +
+                        "vivienda_id INTEGER, " +
+                        "contenido TEXT NOT NULL, " +
+                        "fecha INTEGER NOT NULL, " +
+                        "leido INTEGER NOT NULL DEFAULT 1);");
             }
 
             @Override
             public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
                 db.execSQL("DROP TABLE IF EXISTS TABLA_MENSAJES;");
+                db.execSQL("DROP TABLE IF EXISTS TABLA_MENSAJES_ARCHIVO;");
                 onCreate(db);
             }
         };
@@ -95,6 +109,88 @@ public class MessageEntityTest {
         cursor.close();
     }
 
+    @Test
+    public void testMensajesDelMismoInstanteEnOrden() {
+        mensajesEntity.insertar(1, 2, "Primero");
+        mensajesEntity.insertar(2, 1, "Segundo");
+        mensajesEntity.insertar(1, 2, "Tercero");
+        // Forzar la misma fecha en todos los mensajes
+        db.execSQL("UPDATE TABLA_MENSAJES SET fecha = 1732096800000");
+
+        Cursor cursor = mensajesEntity.obtenerMensajesEntreUsuarios(1, 2);
+        assertEquals(3, cursor.getCount());
+        String[] esperados = {"Primero", "Segundo", "Tercero"};
+        for (String esperado : esperados) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("Los mensajes con la misma fecha deberían salir en orden de inserción.",
+                    esperado, cursor.getString(cursor.getColumnIndex("contenido")));
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testInsertarMensajeDevuelveElGuardado() {
+        Mensaje mensaje = mensajesEntity.insertarMensaje(1, 2, 0, "Hola");
+        assertNotNull("Debería devolverse el mensaje guardado.", mensaje);
+        assertTrue("El mensaje debería tener el ID asignado por la base de datos.", mensaje.getIdMensaje() > 0);
+        assertTrue("El mensaje debería tener fecha.", mensaje.getFecha() > 0);
+        assertNull("Un mensaje sin contenido no debería guardarse.", mensajesEntity.insertarMensaje(1, 2, 0, ""));
+    }
+
+    @Test
+    public void testObtenerMensajesPosteriores() {
+        Mensaje primero = mensajesEntity.insertarMensaje(1, 2, 0, "Primero");
+        mensajesEntity.insertar(2, 1, "Segundo");
+        mensajesEntity.insertar(3, 1, "De otra conversación");
+        mensajesEntity.insertar(1, 2, "Tercero");
+
+        List<Mensaje> todos = mensajesEntity.obtenerMensajesPosteriores(1, 2, 0, 0);
+        assertEquals("Sin ID previo deberían cargarse todos los mensajes de la conversación.", 3, todos.size());
+
+        List<Mensaje> nuevos = mensajesEntity.obtenerMensajesPosteriores(1, 2, 0, primero.getIdMensaje());
+        assertEquals("Solo deberían cargarse los mensajes posteriores al último mostrado.", 2, nuevos.size());
+        assertEquals("Segundo", nuevos.get(0).getContenido());
+        assertEquals("Tercero", nuevos.get(1).getContenido());
+
+        int ultimoId = nuevos.get(1).getIdMensaje();
+        assertTrue("No debería haber mensajes posteriores al último.", mensajesEntity.obtenerMensajesPosteriores(2, 1, 0, ultimoId).isEmpty());
+    }
+
+    @Test
+    public void testPaginasDeLaConversacion() {
+        for (int i = 1; i <= 5; i++) {
+            mensajesEntity.insertar(i % 2 == 0 ? 2 : 1, i % 2 == 0 ? 1 : 2, "Mensaje " + i);
+        }
+        mensajesEntity.insertar(3, 1, "De otra conversación");
+        // Los mensajes 2 y 3 comparten fecha: los desempata el ID
+        db.execSQL("UPDATE TABLA_MENSAJES SET fecha = 1732096800000 + id_mensaje * 1000");
+        db.execSQL("UPDATE TABLA_MENSAJES SET fecha = 1732096802000 WHERE id_mensaje IN (2, 3)");
+
+        List<Mensaje> ultima = mensajesEntity.obtenerUltimaPagina(1, 2, 0, 2);
+        assertEquals(2, ultima.size());
+        assertEquals("La última página debería ir del más antiguo al más reciente.", "Mensaje 4", ultima.get(0).getContenido());
+        assertEquals("Mensaje 5", ultima.get(1).getContenido());
+
+        Mensaje primero = ultima.get(0);
+        List<Mensaje> anterior = mensajesEntity.obtenerPaginaAnterior(1, 2, 0, primero.getFecha(), primero.getIdMensaje(), 2);
+        assertEquals(2, anterior.size());
+        assertEquals("Mensaje 2", anterior.get(0).getContenido());
+        assertEquals("Mensaje 3", anterior.get(1).getContenido());
+
+        Mensaje tercero = anterior.get(1);
+        List<Mensaje> anteriorAlTercero = mensajesEntity.obtenerPaginaAnterior(1, 2, 0, tercero.getFecha(), tercero.getIdMensaje(), 2);
+        assertEquals("Con la misma fecha, la clave debería incluir el mensaje de ID menor.", "Mensaje 2", anteriorAlTercero.get(1).getContenido());
+
+        Mensaje segundo = anterior.get(0);
+        List<Mensaje> siguiente = mensajesEntity.obtenerPaginaSiguiente(1, 2, 0, segundo.getFecha(), segundo.getIdMensaje(), 3);
+        assertEquals(3, siguiente.size());
+        assertEquals("Mensaje 3", siguiente.get(0).getContenido());
+        assertEquals("Mensaje 5", siguiente.get(2).getContenido());
+
+        assertTrue("Antes del primer mensaje no debería haber nada.",
+                mensajesEntity.obtenerPaginaAnterior(1, 2, 0, anteriorAlTercero.get(0).getFecha(), 1, 2).isEmpty());
+    }
+
     @Test
     public void testMarcarComoLeido() {
         mensajesEntity.insertar(1, 2, "Mensaje sin leer");
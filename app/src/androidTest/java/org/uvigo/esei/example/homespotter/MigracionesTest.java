@@ -0,0 +1,181 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.Migracion;
+import org.uvigo.esei.example.homespotter.database.Migraciones;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+public class MigracionesTest {
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema de la versión 1
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, Migraciones.VERSION_INICIAL) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaInicial(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+
+        // Datos que deben sobrevivir a la migración
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2');");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Casa en Berres', 'Casa', 200000, 'Calle Principal 123', 'Disponible', 'monica@homespotter.com', 1);");
+        db.execSQL("INSERT INTO TABLA_FOTOS (vivienda_id, url_foto) VALUES (1, 'https://example.com/foto1.jpg');");
+        db.execSQL("INSERT INTO TABLA_FAVORITOS (usuario_id, vivienda_id) VALUES (2, 1);");
+        db.execSQL("INSERT INTO TABLA_MENSAJES (remitente_id, destinatario_id, contenido, fecha) " +
+                "VALUES (2, 1, 'Hola', '2024-11-20 10:00:00');");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testMigracionesOrdenadas() {
+        int anterior = Migraciones.VERSION_INICIAL;
+        for (Migracion migracion : Migraciones.getMigraciones()) {
+            assertEquals("Las migraciones deberían tener versiones consecutivas.", anterior + 1, migracion.getVersion());
+            anterior = migracion.getVersion();
+        }
+        assertEquals("La última versión debería ser la de la última migración.", anterior, Migraciones.getUltimaVersion());
+    }
+
+    @Test
+    public void testMigrarConservaDatos() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+
+        assertEquals("Los usuarios deberían conservarse.", 2, contar("TABLA_USUARIO"));
+        assertEquals("Las viviendas deberían conservarse.", 1, contar("TABLA_VIVIENDA"));
+        assertEquals("Las fotos deberían conservarse.", 1, contar("TABLA_FOTOS"));
+        assertEquals("Los favoritos deberían conservarse.", 1, contar("TABLA_FAVORITOS"));
+        assertEquals("Los mensajes deberían conservarse.", 1, contar("TABLA_MENSAJES"));
+    }
+
+    @Test
+    public void testMigrarCreaIndices() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+
+        assertTrue(existeIndice("idx_mensajes_remitente_destinatario_fecha"));
+        assertTrue(existeIndice("idx_vivienda_propietario"));
+        assertTrue(existeIndice("idx_vivienda_precio"));
+        assertTrue(existeIndice("idx_fotos_vivienda"));
+        assertTrue(existeIndice("idx_usuario_nombre_usuario"));
+        assertTrue(existeIndice("idx_mensajes_destinatario_leido"));
+        assertTrue(existeIndice("idx_mensajes_hilo"));
+        assertTrue(existeIndice("idx_archivo_hilo"));
+        assertTrue(existeIndice("idx_cambios_fila"));
+        assertTrue(existeIndice("idx_vivienda_tipo"));
+        assertTrue(existeIndice("idx_vivienda_estado"));
+    }
+
+    @Test
+    public void testMigrarEmpiezaRegistroDeCambiosVacio() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+        assertEquals("Las filas existentes no deberían anotarse como cambios.", 0, contar("TABLA_CAMBIOS"));
+
+        db.execSQL("UPDATE TABLA_FOTOS SET url_foto = 'https://example.com/foto2.jpg' WHERE id_foto = 1;");
+        Cursor cursor = db.rawQuery("SELECT tabla, id_fila, id_vivienda, operacion FROM TABLA_CAMBIOS", null);
+        assertTrue("Los cambios posteriores a la migración deberían anotarse.", cursor.moveToFirst());
+        assertEquals("TABLA_FOTOS", cursor.getString(0));
+        assertEquals(1, cursor.getInt(1));
+        assertEquals(1, cursor.getInt(2));
+        assertEquals("MODIFICAR", cursor.getString(3));
+        cursor.close();
+    }
+
+    @Test
+    public void testMigrarFechasAMilisegundos() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+
+        // '2024-11-20 10:00:00' se guardó en la hora local del dispositivo
+        long esperado = LocalDateTime.of(2024, 11, 20, 10, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Cursor cursor = db.rawQuery("SELECT fecha, typeof(fecha) FROM TABLA_MENSAJES", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("La fecha debería guardarse como entero.", "integer", cursor.getString(1));
+        assertEquals("La fecha debería convertirse a milisegundos desde epoch.", esperado, cursor.getLong(0));
+        cursor.close();
+
+        cursor = db.rawQuery("SELECT ultima_fecha FROM TABLA_CONVERSACIONES WHERE usuario_id = 1", null);
+        assertTrue("La conversación debería conservarse.", cursor.moveToFirst());
+        assertEquals(esperado, cursor.getLong(0));
+        cursor.close();
+
+        // Los triggers de TABLA_CONVERSACIONES deben seguir activos sobre la tabla nueva
+        db.execSQL("INSERT INTO TABLA_MENSAJES (remitente_id, destinatario_id, contenido, fecha) VALUES (2, 1, 'Otra', 1)");
+        cursor = db.rawQuery("SELECT no_leidos FROM TABLA_CONVERSACIONES WHERE usuario_id = 1", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals(2, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testMigrarEsIdempotentePorVersion() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, 2);
+        // Volver a migrar desde la versión alcanzada no debería aplicar de nuevo la migración 2
+        Migraciones.migrar(db, 2, Migraciones.getUltimaVersion());
+
+        assertEquals("Los usuarios deberían conservarse.", 2, contar("TABLA_USUARIO"));
+        assertTrue(existeIndice("idx_vivienda_precio"));
+    }
+
+    @Test
+    public void testMigrarIndexaTextoViviendas() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+
+        // La vivienda existente antes de la migración debe estar indexada
+        Cursor cursor = db.rawQuery("SELECT docid FROM TABLA_VIVIENDA_FTS WHERE TABLA_VIVIENDA_FTS MATCH 'berres'", null);
+        assertTrue("La vivienda existente debería estar en el índice de texto.", cursor.moveToFirst());
+        assertEquals(1, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testMigrarIndexaTextoMensajes() {
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, Migraciones.getUltimaVersion());
+
+        // El mensaje existente antes de la migración debe estar indexado con sus participantes
+        Cursor cursor = db.rawQuery("SELECT docid FROM TABLA_MENSAJES_FTS WHERE TABLA_MENSAJES_FTS MATCH 'contenido:hola participantes:u1'", null);
+        assertTrue("El mensaje existente debería estar en el índice de texto.", cursor.moveToFirst());
+        assertEquals(1, cursor.getInt(0));
+        cursor.close();
+    }
+
+    private int contar(String tabla) {
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + tabla, null);
+        cursor.moveToFirst();
+        int total = cursor.getInt(0);
+        cursor.close();
+        return total;
+    }
+
+    private boolean existeIndice(String nombre) {
+        Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name = ?", new String[]{nombre});
+        boolean existe = cursor.moveToFirst();
+        cursor.close();
+        return existe;
+    }
+}
@@ -0,0 +1,247 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.PerfilAlmacenamiento;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
+import org.uvigo.esei.example.homespotter.models.Vivienda;
+import org.uvigo.esei.example.homespotter.ui.utils.ViviendaLoader;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compara los perfiles de almacenamiento sobre las consultas de viviendas y chats.
+ * Los tiempos se escriben en el log con la etiqueta "PerfilAlmacenamientoBenchmark"; dependen del
+ * dispositivo, así que no se comparan. Tras la primera pasada, las viviendas salen de la caché del
+ * proceso, de modo que su tiempo mide sobre todo la consulta de IDs de cada página.
+ */
+public class PerfilAlmacenamientoBenchmark {
+    private static final String TAG = "PerfilAlmacenamientoBenchmark";
+    private static final String NOMBRE_BD = "benchmark_perfil.db";
+    private static final int VIVIENDAS = 2000;
+    private static final int FOTOS_POR_VIVIENDA = 3;
+    private static final int MENSAJES = 5000;
+    private static final int REPETICIONES = 5;
+    // 2024-11-01 00:00:00 UTC, en milisegundos
+    private static final long FECHA_INICIAL = 1730419200000L;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+    private SQLiteOpenHelper dbHelper;
+
+    @After
+    public void tearDown() {
+        if (dbHelper != null) {
+            dbHelper.close();
+        }
+        context.deleteDatabase(NOMBRE_BD);
+    }
+
+    @Test
+    public void testLecturaIntensivaUsaWal() {
+        SQLiteDatabase db = abrir(PerfilAlmacenamiento.LECTURA_INTENSIVA);
+        assertEquals("El perfil por defecto debería usar WAL.", "wal", pragma(db, "journal_mode").toLowerCase());
+        // synchronous: 1 = NORMAL
+        assertEquals("1", pragma(db, "synchronous"));
+        assertTrue("El perfil por defecto debería leer con memoria mapeada.", Long.parseLong(pragma(db, "mmap_size")) > 0);
+    }
+
+    @Test
+    public void testConservadorUsaLaConfiguracionPorDefecto() {
+        SQLiteDatabase db = abrir(PerfilAlmacenamiento.CONSERVADOR);
+        assertEquals("delete", pragma(db, "journal_mode").toLowerCase());
+        // synchronous: 2 = FULL
+        assertEquals("2", pragma(db, "synchronous"));
+        assertEquals("0", pragma(db, "mmap_size"));
+    }
+
+    @Test
+    public void testCompararPerfiles() {
+        long[] conservador = medir(PerfilAlmacenamiento.CONSERVADOR);
+        long[] lecturaIntensiva = medir(PerfilAlmacenamiento.LECTURA_INTENSIVA);
+
+        Log.i(TAG, String.format("Viviendas: %d ms (CONSERVADOR) vs %d ms (LECTURA_INTENSIVA)", conservador[0], lecturaIntensiva[0]));
+        Log.i(TAG, String.format("Chat: %d ms (CONSERVADOR) vs %d ms (LECTURA_INTENSIVA)", conservador[1], lecturaIntensiva[1]));
+        Log.i(TAG, String.format("Viviendas con escrituras concurrentes: %d ms (CONSERVADOR) vs %d ms (LECTURA_INTENSIVA)",
+                conservador[2], lecturaIntensiva[2]));
+    }
+
+    /**
+     * Mide un perfil sobre una base de datos nueva.
+     *
+     * @return Milisegundos de: recorrer todas las páginas de viviendas, leer la conversación completa
+     *         y recorrer las viviendas mientras otro hilo escribe mensajes.
+     */
+    private long[] medir(PerfilAlmacenamiento perfil) {
+        context.deleteDatabase(NOMBRE_BD);
+        SQLiteDatabase db = abrir(perfil);
+        poblar(db);
+        comprobarEsquemaMigrado(db);
+
+        ViviendaEntity viviendaEntity = new ViviendaEntity(db);
+        MensajesEntity mensajesEntity = new MensajesEntity(db);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < REPETICIONES; i++) {
+            assertEquals(VIVIENDAS, recorrerViviendas(viviendaEntity));
+        }
+        long viviendas = (System.nanoTime() - inicio) / 1_000_000;
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < REPETICIONES; i++) {
+            Cursor cursor = mensajesEntity.obtenerMensajesEntreUsuarios(1, 2);
+            int total = 0;
+            while (cursor.moveToNext()) {
+                cursor.getString(cursor.getColumnIndexOrThrow("contenido"));
+                total++;
+            }
+            cursor.close();
+            assertEquals(MENSAJES, total);
+        }
+        long chat = (System.nanoTime() - inicio) / 1_000_000;
+
+        // Un hilo escribe mensajes, cada uno en su transacción, mientras se leen las viviendas
+        AtomicBoolean escribiendo = new AtomicBoolean(true);
+        Thread escritor = new Thread(() -> {
+            while (escribiendo.get()) {
+                mensajesEntity.insertar(2, 1, "Mensaje concurrente");
+            }
+        });
+        escritor.start();
+        inicio = System.nanoTime();
+        for (int i = 0; i < REPETICIONES; i++) {
+            assertEquals(VIVIENDAS, recorrerViviendas(viviendaEntity));
+        }
+        long concurrente = (System.nanoTime() - inicio) / 1_000_000;
+        escribiendo.set(false);
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        dbHelper.close();
+        dbHelper = null;
+        return new long[]{viviendas, chat, concurrente};
+    }
+
+    private int recorrerViviendas(ViviendaEntity viviendaEntity) {
+        ViviendaQuery consulta = new ViviendaQuery.Builder().orden(ViviendaEntity.Orden.PRECIO).usuario(1).build();
+        int total = 0;
+        List<Vivienda> pagina = ViviendaLoader.cargarPagina(viviendaEntity, consulta);
+        while (!pagina.isEmpty()) {
+            total += pagina.size();
+            pagina = ViviendaLoader.cargarPagina(viviendaEntity, consulta.siguientePagina(pagina.get(pagina.size() - 1)));
+        }
+        return total;
+    }
+
+    private SQLiteDatabase abrir(PerfilAlmacenamiento perfil) {
+        dbHelper = new SQLiteOpenHelper(context, NOMBRE_BD, null, 1) {
+            {
+                perfil.aplicar(this);
+            }
+
+            @Override
+            public void onConfigure(SQLiteDatabase db) {
+                db.setForeignKeyConstraintsEnabled(true);
+                perfil.configurar(db);
+            }
+
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        return dbHelper.getWritableDatabase();
+    }
+
+    private void poblar(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                    "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+            db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                    "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2');");
+
+            ContentValues values = new ContentValues();
+            for (int i = 0; i < VIVIENDAS; i++) {
+                values.clear();
+                values.put("titulo", "Vivienda " + i);
+                values.put("tipo_vivienda", i % 2 == 0 ? "Piso" : "Casa");
+                values.put("precio", 50000 + (i * 7919) % 400000);
+                values.put("direccion", "Calle " + i);
+                values.put("estado", "Disponible");
+                values.put("contacto", "monica@homespotter.com");
+                values.put("descripcion", "Descripción de la vivienda " + i);
+                values.put("propietario_id", 2);
+                long id = db.insert("TABLA_VIVIENDA", null, values);
+
+                for (int j = 0; j < FOTOS_POR_VIVIENDA; j++) {
+                    ContentValues foto = new ContentValues();
+                    foto.put("vivienda_id", id);
+                    foto.put("url_foto", "https://example.com/" + id + "_" + j + ".jpg");
+                    db.insert("TABLA_FOTOS", null, foto);
+                }
+            }
+
+            for (int i = 0; i < MENSAJES; i++) {
+                values.clear();
+                values.put("remitente_id", i % 2 == 0 ? 1 : 2);
+                values.put("destinatario_id", i % 2 == 0 ? 2 : 1);
+                values.put("contenido", "Mensaje " + i);
+                values.put("fecha", FECHA_INICIAL + i * 1000L);
+                values.put("leido", 1);
+                db.insert("TABLA_MENSAJES", null, values);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private String pragma(SQLiteDatabase db, String nombre) {
+        Cursor cursor = db.rawQuery("PRAGMA " + nombre, null);
+        assertTrue(cursor.moveToFirst());
+        String valor = cursor.getString(0);
+        cursor.close();
+        return valor;
+    }
+
+    /**
+     * Comprueba que la medida se hace sobre el esquema migrado: fechas en milisegundos (INTEGER),
+     * como las guarda la aplicación, y no en texto como en la versión 1.
+     */
+    private void comprobarEsquemaMigrado(SQLiteDatabase db) {
+        String tipo = null;
+        Cursor cursor = db.rawQuery("PRAGMA table_info(TABLA_MENSAJES)", null);
+        while (cursor.moveToNext()) {
+            if ("fecha".equals(cursor.getString(cursor.getColumnIndexOrThrow("name")))) {
+                tipo = cursor.getString(cursor.getColumnIndexOrThrow("type"));
+            }
+        }
+        cursor.close();
+        assertEquals("La fecha de los mensajes debería ser INTEGER tras las migraciones.", "INTEGER", tipo);
+
+        cursor = db.rawQuery("SELECT COUNT(*) FROM TABLA_MENSAJES WHERE typeof(fecha) <> 'integer'", null);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Todas las fechas deberían guardarse en milisegundos.", 0, cursor.getInt(0));
+        cursor.close();
+    }
+}
@@ -0,0 +1,133 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.uvigo.esei.example.homespotter.database.ArgumentosTipados;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Comprobaciones sobre el plan de ejecución (EXPLAIN QUERY PLAN) de las consultas.
+ */
+public final class PlanConsulta {
+
+    private PlanConsulta() {
+    }
+
+    /**
+     * Obtiene las líneas del plan de ejecución de una consulta.
+     *
+     * @param db Base de datos con el esquema de la consulta.
+     * @param sql Consulta SQL.
+     * @param argumentos Argumentos de la consulta.
+     * @return Columna "detail" de cada paso del plan.
+     */
+    public static List<String> obtenerPlan(SQLiteDatabase db, String sql, Object[] argumentos) {
+        List<String> plan = new ArrayList<>();
+        try (Cursor cursor = ArgumentosTipados.consultar(db, "EXPLAIN QUERY PLAN " + sql, argumentos)) {
+            int colDetalle = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(colDetalle));
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Falla si el plan de la consulta recorre entera alguna tabla.
+     * Se admiten los recorridos de tablas virtuales como el índice FTS y de los alias indicados
+     * (subconsultas cuyo tamaño ya está acotado).
+     *
+     * @param db Base de datos con el esquema de la consulta.
+     * @param sql Consulta SQL.
+     * @param argumentos Argumentos de la consulta.
+     * @param aliasPermitidos Alias de subconsultas que se pueden recorrer.
+     */
+    public static void assertSinEscaneoCompleto(SQLiteDatabase db, String sql, Object[] argumentos, String... aliasPermitidos) {
+        List<String> plan = obtenerPlan(db, sql, argumentos);
+        List<String> permitidos = Arrays.asList(aliasPermitidos);
+
+        for (String paso : plan) {
+            if (!paso.startsWith("SCAN ")
+                    || paso.contains("VIRTUAL TABLE")
+                    || paso.contains("CONSTANT ROW")) {
+                continue;
+            }
+
+            String nombre = nombreTabla(paso);
+            if (!permitidos.contains(nombre)) {
+                fail("La consulta recorre entera la tabla " + nombre + ".\nSQL: " + sql + "\nPlan: " + plan);
+            }
+        }
+    }
+
+    /**
+     * Falla si el plan no accede a la tabla con el índice indicado.
+     *
+     * @param db Base de datos con el esquema de la consulta.
+     * @param sql Consulta SQL.
+     * @param argumentos Argumentos de la consulta.
+     * @param tabla Tabla (o alias) a la que se accede.
+     * @param indice Nombre del índice, o "INTEGER PRIMARY KEY" para el acceso por rowid.
+     */
+    public static void assertUsaIndice(SQLiteDatabase db, String sql, Object[] argumentos, String tabla, String indice) {
+        List<String> plan = obtenerPlan(db, sql, argumentos);
+        String uso = "INTEGER PRIMARY KEY".equals(indice) ? "USING INTEGER PRIMARY KEY" : "INDEX " + indice;
+
+        for (String paso : plan) {
+            if (esAccesoA(paso, tabla) && (paso.contains(uso + " ") || paso.endsWith(uso))) {
+                return;
+            }
+        }
+        fail("La consulta no accede a " + tabla + " por " + indice + ".\nSQL: " + sql + "\nPlan: " + plan);
+    }
+
+    /**
+     * Falla si, tras leer la tabla, el plan la ordena en un árbol temporal. Sin esa ordenación la
+     * tabla se lee ya en el orden de la consulta y el LIMIT detiene el recorrido al llenar la página.
+     *
+     * @param db Base de datos con el esquema de la consulta.
+     * @param sql Consulta SQL.
+     * @param argumentos Argumentos de la consulta.
+     * @param tabla Tabla (o alias) a la que se accede.
+     */
+    public static void assertRecorreEnOrden(SQLiteDatabase db, String sql, Object[] argumentos, String tabla) {
+        List<String> plan = obtenerPlan(db, sql, argumentos);
+
+        for (int i = 0; i < plan.size(); i++) {
+            if (esAccesoA(plan.get(i), tabla)) {
+                if (i + 1 < plan.size() && plan.get(i + 1).startsWith("USE TEMP B-TREE FOR ORDER BY")) {
+                    fail("La consulta ordena " + tabla + " después de leerla entera.\nSQL: " + sql + "\nPlan: " + plan);
+                }
+                return;
+            }
+        }
+        fail("La consulta no accede a " + tabla + ".\nSQL: " + sql + "\nPlan: " + plan);
+    }
+
+    private static boolean esAccesoA(String paso, String tabla) {
+        return (paso.startsWith("SCAN ") || paso.startsWith("SEARCH ")) && tabla.equals(nombreTabla(paso));
+    }
+
+    /**
+     * Obtiene el nombre o alias de la tabla de un paso "SCAN"/"SEARCH": "SCAN TABLE x [AS y] ..."
+     * (SQLite < 3.36) o "SCAN y ..." (SQLite >= 3.36).
+     */
+    private static String nombreTabla(String paso) {
+        String[] partes = paso.replaceFirst("^(SCAN|SEARCH) (TABLE )?", "").split(" ");
+        for (int i = 0; i + 1 < partes.length; i++) {
+            if ("AS".equals(partes[i])) {
+                return partes[i + 1];
+            }
+            if ("USING".equals(partes[i])) {
+                break;
+            }
+        }
+        return partes[0];
+    }
+}
@@ -0,0 +1,100 @@
+package org.uvigo.esei.example.homespotter;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.Planificador;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class PlanificadorTest {
+
+    @Test
+    public void testSecuenciaEjecutaEnOrden() throws InterruptedException {
+        Executor secuencia = Planificador.secuencia();
+        List<Integer> orden = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger enMarcha = new AtomicInteger();
+        AtomicInteger maximoEnMarcha = new AtomicInteger();
+        CountDownLatch terminadas = new CountDownLatch(20);
+
+        for (int i = 0; i < 20; i++) {
+            final int tarea = i;
+            secuencia.execute(() -> {
+                maximoEnMarcha.accumulateAndGet(enMarcha.incrementAndGet(), Math::max);
+                orden.add(tarea);
+                enMarcha.decrementAndGet();
+                terminadas.countDown();
+            });
+        }
+
+        assertTrue("Deberían ejecutarse todas las tareas.", terminadas.await(10, TimeUnit.SECONDS));
+        assertEquals("Las tareas de una secuencia no deberían solaparse.", 1, maximoEnMarcha.get());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Las tareas deberían ejecutarse en el orden en que se enviaron.", i, (int) orden.get(i));
+        }
+    }
+
+    @Test
+    public void testEscrituraEnUnSoloHilo() throws InterruptedException {
+        Set<Thread> hilos = Collections.synchronizedSet(new HashSet<>());
+        List<Integer> orden = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch terminadas = new CountDownLatch(10);
+
+        for (int i = 0; i < 10; i++) {
+            final int tarea = i;
+            Planificador.escritura().execute(() -> {
+                hilos.add(Thread.currentThread());
+                orden.add(tarea);
+                terminadas.countDown();
+            });
+        }
+
+        assertTrue(terminadas.await(10, TimeUnit.SECONDS));
+        assertEquals("Todas las escrituras deberían ejecutarse en el mismo hilo.", 1, hilos.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) orden.get(i));
+        }
+    }
+
+    @Test
+    public void testErrorDeUnaTareaLlegaAlCallback() throws InterruptedException {
+        LifecycleOwner pantalla = new LifecycleOwner() {
+            private final LifecycleRegistry ciclo = LifecycleRegistry.createUnsafe(this);
+
+            @Override
+            public Lifecycle getLifecycle() {
+                return ciclo;
+            }
+        };
+        AtomicReference<RuntimeException> recibido = new AtomicReference<>();
+        CountDownLatch error = new CountDownLatch(1);
+
+        Planificador.ejecutar(Planificador.escritura(), pantalla, () -> {
+            throw new IllegalStateException("Fallo de prueba");
+        }, valor -> fail("No debería entregarse un resultado."), exc -> {
+            recibido.set(exc);
+            error.countDown();
+        });
+
+        assertTrue("La excepción debería llegar al callback de error.", error.await(10, TimeUnit.SECONDS));
+        assertEquals("Fallo de prueba", recibido.get().getMessage());
+
+        // El carril sigue atendiendo tareas después del error
+        CountDownLatch siguiente = new CountDownLatch(1);
+        Planificador.escritura().execute(siguiente::countDown);
+        assertTrue(siguiente.await(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,128 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.ArchivoMensajes;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
+import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.RegistroCambios;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RegistroCambiosTest {
+    private SQLiteDatabase db;
+    private RegistroCambios registro;
+    private ViviendaEntity viviendaEntity;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        registro = new RegistroCambios(db);
+        viviendaEntity = new ViviendaEntity(db);
+
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Monica Perez', 'monica', 'monica@homespotter.com', 'password1');");
+        db.execSQL("INSERT INTO TABLA_USUARIO (nombre_completo, nombre_usuario, email, password) " +
+                "VALUES ('Martin Carreño', 'martin', 'martin@homespotter.com', 'password2');");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private void assertEntrada(RegistroCambios.Entrada entrada, String tabla, int idFila, int idVivienda, BusCambios.Operacion operacion) {
+        assertEquals(tabla, entrada.getTabla());
+        assertEquals(idFila, entrada.getIdFila());
+        assertEquals(idVivienda, entrada.getIdVivienda());
+        assertEquals(operacion, entrada.getOperacion());
+    }
+
+    @Test
+    public void testCambiosDesdeUnaSecuencia() {
+        long id = viviendaEntity.insertarConFotos("Piso céntrico", "Piso", 100000, "Calle Real 1", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/1a.jpg", "https://example.com/1b.jpg"));
+        long procesada = registro.ultimaSecuencia();
+        assertEquals("Dos usuarios, una vivienda y dos fotos.", 5, procesada);
+
+        new FavoritosEntity(db).insertar(2, (int) id);
+        assertTrue(viviendaEntity.modificarVivienda((int) id, null, 95000.0, null, null, null, null));
+
+        List<RegistroCambios.Entrada> cambios = registro.cambiosDesde(procesada, 10);
+        assertEquals("Solo deberían leerse los cambios posteriores a la secuencia.", 2, cambios.size());
+        assertEntrada(cambios.get(0), FavoritosEntity.NOMBRE_TABLA, 2, (int) id, BusCambios.Operacion.INSERTAR);
+        assertEntrada(cambios.get(1), ViviendaEntity.NOMBRE_TABLA, (int) id, (int) id, BusCambios.Operacion.MODIFICAR);
+        assertTrue(cambios.get(0).getSecuencia() < cambios.get(1).getSecuencia());
+
+        assertEquals("El límite debería respetarse.", 1, registro.cambiosDesde(procesada, 1).size());
+        assertTrue(registro.cambiosDesde(registro.ultimaSecuencia(), 10).isEmpty());
+    }
+
+    @Test
+    public void testMensajesArchivadosYBorrados() {
+        MensajesEntity mensajesEntity = new MensajesEntity(db);
+        for (int i = 0; i < 5; i++) {
+            mensajesEntity.insertar(1 + i % 2, 2 - i % 2, "Mensaje " + i);
+        }
+        db.execSQL("UPDATE TABLA_MENSAJES SET leido = 1");
+        long procesada = registro.ultimaSecuencia();
+
+        assertEquals(4, new ArchivoMensajes(db).archivar(0, 1, 1, 10));
+        assertTrue("Archivar un mensaje no debería anotarse como borrado.", registro.cambiosDesde(procesada, 10).isEmpty());
+
+        assertTrue(mensajesEntity.eliminar(5));
+        db.execSQL("DELETE FROM TABLA_MENSAJES_ARCHIVO WHERE id_mensaje = 1");
+        List<RegistroCambios.Entrada> cambios = registro.cambiosDesde(procesada, 10);
+        assertEquals(2, cambios.size());
+        assertEntrada(cambios.get(0), MensajesEntity.NOMBRE_TABLA, 5, 0, BusCambios.Operacion.ELIMINAR);
+        assertEntrada(cambios.get(1), MensajesEntity.NOMBRE_TABLA, 1, 0, BusCambios.Operacion.ELIMINAR);
+    }
+
+    @Test
+    public void testCompactar() {
+        long id = viviendaEntity.insertarConFotos("Casa con jardín", "Casa", 250000, "Calle Principal 2", "Disponible",
+                "martin@homespotter.com", null, 2, Arrays.asList("https://example.com/2a.jpg"));
+        for (int i = 0; i < 5; i++) {
+            viviendaEntity.modificarVivienda((int) id, null, 200000.0 + i, null, null, null, null);
+        }
+        long ultima = registro.ultimaSecuencia();
+
+        assertEquals("De la vivienda debería quedar solo la última modificación.", 5, registro.compactar());
+        List<RegistroCambios.Entrada> cambios = registro.cambiosDesde(0, 100);
+        assertEquals(4, cambios.size());
+        assertEntrada(cambios.get(3), ViviendaEntity.NOMBRE_TABLA, (int) id, (int) id, BusCambios.Operacion.MODIFICAR);
+        assertEquals("La última secuencia no debería cambiar al compactar.", ultima, registro.ultimaSecuencia());
+
+        // Entradas más antiguas que el máximo: quien leía desde antes debe recorrer las tablas de nuevo
+        db.execSQL("UPDATE TABLA_CAMBIOS SET fecha = fecha - " + 2 * RegistroCambios.ANTIGUEDAD_MAXIMA);
+        assertEquals(4, registro.compactar());
+        assertNull("Los cambios borrados por antigüedad deberían notificarse.", registro.cambiosDesde(0, 100));
+        assertNotNull(registro.cambiosDesde(ultima, 100));
+
+        viviendaEntity.eliminar((int) id);
+        assertEquals("Los cambios posteriores a la compactación deberían leerse.", 1, registro.cambiosDesde(ultima, 100).size());
+    }
+}
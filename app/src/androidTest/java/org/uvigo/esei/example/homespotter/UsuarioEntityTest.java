@@ -9,7 +9,10 @@ import androidx.test.core.app.ApplicationProvider;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.CacheUsuarios;
+import org.uvigo.esei.example.homespotter.database.ResultadoInsercion;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
+import org.uvigo.esei.example.homespotter.models.Usuario;
 
 import static org.junit.Assert.*;
 
@@ -27,6 +30,7 @@ public class UsuarioEntityTest {
                 db.execSQL("CREATE TABLE TABLA_USUARIO (" +
                         "id_usuario INTEGER PRIMARY KEY AUTOINCREMENT, " +
                         "nombre_usuario TEXT NOT NULL, " +
+                        "nombre_completo TEXT NOT NULL, " +
                         "email TEXT UNIQUE NOT NULL, " +
                         "password TEXT NOT NULL, " +
                         "foto_perfil TEXT, " +
@@ -85,6 +89,26 @@ public class UsuarioEntityTest {
         assertEquals("El estado debería ser ERROR.", UsuarioEntity.insertUsuarioEstado.ERROR, resultado);
     }
 
+    @Test
+    public void testInsertarConIdDevuelveIdDeLaFila() {
+        usuarioEntity.insertar(usuarioEntity.getContentValues("juanpe", "Juan Pérez", "juan@example.com", "password123", "foto.jpg", "123456789"));
+
+        ResultadoInsercion resultado = usuarioEntity.insertarConId(
+                usuarioEntity.getContentValues("ana", "Ana López", "ana@example.com", "password123", null, null));
+        assertTrue("El usuario debería haberse insertado.", resultado.isInsertado());
+
+        Cursor cursor = db.query("TABLA_USUARIO", new String[]{"email"}, "id_usuario = ?",
+                new String[]{String.valueOf(resultado.getId())}, null, null, null);
+        assertTrue("El ID devuelto debería corresponder a una fila.", cursor.moveToFirst());
+        assertEquals("El ID devuelto debería ser el del usuario insertado.", "ana@example.com", cursor.getString(0));
+        cursor.close();
+
+        ResultadoInsercion repetido = usuarioEntity.insertarConId(
+                usuarioEntity.getContentValues("ana", "Ana López", "ana@example.com", "password123", null, null));
+        assertEquals("El estado debería ser YA_EXISTIA.", ResultadoInsercion.Estado.YA_EXISTIA, repetido.getEstado());
+        assertEquals("No debería devolverse ningún ID.", -1, repetido.getId());
+    }
+
     @Test
     public void testModificarUsuario() {
         ContentValues values = usuarioEntity.getContentValues("juanpe","Juan Pérez", "juan@example.com", "password123", "foto.jpg", "123456789");
@@ -123,4 +147,55 @@ public class UsuarioEntityTest {
         assertFalse("El cursor no debería contener registros.", cursor.moveToFirst());
         cursor.close();
     }
+
+    @Test
+    public void testObtenerUsuarioPorIdDesdeCache() {
+        usuarioEntity.insertar(usuarioEntity.getContentValues("juanpe", "Juan Pérez", "juan@example.com", "password123", "foto.jpg", "123456789"));
+        long aciertos = CacheUsuarios.getAciertos();
+        long fallos = CacheUsuarios.getFallos();
+
+        Usuario usuario = usuarioEntity.obtenerUsuarioPorId(1);
+        assertEquals("juanpe", usuario.getNombre());
+        assertEquals("Juan Pérez", usuario.getNombreCompleto());
+        assertEquals("La primera lectura debería ir a la base de datos.", fallos + 1, CacheUsuarios.getFallos());
+
+        // Un cambio hecho sin pasar por la entidad no se ve: la segunda lectura no consulta la tabla
+        db.execSQL("UPDATE TABLA_USUARIO SET nombre_usuario = 'otro' WHERE id_usuario = 1");
+        usuario.setNombre("modificado");
+        Usuario repetido = usuarioEntity.obtenerUsuarioPorId(1);
+        assertEquals("La segunda lectura debería salir de la caché.", aciertos + 1, CacheUsuarios.getAciertos());
+        assertEquals("La caché no debería verse afectada por cambios en el perfil devuelto.", "juanpe", repetido.getNombre());
+
+        assertNull(usuarioEntity.obtenerUsuarioPorId(99));
+        assertEquals(fallos + 2, CacheUsuarios.getFallos());
+    }
+
+    @Test
+    public void testModificarActualizaCache() {
+        usuarioEntity.insertar(usuarioEntity.getContentValues("juanpe", "Juan Pérez", "juan@example.com", "password123", "foto.jpg", "123456789"));
+        usuarioEntity.obtenerUsuarioPorId(1);
+
+        assertTrue(usuarioEntity.modificar(1, null, "Juan Actualizado", "juan_new@example.com", null, "nueva.jpg", null));
+        long aciertos = CacheUsuarios.getAciertos();
+        Usuario usuario = usuarioEntity.obtenerUsuarioPorId(1);
+        assertEquals("El perfil modificado debería servirse desde la caché.", aciertos + 1, CacheUsuarios.getAciertos());
+        assertEquals("Juan Actualizado", usuario.getNombreCompleto());
+        assertEquals("juan_new@example.com", usuario.getEmail());
+        assertEquals("nueva.jpg", usuario.getFoto());
+        assertEquals("Los campos no modificados deberían conservarse.", "juanpe", usuario.getNombre());
+        assertEquals("123456789", usuario.getTlfno());
+
+        // Una modificación fallida no cambia la caché
+        assertFalse(usuarioEntity.modificar(99, "nadie", null, null, null, null, null));
+        assertEquals("juanpe", usuarioEntity.obtenerUsuarioPorId(1).getNombre());
+    }
+
+    @Test
+    public void testEliminarDescartaCache() {
+        usuarioEntity.insertar(usuarioEntity.getContentValues("juanpe", "Juan Pérez", "juan@example.com", "password123", "foto.jpg", "123456789"));
+        assertNotNull(usuarioEntity.obtenerUsuarioPorId(1));
+
+        assertTrue(usuarioEntity.eliminar(1));
+        assertNull("Un usuario eliminado no debería obtenerse de la caché.", usuarioEntity.obtenerUsuarioPorId(1));
+    }
 }
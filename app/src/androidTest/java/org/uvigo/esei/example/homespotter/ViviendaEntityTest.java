@@ -1,6 +1,5 @@
 package org.uvigo.esei.example.homespotter;
 
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -11,6 +10,10 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
+
+import java.util.Arrays;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -20,26 +23,16 @@ public class ViviendaEntityTest {
 
     @Before
     public void setUp() {
-        // Crear una base de datos en memoria para pruebas
+        // Crear una base de datos en memoria con el esquema actual
         Context context = ApplicationProvider.getApplicationContext();
         SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
             @Override
             public void onCreate(SQLiteDatabase db) {
-                db.execSQL("CREATE TABLE TABLA_VIVIENDA (" +
-                        "id_vivienda INTEGER PRIMARY KEY AUTOINCREMENT, " +
-                        "tipo_vivienda TEXT NOT NULL, " +
-                        "precio REAL NOT NULL, " +
-                        "direccion TEXT NOT NULL, " +
-                        "estado TEXT NOT NULL, " +
-                        "contacto TEXT NOT NULL, " +
-                        "descripcion TEXT, " +
-                        "propietario_id INTEGER NOT NULL);");
+                EsquemaPrueba.crearEsquemaActual(db);
             }
 
             @Override
             public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-                db.execSQL("DROP TABLE IF EXISTS TABLA_VIVIENDA");
-                onCreate(db);
             }
         };
         db = dbHelper.getWritableDatabase();
@@ -53,7 +46,7 @@ public class ViviendaEntityTest {
 
     @Test
     public void testInsertar() {
-        boolean resultado = viviendaEntity.insertar(0, "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
+        boolean resultado = viviendaEntity.insertar("Casa familiar", "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
         assertTrue("La vivienda debería haberse insertado correctamente.", resultado);
 
         Cursor cursor = db.query("TABLA_VIVIENDA", null, "tipo_vivienda = ?", new String[]{"Casa"}, null, null, null);
@@ -64,7 +57,7 @@ public class ViviendaEntityTest {
 
     @Test
     public void testModificarVivienda() {
-        viviendaEntity.insertar(0, "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
+        viviendaEntity.insertar("Casa familiar", "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
 
         boolean actualizado = viviendaEntity.modificarVivienda(1, "Apartamento", 200000.0, null, null, null, "Descripción actualizada");
         assertTrue("La vivienda debería haberse actualizado correctamente.", actualizado);
@@ -78,7 +71,7 @@ public class ViviendaEntityTest {
 
     @Test
     public void testEliminar() {
-        viviendaEntity.insertar(0, "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
+        viviendaEntity.insertar("Casa familiar", "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
 
         boolean eliminado = viviendaEntity.eliminar(1);
         assertTrue("La vivienda debería haberse eliminado correctamente.", eliminado);
@@ -90,7 +83,7 @@ public class ViviendaEntityTest {
 
     @Test
     public void testBuscarPorId() {
-        viviendaEntity.insertar(0, "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
+        viviendaEntity.insertar("Casa familiar", "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
 
         Cursor cursor = viviendaEntity.buscarPorId(1);
         assertNotNull("El cursor no debería ser nulo.", cursor);
@@ -101,16 +94,84 @@ public class ViviendaEntityTest {
 
     @Test
     public void testBuscarConFiltros() {
-        viviendaEntity.insertar(0, "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
-        viviendaEntity.insertar(0, "Apartamento", 200000.0, "Calle 456", "Ocupado", "987654321", "Apartamento moderno", 2);
+        viviendaEntity.insertar("Casa familiar", "Casa", 150000.0, "Calle 123", "Disponible", "123456789", "Casa familiar", 1);
+        viviendaEntity.insertar("Apartamento moderno", "Apartamento", 200000.0, "Calle 456", "Ocupado", "987654321", "Apartamento moderno", 2);
 
-        ContentValues filtros = new ContentValues();
-        filtros.put("estado", "Disponible");
+        ViviendaQuery consulta = new ViviendaQuery.Builder()
+                .estado("Disponible")
+                .precioMin(100000.0)
+                .precioMax(160000.0)
+                .build();
 
-        Cursor cursor = viviendaEntity.buscar(filtros, 100000.0, 160000.0);
+        Cursor cursor = viviendaEntity.buscar(consulta);
         assertNotNull("El cursor no debería ser nulo.", cursor);
         assertTrue("El cursor debería contener un registro.", cursor.moveToFirst());
         assertEquals("El tipo de vivienda debería ser Casa.", "Casa", cursor.getString(cursor.getColumnIndex("tipo_vivienda")));
         cursor.close();
     }
+
+    @Test
+    public void testBuscarTextoSinTildesYPorRelevancia() {
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, propietario_id) " +
+                "VALUES ('Casa en Berres', 'Casa', 200000, 'Calle Principal 123', 'Disponible', 'monica@homespotter.com', 1);");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, descripcion, propietario_id) " +
+                "VALUES ('Piso en A Coruña', 'Piso', 150000, 'Rúa Real 5, A Coruña', 'Disponible', 'martin@homespotter.com', 'Vistas al puerto', 2);");
+        db.execSQL("INSERT INTO TABLA_VIVIENDA (titulo, tipo_vivienda, precio, direccion, estado, contacto, descripcion, propietario_id) " +
+                "VALUES ('Ático luminoso', 'Piso', 180000, 'Calle Mayor 1, Ourense', 'Disponible', 'martin@homespotter.com', 'A 50 km de Coruña', 2);");
+
+        List<Integer> ids = viviendaEntity.buscarTexto("coruna", 10);
+        assertEquals("Ambas viviendas deberían encontrarse sin tildes.", 2, ids.size());
+        assertEquals("La vivienda con el término en título y dirección debería ser la primera.", Integer.valueOf(2), ids.get(0));
+
+        // Los cambios en la tabla deben reflejarse en el índice
+        db.execSQL("UPDATE TABLA_VIVIENDA SET titulo = 'Piso reformado', direccion = 'Calle Nueva 2, Vigo' WHERE id_vivienda = 2;");
+        assertEquals("Solo debería quedar la vivienda que menciona Coruña.", 1, viviendaEntity.buscarTexto("coruña", 10).size());
+        db.execSQL("DELETE FROM TABLA_VIVIENDA WHERE id_vivienda = 3;");
+        assertTrue("La vivienda eliminada no debería encontrarse.", viviendaEntity.buscarTexto("coruña", 10).isEmpty());
+
+        // Los operadores de FTS del texto del usuario no deberían provocar errores
+        assertTrue(viviendaEntity.buscarTexto("\"*:-()", 10).isEmpty());
+    }
+
+    @Test
+    public void testBuscarTextoDevuelveLasMasRelevantes() {
+        // Cuantos más campos mencionan Vigo, más relevante es la vivienda
+        viviendaEntity.insertar("Casa en Vigo", "Casa", 200000.0, "Calle Mayor 1, Vigo", "Disponible", "prueba@homespotter.com", "Cerca de Vigo", 1);
+        viviendaEntity.insertar("Piso reformado", "Piso", 150000.0, "Calle Nueva 2, Ourense", "Disponible", "prueba@homespotter.com", "A 90 km de Vigo", 1);
+        viviendaEntity.insertar("Ático en Vigo", "Piso", 180000.0, "Rúa Real 5, Vigo", "Disponible", "prueba@homespotter.com", null, 1);
+        viviendaEntity.insertar("Chalet en Lugo", "Casa", 250000.0, "Calle Sol 3, Lugo", "Disponible", "prueba@homespotter.com", null, 1);
+        viviendaEntity.insertar("Bajo en Vigo", "Piso", 90000.0, "Calle Luna 4, Ourense", "Disponible", "prueba@homespotter.com", null, 1);
+
+        List<Integer> todas = viviendaEntity.buscarTexto("vigo", 10);
+        assertEquals("Deberían encontrarse las cuatro viviendas que mencionan Vigo.", 4, todas.size());
+
+        List<Integer> mejores = viviendaEntity.buscarTexto("vigo", 2);
+        assertEquals("El límite debería devolver las más relevantes, en el mismo orden.", todas.subList(0, 2), mejores);
+        assertTrue("Un límite no positivo no debería devolver nada.", viviendaEntity.buscarTexto("vigo", 0).isEmpty());
+    }
+
+    @Test
+    public void testInsertarConFotosDevuelveSuId() {
+        viviendaEntity.insertar("Piso de prueba", "Piso", 100000.0, "Calle Principal 1", "Disponible", "prueba@homespotter.com", null, 1);
+        long id = viviendaEntity.insertarConFotos("Casa en Berres", "Casa", 200000, "Calle Principal 123", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/foto1.jpg", "https://example.com/foto2.jpg"));
+        assertEquals("Debería devolverse el ID de la vivienda insertada.", 2, id);
+
+        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM TABLA_FOTOS WHERE vivienda_id = ?", new String[]{String.valueOf(id)});
+        cursor.moveToFirst();
+        assertEquals("Las fotos deberían guardarse con el ID devuelto.", 2, cursor.getInt(0));
+        cursor.close();
+    }
+
+    @Test
+    public void testInsertarConFotosFallidoNoGuardaNada() {
+        long id = viviendaEntity.insertarConFotos("Casa en Berres", "Casa", 200000, "Calle Principal 123", "Disponible",
+                "monica@homespotter.com", null, 1, Arrays.asList("https://example.com/foto1.jpg", ""));
+        assertEquals("La inserción debería fallar.", -1, id);
+
+        Cursor cursor = db.rawQuery("SELECT (SELECT COUNT(*) FROM TABLA_VIVIENDA) + (SELECT COUNT(*) FROM TABLA_FOTOS)", null);
+        cursor.moveToFirst();
+        assertEquals("No debería quedar ni la vivienda ni sus fotos.", 0, cursor.getInt(0));
+        cursor.close();
+    }
 }
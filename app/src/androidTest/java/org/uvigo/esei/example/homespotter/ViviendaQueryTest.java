@@ -0,0 +1,191 @@
+package org.uvigo.esei.example.homespotter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.uvigo.esei.example.homespotter.database.ArgumentosTipados;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
+import org.uvigo.esei.example.homespotter.models.Vivienda;
+import org.uvigo.esei.example.homespotter.ui.utils.ViviendaLoader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ViviendaQueryTest {
+    private SQLiteDatabase db;
+    private ViviendaEntity viviendaEntity;
+
+    @Before
+    public void setUp() {
+        // Crear una base de datos en memoria con el esquema actual
+        Context context = ApplicationProvider.getApplicationContext();
+        SQLiteOpenHelper dbHelper = new SQLiteOpenHelper(context, null, null, 1) {
+            @Override
+            public void onCreate(SQLiteDatabase db) {
+                EsquemaPrueba.crearEsquemaActual(db);
+            }
+
+            @Override
+            public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+            }
+        };
+        db = dbHelper.getWritableDatabase();
+        viviendaEntity = new ViviendaEntity(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void testFormasDeConsultaUsanIndices() {
+        ViviendaEntity.Orden id = ViviendaEntity.Orden.ID;
+        ViviendaEntity.Orden precio = ViviendaEntity.Orden.PRECIO;
+
+        // Sin filtros selectivos, la primera página recorre la clave de orden hasta llenarse
+        comprobarForma(new ViviendaQuery.Builder(), id, null, "INTEGER PRIMARY KEY");
+        comprobarForma(new ViviendaQuery.Builder(), precio, "idx_vivienda_precio", "idx_vivienda_precio");
+        comprobarForma(new ViviendaQuery.Builder().excluirPropietario(1), id, null, "INTEGER PRIMARY KEY");
+        comprobarForma(new ViviendaQuery.Builder().excluirPropietario(1), precio, "idx_vivienda_precio", "idx_vivienda_precio");
+
+        // Cada filtro usa su índice
+        for (ViviendaEntity.Orden orden : ViviendaEntity.Orden.values()) {
+            comprobarForma(new ViviendaQuery.Builder().tipo("Pis"), orden, "idx_vivienda_tipo", null);
+            comprobarForma(new ViviendaQuery.Builder().estado("Disp"), orden, "idx_vivienda_estado", null);
+            comprobarForma(new ViviendaQuery.Builder().precioMin(100000.0).precioMax(200000.0), orden, "idx_vivienda_precio", null);
+            comprobarForma(new ViviendaQuery.Builder().propietario(1), orden, "idx_vivienda_propietario", "idx_vivienda_propietario");
+            comprobarForma(new ViviendaQuery.Builder().texto("coruña"), orden, "INTEGER PRIMARY KEY", "INTEGER PRIMARY KEY");
+            comprobarForma(new ViviendaQuery.Builder().titulo("piso").direccion("calle"), orden, "INTEGER PRIMARY KEY", "INTEGER PRIMARY KEY");
+        }
+
+        // Los filtros de precio se ordenan por precio (ver ViviendaActivity)
+        comprobarForma(new ViviendaQuery.Builder().precioMax(200000.0), precio, "idx_vivienda_precio", "idx_vivienda_precio");
+        comprobarForma(new ViviendaQuery.Builder().tipo("Pis").estado("Disp").precioMin(1.0).precioMax(2.0)
+                .excluirPropietario(1), precio, "idx_vivienda_precio", "idx_vivienda_precio");
+    }
+
+    @Test
+    public void testSinCursorNoHayCondicionDeClave() {
+        ViviendaQuery primera = new ViviendaQuery.Builder().orden(ViviendaEntity.Orden.PRECIO).usuario(2).build();
+        assertFalse("La primera página no debería llevar condición de clave.", primera.getSql().contains("WHERE"));
+        assertEquals("Solo deberían enlazarse el límite y el usuario.", 2, primera.getArgumentos().length);
+
+        Vivienda ultima = new Vivienda(5, "Piso", "Piso", 150000.0, "Calle", "Disponible", "", "", 1, false, new ArrayList<>());
+        assertTrue(primera.siguientePagina(ultima).getSql().contains("(precio, id_vivienda) > (?, ?)"));
+    }
+
+    @Test
+    public void testArgumentosSeEnlazanConSuTipo() {
+        Cursor cursor = ArgumentosTipados.consultar(db, "SELECT typeof(?), typeof(?), typeof(?), typeof(?)",
+                new Object[]{150000.0, 3, "Piso", null});
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Los Double deberían enlazarse como REAL.", "real", cursor.getString(0));
+        assertEquals("Los Integer deberían enlazarse como INTEGER.", "integer", cursor.getString(1));
+        assertEquals("text", cursor.getString(2));
+        assertEquals("null", cursor.getString(3));
+        cursor.close();
+    }
+
+    @Test
+    public void testFiltrosDePrecioYPropietario() {
+        insertarVivienda("Piso", 9000, 1);
+        insertarVivienda("Piso", 100000, 1);
+        insertarVivienda("Casa", 250000, 2);
+
+        List<Vivienda> viviendas = ViviendaLoader.cargarPagina(viviendaEntity,
+                new ViviendaQuery.Builder().precioMin(20000.0).excluirPropietario(2).usuario(2).build());
+        assertEquals("Solo la vivienda de 100000 cumple el precio y el propietario.", 1, viviendas.size());
+        assertEquals(100000.0, viviendas.get(0).getPrecio(), 0.0);
+
+        viviendas = ViviendaLoader.cargarPagina(viviendaEntity, new ViviendaQuery.Builder().tipo("casa").usuario(1).build());
+        assertEquals("El tipo no debería distinguir mayúsculas.", 1, viviendas.size());
+
+        viviendas = ViviendaLoader.cargarPagina(viviendaEntity, new ViviendaQuery.Builder().tipo("pi").usuario(1).build());
+        assertEquals("El tipo debería buscarse por prefijo.", 2, viviendas.size());
+    }
+
+    @Test
+    public void testPaginacionRecorreTodasSinRepetir() {
+        // Precios repetidos para comprobar el desempate por id
+        for (int i = 0; i < 25; i++) {
+            insertarVivienda("Piso", 100000 + (i % 5) * 1000, 1);
+        }
+
+        for (ViviendaEntity.Orden orden : ViviendaEntity.Orden.values()) {
+            ViviendaQuery consulta = new ViviendaQuery.Builder().orden(orden).limite(10).usuario(2).build();
+            List<Vivienda> todas = new ArrayList<>();
+            List<Vivienda> pagina = ViviendaLoader.cargarPagina(viviendaEntity, consulta);
+            while (!pagina.isEmpty()) {
+                todas.addAll(pagina);
+                pagina = ViviendaLoader.cargarPagina(viviendaEntity, consulta.siguientePagina(pagina.get(pagina.size() - 1)));
+            }
+
+            assertEquals("Deberían recorrerse todas las viviendas.", 25, todas.size());
+            HashSet<Integer> ids = new HashSet<>();
+            for (int i = 0; i < todas.size(); i++) {
+                assertTrue("Ninguna vivienda debería repetirse.", ids.add(todas.get(i).getId()));
+                if (i > 0 && orden == ViviendaEntity.Orden.PRECIO) {
+                    assertTrue("Las viviendas deberían estar ordenadas por precio.",
+                            todas.get(i - 1).getPrecio() <= todas.get(i).getPrecio());
+                }
+            }
+        }
+    }
+
+    /**
+     * Comprueba el plan de la primera página y de la siguiente de una forma de consulta.
+     *
+     * @param forma Filtros de la consulta.
+     * @param orden Orden de la consulta.
+     * @param indicePrimera Índice de TABLA_VIVIENDA en la primera página, o null si basta con que la
+     *                      recorra en orden (el LIMIT detiene el recorrido).
+     * @param indiceSiguiente Índice en la página siguiente, o null si basta con que no la recorra entera.
+     */
+    private void comprobarForma(ViviendaQuery.Builder forma, ViviendaEntity.Orden orden, String indicePrimera, String indiceSiguiente) {
+        Vivienda ultima = new Vivienda(5, "Piso", "Piso", 150000.0, "Calle", "Disponible", "", "", 1, false, new ArrayList<>());
+        ViviendaQuery primera = forma.orden(orden).usuario(2).build();
+        ViviendaQuery siguiente = primera.siguientePagina(ultima);
+
+        for (String sql : Arrays.asList(primera.getSql(), primera.getSqlIds())) {
+            if (indicePrimera != null) {
+                PlanConsulta.assertUsaIndice(db, sql, primera.getArgumentos(), "TABLA_VIVIENDA", indicePrimera);
+            }
+            if (indicePrimera == null || (orden == ViviendaEntity.Orden.PRECIO && "idx_vivienda_precio".equals(indicePrimera))) {
+                PlanConsulta.assertRecorreEnOrden(db, sql, primera.getArgumentos(), "TABLA_VIVIENDA");
+            }
+        }
+
+        // "v" es la subconsulta ya limitada a una página
+        for (String sql : Arrays.asList(siguiente.getSql(), siguiente.getSqlIds())) {
+            PlanConsulta.assertSinEscaneoCompleto(db, sql, siguiente.getArgumentos(), "v");
+            if (indiceSiguiente != null) {
+                PlanConsulta.assertUsaIndice(db, sql, siguiente.getArgumentos(), "TABLA_VIVIENDA", indiceSiguiente);
+            }
+        }
+    }
+
+    private void insertarVivienda(String tipo, double precio, int propietario) {
+        ContentValues values = new ContentValues();
+        values.put("titulo", tipo + " de prueba");
+        values.put("tipo_vivienda", tipo);
+        values.put("precio", precio);
+        values.put("direccion", "Calle Principal 1");
+        values.put("estado", "Disponible");
+        values.put("contacto", "prueba@homespotter.com");
+        values.put("propietario_id", propietario);
+        db.insert("TABLA_VIVIENDA", null, values);
+    }
+}
@@ -0,0 +1,220 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clase ArchivoMensajes
+ *
+ * Mueve los mensajes antiguos de TABLA_MENSAJES a TABLA_MENSAJES_ARCHIVO para que la tabla de
+ * mensajes, sus índices y los triggers de TABLA_CONVERSACIONES trabajen solo con los recientes.
+ * Un mensaje se archiva si ya está leído, no está entre los minimoPorHilo más recientes de su hilo
+ * y, además, es más antiguo que antiguedadMaxima o supera los maximoPorHilo más recientes.
+ *
+ * Nunca se archiva un mensaje posterior a uno sin leer de su hilo, de modo que lo archivado de cada
+ * hilo son siempre sus mensajes más antiguos: {@link MensajesEntity} pagina primero TABLA_MENSAJES
+ * y solo consulta el archivo al pasar del último mensaje que queda en ella. Como el último mensaje
+ * del hilo y los no leídos no se archivan, mover un mensaje no cambia TABLA_CONVERSACIONES.
+ *
+ * Los mensajes se mueven en lotes de tamLote, cada uno en su propia transacción, para no bloquear
+ * las escrituras de la aplicación mientras se archiva. En segundo plano, los candidatos se eligen en
+ * el carril de lectura y cada lote es una tarea distinta del carril de escritura, que encola la del
+ * lote siguiente al terminar: los envíos de {@link BandejaSalida} solo esperan a un lote.
+ */
+public class ArchivoMensajes {
+    public static final long ANTIGUEDAD_MAXIMA = TimeUnit.DAYS.toMillis(90);
+    public static final int MINIMO_POR_HILO = 50; // Una página de la pantalla de conversación
+    public static final int MAXIMO_POR_HILO = 500;
+    public static final int TAM_LOTE = 200;
+    private static final int MAXIMO_MARCADORES = 999; // Límite de "?" por sentencia en SQLite
+
+    private static final String NOMBRE_TABLA = "TABLA_MENSAJES";
+    private static final String NOMBRE_TABLA_ARCHIVO = "TABLA_MENSAJES_ARCHIVO";
+    private static final String COLUMNAS = "id_mensaje, remitente_id, destinatario_id, vivienda_id, contenido, fecha, leido";
+
+    // Mensajes archivables, numerados dentro de su hilo del más reciente (1) al más antiguo.
+    // Argumentos: ?1 mínimo por hilo, ?2 fecha límite, ?3 máximo por hilo.
+    private static final String HILO = "PARTITION BY MIN(remitente_id, destinatario_id), MAX(remitente_id, destinatario_id), vivienda_id";
+    private static final String SQL_CANDIDATOS = "SELECT id_mensaje FROM (" +
+            "SELECT id_mensaje, fecha, leido, " +
+            "ROW_NUMBER() OVER (" + HILO + " ORDER BY fecha DESC, id_mensaje DESC) AS posicion, " +
+            "MIN(CASE WHEN leido = 0 THEN fecha END) OVER (" + HILO + ") AS primer_no_leido " +
+            "FROM " + NOMBRE_TABLA + ") " +
+            "WHERE leido = 1 AND posicion > ?1 AND (fecha < ?2 OR posicion > ?3) " +
+            "AND (primer_no_leido IS NULL OR fecha < primer_no_leido) " +
+            "ORDER BY id_mensaje";
+
+    private static final AtomicBoolean archivadoEnEstaEjecucion = new AtomicBoolean(false);
+
+    private final SQLiteDatabase db;
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param db Instancia de la base de datos SQLite.
+     */
+    public ArchivoMensajes(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Archiva en segundo plano los mensajes antiguos con la política por defecto, una sola vez por
+     * ejecución de la aplicación.
+     *
+     * @param c Contexto de la aplicación.
+     */
+    public static void archivarEnSegundoPlano(Context c) {
+        if (!archivadoEnEstaEjecucion.compareAndSet(false, true)) {
+            return;
+        }
+
+        Context contexto = c.getApplicationContext();
+        Planificador.lectura().execute(() -> {
+            ArchivoMensajes archivo = new ArchivoMensajes(DBManager.getInstance(contexto).getWritableDatabase());
+            List<Long> candidatos = archivo.obtenerCandidatos(System.currentTimeMillis() - ANTIGUEDAD_MAXIMA,
+                    MINIMO_POR_HILO, MAXIMO_POR_HILO);
+            archivo.encolarLote(candidatos, 0, 0);
+        });
+    }
+
+    /**
+     * Envía al carril de escritura el lote que empieza en inicio. Al terminar, la tarea encola el
+     * lote siguiente detrás de las escrituras que llegaron mientras tanto.
+     *
+     * @param candidatos IDs de los mensajes a archivar.
+     * @param inicio Posición del primer mensaje del lote.
+     * @param archivados Mensajes archivados en los lotes anteriores.
+     */
+    private void encolarLote(List<Long> candidatos, int inicio, int archivados) {
+        if (inicio >= candidatos.size()) {
+            Log.i("ArchivoMensajes", "Mensajes archivados: " + archivados);
+            return;
+        }
+
+        Planificador.escritura().execute(() -> {
+            int movidos = moverLote(candidatos, inicio, TAM_LOTE);
+            if (movidos < 0) {
+                Log.i("ArchivoMensajes", "Mensajes archivados: " + archivados);
+                return;
+            }
+            encolarLote(candidatos, inicio + TAM_LOTE, archivados + movidos);
+        });
+    }
+
+    /**
+     * Archiva los mensajes antiguos con la política por defecto.
+     *
+     * @return Número de mensajes archivados.
+     */
+    public int archivar() {
+        return archivar(ANTIGUEDAD_MAXIMA, MINIMO_POR_HILO, MAXIMO_POR_HILO, TAM_LOTE);
+    }
+
+    /**
+     * Archiva los mensajes antiguos.
+     *
+     * @param antiguedadMaxima Milisegundos tras los que un mensaje leído se puede archivar.
+     * @param minimoPorHilo Mensajes más recientes de cada hilo que nunca se archivan (al menos 1).
+     * @param maximoPorHilo Mensajes más recientes de cada hilo que se conservan aunque sean antiguos.
+     * @param tamLote Número máximo de mensajes que se mueven en cada transacción (como mucho 999).
+     * @return Número de mensajes archivados.
+     */
+    public int archivar(long antiguedadMaxima, int minimoPorHilo, int maximoPorHilo, int tamLote) {
+        if (antiguedadMaxima < 0 || minimoPorHilo < 1 || maximoPorHilo < 1 || tamLote <= 0 || tamLote > MAXIMO_MARCADORES) {
+            Log.e("ArchivoMensajes", "Parámetros inválidos para archivar mensajes.");
+            return 0;
+        }
+
+        List<Long> candidatos = obtenerCandidatos(System.currentTimeMillis() - antiguedadMaxima, minimoPorHilo, maximoPorHilo);
+
+        int archivados = 0;
+        for (int inicio = 0; inicio < candidatos.size(); inicio += tamLote) {
+            int movidos = moverLote(candidatos, inicio, tamLote);
+            if (movidos < 0) {
+                break;
+            }
+            archivados += movidos;
+        }
+
+        return archivados;
+    }
+
+    private List<Long> obtenerCandidatos(long fechaLimite, int minimoPorHilo, int maximoPorHilo) {
+        List<Long> candidatos = new ArrayList<>();
+        Cursor cursor = null;
+
+        try {
+            cursor = ArgumentosTipados.consultar(db, SQL_CANDIDATOS, new Object[]{minimoPorHilo, fechaLimite, maximoPorHilo});
+            while (cursor.moveToNext()) {
+                candidatos.add(cursor.getLong(0));
+            }
+        } catch (SQLException exc) {
+            Log.e("ArchivoMensajes.obtenerCandidatos", "Error SQL: " + exc.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return candidatos;
+    }
+
+    /**
+     * Mueve al archivo, en una transacción, los mensajes de candidatos[inicio, inicio + tamLote).
+     * Las sentencias tienen siempre tamLote marcadores para compilarse una sola vez: el último lote
+     * repite su último ID en los que sobran.
+     *
+     * @return Número de mensajes movidos, o -1 si hay un error.
+     */
+    private int moverLote(List<Long> candidatos, int inicio, int tamLote) {
+        String ids = sqlMarcadores(tamLote);
+        // Se vuelve a comprobar leido por si el mensaje cambió desde que se eligió
+        String sqlCopiar = "INSERT INTO " + NOMBRE_TABLA_ARCHIVO + " (" + COLUMNAS + ") SELECT " + COLUMNAS +
+                " FROM " + NOMBRE_TABLA + " WHERE leido = 1 AND id_mensaje IN (" + ids + ")";
+        String sqlBorrar = "DELETE FROM " + NOMBRE_TABLA + " WHERE leido = 1 AND id_mensaje IN (" + ids + ")";
+
+        int toret = -1;
+
+        try {
+            db.beginTransaction();
+            ejecutarLote(CacheSentencias.obtener(db, sqlCopiar), candidatos, inicio, tamLote);
+            int movidos = ejecutarLote(CacheSentencias.obtener(db, sqlBorrar), candidatos, inicio, tamLote);
+            db.setTransactionSuccessful();
+            toret = movidos;
+        } catch (SQLException exc) {
+            Log.e("ArchivoMensajes.moverLote", "Error SQL: " + exc.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+
+        return toret;
+    }
+
+    private static int ejecutarLote(SQLiteStatement sentencia, List<Long> candidatos, int inicio, int tamLote) {
+        int fin = Math.min(inicio + tamLote, candidatos.size());
+        synchronized (sentencia) {
+            sentencia.clearBindings();
+            for (int i = 0; i < tamLote; i++) {
+                sentencia.bindLong(i + 1, candidatos.get(Math.min(inicio + i, fin - 1)));
+            }
+            return sentencia.executeUpdateDelete();
+        }
+    }
+
+    private static String sqlMarcadores(int cantidad) {
+        StringBuilder marcadores = new StringBuilder("?");
+        for (int i = 1; i < cantidad; i++) {
+            marcadores.append(", ?");
+        }
+        return marcadores.toString();
+    }
+}
@@ -0,0 +1,66 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteCursor;
+import android.database.sqlite.SQLiteCursorDriver;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQuery;
+
+/**
+ * Clase ArgumentosTipados
+ *
+ * Fábrica de cursores que enlaza los argumentos de una consulta con su tipo real.
+ * {@link SQLiteDatabase#rawQuery(String, String[])} solo acepta cadenas, de modo que los números
+ * llegan a SQLite como texto; con esta fábrica y
+ * {@link SQLiteDatabase#rawQueryWithFactory(SQLiteDatabase.CursorFactory, String, String[], String)}
+ * los Double se enlazan como REAL y los Integer/Long como INTEGER.
+ *
+ * Tipos admitidos: null, Integer, Long, Double, Float, String y byte[].
+ */
+public class ArgumentosTipados implements SQLiteDatabase.CursorFactory {
+    private final Object[] argumentos;
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param argumentos Argumentos de la consulta, en el orden de sus marcadores "?".
+     */
+    public ArgumentosTipados(Object[] argumentos) {
+        this.argumentos = argumentos;
+    }
+
+    /**
+     * Ejecuta una consulta enlazando sus argumentos con su tipo.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     * @param sql Consulta SQL.
+     * @param argumentos Argumentos de la consulta.
+     * @return Cursor con el resultado.
+     */
+    public static Cursor consultar(SQLiteDatabase db, String sql, Object[] argumentos) {
+        return db.rawQueryWithFactory(new ArgumentosTipados(argumentos), sql, null, null);
+    }
+
+    @Override
+    public Cursor newCursor(SQLiteDatabase db, SQLiteCursorDriver driver, String editTable, SQLiteQuery query) {
+        for (int i = 0; i < argumentos.length; i++) {
+            Object argumento = argumentos[i];
+            int indice = i + 1;
+
+            if (argumento == null) {
+                query.bindNull(indice);
+            } else if (argumento instanceof Integer || argumento instanceof Long) {
+                query.bindLong(indice, ((Number) argumento).longValue());
+            } else if (argumento instanceof Double || argumento instanceof Float) {
+                query.bindDouble(indice, ((Number) argumento).doubleValue());
+            } else if (argumento instanceof byte[]) {
+                query.bindBlob(indice, (byte[]) argumento);
+            } else if (argumento instanceof String) {
+                query.bindString(indice, (String) argumento);
+            } else {
+                throw new IllegalArgumentException("Tipo de argumento no admitido: " + argumento.getClass().getName());
+            }
+        }
+        return new SQLiteCursor(driver, editTable, query);
+    }
+}
@@ -0,0 +1,146 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Clase BandejaSalida
+ *
+ * Cola de mensajes enviados pendientes de guardar. Las pantallas muestran el mensaje al momento y
+ * lo dejan en la bandeja, que lo guarda en segundo plano en el carril de escritura de
+ * {@link Planificador}. Mientras se guarda un lote, los mensajes que se envían se acumulan y se
+ * guardan juntos en el siguiente, en una sola transacción. El resultado de cada mensaje se entrega
+ * por separado.
+ */
+public class BandejaSalida {
+
+    /**
+     * Resultado del envío de un mensaje, entregado en el hilo principal.
+     */
+    public interface ResultadoEnvio {
+        /**
+         * El mensaje se guardó.
+         *
+         * @param guardado Mensaje guardado, con su ID y su fecha.
+         */
+        void onGuardado(Mensaje guardado);
+
+        /**
+         * El mensaje no se pudo guardar.
+         *
+         * @param pendiente Mensaje que se intentó enviar.
+         */
+        void onError(Mensaje pendiente);
+    }
+
+    /**
+     * Mensaje en la cola junto con quien espera su resultado.
+     */
+    private static class Envio {
+        private final Mensaje pendiente;
+        private final ResultadoEnvio resultado;
+
+        private Envio(Mensaje pendiente, ResultadoEnvio resultado) {
+            this.pendiente = pendiente;
+            this.resultado = resultado;
+        }
+    }
+
+    private static BandejaSalida instance;
+
+    private final MensajesEntity mensajesEntity;
+    private final Executor entrega; // Dónde se entregan los resultados
+
+    // Mensajes a la espera del siguiente lote, y si ese lote ya está programado
+    private final List<Envio> pendientes = new ArrayList<>();
+    private boolean loteProgramado = false;
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param mensajesEntity Entidad con la que se guardan los mensajes.
+     * @param entrega Ejecutor en el que se entregan los resultados.
+     */
+    public BandejaSalida(MensajesEntity mensajesEntity, Executor entrega) {
+        this.mensajesEntity = mensajesEntity;
+        this.entrega = entrega;
+    }
+
+    /**
+     * Devuelve la bandeja de salida de la aplicación, que entrega los resultados en el hilo principal.
+     *
+     * @param c Contexto de la aplicación.
+     * @return Instancia única de BandejaSalida.
+     */
+    public static synchronized BandejaSalida getInstance(Context c) {
+        if (instance == null) {
+            MensajesEntity mensajesEntity = new MensajesEntity(DBManager.getInstance(c).getWritableDatabase());
+            instance = new BandejaSalida(mensajesEntity, new Handler(Looper.getMainLooper())::post);
+        }
+        return instance;
+    }
+
+    /**
+     * Deja un mensaje en la bandeja para guardarlo en segundo plano.
+     *
+     * @param pendiente Mensaje a guardar (remitente, destinatario, vivienda y contenido).
+     * @param resultado Quien recibe el resultado del envío.
+     */
+    public void enviar(Mensaje pendiente, ResultadoEnvio resultado) {
+        synchronized (pendientes) {
+            pendientes.add(new Envio(pendiente, resultado));
+            if (!loteProgramado) {
+                loteProgramado = true;
+                Planificador.escritura().execute(this::guardarLote);
+            }
+        }
+    }
+
+    /**
+     * Guarda en una transacción todos los mensajes acumulados. Si el lote falla, se guardan uno a
+     * uno para saber cuáles fallaron sin perder los demás.
+     */
+    private void guardarLote() {
+        List<Envio> lote;
+        synchronized (pendientes) {
+            lote = new ArrayList<>(pendientes);
+            pendientes.clear();
+            loteProgramado = false;
+        }
+
+        List<Mensaje> mensajes = new ArrayList<>(lote.size());
+        for (Envio envio : lote) {
+            mensajes.add(envio.pendiente);
+        }
+
+        List<Mensaje> guardados = mensajesEntity.insertarLote(mensajes);
+        if (guardados == null) {
+            Log.w("BandejaSalida", "No se pudo guardar el lote de " + lote.size() + " mensajes, se guardan uno a uno.");
+            guardados = new ArrayList<>(lote.size());
+            for (Mensaje mensaje : mensajes) {
+                guardados.add(mensajesEntity.insertarMensaje(mensaje.getRemitenteId(), mensaje.getDestinatarioId(),
+                        mensaje.getViviendaId(), mensaje.getContenido()));
+            }
+        }
+
+        for (int i = 0; i < lote.size(); i++) {
+            Envio envio = lote.get(i);
+            Mensaje guardado = guardados.get(i);
+            entrega.execute(() -> {
+                if (guardado != null) {
+                    envio.resultado.onGuardado(guardado);
+                } else {
+                    envio.resultado.onError(envio.pendiente);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Clase Bm25
+ *
+ * Calcula la puntuación BM25 de una fila de una búsqueda FTS4 a partir del resultado de
+ * matchinfo(tabla, 'pcnalx'). FTS4 no incluye una función de ranking, así que la puntuación
+ * se calcula en Java con los contadores que devuelve matchinfo.
+ *
+ * Formato del blob (enteros de 32 bits sin signo en el orden de bytes nativo):
+ * - p: número de frases de la consulta.
+ * - c: número de columnas de la tabla.
+ * - n: número total de filas de la tabla.
+ * - a: media de tokens por columna (c valores).
+ * - l: tokens de cada columna en la fila actual (c valores).
+ * - x: por cada frase y columna, apariciones en la fila, apariciones totales y filas que la contienen (3 * p * c valores).
+ */
+final class Bm25 {
+    static final String FORMATO_MATCHINFO = "pcnalx";
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double IDF_MINIMO = 1e-6;
+
+    private Bm25() {
+    }
+
+    /**
+     * Calcula la puntuación BM25 de una fila. Cuanto mayor, más relevante.
+     *
+     * @param matchinfo Blob devuelto por matchinfo con el formato {@link #FORMATO_MATCHINFO}.
+     * @param pesos Peso de cada columna, en el orden de la tabla FTS.
+     * @return Puntuación de la fila.
+     */
+    static double puntuar(byte[] matchinfo, double[] pesos) {
+        IntBuffer valores = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+
+        int frases = valores.get(0);
+        int columnas = valores.get(1);
+        long totalFilas = valores.get(2) & 0xFFFFFFFFL;
+        int inicioMedias = 3;
+        int inicioLongitudes = inicioMedias + columnas;
+        int inicioApariciones = inicioLongitudes + columnas;
+
+        double puntuacion = 0;
+        for (int frase = 0; frase < frases; frase++) {
+            for (int columna = 0; columna < columnas; columna++) {
+                int base = inicioApariciones + 3 * (frase * columnas + columna);
+                long aparicionesFila = valores.get(base) & 0xFFFFFFFFL;
+                if (aparicionesFila == 0) {
+                    continue;
+                }
+                long filasConFrase = valores.get(base + 2) & 0xFFFFFFFFL;
+
+                double idf = Math.log((totalFilas - filasConFrase + 0.5) / (filasConFrase + 0.5));
+                idf = Math.max(idf, IDF_MINIMO);
+
+                double media = Math.max(valores.get(inicioMedias + columna) & 0xFFFFFFFFL, 1);
+                double longitud = valores.get(inicioLongitudes + columna) & 0xFFFFFFFFL;
+                double tf = aparicionesFila * (K1 + 1) / (aparicionesFila + K1 * (1 - B + B * longitud / media));
+
+                double peso = columna < pesos.length ? pesos[columna] : 1.0;
+                puntuacion += peso * idf * tf;
+            }
+        }
+        return puntuacion;
+    }
+}
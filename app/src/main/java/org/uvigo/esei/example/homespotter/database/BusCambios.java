@@ -0,0 +1,248 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Clase BusCambios
+ *
+ * Avisos de cambios en la base de datos dentro de la aplicación. Cada escritura de una entidad,
+ * una vez confirmada su transacción, publica un {@link Cambio} con la tabla, la operación y los
+ * IDs afectados; las pantallas se suscriben a las tablas que muestran y actualizan solo esas filas,
+ * en lugar de recargarlo todo al volver a ellas. Una escritura hecha dentro de la transacción de
+ * otra entidad no publica por su cuenta: lo hace la entidad que abrió la transacción al confirmarla.
+ * Las cachés de entidades ({@link CacheViviendas}, {@link CacheUsuarios}) no dependen del bus: las
+ * propias entidades las actualizan en el mismo hilo antes de publicar.
+ *
+ * Hay dos formas de suscribirse:
+ * - {@link #observar(LifecycleOwner, Observador, String...)}: para pantallas. Los cambios se
+ *   entregan en el hilo principal mientras la pantalla está iniciada; los que llegan con la
+ *   pantalla detenida se acumulan y se entregan juntos al volver a ella. La suscripción termina
+ *   sola al destruirse la pantalla.
+ * - {@link #suscribir(Observador, String...)}: para el resto de la aplicación. Los cambios se
+ *   entregan en el hilo que escribió, justo después de confirmar la escritura, hasta que se cancela
+ *   la {@link Suscripcion}.
+ */
+public final class BusCambios {
+
+    /**
+     * Operación que produjo un cambio.
+     */
+    public enum Operacion {
+        INSERTAR,
+        MODIFICAR,
+        ELIMINAR
+    }
+
+    /**
+     * Cambio en una tabla. Los IDs son los de la fila principal afectada: en TABLA_FOTOS y
+     * TABLA_FAVORITOS, los de las viviendas cuyas fotos o favoritos cambiaron. Un conjunto vacío
+     * indica que la operación afectó a filas que no se enumeran (por ejemplo, marcar como leída una
+     * conversación entera).
+     */
+    public static final class Cambio {
+        private final String tabla;
+        private final Operacion operacion;
+        private final Set<Integer> ids;
+
+        Cambio(String tabla, Operacion operacion, Set<Integer> ids) {
+            this.tabla = tabla;
+            this.operacion = operacion;
+            this.ids = Collections.unmodifiableSet(ids);
+        }
+
+        public String getTabla() {
+            return tabla;
+        }
+
+        public Operacion getOperacion() {
+            return operacion;
+        }
+
+        public Set<Integer> getIds() {
+            return ids;
+        }
+
+        /**
+         * Indica si el cambio afecta a una fila concreta.
+         *
+         * @param id ID de la fila.
+         * @return true si la fila está entre los IDs o si el cambio no los enumera.
+         */
+        public boolean afectaA(int id) {
+            return ids.isEmpty() || ids.contains(id);
+        }
+    }
+
+    /**
+     * Quien recibe los cambios de las tablas a las que se suscribió.
+     */
+    public interface Observador {
+        void onCambio(Cambio cambio);
+    }
+
+    /**
+     * Suscripción creada con {@link #suscribir(Observador, String...)}.
+     */
+    public interface Suscripcion {
+        void cancelar();
+    }
+
+    private static final Handler HILO_PRINCIPAL = new Handler(Looper.getMainLooper());
+    private static final List<Registro> REGISTROS = new CopyOnWriteArrayList<>();
+
+    private BusCambios() {
+    }
+
+    /**
+     * Publica un cambio confirmado. Las entidades lo llaman después de terminar su transacción.
+     *
+     * @param tabla Tabla modificada.
+     * @param operacion Operación realizada.
+     * @param ids IDs afectados (ver {@link Cambio}).
+     */
+    static void publicar(String tabla, Operacion operacion, Collection<Integer> ids) {
+        Cambio cambio = new Cambio(tabla, operacion, new HashSet<>(ids));
+        for (Registro registro : REGISTROS) {
+            if (registro.tablas.contains(tabla)) {
+                registro.recibir(cambio);
+            }
+        }
+    }
+
+    /**
+     * Publica un cambio de una sola fila.
+     *
+     * @param tabla Tabla modificada.
+     * @param operacion Operación realizada.
+     * @param id ID afectado.
+     */
+    static void publicar(String tabla, Operacion operacion, int id) {
+        publicar(tabla, operacion, Collections.singleton(id));
+    }
+
+    /**
+     * Observa los cambios de unas tablas mientras dure una pantalla. Debe llamarse desde el hilo
+     * principal; los cambios se entregan también en él, solo con la pantalla iniciada.
+     *
+     * @param propietario Pantalla (actividad, fragmento o vista de un fragmento).
+     * @param observador Quien recibe los cambios.
+     * @param tablas Tablas a observar.
+     */
+    public static void observar(LifecycleOwner propietario, Observador observador, String... tablas) {
+        if (propietario.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        RegistroPantalla registro = new RegistroPantalla(propietario, observador, tablas);
+        REGISTROS.add(registro);
+        propietario.getLifecycle().addObserver(registro);
+    }
+
+    /**
+     * Se suscribe a los cambios de unas tablas. Los cambios se entregan en el hilo que escribió.
+     *
+     * @param observador Quien recibe los cambios.
+     * @param tablas Tablas a observar.
+     * @return Suscripción, para cancelarla cuando ya no se necesite.
+     */
+    public static Suscripcion suscribir(Observador observador, String... tablas) {
+        Registro registro = new Registro(observador, tablas);
+        REGISTROS.add(registro);
+        return () -> REGISTROS.remove(registro);
+    }
+
+    /**
+     * Suscripción que entrega los cambios en el hilo que escribió.
+     */
+    private static class Registro {
+        final Set<String> tablas;
+        final Observador observador;
+
+        Registro(Observador observador, String... tablas) {
+            this.observador = observador;
+            this.tablas = new HashSet<>(Arrays.asList(tablas));
+        }
+
+        void recibir(Cambio cambio) {
+            observador.onCambio(cambio);
+        }
+    }
+
+    /**
+     * Suscripción de una pantalla: entrega los cambios en el hilo principal mientras está iniciada
+     * y guarda los demás hasta que vuelve a estarlo.
+     */
+    private static final class RegistroPantalla extends Registro implements LifecycleEventObserver {
+        private final LifecycleOwner propietario;
+
+        // Cambios llegados con la pantalla detenida, unidos por tabla y operación (solo hilo principal)
+        private final Map<String, Cambio> aplazados = new LinkedHashMap<>();
+
+        RegistroPantalla(LifecycleOwner propietario, Observador observador, String... tablas) {
+            super(observador, tablas);
+            this.propietario = propietario;
+        }
+
+        @Override
+        void recibir(Cambio cambio) {
+            HILO_PRINCIPAL.post(() -> {
+                Lifecycle.State estado = propietario.getLifecycle().getCurrentState();
+                if (estado == Lifecycle.State.DESTROYED) {
+                    return;
+                }
+                if (estado.isAtLeast(Lifecycle.State.STARTED)) {
+                    observador.onCambio(cambio);
+                } else {
+                    aplazar(cambio);
+                }
+            });
+        }
+
+        private void aplazar(Cambio cambio) {
+            String clave = cambio.getTabla() + "/" + cambio.getOperacion();
+            Cambio anterior = aplazados.get(clave);
+            if (anterior == null) {
+                aplazados.put(clave, cambio);
+                return;
+            }
+
+            // Si alguno no enumera sus filas, el cambio unido tampoco
+            Set<Integer> ids = new HashSet<>();
+            if (!anterior.getIds().isEmpty() && !cambio.getIds().isEmpty()) {
+                ids.addAll(anterior.getIds());
+                ids.addAll(cambio.getIds());
+            }
+            aplazados.put(clave, new Cambio(cambio.getTabla(), cambio.getOperacion(), ids));
+        }
+
+        @Override
+        public void onStateChanged(LifecycleOwner source, Lifecycle.Event evento) {
+            if (evento == Lifecycle.Event.ON_START) {
+                List<Cambio> cambios = new ArrayList<>(aplazados.values());
+                aplazados.clear();
+                for (Cambio cambio : cambios) {
+                    observador.onCambio(cambio);
+                }
+            } else if (evento == Lifecycle.Event.ON_DESTROY) {
+                REGISTROS.remove(this);
+                aplazados.clear();
+                source.getLifecycle().removeObserver(this);
+            }
+        }
+    }
+}
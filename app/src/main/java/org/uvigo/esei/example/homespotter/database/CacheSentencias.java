@@ -0,0 +1,87 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clase CacheSentencias
+ *
+ * Caché de sentencias compiladas ({@link SQLiteStatement}) para las escrituras de forma fija de las
+ * entidades (INSERT, UPDATE y DELETE con los mismos marcadores). Las entidades se crean en cada
+ * pantalla, así que la caché es compartida y se indexa por base de datos y por SQL: cada sentencia
+ * se compila una vez y después solo se enlazan sus argumentos, sin construir ContentValues ni SQL.
+ *
+ * Uso seguro entre hilos: una misma sentencia puede devolverse a varios hilos, así que quien la usa
+ * debe enlazar y ejecutar dentro de un bloque synchronized sobre la propia sentencia:
+ * <pre>
+ * SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_INSERTAR);
+ * synchronized (sentencia) {
+ *     sentencia.clearBindings();
+ *     sentencia.bindLong(1, id);
+ *     sentencia.executeInsert();
+ * }
+ * </pre>
+ *
+ * Las sentencias de una base de datos se cierran cuando {@link DBManager} la cierra (véase
+ * {@link PorBaseDatos}).
+ */
+final class CacheSentencias {
+    private static final PorBaseDatos<Map<String, SQLiteStatement>> SENTENCIAS =
+            new PorBaseDatos<>(HashMap::new, CacheSentencias::cerrar);
+
+    private CacheSentencias() {
+    }
+
+    /**
+     * Obtiene la sentencia compilada para un SQL, compilándola la primera vez.
+     *
+     * La sentencia se compila sin retener el bloqueo de la caché: compilar necesita una conexión,
+     * y un hilo que ya tiene la conexión principal en una transacción puede estar esperando ese
+     * bloqueo para obtener otra sentencia. Si dos hilos compilan el mismo SQL a la vez, se guarda
+     * la primera y se cierra la otra.
+     *
+     * @param db Base de datos sobre la que se ejecuta la sentencia.
+     * @param sql SQL de la sentencia, con marcadores "?".
+     * @return Sentencia compilada, compartida entre hilos.
+     */
+    static SQLiteStatement obtener(SQLiteDatabase db, String sql) {
+        Map<String, SQLiteStatement> sentencias;
+        synchronized (CacheSentencias.class) {
+            sentencias = SENTENCIAS.obtener(db);
+            SQLiteStatement sentencia = sentencias.get(sql);
+            if (sentencia != null) {
+                return sentencia;
+            }
+        }
+
+        SQLiteStatement nueva = db.compileStatement(sql);
+        SQLiteStatement guardada;
+        synchronized (CacheSentencias.class) {
+            guardada = sentencias.putIfAbsent(sql, nueva);
+        }
+        if (guardada == null) {
+            return nueva;
+        }
+        nueva.close();
+        return guardada;
+    }
+
+    private static void cerrar(Map<String, SQLiteStatement> sentencias) {
+        List<SQLiteStatement> abiertas;
+        synchronized (CacheSentencias.class) {
+            abiertas = new ArrayList<>(sentencias.values());
+            sentencias.clear();
+        }
+        for (SQLiteStatement sentencia : abiertas) {
+            // Esperar a que termine quien la esté usando
+            synchronized (sentencia) {
+                sentencia.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import org.uvigo.esei.example.homespotter.models.Usuario;
+
+/**
+ * Clase CacheUsuarios
+ *
+ * Caché LRU de perfiles de usuario para {@link UsuarioEntity#obtenerUsuarioPorId(int)}. Las
+ * pantallas vuelven a pedir los mismos perfiles (el propietario de una vivienda, el usuario de la
+ * sesión), así que solo la primera lectura de cada uno va a la base de datos.
+ *
+ * Como {@link CacheSentencias}, es compartida entre entidades y se indexa por base de datos con
+ * {@link PorBaseDatos}. Solo {@link UsuarioEntity} escribe en TABLA_USUARIO, y lo hace a través
+ * de la caché: al modificar un usuario se guarda su nuevo perfil y al eliminarlo se descarta. Cada cambio incrementa además un
+ * contador por base de datos, de modo que una lectura que empezó antes del cambio no puede dejar
+ * en la caché el perfil antiguo.
+ *
+ * Los perfiles se guardan y se devuelven como copias, así que quien los recibe puede modificarlos.
+ */
+public final class CacheUsuarios {
+    // Número máximo de perfiles por base de datos
+    static final int CAPACIDAD = 64;
+
+    private static final PorBaseDatos<Entrada> ENTRADAS = new PorBaseDatos<>(Entrada::new, null);
+
+    private static long aciertos;
+    private static long fallos;
+
+    private CacheUsuarios() {
+    }
+
+    /**
+     * Perfiles de una base de datos y número de cambios hechos en ellos.
+     */
+    private static final class Entrada {
+        final LruCache<Integer, Usuario> usuarios = new LruCache<>(CAPACIDAD);
+        long cambios;
+    }
+
+    /**
+     * Obtiene una copia del perfil de un usuario, contando el acierto o el fallo.
+     *
+     * @param db Base de datos del usuario.
+     * @param idUsuario ID del usuario.
+     * @return Copia del perfil, o null si no está en la caché.
+     */
+    static synchronized Usuario obtener(SQLiteDatabase db, int idUsuario) {
+        Usuario usuario = entrada(db).usuarios.get(idUsuario);
+        if (usuario == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return copiar(usuario);
+    }
+
+    /**
+     * Devuelve el número de cambios hechos en los perfiles de una base de datos. Se toma antes de
+     * leer un perfil para pasárselo a {@link #guardarLeido(SQLiteDatabase, Usuario, long)}.
+     *
+     * @param db Base de datos.
+     * @return Número de cambios hasta ahora.
+     */
+    static synchronized long cambios(SQLiteDatabase db) {
+        return entrada(db).cambios;
+    }
+
+    /**
+     * Guarda un perfil leído de la base de datos, salvo que algún usuario haya cambiado mientras
+     * se leía.
+     *
+     * @param db Base de datos del usuario.
+     * @param usuario Perfil leído.
+     * @param cambios Número de cambios que había antes de leerlo.
+     */
+    static synchronized void guardarLeido(SQLiteDatabase db, Usuario usuario, long cambios) {
+        Entrada entrada = entrada(db);
+        if (entrada.cambios == cambios) {
+            entrada.usuarios.put(usuario.getId(), copiar(usuario));
+        }
+    }
+
+    /**
+     * Aplica a un perfil en la caché los campos modificados de un usuario. Los campos null no
+     * cambian, como en {@link UsuarioEntity#modificar}.
+     *
+     * @param db Base de datos del usuario.
+     * @param idUsuario ID del usuario modificado.
+     * @param nombreUsuario Nuevo nombre de usuario, o null.
+     * @param nombreCompleto Nuevo nombre completo, o null.
+     * @param email Nuevo correo electrónico, o null.
+     * @param password Nueva contraseña, o null.
+     * @param foto Nueva URL de la foto de perfil, o null.
+     * @param tlfno Nuevo número de teléfono, o null.
+     */
+    static synchronized void modificar(SQLiteDatabase db, int idUsuario, String nombreUsuario, String nombreCompleto,
+                                       String email, String password, String foto, String tlfno) {
+        Entrada entrada = entrada(db);
+        entrada.cambios++;
+
+        Usuario usuario = entrada.usuarios.get(idUsuario);
+        if (usuario == null) {
+            return;
+        }
+        usuario = copiar(usuario);
+        if (nombreUsuario != null) usuario.setNombre(nombreUsuario);
+        if (nombreCompleto != null) usuario.setNombreCompleto(nombreCompleto);
+        if (email != null) usuario.setEmail(email);
+        if (password != null) usuario.setPassword(password);
+        if (foto != null) usuario.setFoto(foto);
+        if (tlfno != null) usuario.setTlfno(tlfno);
+        entrada.usuarios.put(idUsuario, usuario);
+    }
+
+    /**
+     * Descarta el perfil de un usuario eliminado.
+     *
+     * @param db Base de datos del usuario.
+     * @param idUsuario ID del usuario eliminado.
+     */
+    static synchronized void eliminar(SQLiteDatabase db, int idUsuario) {
+        Entrada entrada = entrada(db);
+        entrada.cambios++;
+        entrada.usuarios.remove(idUsuario);
+    }
+
+    /**
+     * Obtiene el número de perfiles que se sirvieron desde la caché.
+     *
+     * @return Aciertos desde que se inició la aplicación.
+     */
+    public static synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    /**
+     * Obtiene el número de perfiles que hubo que leer de la base de datos.
+     *
+     * @return Fallos desde que se inició la aplicación.
+     */
+    public static synchronized long getFallos() {
+        return fallos;
+    }
+
+    private static Entrada entrada(SQLiteDatabase db) {
+        return ENTRADAS.obtener(db);
+    }
+
+    private static Usuario copiar(Usuario usuario) {
+        return new Usuario(usuario.getId(), usuario.getNombre(), usuario.getNombreCompleto(), usuario.getEmail(),
+                usuario.getPassword(), usuario.getFoto(), usuario.getTlfno());
+    }
+}
@@ -0,0 +1,150 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.LruCache;
+
+import org.uvigo.esei.example.homespotter.models.Vivienda;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase CacheViviendas
+ *
+ * Caché LRU de viviendas con sus fotos, indexada por id_vivienda, para
+ * {@link ViviendaEntity#obtenerPorIds(List)}. Las listas de viviendas se recargan al volver a cada
+ * pantalla aunque no haya cambiado nada; con la caché basta con consultar qué IDs se muestran y
+ * leer solo las viviendas que aún no se tenían.
+ *
+ * Como {@link CacheSentencias}, es compartida entre entidades y se indexa por base de datos con
+ * {@link PorBaseDatos}. Se guardan fichas inmutables, sin el estado de favorito (que depende del
+ * usuario), y se devuelve una {@link Vivienda} nueva en cada lectura. Las entidades que escriben
+ * viviendas o fotos descartan las fichas afectadas después de confirmar su transacción; cada
+ * descarte incrementa un contador por base de datos, de modo que una lectura que empezó antes del
+ * cambio no puede dejar en la caché la ficha antigua.
+ */
+final class CacheViviendas {
+    // Número máximo de viviendas por base de datos
+    static final int CAPACIDAD = 256;
+
+    private static final PorBaseDatos<Entrada> ENTRADAS = new PorBaseDatos<>(Entrada::new, null);
+
+    private CacheViviendas() {
+    }
+
+    /**
+     * Datos de una vivienda y sus fotos, tal como están en la base de datos.
+     */
+    private static final class Ficha {
+        final int id;
+        final String titulo;
+        final String tipoVivienda;
+        final double precio;
+        final String direccion;
+        final String estado;
+        final String contacto;
+        final String descripcion;
+        final int propietarioId;
+        final List<String> fotos;
+
+        Ficha(Vivienda vivienda) {
+            this.id = vivienda.getId();
+            this.titulo = vivienda.getTitulo();
+            this.tipoVivienda = vivienda.getTipoVivienda();
+            this.precio = vivienda.getPrecio();
+            this.direccion = vivienda.getDireccion();
+            this.estado = vivienda.getEstado();
+            this.contacto = vivienda.getContacto();
+            this.descripcion = vivienda.getDescripcion();
+            this.propietarioId = vivienda.getPropietarioId();
+            this.fotos = Collections.unmodifiableList(new ArrayList<>(vivienda.getFotos()));
+        }
+
+        Vivienda aVivienda() {
+            return new Vivienda(id, titulo, tipoVivienda, precio, direccion, estado, contacto, descripcion,
+                    propietarioId, false, new ArrayList<>(fotos));
+        }
+    }
+
+    /**
+     * Fichas de una base de datos y número de cambios hechos en ellas.
+     */
+    private static final class Entrada {
+        final LruCache<Integer, Ficha> viviendas = new LruCache<>(CAPACIDAD);
+        long cambios;
+    }
+
+    /**
+     * Obtiene una vivienda de la caché, sin marcar como favorita.
+     *
+     * @param db Base de datos de la vivienda.
+     * @param idVivienda ID de la vivienda.
+     * @return Vivienda nueva con los datos de la ficha, o null si no está en la caché.
+     */
+    static synchronized Vivienda obtener(SQLiteDatabase db, int idVivienda) {
+        Ficha ficha = entrada(db).viviendas.get(idVivienda);
+        return ficha != null ? ficha.aVivienda() : null;
+    }
+
+    /**
+     * Devuelve el número de cambios hechos en las viviendas de una base de datos. Se toma antes de
+     * leer viviendas para pasárselo a {@link #guardarLeidas(SQLiteDatabase, List, long)}.
+     *
+     * @param db Base de datos.
+     * @return Número de cambios hasta ahora.
+     */
+    static synchronized long cambios(SQLiteDatabase db) {
+        return entrada(db).cambios;
+    }
+
+    /**
+     * Guarda viviendas leídas de la base de datos, salvo que alguna vivienda o foto haya cambiado
+     * mientras se leían.
+     *
+     * @param db Base de datos de las viviendas.
+     * @param viviendas Viviendas leídas, con todas sus fotos.
+     * @param cambios Número de cambios que había antes de leerlas.
+     */
+    static synchronized void guardarLeidas(SQLiteDatabase db, List<Vivienda> viviendas, long cambios) {
+        Entrada entrada = entrada(db);
+        if (entrada.cambios != cambios) {
+            return;
+        }
+        for (Vivienda vivienda : viviendas) {
+            entrada.viviendas.put(vivienda.getId(), new Ficha(vivienda));
+        }
+    }
+
+    /**
+     * Descarta la ficha de una vivienda modificada, eliminada o cuyas fotos cambiaron.
+     *
+     * @param db Base de datos de la vivienda.
+     * @param idVivienda ID de la vivienda.
+     */
+    static synchronized void invalidar(SQLiteDatabase db, int idVivienda) {
+        Entrada entrada = entrada(db);
+        entrada.cambios++;
+        entrada.viviendas.remove(idVivienda);
+    }
+
+    /**
+     * Descarta las fichas de las viviendas de un propietario, que se eliminan en cascada con él.
+     *
+     * @param db Base de datos de las viviendas.
+     * @param idPropietario ID del propietario eliminado.
+     */
+    static synchronized void invalidarPropietario(SQLiteDatabase db, int idPropietario) {
+        Entrada entrada = entrada(db);
+        entrada.cambios++;
+        for (Ficha ficha : entrada.viviendas.snapshot().values()) {
+            if (ficha.propietarioId == idPropietario) {
+                entrada.viviendas.remove(ficha.id);
+            }
+        }
+    }
+
+    private static Entrada entrada(SQLiteDatabase db) {
+        return ENTRADAS.obtener(db);
+    }
+}
@@ -8,12 +8,19 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.util.Log;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Clase DBManager
  *
  * Clase que gestiona la base de datos de la aplicación HomeSpotter.
  * Proporciona métodos para crear, actualizar y poblar la base de datos con datos iniciales.
  * Implementa el patrón Singleton para garantizar que solo exista una instancia de la base de datos durante la ejecución.
+ * La base de datos se abre con el perfil {@link PerfilAlmacenamiento#LECTURA_INTENSIVA} (WAL, memoria mapeada, caché ampliada).
  *
  * Tablas creadas:
  * - TABLA_USUARIO: Almacena información sobre los usuarios de la aplicación.
@@ -24,24 +31,31 @@ import android.util.Log;
  *
  * Métodos principales:
  * - {@link #onCreate(SQLiteDatabase)}: Crea las tablas necesarias y datos iniciales.
- * - {@link #onUpgrade(SQLiteDatabase, int, int)}: Actualiza la estructura de la base de datos.
+ * - {@link #onUpgrade(SQLiteDatabase, int, int)}: Aplica las migraciones pendientes sin perder datos.
+ * - {@link #close()}: Cierra la base de datos y libera lo que las cachés tenían de ella.
  * - {@link #insertarUsuariosPorDefecto(SQLiteDatabase)}: Inserta usuarios iniciales.
  * - {@link #insertarPropiedadesPorDefecto(SQLiteDatabase)}: Inserta propiedades iniciales.
  * - {@link #insertarFotos(SQLiteDatabase)}: Inserta fotos relacionadas con propiedades.
  */
 public class DBManager extends SQLiteOpenHelper {
     private static final String DATABASE_NAME = "home_spotter.db";
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = Migraciones.getUltimaVersion();
 
     private static DBManager instance;
+    private final PerfilAlmacenamiento perfil;
+    // Base de datos abierta, para descartar lo que las cachés tienen de ella al cerrarla
+    private SQLiteDatabase abierta;
 
     /**
      * Constructor privado para implementar el patrón Singleton.
      *
      * @param c Contexto de la aplicación.
+     * @param perfil Perfil de almacenamiento con el que se abre la base de datos.
      */
-    private DBManager(Context c) {
+    private DBManager(Context c, PerfilAlmacenamiento perfil) {
         super(c.getApplicationContext(), DATABASE_NAME, null, DATABASE_VERSION);
+        this.perfil = perfil;
+        perfil.aplicar(this);
     }
 
     /**
@@ -52,13 +66,23 @@ public class DBManager extends SQLiteOpenHelper {
      */
     public static synchronized DBManager getInstance(Context c) {
         if (instance == null) {
-            instance = new DBManager(c);
+            instance = new DBManager(c, PerfilAlmacenamiento.LECTURA_INTENSIVA);
         }
         return instance;
     }
 
     /**
-     * Crea las tablas de la base de datos y agrega datos iniciales.
+     * Obtiene el perfil de almacenamiento con el que se abre la base de datos.
+     *
+     * @return Perfil de almacenamiento.
+     */
+    public PerfilAlmacenamiento getPerfil() {
+        return perfil;
+    }
+
+    /**
+     * Crea las tablas de la base de datos con el esquema inicial, agrega datos iniciales
+     * y aplica después todas las migraciones registradas en {@link Migraciones}.
      *
      * @param db Instancia de SQLiteDatabase.
      */
@@ -130,10 +154,13 @@ public class DBManager extends SQLiteOpenHelper {
         } finally {
             db.endTransaction();
         }
+
+        Migraciones.migrar(db, Migraciones.VERSION_INICIAL, DATABASE_VERSION);
     }
 
     /**
-     * Configura la base de datos para habilitar claves foráneas.
+     * Configura la base de datos para habilitar claves foráneas y aplica los parámetros
+     * por conexión del perfil de almacenamiento.
      *
      * @param db Instancia de SQLiteDatabase.
      */
@@ -141,10 +168,37 @@ public class DBManager extends SQLiteOpenHelper {
     public void onConfigure(SQLiteDatabase db) {
         super.onConfigure(db);
         db.setForeignKeyConstraintsEnabled(true);
+        perfil.configurar(db);
+    }
+
+    /**
+     * Guarda la base de datos abierta para poder liberar sus cachés en {@link #close()}.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        abierta = db;
+    }
+
+    /**
+     * Cierra la base de datos después de descartar lo que las cachés compartidas tenían de ella
+     * (sentencias compiladas, perfiles y viviendas).
+     */
+    @Override
+    public synchronized void close() {
+        if (abierta != null) {
+            PorBaseDatos.descartar(abierta);
+            abierta = null;
+        }
+        super.close();
     }
 
     /**
      * Actualiza la estructura de la base de datos al cambiar la versión.
+     * Aplica en orden las migraciones pendientes, cada una en su propia transacción,
+     * conservando los datos de los usuarios.
      *
      * @param db Instancia de SQLiteDatabase.
      * @param v1 Versión antigua de la base de datos.
@@ -153,16 +207,7 @@ public class DBManager extends SQLiteOpenHelper {
     @Override
     public void onUpgrade(SQLiteDatabase db, int v1, int v2) {
         Log.i("DBManager", "Actualizando BBDD de la versión " + v1 + " a " + v2);
-
-        // Eliminar tablas existentes
-        db.execSQL("DROP TABLE IF EXISTS TABLA_MENSAJES;");
-        db.execSQL("DROP TABLE IF EXISTS TABLA_FAVORITOS;");
-        db.execSQL("DROP TABLE IF EXISTS TABLA_FOTOS;");
-        db.execSQL("DROP TABLE IF EXISTS TABLA_VIVIENDA;");
-        db.execSQL("DROP TABLE IF EXISTS TABLA_USUARIO;");
-
-        // Volver a crear las tablas
-        onCreate(db);
+        Migraciones.migrar(db, v1, v2);
     }
 
     /**
@@ -375,17 +420,18 @@ public class DBManager extends SQLiteOpenHelper {
      * @param db Instancia de SQLiteDatabase.
      */
     private void insertarFotos(SQLiteDatabase db) {
-        FotosEntity fotosEntity = new FotosEntity(db);
-        fotosEntity.insertar(1,"https://i.ibb.co/N9fJyVq/chale.png");
-        fotosEntity.insertar(2,"https://i.ibb.co/8xxwgyv/Apartamento.jpg");
-        fotosEntity.insertar(3,"https://i.ibb.co/Wg87SSg/Casa-Vilagarc-a.jpg");
-        fotosEntity.insertar(4,"https://i.ibb.co/BjfQ01V/CL11-C4-F3-19627.webp");
-        fotosEntity.insertar(5,"https://i.ibb.co/K0BJ5t3/13-Imagen-Exterior-arquitecturaicomplementos.jpg");
-        fotosEntity.insertar(6,"https://i.ibb.co/NZVwnLX/t.jpg");
-        fotosEntity.insertar(7,"https://i.ibb.co/Fgyn1Qw/vivienda0.jpg");
-        fotosEntity.insertar(7,"https://i.ibb.co/FxJq3HQ/454536807.jpg");
-        fotosEntity.insertar(8,"https://i.ibb.co/jVsM9Mt/download.jpg");
-        fotosEntity.insertar(9,"https://i.ibb.co/N9W6t73/pontevedra-casa-da-carballeira.jpg");
-        fotosEntity.insertar(10,"https://i.ibb.co/1zg731h/1761620544.jpg");
+        Map<Integer, List<String>> fotos = new LinkedHashMap<>();
+        fotos.put(1, Collections.singletonList("https://i.ibb.co/N9fJyVq/chale.png"));
+        fotos.put(2, Collections.singletonList("https://i.ibb.co/8xxwgyv/Apartamento.jpg"));
+        fotos.put(3, Collections.singletonList("https://i.ibb.co/Wg87SSg/Casa-Vilagarc-a.jpg"));
+        fotos.put(4, Collections.singletonList("https://i.ibb.co/BjfQ01V/CL11-C4-F3-19627.webp"));
+        fotos.put(5, Collections.singletonList("https://i.ibb.co/K0BJ5t3/13-Imagen-Exterior-arquitecturaicomplementos.jpg"));
+        fotos.put(6, Collections.singletonList("https://i.ibb.co/NZVwnLX/t.jpg"));
+        fotos.put(7, Arrays.asList("https://i.ibb.co/Fgyn1Qw/vivienda0.jpg", "https://i.ibb.co/FxJq3HQ/454536807.jpg"));
+        fotos.put(8, Collections.singletonList("https://i.ibb.co/jVsM9Mt/download.jpg"));
+        fotos.put(9, Collections.singletonList("https://i.ibb.co/N9W6t73/pontevedra-casa-da-carballeira.jpg"));
+        fotos.put(10, Collections.singletonList("https://i.ibb.co/1zg731h/1761620544.jpg"));
+
+        new FotosEntity(db).insertarLote(fotos);
     }
 }
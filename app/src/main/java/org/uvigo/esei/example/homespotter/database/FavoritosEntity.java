@@ -1,9 +1,10 @@
 package org.uvigo.esei.example.homespotter.database;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import java.util.ArrayList;
@@ -20,10 +21,15 @@ public class FavoritosEntity {
     private SQLiteDatabase db;
 
     // Nombre de la tabla y columnas
-    private static final String NOMBRE_TABLA = "TABLA_FAVORITOS";
+    public static final String NOMBRE_TABLA = "TABLA_FAVORITOS";
     private static final String COL_ID_USUARIO = "usuario_id";
     private static final String COL_ID_VIVIENDA = "vivienda_id";
 
+    // Sentencias de forma fija, compiladas una vez (ver CacheSentencias)
+    // La inserción ignora los conflictos: la clave primaria (usuario_id, vivienda_id) ya impide duplicados
+    private static final String SQL_INSERTAR = "INSERT OR IGNORE INTO " + NOMBRE_TABLA + " (" + COL_ID_USUARIO + ", " + COL_ID_VIVIENDA + ") VALUES (?, ?)";
+    private static final String SQL_ELIMINAR = "DELETE FROM " + NOMBRE_TABLA + " WHERE " + COL_ID_USUARIO + " = ? AND " + COL_ID_VIVIENDA + " = ?";
+
     /**
      * Constructor de la clase.
      *
@@ -41,48 +47,55 @@ public class FavoritosEntity {
      * @return true si la inserción fue exitosa, false en caso contrario.
      */
     public boolean insertar(int usuarioId, int viviendaId) {
-        boolean toret = false;
+        return insertarSiNoExiste(usuarioId, viviendaId).isInsertado();
+    }
+
+    /**
+     * Inserta un nuevo favorito si no existe ya, en una única sentencia.
+     * No se consulta antes si el favorito existe: la clave primaria lo detecta y la fila se ignora.
+     *
+     * @param usuarioId ID del usuario.
+     * @param viviendaId ID de la vivienda.
+     * @return Resultado de la inserción: INSERTADO, YA_EXISTIA, ERROR_RESTRICCION si el usuario
+     * o la vivienda no existen, o ERROR.
+     */
+    public ResultadoInsercion insertarSiNoExiste(int usuarioId, int viviendaId) {
+        ResultadoInsercion toret = ResultadoInsercion.error();
 
         if (usuarioId <= 0 || viviendaId <= 0) {
             Log.e("FavoritosEntity.insertar", "Parámetros inválidos para insertar.");
-            return false;
-        }
-
-        // Verificar si ya existe el favorito
-        Cursor cursor = db.query(
-                NOMBRE_TABLA,
-                new String[]{COL_ID_USUARIO, COL_ID_VIVIENDA},
-                COL_ID_USUARIO + " = ? AND " + COL_ID_VIVIENDA + " = ?",
-                new String[]{String.valueOf(usuarioId), String.valueOf(viviendaId)},
-                null, null, null
-        );
-
-        if (cursor != null && cursor.getCount() > 0) {
-            Log.i("FavoritosEntity.insertar", "El registro ya existe: usuario_id = " + usuarioId + ", vivienda_id = " + viviendaId);
-            cursor.close();
-            return false;
+            return toret;
         }
 
-        if (cursor != null) {
-            cursor.close();
-        }
-
-        // Insertar el favorito si no existe
-        ContentValues values = new ContentValues();
-        values.put(COL_ID_USUARIO, usuarioId);
-        values.put(COL_ID_VIVIENDA, viviendaId);
-
         try {
             db.beginTransaction();
-            db.insert(NOMBRE_TABLA, null, values);
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_INSERTAR);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, usuarioId);
+                sentencia.bindLong(2, viviendaId);
+                toret = ResultadoInsercion.deInsercionOIgnorar(sentencia.executeInsert());
+            }
+
+            // Una fila ignorada no cambia nada: la transacción se confirma igualmente para no
+            // deshacer la de quien llama, si esta se ejecuta dentro de otra
             db.setTransactionSuccessful();
-            toret = true;
+            if (!toret.isInsertado()) {
+                Log.i("FavoritosEntity.insertar", "El registro ya existe: usuario_id = " + usuarioId + ", vivienda_id = " + viviendaId);
+            }
+        } catch (SQLiteConstraintException exc) {
+            Log.e("FavoritosEntity.insertar", "Restricción incumplida al insertar: " + exc.getMessage());
+            toret = ResultadoInsercion.errorRestriccion();
         } catch (SQLException exc) {
             Log.e("FavoritosEntity.insertar", "Error al insertar: " + exc.getMessage());
+            toret = ResultadoInsercion.error();
         } finally {
             db.endTransaction();
         }
 
+        if (toret.isInsertado() && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, viviendaId);
+        }
         return toret;
     }
 
@@ -98,11 +111,14 @@ public class FavoritosEntity {
 
         try {
             db.beginTransaction();
-            int filasEliminadas = db.delete(
-                    NOMBRE_TABLA,
-                    COL_ID_USUARIO + " = ? AND " + COL_ID_VIVIENDA + " = ?",
-                    new String[]{String.valueOf(id_usuario), String.valueOf(id_vivienda)}
-            );
+            int filasEliminadas;
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_ELIMINAR);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, id_usuario);
+                sentencia.bindLong(2, id_vivienda);
+                filasEliminadas = sentencia.executeUpdateDelete();
+            }
 
             if (filasEliminadas == 0) {
                 Log.e("FavoritosEntity.eliminar", "Error al eliminar el favorito con id: " + id_usuario + ", " + id_vivienda);
@@ -115,6 +131,10 @@ public class FavoritosEntity {
         } finally {
             db.endTransaction();
         }
+
+        if (toret && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, id_vivienda);
+        }
         return toret;
     }
 
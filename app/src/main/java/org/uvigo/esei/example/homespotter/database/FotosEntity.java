@@ -1,28 +1,40 @@
 package org.uvigo.esei.example.homespotter.database;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Clase FotosEntity
  *
  * Gestiona la tabla de fotos en la base de datos de la aplicación HomeSpotter.
  * Proporciona métodos para insertar, eliminar y consultar fotos asociadas a viviendas.
+ * Para guardar varias fotos a la vez, {@link #insertarLote(int, List)} las escribe en una única transacción.
+ * Cada escritura descarta de {@link CacheViviendas} la vivienda cuyas fotos cambiaron y publica
+ * el cambio en {@link BusCambios} con el ID de esa vivienda.
  */
 public class FotosEntity {
 
     private SQLiteDatabase db;
-    private static final String NOMBRE_TABLA = "TABLA_FOTOS";
+    public static final String NOMBRE_TABLA = "TABLA_FOTOS";
     private static final String COL_ID_FOTO = "id_foto";
     private static final String COL_ID_VIVIENDA = "vivienda_id";
     private static final String COL_URL_FOTO = "url_foto";
 
+    // Sentencias de forma fija, compiladas una vez (ver CacheSentencias)
+    private static final String SQL_INSERTAR = "INSERT INTO " + NOMBRE_TABLA + " (" + COL_ID_VIVIENDA + ", " + COL_URL_FOTO + ") VALUES (?, ?)";
+    private static final String SQL_ELIMINAR = "DELETE FROM " + NOMBRE_TABLA + " WHERE " + COL_ID_FOTO + " = ?";
+    private static final String SQL_VIVIENDA_DE_FOTO = "SELECT " + COL_ID_VIVIENDA + " FROM " + NOMBRE_TABLA + " WHERE " + COL_ID_FOTO + " = ?";
+
     /**
      * Constructor de la clase FotosEntity.
      *
@@ -47,13 +59,15 @@ public class FotosEntity {
             return false;
         }
 
-        ContentValues values = new ContentValues();
-        values.put(COL_ID_VIVIENDA, id_vivienda);
-        values.put(COL_URL_FOTO, urlFoto);
-
         try {
             db.beginTransaction();
-            db.insert(NOMBRE_TABLA, null, values);
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_INSERTAR);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, id_vivienda);
+                sentencia.bindString(2, urlFoto);
+                sentencia.executeInsert();
+            }
             db.setTransactionSuccessful();
             toret = true;
         } catch (SQLException exc) {
@@ -62,6 +76,87 @@ public class FotosEntity {
             db.endTransaction();
         }
 
+        if (toret) {
+            CacheViviendas.invalidar(db, id_vivienda);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, id_vivienda);
+            }
+        }
+
+        return toret;
+    }
+
+    /**
+     * Inserta varias fotos de una vivienda en una única transacción.
+     * Si alguna inserción falla no se guarda ninguna.
+     *
+     * @param viviendaId ID de la vivienda a la que pertenecen las fotos.
+     * @param urls       URLs de las fotos, en el orden en que se deben guardar.
+     * @return IDs generados para las fotos, en el mismo orden que las URLs, o una lista vacía si hubo un error.
+     */
+    public List<Long> insertarLote(int viviendaId, List<String> urls) {
+        Map<Integer, List<String>> fotos = new LinkedHashMap<>();
+        fotos.put(viviendaId, urls);
+        List<Long> ids = insertarLote(fotos).get(viviendaId);
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    /**
+     * Inserta las fotos de varias viviendas en una única transacción.
+     * Si alguna inserción falla no se guarda ninguna.
+     *
+     * @param fotosPorVivienda URLs de las fotos de cada vivienda.
+     * @return IDs generados para las fotos de cada vivienda, en el mismo orden que sus URLs,
+     *         o un mapa vacío si hubo un error.
+     */
+    public Map<Integer, List<Long>> insertarLote(Map<Integer, List<String>> fotosPorVivienda) {
+        Map<Integer, List<Long>> toret = new LinkedHashMap<>();
+
+        for (Map.Entry<Integer, List<String>> entrada : fotosPorVivienda.entrySet()) {
+            if (entrada.getKey() == null || entrada.getKey() <= 0 || entrada.getValue() == null) {
+                Log.e("FotosEntity", "Parámetros inválidos para insertar el lote.");
+                return toret;
+            }
+            for (String url : entrada.getValue()) {
+                if (url == null || url.isEmpty()) {
+                    Log.e("FotosEntity", "URL inválida en el lote de la vivienda " + entrada.getKey());
+                    return toret;
+                }
+            }
+        }
+
+        Map<Integer, List<Long>> ids = new LinkedHashMap<>();
+        try {
+            db.beginTransaction();
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_INSERTAR);
+            synchronized (sentencia) {
+                for (Map.Entry<Integer, List<String>> entrada : fotosPorVivienda.entrySet()) {
+                    List<Long> idsVivienda = new ArrayList<>();
+                    for (String url : entrada.getValue()) {
+                        sentencia.clearBindings();
+                        sentencia.bindLong(1, entrada.getKey());
+                        sentencia.bindString(2, url);
+                        idsVivienda.add(sentencia.executeInsert());
+                    }
+                    ids.put(entrada.getKey(), idsVivienda);
+                }
+            }
+            db.setTransactionSuccessful();
+            toret = ids;
+        } catch (SQLException exc) {
+            Log.e("FotosEntity.insertarLote", "Error al insertar fotos: " + exc.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+
+        for (Integer viviendaId : toret.keySet()) {
+            CacheViviendas.invalidar(db, viviendaId);
+        }
+        // Dentro de la transacción de otra entidad (ViviendaEntity#insertarConFotos), publica ella al confirmar
+        if (!toret.isEmpty() && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, toret.keySet());
+        }
+
         return toret;
     }
 
@@ -79,13 +174,31 @@ public class FotosEntity {
             return false;
         }
 
+        long viviendaId = -1;
         try {
             db.beginTransaction();
-            int filasEliminadas = db.delete(
-                    NOMBRE_TABLA,
-                    COL_ID_FOTO + " = ?",
-                    new String[]{String.valueOf(idFoto)}
-            );
+            int filasEliminadas = 0;
+
+            // La vivienda de la foto, para descartarla de la caché después de borrar
+            SQLiteStatement consulta = CacheSentencias.obtener(db, SQL_VIVIENDA_DE_FOTO);
+            synchronized (consulta) {
+                consulta.clearBindings();
+                consulta.bindLong(1, idFoto);
+                try {
+                    viviendaId = consulta.simpleQueryForLong();
+                } catch (SQLiteDoneException exc) {
+                    // La foto no existe: no hay nada que borrar
+                }
+            }
+
+            if (viviendaId != -1) {
+                SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_ELIMINAR);
+                synchronized (sentencia) {
+                    sentencia.clearBindings();
+                    sentencia.bindLong(1, idFoto);
+                    filasEliminadas = sentencia.executeUpdateDelete();
+                }
+            }
 
             if (filasEliminadas > 0) {
                 db.setTransactionSuccessful();
@@ -99,6 +212,13 @@ public class FotosEntity {
             db.endTransaction();
         }
 
+        if (toret) {
+            CacheViviendas.invalidar(db, (int) viviendaId);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, (int) viviendaId);
+            }
+        }
+
         return toret;
     }
 
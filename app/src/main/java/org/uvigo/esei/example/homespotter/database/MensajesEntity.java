@@ -1,13 +1,18 @@
 package org.uvigo.esei.example.homespotter.database;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.util.Log;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import org.uvigo.esei.example.homespotter.models.Chat;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
+import org.uvigo.esei.example.homespotter.models.MensajeEncontrado;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Clase MensajesEntity
@@ -17,14 +22,74 @@ import java.time.format.DateTimeFormatter;
  */
 public class MensajesEntity {
     // Nombre de la tabla y columnas
-    private static final String NOMBRE_TABLA = "TABLA_MENSAJES";
+    public static final String NOMBRE_TABLA = "TABLA_MENSAJES";
+    private static final String NOMBRE_TABLA_ARCHIVO = "TABLA_MENSAJES_ARCHIVO";
     private static final String COL_ID_MENSAJE = "id_mensaje";
     private static final String COL_REMITENTE_ID = "remitente_id";
     private static final String COL_DESTINATARIO_ID = "destinatario_id";
+    private static final String COL_VIVIENDA_ID = "vivienda_id";
     private static final String COL_CONTENIDO = "contenido";
     private static final String COL_FECHA = "fecha";
     private static final String COL_LEIDO = "leido";
 
+    // Sentencias de forma fija, compiladas una vez (ver CacheSentencias).
+    // La fecha son milisegundos desde epoch y, por defecto, el mensaje no está leído.
+    private static final String SQL_INSERTAR = "INSERT INTO " + NOMBRE_TABLA + " (" +
+            COL_REMITENTE_ID + ", " + COL_DESTINATARIO_ID + ", " + COL_VIVIENDA_ID + ", " + COL_CONTENIDO + ", " + COL_FECHA + ", " + COL_LEIDO +
+            ") VALUES (?, ?, ?, ?, ?, 0)";
+    private static final String SQL_MARCAR_LEIDO = "UPDATE " + NOMBRE_TABLA + " SET " + COL_LEIDO + " = 1 WHERE " + COL_ID_MENSAJE + " = ?";
+    // Mensajes recibidos de un contacto sin leer, hasta uno dado (índice remitente_id, destinatario_id)
+    private static final String SQL_MARCAR_CONVERSACION_LEIDA = "UPDATE " + NOMBRE_TABLA + " SET " + COL_LEIDO + " = 1 WHERE " +
+            COL_REMITENTE_ID + " = ? AND " + COL_DESTINATARIO_ID + " = ? AND " + COL_ID_MENSAJE + " <= ? AND " + COL_LEIDO + " = 0";
+    private static final String SQL_MARCAR_HILO_LEIDO = SQL_MARCAR_CONVERSACION_LEIDA + " AND " + COL_VIVIENDA_ID + " IS ?";
+    private static final String SQL_ELIMINAR = "DELETE FROM " + NOMBRE_TABLA + " WHERE " + COL_ID_MENSAJE + " = ?";
+
+    // Conversaciones del usuario, una por contacto y vivienda, leídas de la tabla resumen
+    // TABLA_CONVERSACIONES que mantienen los triggers de TABLA_MENSAJES (ver Migraciones): el coste
+    // depende del número de conversaciones, no del de mensajes.
+    private static final String SQL_CONVERSACIONES =
+            "SELECT c.contacto_id, u.nombre_usuario, u.foto_perfil, c.vista_previa, c.ultima_fecha, c.no_leidos, " +
+            "c.vivienda_id, v.titulo " +
+            "FROM TABLA_CONVERSACIONES c " +
+            "LEFT JOIN TABLA_USUARIO u ON u.id_usuario = c.contacto_id " +
+            "LEFT JOIN TABLA_VIVIENDA v ON v.id_vivienda = c.vivienda_id " +
+            "WHERE c.usuario_id = ? " +
+            "ORDER BY c.ultimo_mensaje_id DESC";
+    private static final String SQL_CONTAR_NO_LEIDOS = "SELECT COALESCE(SUM(no_leidos), 0) FROM TABLA_CONVERSACIONES WHERE usuario_id = ?";
+
+    // Páginas de un hilo por clave (fecha, id_mensaje): cada sentido del hilo avanza por el índice
+    // (remitente_id, destinatario_id, vivienda_id, fecha) desde la clave dada y se detiene al llenar
+    // la página, sin leer ni ordenar los mensajes anteriores a ella. TABLA_MENSAJES_ARCHIVO tiene el
+    // mismo índice y guarda los mensajes más antiguos de cada hilo (ver ArchivoMensajes).
+    private static final String SQL_PAGINA_ANTERIOR = sqlPagina(NOMBRE_TABLA, "<", "DESC");
+    private static final String SQL_PAGINA_SIGUIENTE = sqlPagina(NOMBRE_TABLA, ">", "ASC");
+    private static final String SQL_ARCHIVO_PAGINA_ANTERIOR = sqlPagina(NOMBRE_TABLA_ARCHIVO, "<", "DESC");
+    private static final String SQL_ARCHIVO_PAGINA_SIGUIENTE = sqlPagina(NOMBRE_TABLA_ARCHIVO, ">", "ASC");
+    private static final String SQL_MENSAJES_POSTERIORES = "SELECT " + COL_ID_MENSAJE + ", " + COL_REMITENTE_ID + ", " +
+            COL_DESTINATARIO_ID + ", " + COL_CONTENIDO + ", " + COL_FECHA + ", " + COL_LEIDO + " FROM " + NOMBRE_TABLA + " WHERE " +
+            "((" + COL_REMITENTE_ID + " = ?1 AND " + COL_DESTINATARIO_ID + " = ?2) OR (" +
+            COL_REMITENTE_ID + " = ?2 AND " + COL_DESTINATARIO_ID + " = ?1)) AND " +
+            COL_VIVIENDA_ID + " IS ?3 AND " + COL_ID_MENSAJE + " > ?4 " +
+            "ORDER BY " + COL_FECHA + " ASC, " + COL_ID_MENSAJE + " ASC";
+
+    // Mensajes de un usuario que contienen un texto, buscados en TABLA_MENSAJES_FTS (ver Migraciones),
+    // del más reciente al más antiguo. El mensaje puede estar en TABLA_MENSAJES o en el archivo.
+    // Argumentos: ?1 consulta MATCH, ?2 usuario y ?3 número máximo de resultados.
+    private static final String SQL_BUSCAR =
+            "SELECT encontrados.id_mensaje, encontrados.contacto_id, u.nombre_usuario, u.foto_perfil, " +
+            "encontrados.vivienda_id, encontrados.fecha, encontrados.fragmento FROM (" +
+            "SELECT f.docid AS id_mensaje, " +
+            "snippet(TABLA_MENSAJES_FTS, '" + MensajeEncontrado.INICIO_RESALTADO + "', '" + MensajeEncontrado.FIN_RESALTADO + "', '…', 0, 12) AS fragmento, " +
+            "CASE WHEN COALESCE(m.remitente_id, a.remitente_id) = ?2 " +
+            "THEN COALESCE(m.destinatario_id, a.destinatario_id) ELSE COALESCE(m.remitente_id, a.remitente_id) END AS contacto_id, " +
+            "COALESCE(m.vivienda_id, a.vivienda_id, 0) AS vivienda_id, COALESCE(m.fecha, a.fecha) AS fecha " +
+            "FROM TABLA_MENSAJES_FTS f " +
+            "LEFT JOIN " + NOMBRE_TABLA + " m ON m.id_mensaje = f.docid " +
+            "LEFT JOIN " + NOMBRE_TABLA_ARCHIVO + " a ON a.id_mensaje = f.docid " +
+            "WHERE TABLA_MENSAJES_FTS MATCH ?1 ORDER BY f.docid DESC LIMIT ?3) AS encontrados " +
+            "LEFT JOIN TABLA_USUARIO u ON u.id_usuario = encontrados.contacto_id " +
+            "ORDER BY encontrados.id_mensaje DESC";
+
     private SQLiteDatabase db;
 
     /**
@@ -36,6 +101,44 @@ public class MensajesEntity {
         this.db = db;
     }
 
+    /**
+     * Construye la consulta de una página de mensajes de un hilo, a un lado de una clave
+     * (fecha, id_mensaje). Argumentos: ?1 usuario, ?2 contacto, ?3 fecha, ?4 ID, ?5 tamaño de página
+     * y ?6 vivienda (NULL para los mensajes sin vivienda).
+     *
+     * @param tabla TABLA_MENSAJES o TABLA_MENSAJES_ARCHIVO.
+     * @param comparacion "<" para los mensajes anteriores a la clave, ">" para los posteriores.
+     * @param orden "DESC" o "ASC", alejándose de la clave.
+     * @return Consulta SQL.
+     */
+    private static String sqlPagina(String tabla, String comparacion, String orden) {
+        String columnas = COL_ID_MENSAJE + ", " + COL_REMITENTE_ID + ", " + COL_DESTINATARIO_ID + ", " +
+                COL_CONTENIDO + ", " + COL_FECHA + ", " + COL_LEIDO;
+        String hilo = COL_VIVIENDA_ID + " IS ?6 AND ";
+        String clave = "(" + COL_FECHA + ", " + COL_ID_MENSAJE + ") " + comparacion + " (?3, ?4)";
+        String ordenClave = " ORDER BY " + COL_FECHA + " " + orden + ", " + COL_ID_MENSAJE + " " + orden;
+
+        return "SELECT " + columnas + " FROM (" +
+                "SELECT * FROM (SELECT " + columnas + " FROM " + tabla +
+                " WHERE " + COL_REMITENTE_ID + " = ?1 AND " + COL_DESTINATARIO_ID + " = ?2 AND " + hilo + clave +
+                ordenClave + " LIMIT ?5) AS enviados " +
+                "UNION ALL " +
+                "SELECT * FROM (SELECT " + columnas + " FROM " + tabla +
+                " WHERE " + COL_REMITENTE_ID + " = ?2 AND " + COL_DESTINATARIO_ID + " = ?1 AND " + hilo + clave +
+                ordenClave + " LIMIT ?5) AS recibidos)" +
+                ordenClave + " LIMIT ?5";
+    }
+
+    /**
+     * Valor de vivienda_id de los mensajes de un hilo, para comparar con IS.
+     *
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @return El ID de la vivienda, o null si el hilo no tiene vivienda.
+     */
+    private static Long viviendaDelHilo(int viviendaId) {
+        return viviendaId > 0 ? (long) viviendaId : null;
+    }
+
     /**
      * Inserta un mensaje en la base de datos.
      *
@@ -45,36 +148,98 @@ public class MensajesEntity {
      * @return true si la inserción fue exitosa, false en caso contrario.
      */
     public boolean insertar(int remitenteId, int destinatarioId, String contenido) {
-        if (remitenteId <= 0 || destinatarioId <= 0 || contenido == null || contenido.isEmpty()) {
-            Log.e("MensajesEntity", "Parámetros inválidos para insertar mensaje.");
-            return false;
-        }
+        return insertarMensaje(remitenteId, destinatarioId, 0, contenido) != null;
+    }
 
-        boolean toret = false;
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-        String fechaActual = LocalDateTime.now().format(formatter);
+    /**
+     * Inserta un mensaje en la base de datos y lo devuelve tal como quedó guardado, con el ID y la
+     * fecha que se le asignaron.
+     *
+     * @param remitenteId ID del remitente.
+     * @param destinatarioId ID del destinatario.
+     * @param viviendaId ID de la vivienda sobre la que trata el mensaje, o 0 si no trata de ninguna.
+     * @param contenido Contenido del mensaje.
+     * @return Mensaje guardado, o null si no se pudo insertar.
+     */
+    public Mensaje insertarMensaje(int remitenteId, int destinatarioId, int viviendaId, String contenido) {
+        Mensaje mensaje = new Mensaje(0, remitenteId, destinatarioId, contenido, 0, false);
+        mensaje.setViviendaId(viviendaId);
 
-        ContentValues values = new ContentValues();
-        values.put(COL_REMITENTE_ID, remitenteId);
-        values.put(COL_DESTINATARIO_ID, destinatarioId);
-        values.put(COL_CONTENIDO, contenido);
-        values.put(COL_FECHA, fechaActual);
-        values.put(COL_LEIDO, 0); // Por defecto, el mensaje no está leído
+        List<Mensaje> guardados = insertarLote(Collections.singletonList(mensaje));
+        return guardados != null ? guardados.get(0) : null;
+    }
+
+    /**
+     * Inserta varios mensajes en una sola transacción. Los mensajes con datos inválidos no se
+     * insertan, pero no impiden guardar los demás; si falla la escritura de alguno, se deshace la
+     * transacción entera.
+     *
+     * @param mensajes Mensajes a insertar (remitente, destinatario, vivienda y contenido).
+     * @return Lista con el mensaje guardado de cada uno, en el mismo orden, con su ID y su fecha
+     *         (o null en la posición de los inválidos); o null si no se pudo guardar el lote.
+     */
+    public List<Mensaje> insertarLote(List<Mensaje> mensajes) {
+        List<Mensaje> toret = null;
+        List<Mensaje> guardados = new ArrayList<>(mensajes.size());
+        long fechaActual = System.currentTimeMillis();
 
         try {
             db.beginTransaction();
-            db.insert(NOMBRE_TABLA, null, values);
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_INSERTAR);
+            for (Mensaje mensaje : mensajes) {
+                if (!esValido(mensaje)) {
+                    Log.e("MensajesEntity", "Parámetros inválidos para insertar mensaje.");
+                    guardados.add(null);
+                    continue;
+                }
+
+                long idMensaje;
+                synchronized (sentencia) {
+                    sentencia.clearBindings();
+                    sentencia.bindLong(1, mensaje.getRemitenteId());
+                    sentencia.bindLong(2, mensaje.getDestinatarioId());
+                    if (mensaje.getViviendaId() > 0) {
+                        sentencia.bindLong(3, mensaje.getViviendaId());
+                    } else {
+                        sentencia.bindNull(3);
+                    }
+                    sentencia.bindString(4, mensaje.getContenido());
+                    sentencia.bindLong(5, fechaActual);
+                    idMensaje = sentencia.executeInsert();
+                }
+
+                Mensaje guardado = new Mensaje((int) idMensaje, mensaje.getRemitenteId(), mensaje.getDestinatarioId(),
+                        mensaje.getContenido(), fechaActual, false);
+                guardado.setViviendaId(mensaje.getViviendaId());
+                guardados.add(guardado);
+            }
             db.setTransactionSuccessful();
-            toret = true;
+            toret = guardados;
         } catch (SQLException exc) {
             Log.e("MensajesEntity.insertar", "Error SQL: " + exc.getMessage());
         } finally {
             db.endTransaction();
         }
 
+        if (toret != null) {
+            List<Integer> ids = new ArrayList<>();
+            for (Mensaje guardado : toret) {
+                if (guardado != null) {
+                    ids.add(guardado.getIdMensaje());
+                }
+            }
+            if (!ids.isEmpty() && !db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, ids);
+            }
+        }
         return toret;
     }
 
+    private static boolean esValido(Mensaje mensaje) {
+        return mensaje.getRemitenteId() > 0 && mensaje.getDestinatarioId() > 0
+                && mensaje.getContenido() != null && !mensaje.getContenido().isEmpty();
+    }
+
     /**
      * Obtiene todos los mensajes relacionados con un usuario.
      *
@@ -93,10 +258,125 @@ public class MensajesEntity {
                 COL_DESTINATARIO_ID + " = ? OR " + COL_REMITENTE_ID + " = ?",
                 new String[]{String.valueOf(usuarioId), String.valueOf(usuarioId)},
                 null, null,
-                COL_FECHA + " DESC" // Ordenar por fecha descendente
+                COL_FECHA + " DESC, " + COL_ID_MENSAJE + " DESC" // Ordenar por fecha descendente
         );
     }
 
+    /**
+     * Obtiene las conversaciones de un usuario con una única consulta: una por cada usuario con el
+     * que ha intercambiado mensajes y vivienda sobre la que han hablado, con el nombre y la foto del
+     * contacto, el título de la vivienda, el inicio del último mensaje y el número de mensajes
+     * recibidos sin leer. Las conversaciones se ordenan de la más reciente a la más antigua.
+     *
+     * @param usuarioId ID del usuario.
+     * @return Lista de conversaciones del usuario (vacía si no tiene ninguna o hay un error).
+     */
+    public List<Chat> obtenerConversaciones(int usuarioId) {
+        List<Chat> conversaciones = new ArrayList<>();
+
+        if (usuarioId <= 0) {
+            Log.e("MensajesEntity", "ID de usuario inválido.");
+            return conversaciones;
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = db.rawQuery(SQL_CONVERSACIONES, new String[]{String.valueOf(usuarioId)});
+            while (cursor.moveToNext()) {
+                conversaciones.add(new Chat(
+                        cursor.getInt(0),
+                        cursor.getString(1),
+                        cursor.getString(3),
+                        cursor.getLong(4),
+                        cursor.getString(2),
+                        cursor.getInt(5),
+                        cursor.getInt(6),
+                        cursor.getString(7)
+                ));
+            }
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.obtenerConversaciones", "Error SQL: " + exc.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return conversaciones;
+    }
+
+    /**
+     * Cuenta los mensajes recibidos por un usuario que aún no ha leído, sumando los contadores de
+     * sus conversaciones.
+     *
+     * @param usuarioId ID del usuario.
+     * @return Número de mensajes sin leer, o 0 si hay un error.
+     */
+    public int contarNoLeidos(int usuarioId) {
+        if (usuarioId <= 0) {
+            Log.e("MensajesEntity", "ID de usuario inválido.");
+            return 0;
+        }
+
+        try {
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_CONTAR_NO_LEIDOS);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, usuarioId);
+                return (int) sentencia.simpleQueryForLong();
+            }
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.contarNoLeidos", "Error SQL: " + exc.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Busca texto en los mensajes enviados y recibidos por un usuario, también en los archivados.
+     * Cada palabra del texto se busca como prefijo, sin distinguir mayúsculas ni tildes, y todas
+     * deben aparecer en el mensaje.
+     *
+     * @param usuarioId ID del usuario.
+     * @param texto Texto introducido por el usuario.
+     * @param limite Número máximo de resultados.
+     * @return Mensajes encontrados, del más reciente al más antiguo. Vacía si el texto no contiene
+     *         palabras o hay un error.
+     */
+    public List<MensajeEncontrado> buscar(int usuarioId, String texto, int limite) {
+        List<MensajeEncontrado> encontrados = new ArrayList<>();
+
+        String consulta = ViviendaEntity.construirConsultaFts("contenido", texto);
+        if (usuarioId <= 0 || limite <= 0 || consulta == null) {
+            return encontrados;
+        }
+        // Solo los mensajes en los que participa el usuario
+        consulta += " participantes:u" + usuarioId;
+
+        Cursor cursor = null;
+        try {
+            cursor = ArgumentosTipados.consultar(db, SQL_BUSCAR, new Object[]{consulta, usuarioId, limite});
+            while (cursor.moveToNext()) {
+                encontrados.add(new MensajeEncontrado(
+                        cursor.getInt(0),
+                        cursor.getInt(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        cursor.getInt(4),
+                        cursor.getLong(5),
+                        cursor.getString(6)
+                ));
+            }
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.buscar", "Error SQL: " + exc.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return encontrados;
+    }
+
     /**
      * Obtiene el último mensaje entre un remitente y un destinatario.
      *
@@ -116,7 +396,7 @@ public class MensajesEntity {
                 COL_REMITENTE_ID + " = ? AND " + COL_DESTINATARIO_ID + " = ?",
                 new String[]{String.valueOf(remitenteId), String.valueOf(destinatarioId)},
                 null, null,
-                COL_FECHA + " DESC",
+                COL_FECHA + " DESC, " + COL_ID_MENSAJE + " DESC",
                 "1" // Limitar a un único resultado
         );
     }
@@ -138,10 +418,153 @@ public class MensajesEntity {
                         String.valueOf(destinatarioId), String.valueOf(remitenteId)
                 },
                 null, null,
-                "fecha ASC"
+                "fecha ASC, id_mensaje ASC" // Los mensajes del mismo milisegundo, en orden de inserción
         );
     }
 
+    /**
+     * Obtiene los mensajes de un hilo posteriores a uno dado, para cargar solo los que aún no se
+     * muestran. Con ultimoId = 0 devuelve el hilo completo.
+     *
+     * @param usuarioId ID del usuario actual.
+     * @param contactoId ID del otro usuario de la conversación.
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @param ultimoId ID del último mensaje ya cargado.
+     * @return Lista de mensajes con ID mayor que ultimoId, del más antiguo al más reciente.
+     */
+    public List<Mensaje> obtenerMensajesPosteriores(int usuarioId, int contactoId, int viviendaId, int ultimoId) {
+        List<Mensaje> mensajes = new ArrayList<>();
+        Cursor cursor = null;
+
+        try {
+            cursor = ArgumentosTipados.consultar(db, SQL_MENSAJES_POSTERIORES,
+                    new Object[]{usuarioId, contactoId, viviendaDelHilo(viviendaId), ultimoId});
+            leerMensajes(cursor, mensajes);
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.obtenerMensajesPosteriores", "Error SQL: " + exc.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return mensajes;
+    }
+
+    /**
+     * Obtiene la página más reciente de un hilo.
+     *
+     * @param usuarioId ID del usuario actual.
+     * @param contactoId ID del otro usuario de la conversación.
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @param tamPagina Número máximo de mensajes.
+     * @return Últimos mensajes del hilo, del más antiguo al más reciente.
+     */
+    public List<Mensaje> obtenerUltimaPagina(int usuarioId, int contactoId, int viviendaId, int tamPagina) {
+        return obtenerPaginaAnterior(usuarioId, contactoId, viviendaId, Long.MAX_VALUE, Integer.MAX_VALUE, tamPagina);
+    }
+
+    /**
+     * Obtiene la página de un hilo inmediatamente anterior a un mensaje, para cargar los
+     * mensajes más antiguos al desplazarse hacia arriba. Si en TABLA_MENSAJES no quedan
+     * suficientes, la página se completa con los mensajes archivados.
+     *
+     * @param usuarioId ID del usuario actual.
+     * @param contactoId ID del otro usuario de la conversación.
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @param fecha Fecha del mensaje más antiguo ya cargado.
+     * @param idMensaje ID del mensaje más antiguo ya cargado.
+     * @param tamPagina Número máximo de mensajes.
+     * @return Mensajes anteriores a (fecha, idMensaje), del más antiguo al más reciente.
+     */
+    public List<Mensaje> obtenerPaginaAnterior(int usuarioId, int contactoId, int viviendaId, long fecha, int idMensaje, int tamPagina) {
+        List<Mensaje> mensajes = obtenerPagina(SQL_PAGINA_ANTERIOR, usuarioId, contactoId, viviendaId, fecha, idMensaje, tamPagina);
+
+        // Los archivados son los más antiguos del hilo: se sigue por el archivo desde el más antiguo obtenido
+        if (mensajes.size() < tamPagina) {
+            Mensaje ultimo = mensajes.isEmpty() ? null : mensajes.get(mensajes.size() - 1);
+            mensajes.addAll(obtenerPagina(SQL_ARCHIVO_PAGINA_ANTERIOR, usuarioId, contactoId, viviendaId,
+                    ultimo != null ? ultimo.getFecha() : fecha,
+                    ultimo != null ? ultimo.getIdMensaje() : idMensaje,
+                    tamPagina - mensajes.size()));
+        }
+
+        // Las consultas los devuelven alejándose de la clave, del más reciente al más antiguo
+        Collections.reverse(mensajes);
+        return mensajes;
+    }
+
+    /**
+     * Obtiene la página de un hilo inmediatamente posterior a un mensaje, para volver a
+     * cargar los mensajes más recientes al desplazarse hacia abajo. Si el mensaje está archivado,
+     * la página empieza por los archivados y sigue con los de TABLA_MENSAJES.
+     *
+     * @param usuarioId ID del usuario actual.
+     * @param contactoId ID del otro usuario de la conversación.
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @param fecha Fecha del mensaje más reciente ya cargado.
+     * @param idMensaje ID del mensaje más reciente ya cargado.
+     * @param tamPagina Número máximo de mensajes.
+     * @return Mensajes posteriores a (fecha, idMensaje), del más antiguo al más reciente.
+     */
+    public List<Mensaje> obtenerPaginaSiguiente(int usuarioId, int contactoId, int viviendaId, long fecha, int idMensaje, int tamPagina) {
+        List<Mensaje> mensajes = obtenerPagina(SQL_ARCHIVO_PAGINA_SIGUIENTE, usuarioId, contactoId, viviendaId, fecha, idMensaje, tamPagina);
+
+        if (mensajes.size() < tamPagina) {
+            Mensaje ultimo = mensajes.isEmpty() ? null : mensajes.get(mensajes.size() - 1);
+            mensajes.addAll(obtenerPagina(SQL_PAGINA_SIGUIENTE, usuarioId, contactoId, viviendaId,
+                    ultimo != null ? ultimo.getFecha() : fecha,
+                    ultimo != null ? ultimo.getIdMensaje() : idMensaje,
+                    tamPagina - mensajes.size()));
+        }
+
+        return mensajes;
+    }
+
+    private List<Mensaje> obtenerPagina(String sql, int usuarioId, int contactoId, int viviendaId, long fecha, int idMensaje, int tamPagina) {
+        List<Mensaje> mensajes = new ArrayList<>();
+
+        if (usuarioId <= 0 || contactoId <= 0 || tamPagina <= 0) {
+            Log.e("MensajesEntity", "Parámetros inválidos para obtener una página de mensajes.");
+            return mensajes;
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = ArgumentosTipados.consultar(db, sql,
+                    new Object[]{usuarioId, contactoId, fecha, idMensaje, tamPagina, viviendaDelHilo(viviendaId)});
+            leerMensajes(cursor, mensajes);
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.obtenerPagina", "Error SQL: " + exc.getMessage());
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return mensajes;
+    }
+
+    /**
+     * Lee los mensajes de un cursor con las columnas id_mensaje, remitente_id, destinatario_id,
+     * contenido, fecha y leido, en ese orden.
+     *
+     * @param cursor Cursor con los mensajes.
+     * @param mensajes Lista a la que se añaden.
+     */
+    private static void leerMensajes(Cursor cursor, List<Mensaje> mensajes) {
+        while (cursor.moveToNext()) {
+            mensajes.add(new Mensaje(
+                    cursor.getInt(0),
+                    cursor.getInt(1),
+                    cursor.getInt(2),
+                    cursor.getString(3),
+                    cursor.getLong(4),
+                    cursor.getInt(5) == 1
+            ));
+        }
+    }
+
     /**
      * Marca un mensaje como leído.
      *
@@ -155,17 +578,16 @@ public class MensajesEntity {
         }
 
         boolean toret = false;
-        ContentValues values = new ContentValues();
-        values.put(COL_LEIDO, 1);
 
         try {
             db.beginTransaction();
-            int filasActualizadas = db.update(
-                    NOMBRE_TABLA,
-                    values,
-                    COL_ID_MENSAJE + " = ?",
-                    new String[]{String.valueOf(mensajeId)}
-            );
+            int filasActualizadas;
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_MARCAR_LEIDO);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, mensajeId);
+                filasActualizadas = sentencia.executeUpdateDelete();
+            }
 
             if (filasActualizadas > 0) {
                 db.setTransactionSuccessful();
@@ -179,6 +601,78 @@ public class MensajesEntity {
             db.endTransaction();
         }
 
+        if (toret && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.MODIFICAR, mensajeId);
+        }
+        return toret;
+    }
+
+    /**
+     * Marca como leídos, con una sola sentencia, los mensajes que un usuario ha recibido de otro
+     * hasta uno dado, sean de la vivienda que sean. Los mensajes que llegaron después de ese siguen
+     * sin leer aunque ya estén guardados, porque el usuario aún no los ha visto.
+     *
+     * @param usuarioId ID del usuario que lee la conversación (destinatario de los mensajes).
+     * @param otroId ID del otro usuario de la conversación (remitente de los mensajes).
+     * @param hastaId ID del último mensaje mostrado.
+     * @return Número de mensajes que pasaron a leídos, o 0 si hay un error.
+     */
+    public int marcarConversacionLeida(int usuarioId, int otroId, int hastaId) {
+        return marcarLeidos(false, usuarioId, otroId, 0, hastaId);
+    }
+
+    /**
+     * Marca como leídos, con una sola sentencia, los mensajes de un hilo que un usuario ha recibido
+     * hasta uno dado.
+     *
+     * @param usuarioId ID del usuario que lee la conversación (destinatario de los mensajes).
+     * @param otroId ID del otro usuario de la conversación (remitente de los mensajes).
+     * @param viviendaId ID de la vivienda del hilo, o 0 para los mensajes sin vivienda.
+     * @param hastaId ID del último mensaje mostrado.
+     * @return Número de mensajes que pasaron a leídos, o 0 si hay un error.
+     */
+    public int marcarConversacionLeida(int usuarioId, int otroId, int viviendaId, int hastaId) {
+        return marcarLeidos(true, usuarioId, otroId, viviendaId, hastaId);
+    }
+
+    private int marcarLeidos(boolean soloHilo, int usuarioId, int otroId, int viviendaId, int hastaId) {
+        if (usuarioId <= 0 || otroId <= 0 || hastaId <= 0) {
+            Log.e("MensajesEntity", "Parámetros inválidos para marcar la conversación como leída.");
+            return 0;
+        }
+
+        int toret = 0;
+
+        try {
+            db.beginTransaction();
+            int filasActualizadas;
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, soloHilo ? SQL_MARCAR_HILO_LEIDO : SQL_MARCAR_CONVERSACION_LEIDA);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, otroId);
+                sentencia.bindLong(2, usuarioId);
+                sentencia.bindLong(3, hastaId);
+                if (soloHilo) {
+                    if (viviendaId > 0) {
+                        sentencia.bindLong(4, viviendaId);
+                    } else {
+                        sentencia.bindNull(4);
+                    }
+                }
+                filasActualizadas = sentencia.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+            toret = filasActualizadas;
+        } catch (SQLException exc) {
+            Log.e("MensajesEntity.marcarConversacionLeida", "Error SQL: " + exc.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+
+        // Los mensajes marcados no se enumeran: se publica un cambio sin IDs
+        if (toret > 0 && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.MODIFICAR, Collections.<Integer>emptySet());
+        }
         return toret;
     }
 
@@ -197,11 +691,13 @@ public class MensajesEntity {
         boolean toret = false;
         try {
             db.beginTransaction();
-            int filasEliminadas = db.delete(
-                    NOMBRE_TABLA,
-                    COL_ID_MENSAJE + " = ?",
-                    new String[]{String.valueOf(mensajeId)}
-            );
+            int filasEliminadas;
+            SQLiteStatement sentencia = CacheSentencias.obtener(db, SQL_ELIMINAR);
+            synchronized (sentencia) {
+                sentencia.clearBindings();
+                sentencia.bindLong(1, mensajeId);
+                filasEliminadas = sentencia.executeUpdateDelete();
+            }
 
             if (filasEliminadas > 0) {
                 db.setTransactionSuccessful();
@@ -215,6 +711,9 @@ public class MensajesEntity {
             db.endTransaction();
         }
 
+        if (toret && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, mensajeId);
+        }
         return toret;
     }
 }
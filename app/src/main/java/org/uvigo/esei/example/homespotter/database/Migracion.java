@@ -0,0 +1,51 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Clase Migracion
+ *
+ * Representa un paso de migración del esquema de la base de datos.
+ * Cada migración lleva la base de datos desde la versión anterior hasta {@link #getVersion()}
+ * sin eliminar los datos existentes.
+ */
+public abstract class Migracion {
+    private final int version;
+    private final String descripcion;
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param version Versión del esquema que se alcanza tras aplicar la migración.
+     * @param descripcion Descripción breve de los cambios, usada en el log.
+     */
+    protected Migracion(int version, String descripcion) {
+        this.version = version;
+        this.descripcion = descripcion;
+    }
+
+    /**
+     * Obtiene la versión del esquema que se alcanza tras aplicar la migración.
+     *
+     * @return Versión de destino.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Obtiene la descripción de la migración.
+     *
+     * @return Descripción de los cambios.
+     */
+    public String getDescripcion() {
+        return descripcion;
+    }
+
+    /**
+     * Aplica los cambios de esquema. Se ejecuta dentro de su propia transacción.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    public abstract void aplicar(SQLiteDatabase db);
+}
@@ -0,0 +1,476 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Clase Migraciones
+ *
+ * Registro ordenado de las migraciones del esquema de HomeSpotter.
+ * Para cambiar el esquema se añade una nueva {@link Migracion} al final de la lista con la
+ * siguiente versión; {@link DBManager} toma como versión actual la de la última migración.
+ *
+ * Versiones:
+ * - 1: Esquema inicial creado en {@link DBManager#onCreate(SQLiteDatabase)}.
+ * - 2: Índices para las consultas más frecuentes.
+ * - 3: Índice de texto completo TABLA_VIVIENDA_FTS sobre título, descripción y dirección.
+ * - 4: Índice de mensajes por destinatario y estado de lectura, para la lista de conversaciones.
+ * - 5: Tabla resumen TABLA_CONVERSACIONES, mantenida por triggers sobre TABLA_MENSAJES.
+ * - 6: Fechas de los mensajes como milisegundos desde epoch (INTEGER) en lugar de texto.
+ * - 7: Hilos de conversación por vivienda: índice de mensajes por pareja y vivienda, y
+ *      TABLA_CONVERSACIONES con una fila por usuario, contacto y vivienda.
+ * - 8: Tabla de archivo TABLA_MENSAJES_ARCHIVO para los mensajes antiguos (ver {@link ArchivoMensajes}).
+ * - 9: Índice de texto completo TABLA_MENSAJES_FTS sobre el contenido de los mensajes.
+ * - 10: Registro de cambios TABLA_CAMBIOS, mantenido por triggers sobre las cinco tablas de datos
+ *      (ver {@link RegistroCambios}).
+ * - 11: Índices de viviendas por tipo y estado, sin distinguir mayúsculas, para los filtros por prefijo
+ *      de {@link ViviendaQuery}.
+ */
+public final class Migraciones {
+    public static final int VERSION_INICIAL = 1;
+
+    // Caracteres del último mensaje que se guardan en TABLA_CONVERSACIONES
+    static final int LONGITUD_VISTA_PREVIA = 100;
+
+    private static final List<Migracion> MIGRACIONES = Collections.unmodifiableList(Arrays.asList(
+            new Migracion(2, "Índices para mensajes, viviendas, fotos y usuarios") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_mensajes_remitente_destinatario_fecha " +
+                            "ON TABLA_MENSAJES (remitente_id, destinatario_id, fecha);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_vivienda_propietario " +
+                            "ON TABLA_VIVIENDA (propietario_id);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_vivienda_precio " +
+                            "ON TABLA_VIVIENDA (precio);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_fotos_vivienda " +
+                            "ON TABLA_FOTOS (vivienda_id);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_usuario_nombre_usuario " +
+                            "ON TABLA_USUARIO (nombre_usuario);");
+                }
+            },
+            new Migracion(3, "Índice de texto completo para viviendas") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // Tabla FTS4 de contenido externo: solo guarda el índice, el texto se lee de TABLA_VIVIENDA.
+                    // unicode61 con remove_diacritics hace que "Coruna" encuentre "Coruña".
+                    db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS TABLA_VIVIENDA_FTS USING fts4(" +
+                            "content=\"TABLA_VIVIENDA\", titulo, descripcion, direccion, " +
+                            "tokenize=unicode61 \"remove_diacritics=1\");");
+
+                    // Los triggers mantienen el índice sincronizado con TABLA_VIVIENDA
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_vivienda_fts_bu BEFORE UPDATE OF titulo, descripcion, direccion " +
+                            "ON TABLA_VIVIENDA BEGIN " +
+                            "DELETE FROM TABLA_VIVIENDA_FTS WHERE docid = old.id_vivienda; END;");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_vivienda_fts_bd BEFORE DELETE ON TABLA_VIVIENDA BEGIN " +
+                            "DELETE FROM TABLA_VIVIENDA_FTS WHERE docid = old.id_vivienda; END;");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_vivienda_fts_au AFTER UPDATE OF titulo, descripcion, direccion " +
+                            "ON TABLA_VIVIENDA BEGIN " +
+                            "INSERT INTO TABLA_VIVIENDA_FTS (docid, titulo, descripcion, direccion) " +
+                            "VALUES (new.id_vivienda, new.titulo, new.descripcion, new.direccion); END;");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_vivienda_fts_ai AFTER INSERT ON TABLA_VIVIENDA BEGIN " +
+                            "INSERT INTO TABLA_VIVIENDA_FTS (docid, titulo, descripcion, direccion) " +
+                            "VALUES (new.id_vivienda, new.titulo, new.descripcion, new.direccion); END;");
+
+                    // Indexar las viviendas existentes
+                    db.execSQL("INSERT INTO TABLA_VIVIENDA_FTS (TABLA_VIVIENDA_FTS) VALUES ('rebuild');");
+                }
+            },
+            new Migracion(4, "Índice de mensajes por destinatario y leído") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // Junto con idx_mensajes_remitente_destinatario_fecha, permite resolver
+                    // "remitente_id = ? OR destinatario_id = ?" con dos búsquedas por índice,
+                    // y contar los no leídos de un usuario sin leer la tabla
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_mensajes_destinatario_leido " +
+                            "ON TABLA_MENSAJES (destinatario_id, leido);");
+                }
+            },
+            new Migracion(5, "Tabla resumen de conversaciones") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    crearTablaConversaciones(db);
+                    crearTriggersConversaciones(db);
+                    rellenarTablaConversaciones(db);
+                }
+            },
+            new Migracion(6, "Fechas de mensajes en milisegundos") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // SQLite no permite cambiar el tipo de una columna: se crea la tabla nueva,
+                    // se copian los mensajes y se sustituye la anterior
+                    db.execSQL("CREATE TABLE TABLA_MENSAJES_NUEVA (" +
+                            "id_mensaje INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "remitente_id INTEGER NOT NULL, " +
+                            "destinatario_id INTEGER NOT NULL, " +
+                            "vivienda_id INTEGER, " +
+                            "contenido TEXT NOT NULL, " +
+                            "fecha INTEGER NOT NULL, " +
+                            "leido INTEGER NOT NULL DEFAULT 0, " +
+                            "FOREIGN KEY (remitente_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (destinatario_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (vivienda_id) REFERENCES TABLA_VIVIENDA (id_vivienda) ON DELETE SET NULL);");
+
+                    // Las fechas se guardaban en hora local ("yyyy-MM-dd HH:mm:ss"): 'utc' las pasa a UTC
+                    db.execSQL("INSERT INTO TABLA_MENSAJES_NUEVA " +
+                            "(id_mensaje, remitente_id, destinatario_id, vivienda_id, contenido, fecha, leido) " +
+                            "SELECT id_mensaje, remitente_id, destinatario_id, vivienda_id, contenido, " +
+                            "COALESCE(CAST(strftime('%s', fecha, 'utc') AS INTEGER) * 1000, 0), leido " +
+                            "FROM TABLA_MENSAJES;");
+
+                    // Conservar el contador de AUTOINCREMENT para no reutilizar IDs de mensajes borrados
+                    db.execSQL("UPDATE sqlite_sequence SET seq = " +
+                            "(SELECT seq FROM sqlite_sequence WHERE name = 'TABLA_MENSAJES') " +
+                            "WHERE name = 'TABLA_MENSAJES_NUEVA' " +
+                            "AND EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = 'TABLA_MENSAJES');");
+
+                    // Al borrar la tabla se borran también sus índices y los triggers de TABLA_CONVERSACIONES
+                    db.execSQL("DROP TABLE TABLA_MENSAJES;");
+                    db.execSQL("ALTER TABLE TABLA_MENSAJES_NUEVA RENAME TO TABLA_MENSAJES;");
+
+                    // Índice por pareja y fecha: ordena cada conversación comparando enteros
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_mensajes_remitente_destinatario_fecha " +
+                            "ON TABLA_MENSAJES (remitente_id, destinatario_id, fecha);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_mensajes_destinatario_leido " +
+                            "ON TABLA_MENSAJES (destinatario_id, leido);");
+
+                    // La fecha de TABLA_CONVERSACIONES pasa también a INTEGER
+                    db.execSQL("DROP TABLE IF EXISTS TABLA_CONVERSACIONES;");
+                    crearTablaConversaciones(db);
+                    crearTriggersConversaciones(db);
+                    rellenarTablaConversaciones(db);
+                }
+            },
+            new Migracion(7, "Hilos de conversación por vivienda") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // Índice de cada hilo (pareja y vivienda) ordenado por fecha
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_mensajes_hilo " +
+                            "ON TABLA_MENSAJES (remitente_id, destinatario_id, vivienda_id, fecha);");
+
+                    // TABLA_CONVERSACIONES pasa a tener una fila por vivienda: se rehace con sus triggers
+                    db.execSQL("DROP TRIGGER IF EXISTS trg_conversaciones_ai;");
+                    db.execSQL("DROP TRIGGER IF EXISTS trg_conversaciones_au;");
+                    db.execSQL("DROP TRIGGER IF EXISTS trg_conversaciones_ad;");
+                    db.execSQL("DROP TABLE IF EXISTS TABLA_CONVERSACIONES;");
+                    crearTablaConversaciones(db);
+                    crearTriggersConversaciones(db);
+                    rellenarTablaConversaciones(db);
+                }
+            },
+            new Migracion(8, "Archivo de mensajes antiguos") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // Mismas columnas que TABLA_MENSAJES; el ID es el que tenía el mensaje, sin AUTOINCREMENT.
+                    // Sin triggers: los mensajes archivados no cambian TABLA_CONVERSACIONES.
+                    db.execSQL("CREATE TABLE IF NOT EXISTS TABLA_MENSAJES_ARCHIVO (" +
+                            "id_mensaje INTEGER PRIMARY KEY, " +
+                            "remitente_id INTEGER NOT NULL, " +
+                            "destinatario_id INTEGER NOT NULL, " +
+                            "vivienda_id INTEGER, " +
+                            "contenido TEXT NOT NULL, " +
+                            "fecha INTEGER NOT NULL, " +
+                            "leido INTEGER NOT NULL DEFAULT 1, " +
+                            "FOREIGN KEY (remitente_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (destinatario_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE, " +
+                            "FOREIGN KEY (vivienda_id) REFERENCES TABLA_VIVIENDA (id_vivienda) ON DELETE SET NULL);");
+
+                    // Mismo índice por hilo que TABLA_MENSAJES, para paginar el archivo por (fecha, id_mensaje)
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_archivo_hilo " +
+                            "ON TABLA_MENSAJES_ARCHIVO (remitente_id, destinatario_id, vivienda_id, fecha);");
+                }
+            },
+            new Migracion(9, "Índice de texto completo para mensajes") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // A diferencia de TABLA_VIVIENDA_FTS guarda su propia copia del texto: un mensaje puede
+                    // estar en TABLA_MENSAJES o en el archivo, y el contenido externo solo admite una tabla.
+                    // participantes ("u<remitente> u<destinatario>") limita la búsqueda a un usuario
+                    // dentro del propio índice.
+                    db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS TABLA_MENSAJES_FTS USING fts4(" +
+                            "contenido, participantes, tokenize=unicode61 \"remove_diacritics=1\");");
+
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mensajes_fts_ai AFTER INSERT ON TABLA_MENSAJES BEGIN " +
+                            "INSERT INTO TABLA_MENSAJES_FTS (docid, contenido, participantes) " +
+                            "VALUES (new.id_mensaje, new.contenido, 'u' || new.remitente_id || ' u' || new.destinatario_id); END;");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mensajes_fts_au AFTER UPDATE OF contenido ON TABLA_MENSAJES BEGIN " +
+                            "UPDATE TABLA_MENSAJES_FTS SET contenido = new.contenido WHERE docid = new.id_mensaje; END;");
+                    // Al archivar, el mensaje se copia al archivo antes de borrarlo: sigue en el índice
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_mensajes_fts_ad AFTER DELETE ON TABLA_MENSAJES " +
+                            "WHEN NOT EXISTS (SELECT 1 FROM TABLA_MENSAJES_ARCHIVO WHERE id_mensaje = old.id_mensaje) BEGIN " +
+                            "DELETE FROM TABLA_MENSAJES_FTS WHERE docid = old.id_mensaje; END;");
+                    db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_archivo_fts_ad AFTER DELETE ON TABLA_MENSAJES_ARCHIVO BEGIN " +
+                            "DELETE FROM TABLA_MENSAJES_FTS WHERE docid = old.id_mensaje; END;");
+
+                    // Indexar los mensajes existentes, también los archivados
+                    db.execSQL("INSERT INTO TABLA_MENSAJES_FTS (docid, contenido, participantes) " +
+                            "SELECT id_mensaje, contenido, 'u' || remitente_id || ' u' || destinatario_id FROM TABLA_MENSAJES " +
+                            "UNION ALL " +
+                            "SELECT id_mensaje, contenido, 'u' || remitente_id || ' u' || destinatario_id FROM TABLA_MENSAJES_ARCHIVO;");
+                }
+            },
+            new Migracion(10, "Registro de cambios") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // AUTOINCREMENT: la secuencia nunca se reutiliza, aunque la compactación borre las últimas entradas
+                    db.execSQL("CREATE TABLE IF NOT EXISTS TABLA_CAMBIOS (" +
+                            "secuencia INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "tabla TEXT NOT NULL, " +
+                            "id_fila INTEGER NOT NULL, " +
+                            "id_vivienda INTEGER, " +
+                            "operacion TEXT NOT NULL, " +
+                            "fecha INTEGER NOT NULL);");
+
+                    // La compactación agrupa por fila; la secuencia (rowid) va incluida en el índice
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_cambios_fila " +
+                            "ON TABLA_CAMBIOS (tabla, id_fila, id_vivienda);");
+
+                    // Última secuencia borrada por antigüedad: quien lea desde antes ha perdido cambios
+                    db.execSQL("CREATE TABLE IF NOT EXISTS TABLA_CAMBIOS_ESTADO (" +
+                            "id INTEGER PRIMARY KEY CHECK (id = 1), " +
+                            "purgado_hasta INTEGER NOT NULL);");
+                    db.execSQL("INSERT OR IGNORE INTO TABLA_CAMBIOS_ESTADO (id, purgado_hasta) VALUES (1, 0);");
+
+                    // Las filas que ya existían no se registran: el registro empieza vacío
+                    crearTriggersCambios(db);
+                }
+            },
+            new Migracion(11, "Índices de viviendas por tipo y estado") {
+                @Override
+                public void aplicar(SQLiteDatabase db) {
+                    // Con NOCASE, "tipo_vivienda LIKE 'pis%'" se resuelve como un rango del índice
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_vivienda_tipo " +
+                            "ON TABLA_VIVIENDA (tipo_vivienda COLLATE NOCASE);");
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_vivienda_estado " +
+                            "ON TABLA_VIVIENDA (estado COLLATE NOCASE);");
+                }
+            }
+    ));
+
+    private Migraciones() {
+    }
+
+    /**
+     * Obtiene la versión del esquema tras aplicar todas las migraciones.
+     *
+     * @return Última versión registrada.
+     */
+    public static int getUltimaVersion() {
+        return MIGRACIONES.isEmpty() ? VERSION_INICIAL : MIGRACIONES.get(MIGRACIONES.size() - 1).getVersion();
+    }
+
+    /**
+     * Obtiene la lista ordenada de migraciones.
+     *
+     * @return Lista inmutable de migraciones.
+     */
+    public static List<Migracion> getMigraciones() {
+        return MIGRACIONES;
+    }
+
+    /**
+     * Crea TABLA_CONVERSACIONES: una fila por usuario, contacto y vivienda (hilo) con el último
+     * mensaje del hilo y el número de mensajes que el usuario ha recibido en él sin leer. Los mensajes
+     * sin vivienda forman el hilo con vivienda_id = 0. La bandeja de entrada y el contador de no leídos
+     * leen esta tabla, cuyo tamaño depende del número de hilos y no del de mensajes. La fecha, como la
+     * de TABLA_MENSAJES, son milisegundos desde epoch.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    static void crearTablaConversaciones(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS TABLA_CONVERSACIONES (" +
+                "usuario_id INTEGER NOT NULL, " +
+                "contacto_id INTEGER NOT NULL, " +
+                "vivienda_id INTEGER NOT NULL DEFAULT 0, " +
+                "ultimo_mensaje_id INTEGER NOT NULL, " +
+                "ultima_fecha INTEGER NOT NULL, " +
+                "vista_previa TEXT NOT NULL, " +
+                "no_leidos INTEGER NOT NULL DEFAULT 0, " +
+                "PRIMARY KEY (usuario_id, contacto_id, vivienda_id), " +
+                "FOREIGN KEY (usuario_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE, " +
+                "FOREIGN KEY (contacto_id) REFERENCES TABLA_USUARIO (id_usuario) ON DELETE CASCADE) WITHOUT ROWID;");
+    }
+
+    /**
+     * Crea los triggers que mantienen TABLA_CONVERSACIONES al insertar y borrar mensajes, al
+     * cambiar su estado de lectura y al cambiar su vivienda (al borrar una vivienda, sus mensajes
+     * pasan al hilo sin vivienda). Cada mensaje actualiza dos filas: la del remitente y la del
+     * destinatario, que es la única en la que cuenta como no leído.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    static void crearTriggersConversaciones(SQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_conversaciones_ai AFTER INSERT ON TABLA_MENSAJES BEGIN " +
+                sumarMensaje() + " END;");
+
+        // Si cambia también la vivienda, el mensaje lo mueve de hilo trg_conversaciones_au_vivienda
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_conversaciones_au AFTER UPDATE OF leido ON TABLA_MENSAJES " +
+                "WHEN (old.leido = 0) <> (new.leido = 0) AND old.vivienda_id IS new.vivienda_id BEGIN " +
+                "UPDATE TABLA_CONVERSACIONES SET no_leidos = no_leidos + (CASE WHEN new.leido = 0 THEN 1 ELSE -1 END) " +
+                "WHERE usuario_id = new.destinatario_id AND contacto_id = new.remitente_id " +
+                "AND vivienda_id = COALESCE(new.vivienda_id, 0); END;");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_conversaciones_au_vivienda AFTER UPDATE OF vivienda_id ON TABLA_MENSAJES " +
+                "WHEN old.vivienda_id IS NOT new.vivienda_id BEGIN " +
+                restarMensaje() + " " + sumarMensaje() + " END;");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_conversaciones_ad AFTER DELETE ON TABLA_MENSAJES BEGIN " +
+                restarMensaje() + " END;");
+    }
+
+    /**
+     * Sentencias que suman el mensaje "new" a su hilo en las filas del remitente y del destinatario.
+     * Solo pasa a ser el último mensaje del hilo si es el más reciente (el de mayor ID).
+     *
+     * @return Sentencias SQL para el cuerpo de un trigger.
+     */
+    private static String sumarMensaje() {
+        String fila = "INSERT INTO TABLA_CONVERSACIONES " +
+                "(usuario_id, contacto_id, vivienda_id, ultimo_mensaje_id, ultima_fecha, vista_previa, no_leidos) VALUES (";
+        String mensaje = ", COALESCE(new.vivienda_id, 0), new.id_mensaje, new.fecha, substr(new.contenido, 1, " + LONGITUD_VISTA_PREVIA + "), ";
+        String esMasReciente = "excluded.ultimo_mensaje_id > ultimo_mensaje_id";
+        String actualizar = ") ON CONFLICT (usuario_id, contacto_id, vivienda_id) DO UPDATE SET " +
+                "ultima_fecha = CASE WHEN " + esMasReciente + " THEN excluded.ultima_fecha ELSE ultima_fecha END, " +
+                "vista_previa = CASE WHEN " + esMasReciente + " THEN excluded.vista_previa ELSE vista_previa END, " +
+                "ultimo_mensaje_id = MAX(ultimo_mensaje_id, excluded.ultimo_mensaje_id), " +
+                "no_leidos = no_leidos + excluded.no_leidos;";
+
+        return fila + "new.remitente_id, new.destinatario_id" + mensaje + "0" + actualizar + " " +
+                fila + "new.destinatario_id, new.remitente_id" + mensaje + "new.leido = 0" + actualizar;
+    }
+
+    /**
+     * Sentencias que quitan el mensaje "old" de su hilo. Si era el último mensaje del hilo se toma el
+     * anterior, o se borra el hilo si ya no quedan mensajes.
+     *
+     * @return Sentencias SQL para el cuerpo de un trigger.
+     */
+    private static String restarMensaje() {
+        String conversacion = "((usuario_id = old.remitente_id AND contacto_id = old.destinatario_id) " +
+                "OR (usuario_id = old.destinatario_id AND contacto_id = old.remitente_id)) " +
+                "AND vivienda_id = COALESCE(old.vivienda_id, 0)";
+        String mensajesConversacion = "FROM TABLA_MENSAJES m WHERE " +
+                "((m.remitente_id = old.remitente_id AND m.destinatario_id = old.destinatario_id) " +
+                "OR (m.remitente_id = old.destinatario_id AND m.destinatario_id = old.remitente_id)) " +
+                "AND m.vivienda_id IS old.vivienda_id";
+
+        return "UPDATE TABLA_CONVERSACIONES SET no_leidos = no_leidos - 1 " +
+                "WHERE old.leido = 0 AND usuario_id = old.destinatario_id AND contacto_id = old.remitente_id " +
+                "AND vivienda_id = COALESCE(old.vivienda_id, 0); " +
+                "DELETE FROM TABLA_CONVERSACIONES WHERE " + conversacion + " AND ultimo_mensaje_id = old.id_mensaje " +
+                "AND NOT EXISTS (SELECT 1 " + mensajesConversacion + "); " +
+                "UPDATE TABLA_CONVERSACIONES SET (ultimo_mensaje_id, ultima_fecha, vista_previa) = " +
+                "(SELECT m.id_mensaje, m.fecha, substr(m.contenido, 1, " + LONGITUD_VISTA_PREVIA + ") " + mensajesConversacion +
+                " ORDER BY m.id_mensaje DESC LIMIT 1) " +
+                "WHERE " + conversacion + " AND ultimo_mensaje_id = old.id_mensaje;";
+    }
+
+    /**
+     * Crea los triggers que anotan en TABLA_CAMBIOS cada fila insertada, modificada o borrada en
+     * TABLA_USUARIO, TABLA_VIVIENDA, TABLA_FOTOS, TABLA_FAVORITOS y TABLA_MENSAJES, también las que
+     * borran en cascada las claves foráneas. id_fila es la clave de la fila (en TABLA_FAVORITOS, el
+     * usuario) e id_vivienda la vivienda a la que pertenece, si la tiene. Una migración que vuelva a
+     * crear alguna de esas tablas debe llamar de nuevo a este método.
+     *
+     * Al archivar un mensaje no se anota su borrado, porque el mensaje sigue existiendo en
+     * TABLA_MENSAJES_ARCHIVO; sí se anota cuando se borra del archivo.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    static void crearTriggersCambios(SQLiteDatabase db) {
+        crearTriggersCambios(db, "usuario", "TABLA_USUARIO", "id_usuario", "NULL");
+        crearTriggersCambios(db, "vivienda", "TABLA_VIVIENDA", "id_vivienda", "id_vivienda");
+        crearTriggersCambios(db, "fotos", "TABLA_FOTOS", "id_foto", "vivienda_id");
+        crearTriggersCambios(db, "favoritos", "TABLA_FAVORITOS", "usuario_id", "vivienda_id");
+        crearTriggersCambios(db, "mensajes", "TABLA_MENSAJES", "id_mensaje", "vivienda_id");
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_cambios_archivo_ad AFTER DELETE ON TABLA_MENSAJES_ARCHIVO BEGIN " +
+                anotarCambio("TABLA_MENSAJES", "old.id_mensaje", "old.vivienda_id", BusCambios.Operacion.ELIMINAR) + " END;");
+    }
+
+    /**
+     * Crea los triggers de inserción, modificación y borrado de una tabla sobre TABLA_CAMBIOS.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     * @param sufijo Parte del nombre de los triggers que identifica la tabla.
+     * @param tabla Tabla vigilada.
+     * @param columnaFila Columna que se anota como id_fila.
+     * @param columnaVivienda Columna que se anota como id_vivienda, o "NULL" si la tabla no tiene.
+     */
+    private static void crearTriggersCambios(SQLiteDatabase db, String sufijo, String tabla, String columnaFila, String columnaVivienda) {
+        String vivienda = columnaVivienda.equals("NULL") ? "NULL" : "new." + columnaVivienda;
+        String viviendaBorrada = columnaVivienda.equals("NULL") ? "NULL" : "old." + columnaVivienda;
+        String archivado = tabla.equals("TABLA_MENSAJES")
+                ? "WHEN NOT EXISTS (SELECT 1 FROM TABLA_MENSAJES_ARCHIVO WHERE id_mensaje = old.id_mensaje) "
+                : "";
+
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_cambios_" + sufijo + "_ai AFTER INSERT ON " + tabla + " BEGIN " +
+                anotarCambio(tabla, "new." + columnaFila, vivienda, BusCambios.Operacion.INSERTAR) + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_cambios_" + sufijo + "_au AFTER UPDATE ON " + tabla + " BEGIN " +
+                anotarCambio(tabla, "new." + columnaFila, vivienda, BusCambios.Operacion.MODIFICAR) + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_cambios_" + sufijo + "_ad AFTER DELETE ON " + tabla + " " + archivado + "BEGIN " +
+                anotarCambio(tabla, "old." + columnaFila, viviendaBorrada, BusCambios.Operacion.ELIMINAR) + " END;");
+    }
+
+    /**
+     * Sentencia que anota un cambio en TABLA_CAMBIOS con la fecha actual en milisegundos.
+     *
+     * @return Sentencia SQL para el cuerpo de un trigger.
+     */
+    private static String anotarCambio(String tabla, String fila, String vivienda, BusCambios.Operacion operacion) {
+        return "INSERT INTO TABLA_CAMBIOS (tabla, id_fila, id_vivienda, operacion, fecha) VALUES ('" +
+                tabla + "', " + fila + ", " + vivienda + ", '" + operacion.name() + "', " +
+                "CAST(strftime('%s', 'now') AS INTEGER) * 1000);";
+    }
+
+    /**
+     * Rellena TABLA_CONVERSACIONES a partir de los mensajes existentes.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    static void rellenarTablaConversaciones(SQLiteDatabase db) {
+        db.execSQL("INSERT OR REPLACE INTO TABLA_CONVERSACIONES " +
+                "(usuario_id, contacto_id, vivienda_id, ultimo_mensaje_id, ultima_fecha, vista_previa, no_leidos) " +
+                "SELECT c.usuario_id, c.contacto_id, c.vivienda_id, m.id_mensaje, m.fecha, substr(m.contenido, 1, " + LONGITUD_VISTA_PREVIA + "), c.no_leidos " +
+                "FROM (SELECT usuario_id, contacto_id, vivienda_id, MAX(id_mensaje) AS ultimo_id, SUM(no_leido) AS no_leidos FROM (" +
+                "SELECT remitente_id AS usuario_id, destinatario_id AS contacto_id, COALESCE(vivienda_id, 0) AS vivienda_id, " +
+                "id_mensaje, 0 AS no_leido FROM TABLA_MENSAJES " +
+                "UNION ALL " +
+                "SELECT destinatario_id, remitente_id, COALESCE(vivienda_id, 0), id_mensaje, leido = 0 FROM TABLA_MENSAJES) " +
+                "GROUP BY usuario_id, contacto_id, vivienda_id) c " +
+                "JOIN TABLA_MENSAJES m ON m.id_mensaje = c.ultimo_id;");
+    }
+
+    /**
+     * Aplica en orden las migraciones con versión en el intervalo (desde, hasta].
+     * Cada migración se ejecuta en su propia transacción; si una falla se propaga la excepción
+     * para que la base de datos no quede marcada con una versión que no tiene.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     * @param desde Versión actual de la base de datos.
+     * @param hasta Versión que se quiere alcanzar.
+     */
+    public static void migrar(SQLiteDatabase db, int desde, int hasta) {
+        for (Migracion migracion : MIGRACIONES) {
+            if (migracion.getVersion() <= desde || migracion.getVersion() > hasta) {
+                continue;
+            }
+
+            Log.i("Migraciones", "Aplicando v" + migracion.getVersion() + ": " + migracion.getDescripcion());
+            try {
+                db.beginTransaction();
+                migracion.aplicar(db);
+                db.setTransactionSuccessful();
+            } catch (SQLException exc) {
+                Log.e("Migraciones.migrar", "Error en la migración a v" + migracion.getVersion() + ": " + exc.getMessage());
+                throw exc;
+            } finally {
+                db.endTransaction();
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Clase PerfilAlmacenamiento
+ *
+ * Configuración de rendimiento de SQLite que se aplica al abrir la base de datos:
+ * - journalMode: modo de diario. Con WAL los lectores no se bloquean mientras hay una escritura.
+ * - synchronous: nivel de sincronización con el disco. NORMAL es seguro con WAL y evita un fsync por transacción.
+ * - mmapSize: bytes de la base de datos leídos mediante memoria mapeada (0 lo desactiva).
+ * - cacheSize: tamaño de la caché de páginas por conexión; negativo en KiB, positivo en páginas.
+ * - tempStore: dónde se guardan las tablas temporales (DEFAULT, FILE o MEMORY).
+ * - tamPoolConexiones: número de conexiones de lectura concurrentes que usará la aplicación.
+ *
+ * {@link #LECTURA_INTENSIVA} es el perfil por defecto de {@link DBManager}, pensado para la navegación
+ * de viviendas y chats, donde las lecturas son mucho más frecuentes que las escrituras.
+ * {@link #CONSERVADOR} reproduce la configuración por defecto de SQLite y sirve de referencia.
+ */
+public final class PerfilAlmacenamiento {
+    public static final String JOURNAL_WAL = "WAL";
+    public static final String JOURNAL_DELETE = "DELETE";
+    public static final String SYNC_NORMAL = "NORMAL";
+    public static final String SYNC_FULL = "FULL";
+    public static final String TEMP_DEFAULT = "DEFAULT";
+    public static final String TEMP_MEMORY = "MEMORY";
+
+    /** Perfil por defecto: WAL, sincronización NORMAL, 64 MiB mapeados y 8 MiB de caché por conexión. */
+    public static final PerfilAlmacenamiento LECTURA_INTENSIVA = new Builder()
+            .journalMode(JOURNAL_WAL)
+            .synchronous(SYNC_NORMAL)
+            .mmapSize(64L * 1024 * 1024)
+            .cacheSize(-8 * 1024)
+            .tempStore(TEMP_MEMORY)
+            .tamPoolConexiones(4)
+            .build();
+
+    /** Configuración por defecto de SQLite: diario DELETE, sincronización FULL y sin memoria mapeada. */
+    public static final PerfilAlmacenamiento CONSERVADOR = new Builder()
+            .journalMode(JOURNAL_DELETE)
+            .synchronous(SYNC_FULL)
+            .mmapSize(0)
+            .cacheSize(-2000)
+            .tempStore(TEMP_DEFAULT)
+            .tamPoolConexiones(1)
+            .build();
+
+    private final String journalMode;
+    private final String synchronous;
+    private final long mmapSize;
+    private final int cacheSize;
+    private final String tempStore;
+    private final int tamPoolConexiones;
+
+    private PerfilAlmacenamiento(Builder builder) {
+        this.journalMode = builder.journalMode;
+        this.synchronous = builder.synchronous;
+        this.mmapSize = builder.mmapSize;
+        this.cacheSize = builder.cacheSize;
+        this.tempStore = builder.tempStore;
+        this.tamPoolConexiones = builder.tamPoolConexiones;
+    }
+
+    /** Modo de diario (WAL, DELETE...). */
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    /** Nivel de sincronización (NORMAL, FULL...). */
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    /** Bytes leídos mediante memoria mapeada. */
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /** Tamaño de la caché de páginas por conexión. */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /** Almacenamiento de las tablas temporales. */
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    /** Número de conexiones de lectura concurrentes. */
+    public int getTamPoolConexiones() {
+        return tamPoolConexiones;
+    }
+
+    /**
+     * Aplica los parámetros de apertura (modo de diario y sincronización) a un SQLiteOpenHelper.
+     * Debe llamarse antes de abrir la base de datos, normalmente en el constructor del helper.
+     *
+     * @param helper Helper de la base de datos.
+     */
+    public void aplicar(SQLiteOpenHelper helper) {
+        SQLiteDatabase.OpenParams.Builder parametros = new SQLiteDatabase.OpenParams.Builder()
+                .setSynchronousMode(synchronous);
+
+        // Android solo abre conexiones de lectura concurrentes si WAL se activa con su flag
+        if (JOURNAL_WAL.equalsIgnoreCase(journalMode)) {
+            parametros.addOpenFlags(SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING);
+        } else {
+            parametros.setJournalMode(journalMode);
+        }
+        helper.setOpenParams(parametros.build());
+    }
+
+    /**
+     * Configura la memoria mapeada, la caché de páginas y las tablas temporales.
+     * Son parámetros por conexión, así que se ejecutan en todas las conexiones del pool.
+     * Debe llamarse desde {@link SQLiteOpenHelper#onConfigure(SQLiteDatabase)}.
+     *
+     * @param db Instancia de SQLiteDatabase.
+     */
+    public void configurar(SQLiteDatabase db) {
+        db.execPerConnectionSQL("PRAGMA mmap_size = " + mmapSize, null);
+        db.execPerConnectionSQL("PRAGMA cache_size = " + cacheSize, null);
+        db.execPerConnectionSQL("PRAGMA temp_store = " + tempStore, null);
+    }
+
+    @Override
+    public String toString() {
+        return "PerfilAlmacenamiento{journal=" + journalMode + ", synchronous=" + synchronous +
+                ", mmap=" + mmapSize + ", cache=" + cacheSize + ", temp=" + tempStore +
+                ", pool=" + tamPoolConexiones + "}";
+    }
+
+    /**
+     * Constructor de {@link PerfilAlmacenamiento}. Parte de la configuración de {@link #CONSERVADOR}.
+     */
+    public static final class Builder {
+        private String journalMode = JOURNAL_DELETE;
+        private String synchronous = SYNC_FULL;
+        private long mmapSize = 0;
+        private int cacheSize = -2000;
+        private String tempStore = TEMP_DEFAULT;
+        private int tamPoolConexiones = 1;
+
+        /** Modo de diario: {@link #JOURNAL_WAL} o {@link #JOURNAL_DELETE}. */
+        public Builder journalMode(String journalMode) {
+            this.journalMode = journalMode;
+            return this;
+        }
+
+        /** Nivel de sincronización: {@link #SYNC_NORMAL} o {@link #SYNC_FULL}. */
+        public Builder synchronous(String synchronous) {
+            this.synchronous = synchronous;
+            return this;
+        }
+
+        /** Bytes leídos mediante memoria mapeada; 0 la desactiva. */
+        public Builder mmapSize(long mmapSize) {
+            this.mmapSize = mmapSize;
+            return this;
+        }
+
+        /** Caché de páginas por conexión: negativo en KiB, positivo en páginas. */
+        public Builder cacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+            return this;
+        }
+
+        /** Tablas temporales: {@link #TEMP_DEFAULT} o {@link #TEMP_MEMORY}. */
+        public Builder tempStore(String tempStore) {
+            this.tempStore = tempStore;
+            return this;
+        }
+
+        /** Número de conexiones de lectura concurrentes. */
+        public Builder tamPoolConexiones(int tamPoolConexiones) {
+            if (tamPoolConexiones <= 0) {
+                throw new IllegalArgumentException("El pool debe tener al menos una conexión: " + tamPoolConexiones);
+            }
+            this.tamPoolConexiones = tamPoolConexiones;
+            return this;
+        }
+
+        /** Crea el perfil. */
+        public PerfilAlmacenamiento build() {
+            return new PerfilAlmacenamiento(this);
+        }
+    }
+}
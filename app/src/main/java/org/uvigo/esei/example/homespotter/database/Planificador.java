@@ -0,0 +1,224 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Clase Planificador
+ *
+ * Hilos compartidos por toda la aplicación. Las pantallas y las tareas de mantenimiento no crean
+ * sus propios hilos ni ejecutores: envían el trabajo a uno de estos carriles.
+ * - {@link #escritura()}: un único hilo para las escrituras en la base de datos. Las escrituras
+ *   se ejecutan de una en una y en el orden en que se enviaron, sin competir por el bloqueo de
+ *   escritura de SQLite con los hilos de lectura.
+ * - {@link #lectura()}: tantos hilos como indica {@link PerfilAlmacenamiento#getTamPoolConexiones()}
+ *   de {@link PerfilAlmacenamiento#LECTURA_INTENSIVA}. Es el número de hilos del carril, no el de
+ *   conexiones de SQLite: el tamaño del pool de conexiones de lectura lo decide Android.
+ * - {@link #io()}: hilos para la red y los ficheros (subida de fotos, copia de imágenes), que
+ *   pasan la mayor parte del tiempo esperando y no deben ocupar los de lectura.
+ * - {@link #secuencia()}: una cola propia de una pantalla sobre los hilos de lectura. Sus tareas
+ *   se ejecutan en orden, como con un ejecutor de un solo hilo, pero sin reservar un hilo.
+ *
+ * Los resultados se entregan en el hilo principal con {@link #ejecutar(Executor, LifecycleOwner, Supplier, Consumer)}
+ * o {@link #enPrincipal(LifecycleOwner, Runnable)}, que los descartan si la pantalla ya se destruyó.
+ * Si la tarea lanza una excepción, se registra en el log y, si se indicó, se entrega al callback
+ * de error en el hilo principal en lugar del resultado.
+ */
+public final class Planificador {
+    private static final int TAM_POOL_IO = 4;
+
+    private static final Handler HILO_PRINCIPAL = new Handler(Looper.getMainLooper());
+    private static final ExecutorService ESCRITURA = Executors.newSingleThreadExecutor(hilos("escritura"));
+    private static final ExecutorService LECTURA = Executors.newFixedThreadPool(
+            PerfilAlmacenamiento.LECTURA_INTENSIVA.getTamPoolConexiones(), hilos("lectura"));
+    private static final ExecutorService IO = Executors.newFixedThreadPool(TAM_POOL_IO, hilos("io"));
+
+    private Planificador() {
+    }
+
+    /**
+     * Devuelve el carril de escritura en la base de datos.
+     *
+     * @return Ejecutor de un solo hilo.
+     */
+    public static Executor escritura() {
+        return ESCRITURA;
+    }
+
+    /**
+     * Devuelve el carril de lectura de la base de datos. Las tareas pueden ejecutarse a la vez y
+     * terminar en cualquier orden; si el orden importa, debe usarse {@link #secuencia()}.
+     *
+     * @return Ejecutor con un hilo por conexión de lectura.
+     */
+    public static Executor lectura() {
+        return LECTURA;
+    }
+
+    /**
+     * Devuelve el carril de red y ficheros.
+     *
+     * @return Ejecutor de hilos de red y ficheros.
+     */
+    public static ExecutorService io() {
+        return IO;
+    }
+
+    /**
+     * Crea una cola de lecturas que se ejecutan de una en una, en el orden en que se enviaron.
+     *
+     * @return Ejecutor en serie sobre el carril de lectura.
+     */
+    public static Executor secuencia() {
+        return new Secuencia(LECTURA);
+    }
+
+    /**
+     * Ejecuta una tarea en un carril y entrega su resultado en el hilo principal, salvo que la
+     * pantalla se haya destruido mientras tanto.
+     *
+     * @param carril Carril en el que se ejecuta la tarea.
+     * @param propietario Pantalla (actividad o vista de un fragmento) que recibe el resultado.
+     * @param tarea Tarea a ejecutar en segundo plano.
+     * @param resultado Quien recibe el resultado en el hilo principal.
+     */
+    public static <T> void ejecutar(Executor carril, LifecycleOwner propietario, Supplier<T> tarea, Consumer<T> resultado) {
+        ejecutar(carril, propietario, tarea, resultado, null);
+    }
+
+    /**
+     * Ejecuta una tarea en un carril y entrega en el hilo principal su resultado o, si la tarea
+     * lanza una excepción, la excepción, salvo que la pantalla se haya destruido mientras tanto.
+     *
+     * @param carril Carril en el que se ejecuta la tarea.
+     * @param propietario Pantalla (actividad o vista de un fragmento) que recibe el resultado.
+     * @param tarea Tarea a ejecutar en segundo plano.
+     * @param resultado Quien recibe el resultado en el hilo principal.
+     * @param error Quien recibe la excepción en el hilo principal, o null si solo se registra.
+     */
+    public static <T> void ejecutar(Executor carril, LifecycleOwner propietario, Supplier<T> tarea, Consumer<T> resultado,
+                                    Consumer<RuntimeException> error) {
+        carril.execute(() -> {
+            T valor;
+            try {
+                valor = tarea.get();
+            } catch (RuntimeException exc) {
+                Log.e("Planificador.ejecutar", "Error en una tarea en segundo plano: " + exc.getMessage(), exc);
+                if (error != null) {
+                    enPrincipal(propietario, () -> error.accept(exc));
+                }
+                return;
+            }
+            enPrincipal(propietario, () -> resultado.accept(valor));
+        });
+    }
+
+    /**
+     * Lee en el carril de lectura y entrega el resultado en el hilo principal.
+     *
+     * @param propietario Pantalla que recibe el resultado.
+     * @param tarea Lectura a ejecutar.
+     * @param resultado Quien recibe el resultado en el hilo principal.
+     */
+    public static <T> void leer(LifecycleOwner propietario, Supplier<T> tarea, Consumer<T> resultado) {
+        ejecutar(LECTURA, propietario, tarea, resultado);
+    }
+
+    /**
+     * Escribe en el carril de escritura y entrega el resultado en el hilo principal.
+     *
+     * @param propietario Pantalla que recibe el resultado.
+     * @param tarea Escritura a ejecutar.
+     * @param resultado Quien recibe el resultado en el hilo principal.
+     */
+    public static <T> void escribir(LifecycleOwner propietario, Supplier<T> tarea, Consumer<T> resultado) {
+        ejecutar(ESCRITURA, propietario, tarea, resultado);
+    }
+
+    /**
+     * Escribe en el carril de escritura y entrega el resultado, o la excepción si la escritura
+     * falla, en el hilo principal.
+     *
+     * @param propietario Pantalla que recibe el resultado.
+     * @param tarea Escritura a ejecutar.
+     * @param resultado Quien recibe el resultado en el hilo principal.
+     * @param error Quien recibe la excepción en el hilo principal.
+     */
+    public static <T> void escribir(LifecycleOwner propietario, Supplier<T> tarea, Consumer<T> resultado,
+                                    Consumer<RuntimeException> error) {
+        ejecutar(ESCRITURA, propietario, tarea, resultado, error);
+    }
+
+    /**
+     * Ejecuta una acción en el hilo principal si la pantalla no se ha destruido.
+     *
+     * @param propietario Pantalla a la que pertenece la acción.
+     * @param accion Acción a ejecutar.
+     */
+    public static void enPrincipal(LifecycleOwner propietario, Runnable accion) {
+        HILO_PRINCIPAL.post(() -> {
+            if (propietario.getLifecycle().getCurrentState() != Lifecycle.State.DESTROYED) {
+                accion.run();
+            }
+        });
+    }
+
+    /**
+     * Crea hilos con nombre, para identificarlos en los volcados y en el perfilador.
+     *
+     * @param carril Nombre del carril.
+     * @return Fábrica de hilos.
+     */
+    private static ThreadFactory hilos(String carril) {
+        AtomicInteger contador = new AtomicInteger();
+        return tarea -> new Thread(tarea, "homespotter-" + carril + "-" + contador.incrementAndGet());
+    }
+
+    /**
+     * Cola en serie sobre otro ejecutor: envía la siguiente tarea cuando termina la anterior.
+     */
+    private static final class Secuencia implements Executor {
+        private final Executor destino;
+        private final ArrayDeque<Runnable> tareas = new ArrayDeque<>();
+        private boolean enMarcha = false;
+
+        Secuencia(Executor destino) {
+            this.destino = destino;
+        }
+
+        @Override
+        public synchronized void execute(Runnable tarea) {
+            tareas.add(() -> {
+                try {
+                    tarea.run();
+                } finally {
+                    siguiente();
+                }
+            });
+            if (!enMarcha) {
+                siguiente();
+            }
+        }
+
+        private synchronized void siguiente() {
+            Runnable tarea = tareas.poll();
+            enMarcha = tarea != null;
+            if (enMarcha) {
+                destino.execute(tarea);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Clase PorBaseDatos
+ *
+ * Registro de un valor por base de datos, para las cachés compartidas entre entidades
+ * ({@link CacheSentencias}, {@link CacheUsuarios}, {@link CacheViviendas}). Cada caché guarda en
+ * uno de estos registros lo que tiene de cada base de datos, que se crea la primera vez que se pide.
+ *
+ * {@link DBManager} llama a {@link #descartar(SQLiteDatabase)} al cerrar su base de datos, de
+ * modo que todos los registros liberan a la vez lo que tenían de ella. Las bases de datos que se
+ * cierran sin pasar por DBManager (las de las pruebas) se descartan la próxima vez que se
+ * registra otra base de datos.
+ *
+ * @param <T> Tipo del valor guardado por cada base de datos.
+ */
+final class PorBaseDatos<T> {
+    private static final List<PorBaseDatos<?>> REGISTROS = new ArrayList<>();
+
+    private final Map<SQLiteDatabase, T> valores = new IdentityHashMap<>();
+    private final Supplier<T> crear;
+    private final Consumer<T> liberar;
+
+    /**
+     * Crea un registro vacío.
+     *
+     * @param crear Crea el valor de una base de datos la primera vez que se pide.
+     * @param liberar Libera el valor de una base de datos cerrada, o null si no hay nada que liberar.
+     */
+    PorBaseDatos(Supplier<T> crear, Consumer<T> liberar) {
+        this.crear = crear;
+        this.liberar = liberar;
+        synchronized (REGISTROS) {
+            REGISTROS.add(this);
+        }
+    }
+
+    /**
+     * Obtiene el valor de una base de datos, creándolo la primera vez.
+     *
+     * @param db Base de datos.
+     * @return Valor de la base de datos.
+     */
+    synchronized T obtener(SQLiteDatabase db) {
+        T valor = valores.get(db);
+        if (valor == null) {
+            // Una base de datos nueva: descartar las que se cerraron sin avisar
+            Iterator<Map.Entry<SQLiteDatabase, T>> it = valores.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<SQLiteDatabase, T> entrada = it.next();
+                if (!entrada.getKey().isOpen()) {
+                    it.remove();
+                    liberar(entrada.getValue());
+                }
+            }
+            valor = crear.get();
+            valores.put(db, valor);
+        }
+        return valor;
+    }
+
+    /**
+     * Descarta en todos los registros los valores de una base de datos que se va a cerrar.
+     *
+     * @param db Base de datos.
+     */
+    static void descartar(SQLiteDatabase db) {
+        List<PorBaseDatos<?>> registros;
+        synchronized (REGISTROS) {
+            registros = new ArrayList<>(REGISTROS);
+        }
+        for (PorBaseDatos<?> registro : registros) {
+            registro.quitar(db);
+        }
+    }
+
+    private void quitar(SQLiteDatabase db) {
+        T valor;
+        synchronized (this) {
+            valor = valores.remove(db);
+        }
+        if (valor != null) {
+            liberar(valor);
+        }
+    }
+
+    private void liberar(T valor) {
+        if (liberar != null) {
+            liberar.accept(valor);
+        }
+    }
+}
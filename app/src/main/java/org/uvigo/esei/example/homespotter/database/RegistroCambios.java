@@ -0,0 +1,273 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Clase RegistroCambios
+ *
+ * Lee y compacta TABLA_CAMBIOS, el registro persistente de cambios que mantienen los triggers de
+ * {@link Migraciones#crearTriggersCambios(SQLiteDatabase)}. A diferencia de {@link BusCambios}, el
+ * registro sobrevive al cierre de la aplicación: un proceso en segundo plano guarda la última
+ * secuencia que procesó y en la siguiente ejecución pide con {@link #cambiosDesde(long, int)} solo
+ * las filas que cambiaron desde entonces, sin recorrer las tablas.
+ *
+ * Cada entrada indica que una fila cambió, no cómo: quien la procesa debe leer el estado actual de
+ * la fila, que puede haber cambiado otra vez después. Por eso la compactación conserva solo la
+ * última entrada de cada fila y, además, borra las que superan {@link #ANTIGUEDAD_MAXIMA}. Quien
+ * siga por detrás de lo borrado por antigüedad recibe null y debe recorrer las tablas de nuevo.
+ */
+public class RegistroCambios {
+    public static final long ANTIGUEDAD_MAXIMA = TimeUnit.DAYS.toMillis(30);
+
+    private static final String NOMBRE_TABLA = "TABLA_CAMBIOS";
+    private static final String COLUMNAS = "secuencia, tabla, id_fila, id_vivienda, operacion, fecha";
+
+    private static final String SQL_DESDE = "SELECT " + COLUMNAS + " FROM " + NOMBRE_TABLA +
+            " WHERE secuencia > ? ORDER BY secuencia LIMIT ?";
+    private static final String SQL_ULTIMA_SECUENCIA = "SELECT COALESCE(" +
+            "(SELECT seq FROM sqlite_sequence WHERE name = '" + NOMBRE_TABLA + "'), 0)";
+    private static final String SQL_PURGADO_HASTA = "SELECT purgado_hasta FROM TABLA_CAMBIOS_ESTADO WHERE id = 1";
+
+    // Compactación. Argumentos de SQL_AGRUPAR: ?1 secuencia hasta la que se compacta.
+    private static final String SQL_AGRUPAR = "DELETE FROM " + NOMBRE_TABLA + " WHERE secuencia <= ?1 " +
+            "AND secuencia NOT IN (SELECT MAX(secuencia) FROM " + NOMBRE_TABLA + " WHERE secuencia <= ?1 " +
+            "GROUP BY tabla, id_fila, id_vivienda)";
+    // La secuencia crece con la fecha: se recorre por secuencia hasta la primera entrada reciente
+    private static final String SQL_PRIMERA_RECIENTE = "SELECT secuencia FROM " + NOMBRE_TABLA +
+            " WHERE fecha >= ? ORDER BY secuencia LIMIT 1";
+    private static final String SQL_ULTIMA_ANTERIOR = "SELECT COALESCE(MAX(secuencia), 0) FROM " + NOMBRE_TABLA +
+            " WHERE secuencia <= ?";
+    private static final String SQL_PURGAR = "DELETE FROM " + NOMBRE_TABLA + " WHERE secuencia <= ?";
+    private static final String SQL_MARCAR_PURGADO = "UPDATE TABLA_CAMBIOS_ESTADO SET purgado_hasta = ? WHERE id = 1";
+
+    private static final AtomicBoolean compactadoEnEstaEjecucion = new AtomicBoolean(false);
+
+    private final SQLiteDatabase db;
+
+    /**
+     * Cambio anotado en el registro.
+     */
+    public static final class Entrada {
+        private final long secuencia;
+        private final String tabla;
+        private final int idFila;
+        private final int idVivienda;
+        private final BusCambios.Operacion operacion;
+        private final long fecha;
+
+        Entrada(long secuencia, String tabla, int idFila, int idVivienda, BusCambios.Operacion operacion, long fecha) {
+            this.secuencia = secuencia;
+            this.tabla = tabla;
+            this.idFila = idFila;
+            this.idVivienda = idVivienda;
+            this.operacion = operacion;
+            this.fecha = fecha;
+        }
+
+        public long getSecuencia() {
+            return secuencia;
+        }
+
+        public String getTabla() {
+            return tabla;
+        }
+
+        /**
+         * Obtiene la clave de la fila: id_usuario, id_vivienda, id_foto o id_mensaje según la
+         * tabla; en TABLA_FAVORITOS, el usuario (la vivienda está en {@link #getIdVivienda()}).
+         *
+         * @return ID de la fila.
+         */
+        public int getIdFila() {
+            return idFila;
+        }
+
+        /**
+         * Obtiene la vivienda a la que pertenece la fila.
+         *
+         * @return ID de la vivienda, o 0 si la fila no pertenece a ninguna.
+         */
+        public int getIdVivienda() {
+            return idVivienda;
+        }
+
+        public BusCambios.Operacion getOperacion() {
+            return operacion;
+        }
+
+        public long getFecha() {
+            return fecha;
+        }
+    }
+
+    /**
+     * Constructor de la clase.
+     *
+     * @param db Instancia de la base de datos SQLite.
+     */
+    public RegistroCambios(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Compacta el registro en segundo plano con la antigüedad por defecto, una sola vez por
+     * ejecución de la aplicación.
+     *
+     * @param c Contexto de la aplicación.
+     */
+    public static void compactarEnSegundoPlano(Context c) {
+        if (!compactadoEnEstaEjecucion.compareAndSet(false, true)) {
+            return;
+        }
+
+        Context contexto = c.getApplicationContext();
+        Planificador.escritura().execute(() -> {
+            RegistroCambios registro = new RegistroCambios(DBManager.getInstance(contexto).getWritableDatabase());
+            int borradas = registro.compactar();
+            Log.i("RegistroCambios", "Entradas del registro compactadas: " + borradas);
+        });
+    }
+
+    /**
+     * Obtiene los cambios posteriores a una secuencia, en orden.
+     *
+     * @param secuencia Última secuencia procesada (0 para empezar desde el principio del registro).
+     * @param limite Número máximo de cambios.
+     * @return Cambios con secuencia mayor que la indicada; o null si la compactación ya borró
+     *         cambios posteriores a ella y hay que recorrer las tablas de nuevo.
+     */
+    public List<Entrada> cambiosDesde(long secuencia, int limite) {
+        List<Entrada> toret = new ArrayList<>();
+        if (secuencia < 0 || limite <= 0) {
+            Log.e("RegistroCambios", "Parámetros inválidos para leer el registro.");
+            return toret;
+        }
+
+        Cursor cursor = null;
+        try {
+            cursor = ArgumentosTipados.consultar(db, SQL_DESDE, new Object[]{secuencia, limite});
+            while (cursor.moveToNext()) {
+                toret.add(new Entrada(cursor.getLong(0), cursor.getString(1), cursor.getInt(2),
+                        cursor.isNull(3) ? 0 : cursor.getInt(3), BusCambios.Operacion.valueOf(cursor.getString(4)),
+                        cursor.getLong(5)));
+            }
+
+            // Se comprueba después de leer: una purga hecha mientras tanto también se detecta
+            if (secuencia < leerLong(SQL_PURGADO_HASTA)) {
+                toret = null;
+            }
+        } catch (SQLException exc) {
+            Log.e("RegistroCambios.cambiosDesde", "Error SQL: " + exc.getMessage());
+            toret = new ArrayList<>();
+        } finally {
+            if (cursor != null) {
+                cursor.close();
+            }
+        }
+
+        return toret;
+    }
+
+    /**
+     * Obtiene la secuencia del último cambio anotado, aunque ya se haya compactado. Quien recorre
+     * las tablas enteras la toma antes de empezar y después procesa los cambios desde ella.
+     *
+     * @return Última secuencia, o 0 si no se ha anotado ningún cambio.
+     */
+    public long ultimaSecuencia() {
+        try {
+            return leerLong(SQL_ULTIMA_SECUENCIA);
+        } catch (SQLException exc) {
+            Log.e("RegistroCambios.ultimaSecuencia", "Error SQL: " + exc.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Compacta el registro con la antigüedad por defecto.
+     *
+     * @return Número de entradas borradas.
+     */
+    public int compactar() {
+        return compactar(ANTIGUEDAD_MAXIMA);
+    }
+
+    /**
+     * Compacta el registro en una transacción: de cada fila se conserva solo la última entrada, y
+     * se borran las entradas más antiguas que antiguedadMaxima.
+     *
+     * @param antiguedadMaxima Milisegundos que se conserva una entrada.
+     * @return Número de entradas borradas.
+     */
+    public int compactar(long antiguedadMaxima) {
+        if (antiguedadMaxima < 0) {
+            Log.e("RegistroCambios", "Parámetros inválidos para compactar el registro.");
+            return 0;
+        }
+
+        int toret = 0;
+
+        try {
+            db.beginTransaction();
+            long hasta = leerLong(SQL_ULTIMA_SECUENCIA);
+            int agrupadas = ejecutar(SQL_AGRUPAR, hasta);
+
+            long limite;
+            try {
+                limite = leerLong(SQL_PRIMERA_RECIENTE, System.currentTimeMillis() - antiguedadMaxima) - 1;
+            } catch (SQLiteDoneException exc) {
+                // No hay entradas recientes: se borran todas
+                limite = hasta;
+            }
+
+            int purgadas = 0;
+            long ultimaPurgada = leerLong(SQL_ULTIMA_ANTERIOR, limite);
+            if (ultimaPurgada > 0) {
+                purgadas = ejecutar(SQL_PURGAR, ultimaPurgada);
+                ejecutar(SQL_MARCAR_PURGADO, ultimaPurgada);
+            }
+
+            db.setTransactionSuccessful();
+            toret = agrupadas + purgadas;
+        } catch (SQLException exc) {
+            Log.e("RegistroCambios.compactar", "Error SQL: " + exc.getMessage());
+        } finally {
+            db.endTransaction();
+        }
+
+        return toret;
+    }
+
+    private long leerLong(String sql, long... argumentos) {
+        SQLiteStatement sentencia = CacheSentencias.obtener(db, sql);
+        synchronized (sentencia) {
+            sentencia.clearBindings();
+            for (int i = 0; i < argumentos.length; i++) {
+                sentencia.bindLong(i + 1, argumentos[i]);
+            }
+            return sentencia.simpleQueryForLong();
+        }
+    }
+
+    private int ejecutar(String sql, long... argumentos) {
+        SQLiteStatement sentencia = CacheSentencias.obtener(db, sql);
+        synchronized (sentencia) {
+            sentencia.clearBindings();
+            for (int i = 0; i < argumentos.length; i++) {
+                sentencia.bindLong(i + 1, argumentos[i]);
+            }
+            return sentencia.executeUpdateDelete();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.uvigo.esei.example.homespotter.database;
+
+/**
+ * Clase ResultadoInsercion
+ *
+ * Resultado de una inserción: cómo terminó y, si se insertó la fila, el ID que le asignó SQLite.
+ * Evita tener que buscar después el ID con consultas como SELECT MAX(id), que devuelven la fila
+ * de otra inserción si dos se ejecutan a la vez.
+ */
+public final class ResultadoInsercion {
+
+    /**
+     * Cómo terminó la inserción.
+     */
+    public enum Estado {
+        INSERTADO,
+        YA_EXISTIA,
+        ERROR_RESTRICCION,
+        ERROR
+    }
+
+    private final Estado estado;
+    private final long id;
+
+    private ResultadoInsercion(Estado estado, long id) {
+        this.estado = estado;
+        this.id = id;
+    }
+
+    /**
+     * Crea el resultado de una fila insertada.
+     *
+     * @param id ID generado para la fila.
+     * @return Resultado {@link Estado#INSERTADO}.
+     */
+    public static ResultadoInsercion insertado(long id) {
+        return new ResultadoInsercion(Estado.INSERTADO, id);
+    }
+
+    /**
+     * Crea el resultado de una inserción que no se realizó porque la fila ya existía.
+     *
+     * @return Resultado {@link Estado#YA_EXISTIA}.
+     */
+    public static ResultadoInsercion yaExistia() {
+        return new ResultadoInsercion(Estado.YA_EXISTIA, -1);
+    }
+
+    /**
+     * Crea el resultado de una inserción que viola una restricción distinta de la que la
+     * identifica (por ejemplo, una clave foránea a una fila que no existe).
+     *
+     * @return Resultado {@link Estado#ERROR_RESTRICCION}.
+     */
+    public static ResultadoInsercion errorRestriccion() {
+        return new ResultadoInsercion(Estado.ERROR_RESTRICCION, -1);
+    }
+
+    /**
+     * Crea el resultado a partir del valor devuelto por una inserción con conflicto IGNORE
+     * ({@link android.database.sqlite.SQLiteDatabase#insertWithOnConflict} o INSERT OR IGNORE):
+     * -1 indica que la fila no se insertó porque ya existía.
+     *
+     * @param id Valor devuelto por la inserción.
+     * @return Resultado {@link Estado#INSERTADO} o {@link Estado#YA_EXISTIA}.
+     */
+    static ResultadoInsercion deInsercionOIgnorar(long id) {
+        return id == -1 ? yaExistia() : insertado(id);
+    }
+
+    /**
+     * Crea el resultado de una inserción fallida.
+     *
+     * @return Resultado {@link Estado#ERROR}.
+     */
+    public static ResultadoInsercion error() {
+        return new ResultadoInsercion(Estado.ERROR, -1);
+    }
+
+    /**
+     * Obtiene cómo terminó la inserción.
+     *
+     * @return Estado de la inserción.
+     */
+    public Estado getEstado() {
+        return estado;
+    }
+
+    /**
+     * Obtiene el ID generado para la fila.
+     *
+     * @return ID de la fila insertada, o -1 si no se insertó.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Indica si la fila se insertó.
+     *
+     * @return true si el estado es {@link Estado#INSERTADO}.
+     */
+    public boolean isInsertado() {
+        return estado == Estado.INSERTADO;
+    }
+}
@@ -3,13 +3,17 @@ package org.uvigo.esei.example.homespotter.database;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.SQLException;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 
 import org.uvigo.esei.example.homespotter.models.Usuario;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Clase UsuarioEntity
@@ -27,15 +31,17 @@ import java.util.List;
  *
  * Métodos principales:
  * - insertar(ContentValues values): Inserta un nuevo usuario en la base de datos.
+ * - insertarConId(ContentValues values): Inserta un nuevo usuario y devuelve su ID.
  * - modificar(int id_usuario, ...): Modifica los datos de un usuario existente.
  * - eliminar(int id_usuario): Elimina un usuario de la base de datos.
  * - buscarPorId(int id_usuario): Busca un usuario por su ID.
  * - buscar(ContentValues filtros): Realiza una búsqueda dinámica basada en filtros.
+ * - obtenerUsuarioPorId(int id_usuario): Obtiene el perfil de un usuario, desde {@link CacheUsuarios} si ya se leyó.
  * - getContentValues(...): Construye un objeto ContentValues con los datos del usuario.
  */
 public class UsuarioEntity{
     private static SQLiteDatabase db;
-    private static final String NOMBRE_TABLA = "TABLA_USUARIO";
+    public static final String NOMBRE_TABLA = "TABLA_USUARIO";
     private static final String COL_ID_USUARIO = "id_usuario";
     private static final String COL_EMAIL = "email";
     private static final String COL_NOMBRE_USUARIO = "nombre_usuario";
@@ -43,6 +49,10 @@ public class UsuarioEntity{
     private static final String COL_FOTO = "foto_perfil";
     private static final String COL_PASSWRD = "password";
 
+    // Filas que se borran en cascada con un usuario, para publicarlas en BusCambios
+    private static final String SQL_VIVIENDAS_DE_USUARIO = "SELECT id_vivienda FROM TABLA_VIVIENDA WHERE propietario_id = ?";
+    private static final String SQL_FAVORITOS_DE_USUARIO = "SELECT vivienda_id FROM TABLA_FAVORITOS WHERE usuario_id = ?";
+
     public enum insertUsuarioEstado{
         USUARIO_EXISTENTE,
         ERROR,
@@ -65,46 +75,63 @@ public class UsuarioEntity{
      * @return Estado de la inserción (`USUARIO_EXISTENTE`, `ERROR`, `COMPLETADO`).
      */
     public insertUsuarioEstado insertar(ContentValues values) {
+        switch (insertarConId(values).getEstado()) {
+            case INSERTADO:
+                return insertUsuarioEstado.COMPLETADO;
+            case YA_EXISTIA:
+                return insertUsuarioEstado.USUARIO_EXISTENTE;
+            default:
+                return insertUsuarioEstado.ERROR;
+        }
+    }
+
+    /**
+     * Inserta un nuevo usuario en la tabla "TABLA_USUARIO" y devuelve el ID que se le asignó.
+     * El ID es el que devuelve la propia inserción, así que corresponde siempre a este usuario
+     * aunque se registren otros a la vez.
+     *
+     * La inserción es una única sentencia con conflicto IGNORE: la restricción UNIQUE del email
+     * decide si el usuario ya existía, sin consultarlo antes. No se usa REPLACE, que borraría el
+     * usuario existente y, en cascada, sus viviendas, favoritos y mensajes.
+     *
+     * @param values Objeto ContentValues con los datos del usuario.
+     * @return Resultado de la inserción, con el ID del usuario si se insertó.
+     */
+    public ResultadoInsercion insertarConId(ContentValues values) {
+        // Comprobar antes los campos obligatorios: con IGNORE, un NOT NULL incumplido
+        // tampoco insertaría la fila y se confundiría con un usuario existente
         if (values.getAsString(COL_NOMBRE_USUARIO) == null || values.getAsString(COL_EMAIL) == null
                 || values.getAsString(COL_PASSWRD) == null || values.getAsString(COL_NOMBRE_COMPLETO) == null) {
             Log.e("UsuarioEntity", "Los campos obligatorios no pueden ser nulos.");
-            return insertUsuarioEstado.ERROR; // Devuelve ERROR si algún campo obligatorio es nulo
+            return ResultadoInsercion.error(); // Devuelve ERROR si algún campo obligatorio es nulo
         }
-        Cursor cursor = null;
-        insertUsuarioEstado estado = null;
+        ResultadoInsercion resultado;
 
         try{
             db.beginTransaction();
-            cursor = db.query(
-                    NOMBRE_TABLA,
-                    new String[]{COL_ID_USUARIO},
-                    COL_EMAIL + " = ?",
-                    new String[]{values.getAsString("email")},
-                    null,
-                    null,
-                    null
-            );
+            long id = db.insertWithOnConflict(NOMBRE_TABLA, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+            resultado = ResultadoInsercion.deInsercionOIgnorar(id);
 
-            if(cursor.getCount() > 0){
+            // Una fila ignorada no cambia nada: se confirma igualmente para no deshacer la
+            // transacción de quien llama
+            db.setTransactionSuccessful();
+            if(!resultado.isInsertado()){
                 Log.e("UsuarioEntity.instertarUsuario", "El usuario ya está registrado");
-                estado = insertUsuarioEstado.USUARIO_EXISTENTE;
-            }else{
-                db.insert(NOMBRE_TABLA, null, values);
-                db.setTransactionSuccessful();
-                estado = insertUsuarioEstado.COMPLETADO;
             }
-
+        }catch(SQLiteConstraintException exc){
+            Log.e("UsuarioEntity.insertarUsuario", "Restricción incumplida al insertar los datos: " + exc.getMessage());
+            resultado = ResultadoInsercion.errorRestriccion();
         }catch(SQLException exc){
             Log.e("UsuarioEntity.insertarUsuario", "al insertar los datos");
-            estado = insertUsuarioEstado.ERROR;
+            resultado = ResultadoInsercion.error();
         }finally {
-            if(cursor != null && !cursor.isClosed()){
-                cursor.close();
-            }
             db.endTransaction();
         }
 
-        return estado;
+        if (resultado.isInsertado() && !db.inTransaction()) {
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, (int) resultado.getId());
+        }
+        return resultado;
     }
 
     /**
@@ -174,6 +201,15 @@ public class UsuarioEntity{
             db.endTransaction();
         }
 
+        if (toret && !db.inTransaction()) {
+            CacheUsuarios.modificar(db, id_usuario, nuevoNombreUsuario, nuevoNombreCompleto, nuevoEmail,
+                    nuevaPassword, nuevaFotoPerfil, nuevoTelefono);
+            BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.MODIFICAR, id_usuario);
+        } else if (toret) {
+            // La transacción exterior aún puede deshacerse: se descarta el perfil en lugar de actualizarlo
+            CacheUsuarios.eliminar(db, id_usuario);
+        }
+
         return toret;
     }
 
@@ -185,10 +221,17 @@ public class UsuarioEntity{
      */
     public boolean eliminar(int id_usuario) {
         boolean toret = false;
+        Set<Integer> viviendas = new HashSet<>();
+        Set<Integer> favoritos = new HashSet<>();
 
         try {
             db.beginTransaction();
 
+            // Sus viviendas, con sus fotos y favoritos, y sus propios favoritos se borran en cascada
+            leerIds(SQL_VIVIENDAS_DE_USUARIO, id_usuario, viviendas);
+            leerIds(SQL_FAVORITOS_DE_USUARIO, id_usuario, favoritos);
+            favoritos.addAll(viviendas);
+
             // Intentar eliminar el usuario
             int filasEliminadas = db.delete(
                     "TABLA_USUARIO",        // Nombre de la tabla
@@ -209,9 +252,38 @@ public class UsuarioEntity{
             db.endTransaction();
         }
 
+        if (toret) {
+            CacheUsuarios.eliminar(db, id_usuario);
+            // Sus viviendas se eliminan en cascada
+            CacheViviendas.invalidarPropietario(db, id_usuario);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, id_usuario);
+                if (!viviendas.isEmpty()) {
+                    BusCambios.publicar(ViviendaEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, viviendas);
+                    BusCambios.publicar(FotosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, viviendas);
+                }
+                if (!favoritos.isEmpty()) {
+                    BusCambios.publicar(FavoritosEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, favoritos);
+                }
+                // Sus mensajes también se borran; no se enumeran
+                BusCambios.publicar(MensajesEntity.NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, Collections.<Integer>emptySet());
+            }
+        }
+
         return toret;
     }
 
+    /**
+     * Añade a destino los IDs que devuelve una consulta de una columna con el ID de usuario como argumento.
+     */
+    private void leerIds(String sql, int idUsuario, Set<Integer> destino) {
+        try (Cursor cursor = db.rawQuery(sql, new String[]{String.valueOf(idUsuario)})) {
+            while (cursor.moveToNext()) {
+                destino.add(cursor.getInt(0));
+            }
+        }
+    }
+
     /**
      * Busca un usuario por su ID.
      *
@@ -265,42 +337,30 @@ public class UsuarioEntity{
         );
     }
 
-    public int getUltimoUsuarioId(){
-        int ultimoId = -1;
-        Cursor cursor = null;
-
-        try {
-            // Consulta para obtener el último ID de vivienda insertado
-            cursor = db.rawQuery("SELECT MAX(id_usuario) AS ultimo_id FROM TABLA_USUARIO", null);
-            if (cursor != null && cursor.moveToFirst()) {
-                ultimoId = cursor.getInt(cursor.getColumnIndexOrThrow("ultimo_id"));
-            }
-        } catch (Exception e) {
-            Log.e("UsuarioEntity", "Error al obtener el último ID de usuario: " + e.getMessage());
-        } finally {
-            if (cursor != null) {
-                cursor.close();
-            }
-        }
-
-        return ultimoId;
-    }
-
     /**
      * Obtiene un usuario de la base de datos por su ID.
      *
+     * Los perfiles leídos se guardan en {@link CacheUsuarios}, así que volver a pedir el mismo
+     * usuario no consulta la base de datos. {@link #modificar} y {@link #eliminar} mantienen la
+     * caché al día.
+     *
      * @param id_usuario ID del usuario a buscar.
      * @return Un objeto {@link Usuario} si se encuentra un usuario con el ID especificado; de lo contrario, devuelve null.
      */
     public Usuario obtenerUsuarioPorId(int id_usuario) {
-        Usuario usuario = null;
+        Usuario usuario = CacheUsuarios.obtener(db, id_usuario);
+        if (usuario != null) {
+            return usuario;
+        }
+
+        long cambios = CacheUsuarios.cambios(db);
         Cursor cursor = null;
 
         try {
             // Consulta para obtener los datos del usuario por su ID
             cursor = db.query(
                     NOMBRE_TABLA,
-                    new String[]{COL_ID_USUARIO, COL_NOMBRE_USUARIO, COL_EMAIL, COL_PASSWRD, COL_FOTO, "tlfno"},
+                    new String[]{COL_ID_USUARIO, COL_NOMBRE_USUARIO, COL_NOMBRE_COMPLETO, COL_EMAIL, COL_PASSWRD, COL_FOTO, "tlfno"},
                     COL_ID_USUARIO + " = ?",
                     new String[]{String.valueOf(id_usuario)},
                     null,
@@ -312,12 +372,14 @@ public class UsuarioEntity{
                 // Crear el objeto Usuario con los datos obtenidos
                 int id = cursor.getInt(cursor.getColumnIndexOrThrow(COL_ID_USUARIO));
                 String nombreUsuario = cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE_USUARIO));
+                String nombreCompleto = cursor.getString(cursor.getColumnIndexOrThrow(COL_NOMBRE_COMPLETO));
                 String email = cursor.getString(cursor.getColumnIndexOrThrow(COL_EMAIL));
                 String password = cursor.getString(cursor.getColumnIndexOrThrow(COL_PASSWRD));
                 String foto = cursor.getString(cursor.getColumnIndexOrThrow(COL_FOTO));
                 String tlfno = cursor.getString(cursor.getColumnIndexOrThrow("tlfno"));
 
-                usuario = new Usuario(id, nombreUsuario, email, password, foto, tlfno);
+                usuario = new Usuario(id, nombreUsuario, nombreCompleto, email, password, foto, tlfno);
+                CacheUsuarios.guardarLeido(db, usuario, cambios);
             }
         } catch (SQLException e) {
             Log.e("UsuarioEntity", "Error al obtener usuario por ID: " + e.getMessage());
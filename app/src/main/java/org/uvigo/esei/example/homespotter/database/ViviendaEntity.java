@@ -9,7 +9,13 @@ import android.util.Log;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
 
 /**
  * Clase ViviendaEntity
@@ -29,14 +35,21 @@ import java.util.List;
  *
  * Métodos principales:
  * - insertar(...): Inserta una nueva vivienda en la base de datos.
+ * - insertarConFotos(...): Inserta una vivienda y sus fotos en una sola transacción y devuelve su ID.
  * - modificarVivienda(...): Modifica los datos de una vivienda existente.
  * - eliminar(int id_vivienda): Elimina una vivienda de la base de datos.
  * - buscarPorId(int id_vivienda): Busca una vivienda por su ID.
- * - buscar(ContentValues filtros, Double precioMin, Double precioMax): Busca viviendas con filtros dinámicos y rango de precios.
+ * - buscar(ViviendaQuery consulta): Búsqueda tipada y paginada por clave (keyset) con fotos y favoritos.
+ * - buscarTexto(String texto, int limite): Búsqueda de texto libre ordenada por relevancia (BM25).
+ * - buscarIds(ViviendaQuery consulta) y buscarIdsPorPropietario(int idPropietario): Solo los IDs de una lista.
+ * - obtenerPorIds(List ids): Viviendas con sus fotos, desde {@link CacheViviendas} las que ya se leyeron.
+ *
+ * Los filtros de título, descripción y dirección se resuelven con el índice de texto completo
+ * TABLA_VIVIENDA_FTS (ver {@link Migraciones}), que ignora mayúsculas y tildes.
  */
 public class ViviendaEntity {
     private static SQLiteDatabase db;
-    private static final String NOMBRE_TABLA = "TABLA_VIVIENDA";
+    public static final String NOMBRE_TABLA = "TABLA_VIVIENDA";
     private static final String COL_ID_VIVIENDA = "id_vivienda";
     private static final String COL_TITULO = "titulo";
     private static final String COL_TIPO = "tipo_vivienda";
@@ -46,6 +59,19 @@ public class ViviendaEntity {
     private static final String COL_CONTACTO = "contacto";
     private static final String COL_DESCR = "descripcion";
     private static final String COL_PROP_ID = "propietario_id";
+    private static final String TABLA_FTS = "TABLA_VIVIENDA_FTS";
+
+    // Peso de cada columna de TABLA_VIVIENDA_FTS (titulo, descripcion, direccion) en el ranking
+    private static final double[] PESOS_FTS = {3.0, 1.0, 2.0};
+
+    /**
+     * Criterio de orden para la búsqueda paginada. Cada orden tiene su clave de paginación:
+     * ID usa (id_vivienda) y PRECIO usa (precio, id_vivienda).
+     */
+    public enum Orden {
+        ID,
+        PRECIO
+    }
 
     /**
      * Constructor de la clase.
@@ -69,8 +95,29 @@ public class ViviendaEntity {
      * @return `true` si la inserción fue exitosa, `false` en caso contrario.
      */
     public boolean insertar(String titulo, String tipoVivienda, double precio, String direccion, String estado, String contacto, String descripcion, int propietarioId) {
+        return insertarConFotos(titulo, tipoVivienda, precio, direccion, estado, contacto, descripcion, propietarioId,
+                Collections.<String>emptyList()) != -1;
+    }
+
+    /**
+     * Inserta una nueva vivienda y todas sus fotos en una única transacción.
+     * Si falla cualquiera de las inserciones no se guarda nada, así que nunca queda una vivienda
+     * a medias. El ID devuelto es el de la propia inserción, no el mayor de la tabla.
+     *
+     * @param titulo Título de la vivienda.
+     * @param tipoVivienda Tipo de la vivienda.
+     * @param precio Precio de la vivienda.
+     * @param direccion Dirección de la vivienda.
+     * @param estado Estado de la vivienda.
+     * @param contacto Información de contacto.
+     * @param descripcion Descripción de la vivienda.
+     * @param propietarioId ID del propietario de la vivienda.
+     * @param urlsFotos URLs de las fotos de la vivienda, en el orden en que se deben mostrar.
+     * @return ID de la vivienda insertada, o -1 si no se pudo insertar.
+     */
+    public long insertarConFotos(String titulo, String tipoVivienda, double precio, String direccion, String estado, String contacto, String descripcion, int propietarioId, List<String> urlsFotos) {
         ContentValues values = new ContentValues();
-        boolean toret = false;
+        long toret = -1;
 
         values.put(COL_TITULO, titulo);
         values.put(COL_TIPO, tipoVivienda);
@@ -84,15 +131,28 @@ public class ViviendaEntity {
         try{
             db.beginTransaction();
 
-            db.insert(NOMBRE_TABLA, null, values);
-            db.setTransactionSuccessful();
-            toret = true;
+            long id = db.insertOrThrow(NOMBRE_TABLA, null, values);
+
+            // Las fotos se insertan en una transacción anidada: si fallan, se deshace también la vivienda
+            if (urlsFotos.isEmpty() || !new FotosEntity(db).insertarLote((int) id, urlsFotos).isEmpty()) {
+                db.setTransactionSuccessful();
+                toret = id;
+            } else {
+                Log.e("ViviendaEntity.insertarConFotos", "Error al insertar las fotos de la vivienda");
+            }
         }catch(SQLException exc){
             Log.e("ViviendaEntity.insertarVivienda", "Error al insertar una vivienda: " + exc.getMessage());
         }finally {
             db.endTransaction();
         }
 
+        if (toret != -1) {
+            CacheViviendas.invalidar(db, (int) toret);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.INSERTAR, (int) toret);
+            }
+        }
+
         return toret;
     }
 
@@ -145,6 +205,13 @@ public class ViviendaEntity {
             db.endTransaction();
         }
 
+        if (toret) {
+            CacheViviendas.invalidar(db, idVivienda);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.MODIFICAR, idVivienda);
+            }
+        }
+
         return toret;
     }
 
@@ -180,6 +247,13 @@ public class ViviendaEntity {
             db.endTransaction();
         }
 
+        if (toret) {
+            CacheViviendas.invalidar(db, id_vivienda);
+            if (!db.inTransaction()) {
+                BusCambios.publicar(NOMBRE_TABLA, BusCambios.Operacion.ELIMINAR, id_vivienda);
+            }
+        }
+
         return toret;
     }
 
@@ -202,94 +276,275 @@ public class ViviendaEntity {
     }
 
     /**
-     * Realiza una búsqueda dinámica de viviendas basándose en filtros y rango de precios.
+     * Busca las viviendas propias de un usuario, o las de los demás usuarios, junto con sus fotos
+     * y el estado de favorito en una única consulta.
      *
-     * @param filtros Filtros dinámicos para la búsqueda (tipo, estado, etc.).
-     * @param precioMin Precio mínimo para la búsqueda.
-     * @param precioMax Precio máximo para la búsqueda.
-     * @return Cursor con los resultados de la búsqueda.
+     * El cursor contiene una fila por foto (o una sola fila con url_foto nula si la vivienda no tiene fotos),
+     * ordenadas por id_vivienda e id_foto, y la columna "favorito" (1 o 0).
+     *
+     * @param idUsuario ID del usuario actual.
+     * @param propias Si es true devuelve solo sus viviendas; si es false, excluye las suyas.
+     * @return Cursor con las viviendas y sus fotos.
      */
-    public Cursor buscar(ContentValues filtros, Double precioMin, Double precioMax) {
-        StringBuilder whereClause = new StringBuilder();
+    public Cursor buscarConFotosPorPropietario(int idUsuario, boolean propias) {
         List<String> whereArgs = new ArrayList<>();
+        whereArgs.add(String.valueOf(idUsuario));
+        String whereClause = "v." + COL_PROP_ID + (propias ? " = ?" : " != ?");
+        return consultarConFotos(whereClause, whereArgs, idUsuario);
+    }
 
-        // Construir WHERE dinámico con ContentValues
-        if (filtros != null && filtros.size() > 0) {
-            for (String key : filtros.keySet()) {
-                if (whereClause.length() > 0) {
-                    whereClause.append(" AND ");
+    /**
+     * Ejecuta una consulta tipada de viviendas, con sus fotos y el estado de favorito.
+     * Los números se enlazan como números (ver {@link ArgumentosTipados}).
+     *
+     * @param consulta Consulta a ejecutar.
+     * @return Cursor con una fila por foto, en el orden de la consulta (ver {@link #buscarConFotosPorPropietario}).
+     */
+    public Cursor buscar(ViviendaQuery consulta) {
+        return ArgumentosTipados.consultar(db, consulta.getSql(), consulta.getArgumentos());
+    }
+
+    /**
+     * Busca viviendas por texto libre en el título, la descripción y la dirección.
+     * Cada palabra del texto se busca como prefijo, sin distinguir mayúsculas ni tildes, y todas
+     * deben aparecer. Los resultados se ordenan por relevancia (BM25).
+     *
+     * @param texto Texto introducido por el usuario.
+     * @param limite Número máximo de resultados.
+     * @return Lista de IDs de vivienda, de más a menos relevante. Vacía si el texto no contiene palabras.
+     */
+    public List<Integer> buscarTexto(String texto, int limite) {
+        List<Integer> ids = new ArrayList<>();
+        String consulta = construirConsultaFts(null, texto);
+        if (consulta == null || limite <= 0) {
+            return ids;
+        }
+
+        // Mayor puntuación primero; a igualdad, la vivienda más antigua primero
+        Comparator<double[]> porRelevancia = (a, b) -> a[1] != b[1] ? Double.compare(b[1], a[1]) : Double.compare(a[0], b[0]);
+
+        // FTS4 no puntúa en SQL: se conservan solo las "limite" mejores en un montículo cuya cabeza
+        // es la menos relevante, en lugar de guardar y ordenar todas las coincidencias
+        PriorityQueue<double[]> mejores = new PriorityQueue<>(limite + 1, porRelevancia.reversed());
+        String query = "SELECT docid, matchinfo(" + TABLA_FTS + ", '" + Bm25.FORMATO_MATCHINFO + "') " +
+                "FROM " + TABLA_FTS + " WHERE " + TABLA_FTS + " MATCH ?";
+
+        try (Cursor cursor = db.rawQuery(query, new String[]{consulta})) {
+            while (cursor.moveToNext()) {
+                mejores.add(new double[]{cursor.getInt(0), Bm25.puntuar(cursor.getBlob(1), PESOS_FTS)});
+                if (mejores.size() > limite) {
+                    mejores.poll();
                 }
-                whereClause.append(key).append(" LIKE ?");
-                whereArgs.add("%" + filtros.getAsString(key) + "%");
             }
+        } catch (SQLException exc) {
+            Log.e("ViviendaEntity.buscarTexto", exc.getMessage());
+            return ids;
         }
 
-        // Agregar filtro de precio si se especifica
-        if (precioMin != null || precioMax != null) {
-            if (whereClause.length() > 0) {
-                whereClause.append(" AND ");
-            }
+        List<double[]> puntuaciones = new ArrayList<>(mejores);
+        Collections.sort(puntuaciones, porRelevancia);
+        for (double[] puntuacion : puntuaciones) {
+            ids.add((int) puntuacion[0]);
+        }
+        return ids;
+    }
 
-            if (precioMin != null && precioMax != null) {
-                whereClause.append(COL_PRECIO + " BETWEEN ? AND ?");
-                whereArgs.add(String.valueOf(precioMin));
-                whereArgs.add(String.valueOf(precioMax));
-            } else if (precioMin != null) {
-                whereClause.append(COL_PRECIO + " >= ?");
-                whereArgs.add(String.valueOf(precioMin));
-            } else if (precioMax != null) {
-                whereClause.append(COL_PRECIO + " <= ?");
-                whereArgs.add(String.valueOf(precioMax));
-            }
+    /**
+     * Obtiene las viviendas con los IDs indicados junto con sus fotos y el estado de favorito.
+     *
+     * @param ids IDs de las viviendas.
+     * @param idUsuario ID del usuario para el estado de favorito.
+     * @return Cursor con las viviendas y sus fotos ordenadas por id (ver {@link #buscarConFotosPorPropietario}).
+     */
+    public Cursor buscarConFotosPorIds(List<Integer> ids, int idUsuario) {
+        List<String> whereArgs = new ArrayList<>();
+        StringBuilder marcadores = new StringBuilder();
+        for (Integer id : ids) {
+            marcadores.append(marcadores.length() == 0 ? "?" : ", ?");
+            whereArgs.add(String.valueOf(id));
         }
 
-        // Realizar la consulta
-        return db.query(
-                NOMBRE_TABLA,
-                null, // Seleccionar todas las columnas
-                whereClause.length() > 0 ? whereClause.toString() : null, // WHERE
-                whereArgs.isEmpty() ? null : whereArgs.toArray(new String[0]), // WHERE args
-                null, // groupBy
-                null, // having
-                null  // orderBy
-        );
+        // Sin IDs no hay viviendas que devolver
+        String whereClause = ids.isEmpty() ? "0" : "v." + COL_ID_VIVIENDA + " IN (" + marcadores + ")";
+        return consultarConFotos(whereClause, whereArgs, idUsuario);
     }
 
     /**
-     * Realiza una búsqueda de las viviendas que tiene un propietario.
+     * Ejecuta una consulta tipada de viviendas devolviendo solo sus IDs, su precio (la clave de
+     * paginación) y el estado de favorito. Los datos de cada vivienda se obtienen después con
+     * {@link #obtenerPorIds(List)}.
      *
-     * @param idPropietario id del propietario de la vivienda si existe.
-     * @return Cursor con los resultados de la búsqueda.
+     * @param consulta Consulta a ejecutar.
+     * @return Cursor con una fila por vivienda, en el orden de la consulta (ver {@link ViviendaQuery#getSqlIds()}).
      */
-    public Cursor buscarPorPropietario(int idPropietario) {
-        String query = "SELECT * FROM TABLA_VIVIENDA WHERE propietario_id = ?";
-        String[] selectionArgs = new String[]{String.valueOf(idPropietario)};
-        return db.rawQuery(query, selectionArgs);
+    public Cursor buscarIds(ViviendaQuery consulta) {
+        return ArgumentosTipados.consultar(db, consulta.getSqlIds(), consulta.getArgumentos());
     }
 
     /**
-     * Busca la última vivienda registrada y devuelve su id.
+     * Obtiene los IDs de las viviendas de un propietario.
      *
-     * @return Id de la última vivienda añadida a la base de dato.
+     * @param idPropietario ID del propietario.
+     * @return Lista de IDs de vivienda en orden ascendente.
+     */
+    public List<Integer> buscarIdsPorPropietario(int idPropietario) {
+        List<Integer> ids = new ArrayList<>();
+        String query = "SELECT " + COL_ID_VIVIENDA + " FROM " + NOMBRE_TABLA + " WHERE " + COL_PROP_ID + " = ? " +
+                "ORDER BY " + COL_ID_VIVIENDA;
+
+        try (Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(idPropietario)})) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+            }
+        } catch (SQLException exc) {
+            Log.e("ViviendaEntity.buscarIdsPorPropietario", exc.getMessage());
+        }
+        return ids;
+    }
+
+    /**
+     * Obtiene las viviendas con los IDs indicados junto con sus fotos. Las que ya están en
+     * {@link CacheViviendas} no se consultan; las demás se leen en una única consulta y se guardan.
+     * Las viviendas se devuelven sin marcar como favoritas, ya que eso depende del usuario.
+     *
+     * @param ids IDs de las viviendas.
+     * @return Viviendas en el orden de los IDs; se omiten las que no existen.
+     */
+    public List<Vivienda> obtenerPorIds(List<Integer> ids) {
+        Map<Integer, Vivienda> porId = new HashMap<>();
+        List<Integer> pendientes = new ArrayList<>();
+        for (Integer id : ids) {
+            Vivienda vivienda = CacheViviendas.obtener(db, id);
+            if (vivienda != null) {
+                porId.put(id, vivienda);
+            } else {
+                pendientes.add(id);
+            }
+        }
+
+        if (!pendientes.isEmpty()) {
+            long cambios = CacheViviendas.cambios(db);
+            try {
+                List<Vivienda> leidas = leerViviendas(buscarConFotosPorIds(pendientes, -1));
+                CacheViviendas.guardarLeidas(db, leidas, cambios);
+                for (Vivienda vivienda : leidas) {
+                    porId.put(vivienda.getId(), vivienda);
+                }
+            } catch (SQLException exc) {
+                Log.e("ViviendaEntity.obtenerPorIds", exc.getMessage());
+            }
+        }
+
+        List<Vivienda> viviendas = new ArrayList<>();
+        for (Integer id : ids) {
+            Vivienda vivienda = porId.get(id);
+            if (vivienda != null) {
+                viviendas.add(vivienda);
+            }
+        }
+        return viviendas;
+    }
+
+    /**
+     * Agrupa las filas de {@link #buscarConFotosPorIds} (una por foto, ordenadas por vivienda) en
+     * viviendas con sus fotos, sin el estado de favorito. Cierra el cursor.
      */
-    public int obtenerUltimaVivienda(){
-        int ultimoId = -1;
-        Cursor cursor = null;
+    private static List<Vivienda> leerViviendas(Cursor cursor) {
+        List<Vivienda> viviendas = new ArrayList<>();
+        Vivienda actual = null;
 
         try {
-            // Consulta para obtener el último ID de vivienda insertado
-            cursor = db.rawQuery("SELECT MAX(id_vivienda) AS ultimo_id FROM TABLA_VIVIENDA", null);
-            if (cursor != null && cursor.moveToFirst()) {
-                ultimoId = cursor.getInt(cursor.getColumnIndexOrThrow("ultimo_id"));
+            int colId = cursor.getColumnIndexOrThrow(COL_ID_VIVIENDA);
+            int colUrl = cursor.getColumnIndexOrThrow("url_foto");
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(colId);
+                if (actual == null || actual.getId() != id) {
+                    actual = new Vivienda(
+                            id,
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_TITULO)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_TIPO)),
+                            cursor.getDouble(cursor.getColumnIndexOrThrow(COL_PRECIO)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_DIREC)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_ESTADO)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_CONTACTO)),
+                            cursor.getString(cursor.getColumnIndexOrThrow(COL_DESCR)),
+                            cursor.getInt(cursor.getColumnIndexOrThrow(COL_PROP_ID)),
+                            false,
+                            new ArrayList<>()
+                    );
+                    viviendas.add(actual);
+                }
+                if (!cursor.isNull(colUrl)) {
+                    actual.getFotos().add(cursor.getString(colUrl));
+                }
             }
-        } catch (Exception e) {
-            Log.e("ViviendaEntity", "Error al obtener el último ID de vivienda: " + e.getMessage());
         } finally {
-            if (cursor != null) {
-                cursor.close();
+            cursor.close();
+        }
+        return viviendas;
+    }
+
+    /**
+     * Convierte el texto del usuario en una consulta MATCH de FTS4. Solo se conservan letras y dígitos,
+     * de modo que el texto no puede inyectar operadores de FTS; cada palabra se busca como prefijo.
+     *
+     * @param columna Columna de la tabla FTS a la que se restringe la búsqueda, o nulo para todas.
+     * @param texto Texto introducido por el usuario.
+     * @return Consulta MATCH, o nulo si el texto no contiene palabras.
+     */
+    static String construirConsultaFts(String columna, String texto) {
+        if (texto == null) {
+            return null;
+        }
+
+        StringBuilder consulta = new StringBuilder();
+        for (String palabra : texto.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{Nd}]+")) {
+            if (palabra.isEmpty()) {
+                continue;
+            }
+            if (consulta.length() > 0) {
+                consulta.append(' ');
             }
+            if (columna != null) {
+                consulta.append(columna).append(':');
+            }
+            consulta.append(palabra).append('*');
         }
+        return consulta.length() == 0 ? null : consulta.toString();
+    }
 
-        return ultimoId;
+    /**
+     * Ejecuta la consulta de viviendas con un LEFT JOIN a sus fotos y a los favoritos del usuario.
+     *
+     * @param whereClause Condición sobre la tabla de viviendas (alias "v"), puede estar vacía.
+     * @param whereArgs Argumentos de la condición.
+     * @param idUsuario ID del usuario para el estado de favorito.
+     * @return Cursor con una fila por foto.
+     */
+    private Cursor consultarConFotos(String whereClause, List<String> whereArgs, int idUsuario) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(idUsuario));
+        args.addAll(whereArgs);
+
+        String query = "SELECT v.*, f.url_foto, (fav.usuario_id IS NOT NULL) AS favorito " +
+                "FROM " + NOMBRE_TABLA + " v " +
+                "LEFT JOIN TABLA_FOTOS f ON f.vivienda_id = v." + COL_ID_VIVIENDA + " " +
+                "LEFT JOIN TABLA_FAVORITOS fav ON fav.vivienda_id = v." + COL_ID_VIVIENDA + " AND fav.usuario_id = ? " +
+                (whereClause.isEmpty() ? "" : "WHERE " + whereClause + " ") +
+                "ORDER BY v." + COL_ID_VIVIENDA + ", f.id_foto";
+
+        return db.rawQuery(query, args.toArray(new String[0]));
+    }
+
+    /**
+     * Realiza una búsqueda de las viviendas que tiene un propietario.
+     *
+     * @param idPropietario id del propietario de la vivienda si existe.
+     * @return Cursor con los resultados de la búsqueda.
+     */
+    public Cursor buscarPorPropietario(int idPropietario) {
+        String query = "SELECT * FROM TABLA_VIVIENDA WHERE propietario_id = ?";
+        String[] selectionArgs = new String[]{String.valueOf(idPropietario)};
+        return db.rawQuery(query, selectionArgs);
     }
 }
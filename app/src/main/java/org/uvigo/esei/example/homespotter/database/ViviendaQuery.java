@@ -0,0 +1,342 @@
+package org.uvigo.esei.example.homespotter.database;
+
+import org.uvigo.esei.example.homespotter.models.Vivienda;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Clase ViviendaQuery
+ *
+ * Consulta tipada e inmutable para buscar viviendas. No acepta nombres de columna del llamador:
+ * cada filtro es un campo concreto, y los números se enlazan como números (ver
+ * {@link ArgumentosTipados}) para que el planificador pueda usar el índice de precio.
+ *
+ * La consulta es paginada por clave: {@link #siguientePagina(Vivienda)} devuelve la misma consulta
+ * continuando después de la última vivienda mostrada. La condición de clave solo aparece a partir de
+ * la segunda página; en la primera, el planificador elige el índice del filtro más selectivo.
+ *
+ * El tipo y el estado se buscan por prefijo y sin distinguir mayúsculas ("pis" encuentra "Piso"),
+ * con LIKE sobre los índices NOCASE idx_vivienda_tipo e idx_vivienda_estado.
+ *
+ * Se construye con {@link Builder}:
+ * <pre>
+ * ViviendaQuery consulta = new ViviendaQuery.Builder()
+ *         .tipo("Piso")
+ *         .precioMax(200000.0)
+ *         .orden(ViviendaEntity.Orden.PRECIO)
+ *         .usuario(idUsuario)
+ *         .build();
+ * </pre>
+ */
+public final class ViviendaQuery {
+    public static final int LIMITE_POR_DEFECTO = 20;
+
+    private final String tipo;
+    private final String estado;
+    private final Double precioMin;
+    private final Double precioMax;
+    private final Integer propietario;
+    private final Integer excluirPropietario;
+    private final String titulo;
+    private final String direccion;
+    private final String texto;
+    private final ViviendaEntity.Orden orden;
+    private final int limite;
+    private final int usuario;
+    // Clave de la última vivienda de la página anterior; nulos en la primera página
+    private final Double precioDespues;
+    private final Integer idDespues;
+
+    private ViviendaQuery(Builder builder, Double precioDespues, Integer idDespues) {
+        this.tipo = builder.tipo;
+        this.estado = builder.estado;
+        this.precioMin = builder.precioMin;
+        this.precioMax = builder.precioMax;
+        this.propietario = builder.propietario;
+        this.excluirPropietario = builder.excluirPropietario;
+        this.titulo = builder.titulo;
+        this.direccion = builder.direccion;
+        this.texto = builder.texto;
+        this.orden = builder.orden;
+        this.limite = builder.limite;
+        this.usuario = builder.usuario;
+        this.precioDespues = precioDespues;
+        this.idDespues = idDespues;
+    }
+
+    /**
+     * Obtiene la misma consulta continuando después de la vivienda indicada.
+     *
+     * @param ultima Última vivienda de la página actual.
+     * @return Consulta de la página siguiente.
+     */
+    public ViviendaQuery siguientePagina(Vivienda ultima) {
+        return new ViviendaQuery(toBuilder(), ultima.getPrecio(), ultima.getId());
+    }
+
+    /**
+     * Obtiene el orden de la consulta.
+     *
+     * @return Orden de los resultados.
+     */
+    public ViviendaEntity.Orden getOrden() {
+        return orden;
+    }
+
+    /**
+     * Obtiene el número máximo de viviendas por página.
+     *
+     * @return Límite de la consulta.
+     */
+    public int getLimite() {
+        return limite;
+    }
+
+    /**
+     * Genera el SQL de la consulta. Devuelve una fila por foto (o una fila con url_foto nula si la
+     * vivienda no tiene fotos) con la columna "favorito", como {@link ViviendaEntity#buscarConFotosPorPropietario}.
+     *
+     * @return Consulta SQL con marcadores "?".
+     */
+    public String getSql() {
+        String where = construirWhere();
+
+        String ordenInterno = orden == ViviendaEntity.Orden.PRECIO ? "precio, id_vivienda" : "id_vivienda";
+        String ordenExterno = orden == ViviendaEntity.Orden.PRECIO ? "v.precio, v.id_vivienda" : "v.id_vivienda";
+
+        // La subconsulta limita las viviendas; después se unen sus fotos y favoritos
+        return "SELECT v.*, f.url_foto, (fav.usuario_id IS NOT NULL) AS favorito " +
+                "FROM (SELECT * FROM TABLA_VIVIENDA" + where + " " +
+                "ORDER BY " + ordenInterno + " LIMIT ?) v " +
+                "LEFT JOIN TABLA_FOTOS f ON f.vivienda_id = v.id_vivienda " +
+                "LEFT JOIN TABLA_FAVORITOS fav ON fav.vivienda_id = v.id_vivienda AND fav.usuario_id = ? " +
+                "ORDER BY " + ordenExterno + ", f.id_foto";
+    }
+
+    /**
+     * Genera el SQL de la misma página devolviendo solo el ID, el precio y la columna "favorito" de
+     * cada vivienda, una fila por vivienda. Usa los mismos argumentos que {@link #getSql()}.
+     *
+     * @return Consulta SQL con marcadores "?".
+     */
+    public String getSqlIds() {
+        String where = construirWhere();
+
+        String ordenInterno = orden == ViviendaEntity.Orden.PRECIO ? "precio, id_vivienda" : "id_vivienda";
+        String ordenExterno = orden == ViviendaEntity.Orden.PRECIO ? "v.precio, v.id_vivienda" : "v.id_vivienda";
+
+        return "SELECT v.id_vivienda, v.precio, (fav.usuario_id IS NOT NULL) AS favorito " +
+                "FROM (SELECT id_vivienda, precio FROM TABLA_VIVIENDA" + where + " " +
+                "ORDER BY " + ordenInterno + " LIMIT ?) v " +
+                "LEFT JOIN TABLA_FAVORITOS fav ON fav.vivienda_id = v.id_vivienda AND fav.usuario_id = ? " +
+                "ORDER BY " + ordenExterno;
+    }
+
+    /**
+     * Obtiene los argumentos de {@link #getSql()} y {@link #getSqlIds()} en orden, con su tipo.
+     *
+     * @return Argumentos para {@link ArgumentosTipados}.
+     */
+    public Object[] getArgumentos() {
+        List<Object> argumentos = new ArrayList<>();
+        construirCondiciones(new StringBuilder(), argumentos);
+        argumentos.add(limite);
+        argumentos.add(usuario);
+        return argumentos.toArray();
+    }
+
+    /**
+     * Construye la cláusula WHERE de la subconsulta, con el espacio inicial, o una cadena vacía si
+     * no hay ninguna condición.
+     */
+    private String construirWhere() {
+        StringBuilder where = new StringBuilder();
+        construirCondiciones(where, null);
+        return where.length() > 0 ? " WHERE " + where : "";
+    }
+
+    /**
+     * Construye la condición WHERE de la subconsulta y, opcionalmente, sus argumentos.
+     * Ambos se generan en el mismo recorrido para que el orden de los argumentos coincida siempre.
+     */
+    private void construirCondiciones(StringBuilder where, List<Object> argumentos) {
+        List<Object> args = argumentos != null ? argumentos : new ArrayList<>();
+
+        // Condición de clave: solo a partir de la segunda página
+        if (idDespues != null) {
+            if (orden == ViviendaEntity.Orden.PRECIO) {
+                anadirCondicion(where, "(precio, id_vivienda) > (?, ?)");
+                args.add(precioDespues);
+            } else {
+                anadirCondicion(where, "id_vivienda > ?");
+            }
+            args.add(idDespues);
+        }
+
+        // Prefijo sin comodín inicial: LIKE puede usar los índices NOCASE
+        if (tipo != null) {
+            anadirCondicion(where, "tipo_vivienda LIKE ?");
+            args.add(tipo + "%");
+        }
+        if (estado != null) {
+            anadirCondicion(where, "estado LIKE ?");
+            args.add(estado + "%");
+        }
+        if (precioMin != null) {
+            anadirCondicion(where, "precio >= ?");
+            args.add(precioMin);
+        }
+        if (precioMax != null) {
+            anadirCondicion(where, "precio <= ?");
+            args.add(precioMax);
+        }
+        if (propietario != null) {
+            anadirCondicion(where, "propietario_id = ?");
+            args.add(propietario);
+        }
+        if (excluirPropietario != null) {
+            anadirCondicion(where, "propietario_id != ?");
+            args.add(excluirPropietario);
+        }
+
+        // Los filtros de texto se combinan en una única consulta al índice FTS
+        StringBuilder consultaFts = new StringBuilder();
+        anadirConsultaFts(consultaFts, ViviendaEntity.construirConsultaFts(null, texto));
+        anadirConsultaFts(consultaFts, ViviendaEntity.construirConsultaFts("titulo", titulo));
+        anadirConsultaFts(consultaFts, ViviendaEntity.construirConsultaFts("direccion", direccion));
+        if (consultaFts.length() > 0) {
+            anadirCondicion(where, "id_vivienda IN (SELECT docid FROM TABLA_VIVIENDA_FTS WHERE TABLA_VIVIENDA_FTS MATCH ?)");
+            args.add(consultaFts.toString());
+        }
+    }
+
+    private static void anadirCondicion(StringBuilder where, String condicion) {
+        where.append(where.length() == 0 ? "" : " AND ").append(condicion);
+    }
+
+    private static void anadirConsultaFts(StringBuilder consultaFts, String consulta) {
+        if (consulta != null) {
+            consultaFts.append(consultaFts.length() == 0 ? "" : " ").append(consulta);
+        }
+    }
+
+    private Builder toBuilder() {
+        Builder builder = new Builder();
+        builder.tipo = tipo;
+        builder.estado = estado;
+        builder.precioMin = precioMin;
+        builder.precioMax = precioMax;
+        builder.propietario = propietario;
+        builder.excluirPropietario = excluirPropietario;
+        builder.titulo = titulo;
+        builder.direccion = direccion;
+        builder.texto = texto;
+        builder.orden = orden;
+        builder.limite = limite;
+        builder.usuario = usuario;
+        return builder;
+    }
+
+    /**
+     * Constructor de {@link ViviendaQuery}. Todos los filtros son opcionales.
+     */
+    public static final class Builder {
+        private String tipo;
+        private String estado;
+        private Double precioMin;
+        private Double precioMax;
+        private Integer propietario;
+        private Integer excluirPropietario;
+        private String titulo;
+        private String direccion;
+        private String texto;
+        private ViviendaEntity.Orden orden = ViviendaEntity.Orden.ID;
+        private int limite = LIMITE_POR_DEFECTO;
+        private int usuario = -1;
+
+        /** Solo viviendas cuyo tipo empieza por este texto (sin distinguir mayúsculas). */
+        public Builder tipo(String tipo) {
+            this.tipo = tipo;
+            return this;
+        }
+
+        /** Solo viviendas cuyo estado empieza por este texto (sin distinguir mayúsculas). */
+        public Builder estado(String estado) {
+            this.estado = estado;
+            return this;
+        }
+
+        /** Precio mínimo, incluido. */
+        public Builder precioMin(Double precioMin) {
+            this.precioMin = precioMin;
+            return this;
+        }
+
+        /** Precio máximo, incluido. */
+        public Builder precioMax(Double precioMax) {
+            this.precioMax = precioMax;
+            return this;
+        }
+
+        /** Solo viviendas de este propietario. */
+        public Builder propietario(Integer propietario) {
+            this.propietario = propietario;
+            return this;
+        }
+
+        /** Excluye las viviendas de este propietario. */
+        public Builder excluirPropietario(Integer excluirPropietario) {
+            this.excluirPropietario = excluirPropietario;
+            return this;
+        }
+
+        /** Palabras que deben aparecer en el título. */
+        public Builder titulo(String titulo) {
+            this.titulo = titulo;
+            return this;
+        }
+
+        /** Palabras que deben aparecer en la dirección. */
+        public Builder direccion(String direccion) {
+            this.direccion = direccion;
+            return this;
+        }
+
+        /** Palabras que deben aparecer en el título, la descripción o la dirección. */
+        public Builder texto(String texto) {
+            this.texto = texto;
+            return this;
+        }
+
+        /** Orden de los resultados y clave de paginación. */
+        public Builder orden(ViviendaEntity.Orden orden) {
+            this.orden = orden;
+            return this;
+        }
+
+        /** Número máximo de viviendas por página. */
+        public Builder limite(int limite) {
+            if (limite <= 0) {
+                throw new IllegalArgumentException("El límite debe ser positivo: " + limite);
+            }
+            this.limite = limite;
+            return this;
+        }
+
+        /** Usuario para el que se calcula el estado de favorito. */
+        public Builder usuario(int usuario) {
+            this.usuario = usuario;
+            return this;
+        }
+
+        /**
+         * Crea la consulta de la primera página.
+         *
+         * @return Consulta inmutable.
+         */
+        public ViviendaQuery build() {
+            return new ViviendaQuery(this, null, null);
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package org.uvigo.esei.example.homespotter.imgbb;
 
+import org.uvigo.esei.example.homespotter.database.Planificador;
+
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
@@ -17,13 +21,27 @@ import retrofit2.converter.gson.GsonConverterFactory;
  * Configuración:
  * - Base URL: `https://api.imgbb.com/`
  * - Conversor: `GsonConverterFactory` para mapear las respuestas JSON en objetos Java.
+ * - Cliente: las peticiones se ejecutan en el carril de red de {@link Planificador}.
  *
  * Métodos principales:
  * - `getRetrofitInstance()`: Devuelve la instancia de Retrofit.
  */
 public class RetrofitClient {
     private static final String BASE_URL = "https://api.imgbb.com/";
-    private static Retrofit retrofit;
+
+    /**
+     * Crea la instancia la primera vez que se usa la clase. La JVM inicializa la clase una sola
+     * vez aunque varios hilos de subida la pidan a la vez.
+     */
+    private static final class Instancia {
+        private static final Retrofit RETROFIT = new Retrofit.Builder()
+                .baseUrl(BASE_URL)
+                .client(new OkHttpClient.Builder()
+                        .dispatcher(new Dispatcher(Planificador.io()))
+                        .build())
+                .addConverterFactory(GsonConverterFactory.create())
+                .build();
+    }
 
     /**
      * Devuelve una instancia única de Retrofit configurada con la base URL
@@ -32,12 +50,6 @@ public class RetrofitClient {
      * @return Instancia de Retrofit.
      */
     public static Retrofit getRetrofitInstance() {
-        if (retrofit == null) {
-            retrofit = new Retrofit.Builder()
-                    .baseUrl(BASE_URL)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .build();
-        }
-        return retrofit;
+        return Instancia.RETROFIT;
     }
 }
@@ -18,22 +18,29 @@ public class Chat {
     // Último mensaje enviado o recibido en el chat
     private String ultimoMensaje;
 
-    // Fecha del último mensaje enviado o recibido
-    private String fechaUltimoMensaje;
+    // Fecha del último mensaje enviado o recibido, en milisegundos desde epoch
+    private long fechaUltimoMensaje;
 
     // URL de la foto de perfil del usuario asociado al chat
     private String fotoUsuario;
 
+    // Número de mensajes recibidos en el chat que aún no se han leído
+    private int noLeidos;
+
+    // Vivienda sobre la que trata el chat (0 si no trata de ninguna) y su título
+    private int viviendaId;
+    private String tituloVivienda;
+
     /**
      * Constructor de la clase Chat.
      *
      * @param idChat Identificador único del chat.
      * @param nombreUsuario Nombre del usuario asociado al chat.
      * @param ultimoMensaje Último mensaje enviado o recibido en el chat.
-     * @param fechaUltimoMensaje Fecha del último mensaje.
+     * @param fechaUltimoMensaje Fecha del último mensaje, en milisegundos desde epoch.
      * @param fotoUsuario URL de la foto de perfil del usuario.
      */
-    public Chat(int idChat, String nombreUsuario, String ultimoMensaje, String fechaUltimoMensaje, String fotoUsuario) {
+    public Chat(int idChat, String nombreUsuario, String ultimoMensaje, long fechaUltimoMensaje, String fotoUsuario) {
         this.idChat = idChat;
         this.nombreUsuario = nombreUsuario;
         this.ultimoMensaje = ultimoMensaje;
@@ -41,6 +48,40 @@ public class Chat {
         this.fotoUsuario = fotoUsuario;
     }
 
+    /**
+     * Constructor de la clase Chat con el número de mensajes sin leer.
+     *
+     * @param idChat Identificador único del chat.
+     * @param nombreUsuario Nombre del usuario asociado al chat.
+     * @param ultimoMensaje Último mensaje enviado o recibido en el chat.
+     * @param fechaUltimoMensaje Fecha del último mensaje, en milisegundos desde epoch.
+     * @param fotoUsuario URL de la foto de perfil del usuario.
+     * @param noLeidos Número de mensajes recibidos sin leer.
+     */
+    public Chat(int idChat, String nombreUsuario, String ultimoMensaje, long fechaUltimoMensaje, String fotoUsuario, int noLeidos) {
+        this(idChat, nombreUsuario, ultimoMensaje, fechaUltimoMensaje, fotoUsuario);
+        this.noLeidos = noLeidos;
+    }
+
+    /**
+     * Constructor de la clase Chat para el hilo de una vivienda.
+     *
+     * @param idChat Identificador único del chat.
+     * @param nombreUsuario Nombre del usuario asociado al chat.
+     * @param ultimoMensaje Último mensaje enviado o recibido en el chat.
+     * @param fechaUltimoMensaje Fecha del último mensaje, en milisegundos desde epoch.
+     * @param fotoUsuario URL de la foto de perfil del usuario.
+     * @param noLeidos Número de mensajes recibidos sin leer.
+     * @param viviendaId ID de la vivienda sobre la que trata el chat, o 0 si no trata de ninguna.
+     * @param tituloVivienda Título de la vivienda, o null si no trata de ninguna.
+     */
+    public Chat(int idChat, String nombreUsuario, String ultimoMensaje, long fechaUltimoMensaje, String fotoUsuario,
+                int noLeidos, int viviendaId, String tituloVivienda) {
+        this(idChat, nombreUsuario, ultimoMensaje, fechaUltimoMensaje, fotoUsuario, noLeidos);
+        this.viviendaId = viviendaId;
+        this.tituloVivienda = tituloVivienda;
+    }
+
     /**
      * Obtiene el identificador del chat.
      *
@@ -71,9 +112,9 @@ public class Chat {
     /**
      * Obtiene la fecha del último mensaje enviado o recibido.
      *
-     * @return Fecha del último mensaje.
+     * @return Fecha del último mensaje, en milisegundos desde epoch.
      */
-    public String getFechaUltimoMensaje() {
+    public long getFechaUltimoMensaje() {
         return fechaUltimoMensaje;
     }
 
@@ -85,4 +126,31 @@ public class Chat {
     public String getFotoUsuario() {
         return fotoUsuario;
     }
+
+    /**
+     * Obtiene el número de mensajes recibidos en el chat que aún no se han leído.
+     *
+     * @return Número de mensajes sin leer.
+     */
+    public int getNoLeidos() {
+        return noLeidos;
+    }
+
+    /**
+     * Obtiene la vivienda sobre la que trata el chat.
+     *
+     * @return ID de la vivienda, o 0 si el chat no trata de ninguna.
+     */
+    public int getViviendaId() {
+        return viviendaId;
+    }
+
+    /**
+     * Obtiene el título de la vivienda sobre la que trata el chat.
+     *
+     * @return Título de la vivienda, o null si el chat no trata de ninguna.
+     */
+    public String getTituloVivienda() {
+        return tituloVivienda;
+    }
 }
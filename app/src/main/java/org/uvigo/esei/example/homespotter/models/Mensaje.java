@@ -11,8 +11,9 @@ public class Mensaje {
     private int remitenteId; // ID del usuario remitente del mensaje.
     private int destinatarioId; // ID del usuario destinatario del mensaje.
     private String contenido; // Contenido del mensaje.
-    private String fecha; // Fecha de envío del mensaje.
+    private long fecha; // Fecha de envío del mensaje, en milisegundos desde epoch.
     private boolean leido; // Indica si el mensaje ha sido leído por el destinatario.
+    private int viviendaId; // ID de la vivienda sobre la que trata el mensaje (0 si no trata de ninguna).
 
     /**
      * Constructor de la clase Mensaje.
@@ -21,10 +22,10 @@ public class Mensaje {
      * @param remitenteId    ID del remitente del mensaje.
      * @param destinatarioId ID del destinatario del mensaje.
      * @param contenido      Contenido del mensaje.
-     * @param fecha          Fecha de envío del mensaje.
+     * @param fecha          Fecha de envío del mensaje, en milisegundos desde epoch.
      * @param leido          Estado de lectura del mensaje (true si ha sido leído, false en caso contrario).
      */
-    public Mensaje(int idMensaje, int remitenteId, int destinatarioId, String contenido, String fecha, boolean leido) {
+    public Mensaje(int idMensaje, int remitenteId, int destinatarioId, String contenido, long fecha, boolean leido) {
         this.idMensaje = idMensaje;
         this.remitenteId = remitenteId;
         this.destinatarioId = destinatarioId;
@@ -108,18 +109,18 @@ public class Mensaje {
     /**
      * Obtiene la fecha de envío del mensaje.
      *
-     * @return Fecha del mensaje.
+     * @return Fecha del mensaje, en milisegundos desde epoch.
      */
-    public String getFecha() {
+    public long getFecha() {
         return fecha;
     }
 
     /**
      * Establece la fecha de envío del mensaje.
      *
-     * @param fecha Fecha del mensaje.
+     * @param fecha Fecha del mensaje, en milisegundos desde epoch.
      */
-    public void setFecha(String fecha) {
+    public void setFecha(long fecha) {
         this.fecha = fecha;
     }
 
@@ -140,4 +141,31 @@ public class Mensaje {
     public void setLeido(boolean leido) {
         this.leido = leido;
     }
+
+    /**
+     * Obtiene la vivienda sobre la que trata el mensaje.
+     *
+     * @return ID de la vivienda, o 0 si el mensaje no trata de ninguna.
+     */
+    public int getViviendaId() {
+        return viviendaId;
+    }
+
+    /**
+     * Establece la vivienda sobre la que trata el mensaje.
+     *
+     * @param viviendaId ID de la vivienda, o 0 si el mensaje no trata de ninguna.
+     */
+    public void setViviendaId(int viviendaId) {
+        this.viviendaId = viviendaId;
+    }
+
+    /**
+     * Indica si el mensaje está pendiente de guardar: aún no tiene el ID que le asigna la base de datos.
+     *
+     * @return true si el mensaje todavía no se ha guardado.
+     */
+    public boolean isPendiente() {
+        return idMensaje == 0;
+    }
 }
@@ -0,0 +1,109 @@
+package org.uvigo.esei.example.homespotter.models;
+
+/**
+ * Clase que representa un mensaje encontrado al buscar texto en las conversaciones.
+ * Incluye lo necesario para mostrarlo en los resultados y para abrir su conversación en él:
+ * el otro usuario, la vivienda del hilo, la fecha y un fragmento del contenido con las palabras
+ * buscadas resaltadas.
+ */
+public class MensajeEncontrado {
+
+    // Marcas que rodean cada palabra encontrada en el fragmento (caracteres de control, que no
+    // aparecen en un mensaje escrito por el usuario)
+    public static final String INICIO_RESALTADO = "\u0002";
+    public static final String FIN_RESALTADO = "\u0003";
+
+    private int idMensaje; // ID del mensaje encontrado.
+    private int contactoId; // ID del otro usuario de la conversación.
+    private String nombreContacto; // Nombre de usuario del otro usuario.
+    private String fotoContacto; // URL de la foto de perfil del otro usuario.
+    private int viviendaId; // ID de la vivienda del hilo (0 si no trata de ninguna).
+    private long fecha; // Fecha del mensaje, en milisegundos desde epoch.
+    private String fragmento; // Parte del contenido con las palabras encontradas entre marcas de resaltado.
+
+    /**
+     * Constructor de la clase MensajeEncontrado.
+     *
+     * @param idMensaje      ID del mensaje encontrado.
+     * @param contactoId     ID del otro usuario de la conversación.
+     * @param nombreContacto Nombre de usuario del otro usuario.
+     * @param fotoContacto   URL de la foto de perfil del otro usuario.
+     * @param viviendaId     ID de la vivienda del hilo, o 0 si no trata de ninguna.
+     * @param fecha          Fecha del mensaje, en milisegundos desde epoch.
+     * @param fragmento      Fragmento del contenido con las palabras encontradas resaltadas.
+     */
+    public MensajeEncontrado(int idMensaje, int contactoId, String nombreContacto, String fotoContacto,
+                             int viviendaId, long fecha, String fragmento) {
+        this.idMensaje = idMensaje;
+        this.contactoId = contactoId;
+        this.nombreContacto = nombreContacto;
+        this.fotoContacto = fotoContacto;
+        this.viviendaId = viviendaId;
+        this.fecha = fecha;
+        this.fragmento = fragmento;
+    }
+
+    /**
+     * Obtiene el ID del mensaje encontrado.
+     *
+     * @return ID del mensaje.
+     */
+    public int getIdMensaje() {
+        return idMensaje;
+    }
+
+    /**
+     * Obtiene el ID del otro usuario de la conversación.
+     *
+     * @return ID del contacto.
+     */
+    public int getContactoId() {
+        return contactoId;
+    }
+
+    /**
+     * Obtiene el nombre de usuario del otro usuario de la conversación.
+     *
+     * @return Nombre del contacto.
+     */
+    public String getNombreContacto() {
+        return nombreContacto;
+    }
+
+    /**
+     * Obtiene la URL de la foto de perfil del otro usuario de la conversación.
+     *
+     * @return URL de la foto, o null si no tiene.
+     */
+    public String getFotoContacto() {
+        return fotoContacto;
+    }
+
+    /**
+     * Obtiene el ID de la vivienda del hilo del mensaje.
+     *
+     * @return ID de la vivienda, o 0 si no trata de ninguna.
+     */
+    public int getViviendaId() {
+        return viviendaId;
+    }
+
+    /**
+     * Obtiene la fecha del mensaje.
+     *
+     * @return Fecha en milisegundos desde epoch.
+     */
+    public long getFecha() {
+        return fecha;
+    }
+
+    /**
+     * Obtiene el fragmento del contenido con las palabras encontradas entre
+     * {@link #INICIO_RESALTADO} y {@link #FIN_RESALTADO}.
+     *
+     * @return Fragmento del mensaje.
+     */
+    public String getFragmento() {
+        return fragmento;
+    }
+}
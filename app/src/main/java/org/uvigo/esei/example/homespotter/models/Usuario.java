@@ -26,6 +26,9 @@ public class Usuario {
     // Número de teléfono del usuario
     private String tlfno;
 
+    // Nombre y apellidos del usuario
+    private String nombreCompleto;
+
     /**
      * Constructor de la clase Usuario.
      *
@@ -45,6 +48,22 @@ public class Usuario {
         this.tlfno = tlfno;
     }
 
+    /**
+     * Constructor de la clase Usuario con su nombre y apellidos.
+     *
+     * @param id             Identificador único del usuario.
+     * @param nombre         Nombre del usuario.
+     * @param nombreCompleto Nombre y apellidos del usuario.
+     * @param email          Correo electrónico del usuario.
+     * @param password       Contraseña del usuario.
+     * @param foto           URL de la foto de perfil del usuario.
+     * @param tlfno          Número de teléfono del usuario.
+     */
+    public Usuario(int id, String nombre, String nombreCompleto, String email, String password, String foto, String tlfno) {
+        this(id, nombre, email, password, foto, tlfno);
+        this.nombreCompleto = nombreCompleto;
+    }
+
     /**
      * Obtiene el identificador del usuario.
      *
@@ -152,4 +171,22 @@ public class Usuario {
     public void setTlfno(String tlfno) {
         this.tlfno = tlfno;
     }
+
+    /**
+     * Obtiene el nombre y apellidos del usuario.
+     *
+     * @return Nombre y apellidos del usuario.
+     */
+    public String getNombreCompleto() {
+        return nombreCompleto;
+    }
+
+    /**
+     * Establece el nombre y apellidos del usuario.
+     *
+     * @param nombreCompleto Nuevo nombre y apellidos del usuario.
+     */
+    public void setNombreCompleto(String nombreCompleto) {
+        this.nombreCompleto = nombreCompleto;
+    }
 }
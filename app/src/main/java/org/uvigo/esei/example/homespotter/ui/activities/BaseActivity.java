@@ -1,6 +1,7 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -9,9 +10,15 @@ import androidx.annotation.LayoutRes;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
+import com.google.android.material.badge.BadgeDrawable;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
+
+import java.util.function.IntSupplier;
 
 /**
  * BaseActivity
@@ -20,7 +27,8 @@ import org.uvigo.esei.example.homespotter.R;
  * de navegación inferior (BottomNavigationView).
  *
  * Proporciona funcionalidad para inflar diseños específicos en un contenedor,
- * configurar la navegación inferior y cambiar dinámicamente los íconos del menú.
+ * configurar la navegación inferior, cambiar dinámicamente los íconos del menú y mostrar
+ * el número de mensajes sin leer sobre el ícono de mensajes.
  */
 public abstract class BaseActivity extends AppCompatActivity {
 
@@ -41,6 +49,61 @@ public abstract class BaseActivity extends AppCompatActivity {
         setupBottomNavigation();
     }
 
+    /**
+     * Actualiza el contador de mensajes sin leer cada vez que la actividad vuelve a primer plano.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        actualizarNoLeidos();
+    }
+
+    /**
+     * Cuenta en segundo plano los mensajes sin leer del usuario actual y los muestra como
+     * insignia sobre el ícono de mensajes. El recuento lee los contadores de TABLA_CONVERSACIONES,
+     * así que no depende del número de mensajes del usuario. El recuento va por el carril de
+     * escritura de {@link Planificador} para quedar ordenado con los mensajes que se marcan como leídos.
+     */
+    private void actualizarNoLeidos() {
+        BottomNavigationView bottomNavigationView = findViewById(R.id.bottom_navigation);
+        SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+        int usuarioId = sharedPreferences.getInt("user_id", -1);
+
+        if (bottomNavigationView == null || usuarioId == -1) {
+            return;
+        }
+
+        MensajesEntity mensajesEntity = new MensajesEntity(DBManager.getInstance(this).getWritableDatabase());
+        Planificador.ejecutar(Planificador.escritura(), this, () -> mensajesEntity.contarNoLeidos(usuarioId), noLeidos -> {
+            BadgeDrawable insignia = bottomNavigationView.getOrCreateBadge(R.id.nav_messages);
+            insignia.setNumber(noLeidos);
+            insignia.setVisible(noLeidos > 0);
+        });
+    }
+
+    /**
+     * Ejecuta en segundo plano una operación que marca mensajes como leídos y descuenta de la
+     * insignia los que marcó, sin volver a contar los no leídos. La operación se ejecuta en el mismo
+     * carril que el recuento: un recuento anterior se muestra antes del descuento y uno posterior ya
+     * incluye la operación, así que no se descuentan dos veces.
+     *
+     * @param marcarLeidos Operación que devuelve cuántos mensajes pasaron a leídos.
+     */
+    protected void descontarNoLeidos(IntSupplier marcarLeidos) {
+        BottomNavigationView bottomNavigationView = findViewById(R.id.bottom_navigation);
+
+        Planificador.ejecutar(Planificador.escritura(), this, marcarLeidos::getAsInt, leidos -> {
+            if (leidos <= 0 || bottomNavigationView == null) {
+                return;
+            }
+
+            BadgeDrawable insignia = bottomNavigationView.getOrCreateBadge(R.id.nav_messages);
+            int noLeidos = Math.max(insignia.getNumber() - leidos, 0);
+            insignia.setNumber(noLeidos);
+            insignia.setVisible(noLeidos > 0);
+        });
+    }
+
     /**
      * Configura la barra de navegación inferior (BottomNavigationView),
      * estableciendo los listeners para manejar la navegación entre actividades.
@@ -2,53 +2,74 @@ package org.uvigo.esei.example.homespotter.ui.activities;
 
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
-import android.util.Log;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.TextView;
 
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
 import org.uvigo.esei.example.homespotter.database.DBManager;
 import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
 import org.uvigo.esei.example.homespotter.models.Chat;
-import org.uvigo.esei.example.homespotter.models.Usuario;
+import org.uvigo.esei.example.homespotter.models.MensajeEncontrado;
 import org.uvigo.esei.example.homespotter.ui.adapters.ChatAdapter;
+import org.uvigo.esei.example.homespotter.ui.adapters.MensajeEncontradoAdapter;
 
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * ChatListActivity
  *
  * Actividad que muestra una lista de chats asociados al usuario actual.
- * Recupera los mensajes de la base de datos y los organiza en chats,
- * mostrando el nombre, foto y último mensaje de cada conversación.
+ * Recupera las conversaciones de la base de datos en segundo plano, con una única consulta,
+ * mostrando el nombre, foto, último mensaje y mensajes sin leer de cada conversación. La lista se
+ * vuelve a cargar solo cuando {@link BusCambios} avisa de cambios en los mensajes o los usuarios.
+ * Al escribir en el buscador, la lista muestra los mensajes que contienen el texto; al pulsar uno
+ * se abre su conversación directamente en ese mensaje.
  */
 public class ChatListActivity extends BaseActivity {
 
+    // Número máximo de mensajes encontrados que se muestran
+    private static final int MAX_RESULTADOS = 50;
+
     // RecyclerView que muestra la lista de chats
     private RecyclerView recyclerView;
 
+    // Texto mostrado si no hay chats disponibles
+    private TextView noChatsMessage;
+
     // Adaptador para manejar los datos de los chats
     private ChatAdapter adapter;
 
     // Lista de chats a mostrar
-    private List<Chat> chats;
+    private final List<Chat> chats = new ArrayList<>();
+
+    // Adaptador y lista de los mensajes encontrados, y texto buscado ("" si no se está buscando)
+    private MensajeEncontradoAdapter adapterBusqueda;
+    private final List<MensajeEncontrado> encontrados = new ArrayList<>();
+    private String textoBuscado = "";
 
-    // Entidades para interactuar con la base de datos
+    // Entidad para interactuar con la base de datos
     private MensajesEntity mensajesEntity;
-    private UsuarioEntity usuarioEntity;
+
+    // ID del usuario actual
+    private int usuarioId;
+
+    private final Executor lecturas = Planificador.secuencia(); // Lecturas en segundo plano, en orden
 
     /**
      * Método llamado al crear la actividad.
-     * Configura la interfaz gráfica y recupera los chats del usuario.
+     * Configura la interfaz gráfica, carga los chats y se suscribe a sus cambios.
      *
      * @param savedInstanceState Estado guardado previamente (si existe).
      */
@@ -60,29 +81,14 @@ public class ChatListActivity extends BaseActivity {
         // Configurar el RecyclerView
         recyclerView = findViewById(R.id.recyclerViewChats);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        noChatsMessage = findViewById(R.id.noChatsMessage);
 
-        // Texto mostrado si no hay chats disponibles
-        TextView noChatsMessage = findViewById(R.id.noChatsMessage);
-
-        // Inicializar las entidades de base de datos
+        // Inicializar la entidad de base de datos
         mensajesEntity = new MensajesEntity(DBManager.getInstance(this).getWritableDatabase());
-        usuarioEntity = new UsuarioEntity(DBManager.getInstance(this).getWritableDatabase());
 
         // Obtener el ID del usuario actual desde SharedPreferences
         SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-        int usuarioId = sharedPreferences.getInt("user_id", -1);
-
-        // Recuperar los chats del usuario
-        List<Chat> chats = obtenerChats(usuarioId);
-
-        // Mostrar un mensaje si no hay chats, o mostrar la lista si los hay
-        if (chats.isEmpty()) {
-            recyclerView.setVisibility(View.GONE);
-            noChatsMessage.setVisibility(View.VISIBLE);
-        } else {
-            recyclerView.setVisibility(View.VISIBLE);
-            noChatsMessage.setVisibility(View.GONE);
-        }
+        usuarioId = sharedPreferences.getInt("user_id", -1);
 
         // Configurar el adaptador para el RecyclerView
         adapter = new ChatAdapter(chats, chat -> {
@@ -91,106 +97,102 @@ public class ChatListActivity extends BaseActivity {
             intent.putExtra("chat_id", chat.getIdChat());
             intent.putExtra("chat_user_name", chat.getNombreUsuario());
             intent.putExtra("chat_photo", chat.getFotoUsuario());
+            intent.putExtra("chat_vivienda_id", chat.getViviendaId());
             startActivity(intent);
         });
         recyclerView.setAdapter(adapter);
+
+        // Abrir la conversación de un mensaje encontrado en ese mensaje
+        adapterBusqueda = new MensajeEncontradoAdapter(encontrados, encontrado -> {
+            Intent intent = new Intent(ChatListActivity.this, MensajeActivity.class);
+            intent.putExtra("chat_id", encontrado.getContactoId());
+            intent.putExtra("chat_user_name", encontrado.getNombreContacto());
+            intent.putExtra("chat_photo", encontrado.getFotoContacto());
+            intent.putExtra("chat_vivienda_id", encontrado.getViviendaId());
+            intent.putExtra("mensaje_id", encontrado.getIdMensaje());
+            intent.putExtra("mensaje_fecha", encontrado.getFecha());
+            startActivity(intent);
+        });
+
+        EditText editTextBuscar = findViewById(R.id.editTextBuscarMensajes);
+        editTextBuscar.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                buscarMensajes(s.toString().trim());
+            }
+        });
+
+        // Los cambios hechos en una conversación abierta desde aquí llegan juntos al volver
+        cargarChats();
+        BusCambios.observar(this, cambio -> cargarChats(), MensajesEntity.NOMBRE_TABLA, UsuarioEntity.NOMBRE_TABLA);
     }
 
     /**
-     * Recupera los chats asociados al usuario actual.
-     *
-     * @param usuarioId ID del usuario actual.
-     * @return Lista de chats del usuario.
+     * Recupera en segundo plano las conversaciones del usuario actual y las muestra.
      */
-    public List<Chat> obtenerChats(int usuarioId) {
-        List<Chat> chats = new ArrayList<>();
-        Set<Integer> remitentes = new HashSet<>();
-
-        // Obtener los mensajes asociados al usuario
-        Cursor cursorMensajes = mensajesEntity.obtenerMensajes(usuarioId);
-
-        if (cursorMensajes != null && cursorMensajes.moveToFirst()) {
-            do {
-                int columnIndexRem = cursorMensajes.getColumnIndex("remitente_id");
-                int columnIndexDes = cursorMensajes.getColumnIndex("destinatario_id");
-
-                // Procesar remitentes
-                if (columnIndexRem != -1 && cursorMensajes.getInt(columnIndexRem) != usuarioId) {
-                    int remitenteId = cursorMensajes.getInt(columnIndexRem);
-
-                    if (!remitentes.contains(remitenteId)) {
-                        remitentes.add(remitenteId);
-
-                        // Obtener datos del remitente
-                        Usuario remitente = usuarioEntity.obtenerUsuarioPorId(remitenteId);
-                        String nombreUsuario = remitente.getNombre();
-                        String fotoUsuario = remitente.getFoto();
-
-                        // Obtener información del último mensaje
-                        String[] datosUltimoMensaje = obtenerUltimoMensaje(remitenteId, usuarioId);
-
-                        // Crear un objeto Chat y añadirlo a la lista
-                        Chat chat = new Chat(remitenteId, nombreUsuario, datosUltimoMensaje[0], datosUltimoMensaje[1], fotoUsuario);
-                        chats.add(chat);
-                    }
-                }
-                // Procesar destinatarios
-                else if (columnIndexDes != -1 && cursorMensajes.getInt(columnIndexRem) == usuarioId) {
-                    int destinatarioId = cursorMensajes.getInt(columnIndexDes);
-
-                    if (!remitentes.contains(destinatarioId)) {
-                        remitentes.add(destinatarioId);
-
-                        // Obtener datos del destinatario
-                        Usuario destinatario = usuarioEntity.obtenerUsuarioPorId(destinatarioId);
-                        String nombreUsuario = destinatario.getNombre();
-                        String fotoUsuario = destinatario.getFoto();
-
-                        // Obtener información del último mensaje
-                        String[] datosUltimoMensaje = obtenerUltimoMensaje(usuarioId, destinatarioId);
-
-                        // Crear un objeto Chat y añadirlo a la lista
-                        Chat chat = new Chat(destinatarioId, nombreUsuario, datosUltimoMensaje[0], datosUltimoMensaje[1], fotoUsuario);
-                        chats.add(chat);
-                    }
-                }
-            } while (cursorMensajes.moveToNext());
-            cursorMensajes.close();
-        } else {
-            Log.e("ChatListActivity", "No se encontraron mensajes para el usuario " + usuarioId);
-        }
-
-        return chats;
+    private void cargarChats() {
+        Planificador.ejecutar(lecturas, this, () -> mensajesEntity.obtenerConversaciones(usuarioId), conversaciones -> {
+            chats.clear();
+            chats.addAll(conversaciones);
+            adapter.notifyDataSetChanged();
+            if (textoBuscado.isEmpty()) {
+                mostrarLista(chats.isEmpty(), R.string.missing_chats);
+            }
+        });
     }
 
     /**
-     * Recupera el contenido y la fecha del último mensaje entre dos usuarios.
+     * Busca en segundo plano los mensajes que contienen un texto y los muestra en lugar de los
+     * chats. Con el texto vacío se vuelven a mostrar los chats. Si el texto cambia mientras se
+     * busca, los resultados de la búsqueda anterior se descartan.
      *
-     * @param remitenteId ID del remitente.
-     * @param destinatarioId ID del destinatario.
-     * @return Array con el contenido y la fecha del último mensaje.
+     * @param texto Texto a buscar.
      */
-    private String[] obtenerUltimoMensaje(int remitenteId, int destinatarioId) {
-        Cursor cursorUltimoMensaje = mensajesEntity.obtenerUltimoMensaje(remitenteId, destinatarioId);
-        String fechaUltimoMensaje = null;
-        String contenidoUltimoMensaje = "...";
-
-        if (cursorUltimoMensaje != null && cursorUltimoMensaje.moveToFirst()) {
-            int columnIndexFecha = cursorUltimoMensaje.getColumnIndex("ultima_fecha");
-            int columnIndexContenido = cursorUltimoMensaje.getColumnIndex("contenido");
+    private void buscarMensajes(String texto) {
+        textoBuscado = texto;
+        if (texto.isEmpty()) {
+            recyclerView.setAdapter(adapter);
+            mostrarLista(chats.isEmpty(), R.string.missing_chats);
+            return;
+        }
 
-            if (columnIndexFecha != -1) {
-                fechaUltimoMensaje = cursorUltimoMensaje.getString(columnIndexFecha);
+        Planificador.ejecutar(lecturas, this, () -> mensajesEntity.buscar(usuarioId, texto, MAX_RESULTADOS), resultados -> {
+            if (!texto.equals(textoBuscado)) {
+                return;
             }
-
-            if (columnIndexContenido != -1) {
-                contenidoUltimoMensaje = cursorUltimoMensaje.getString(columnIndexContenido);
+            encontrados.clear();
+            encontrados.addAll(resultados);
+            if (recyclerView.getAdapter() != adapterBusqueda) {
+                recyclerView.setAdapter(adapterBusqueda);
             }
+            adapterBusqueda.notifyDataSetChanged();
+            mostrarLista(encontrados.isEmpty(), R.string.no_messages_found);
+        });
+    }
 
-            cursorUltimoMensaje.close();
+    /**
+     * Muestra la lista, o el texto indicado si está vacía.
+     *
+     * @param vacia Si la lista que se muestra no tiene elementos.
+     * @param textoVacia ID del texto a mostrar cuando está vacía.
+     */
+    private void mostrarLista(boolean vacia, int textoVacia) {
+        if (vacia) {
+            noChatsMessage.setText(textoVacia);
+            recyclerView.setVisibility(View.GONE);
+            noChatsMessage.setVisibility(View.VISIBLE);
+        } else {
+            recyclerView.setVisibility(View.VISIBLE);
+            noChatsMessage.setVisibility(View.GONE);
         }
-
-        return new String[]{contenidoUltimoMensaje, fechaUltimoMensaje};
     }
 
     /**
@@ -8,24 +8,33 @@ import android.os.Bundle;
 import androidx.annotation.Nullable;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
 import org.uvigo.esei.example.homespotter.database.DBManager;
-import android.database.Cursor;
 import android.widget.ListView;
 
 import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
 import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 import org.uvigo.esei.example.homespotter.ui.adapters.ViviendaAdapter;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * FavoritesActivity
  *
  * Actividad que muestra una lista de propiedades marcadas como favoritas por el usuario actual.
  * Permite al usuario ver y seleccionar sus propiedades favoritas para ver más detalles.
+ * Cuando {@link BusCambios} avisa de cambios en las viviendas o sus fotos, solo se vuelven a leer
+ * las viviendas mostradas a las que afectan. La lista completa solo se recarga cuando el usuario
+ * añade un favorito.
  */
 public class FavoritesActivity extends BaseActivity {
 
@@ -33,8 +42,8 @@ public class FavoritesActivity extends BaseActivity {
     private List<Vivienda> viviendasFavoritas; // Lista de viviendas favoritas del usuario
     private ViviendaEntity viviendaEntity; // Entidad para interactuar con la tabla de viviendas
     private FavoritosEntity favoritosEntity; // Entidad para interactuar con la tabla de favoritos
-    private FotosEntity fotosEntity; // Entidad para interactuar con la tabla de fotos
     private ViviendaAdapter viviendaAdapter; // Adaptador para mostrar las viviendas en un ListView
+    private final Executor cargas = Planificador.secuencia(); // Cargas de la lista, en orden
 
     /**
      * Método llamado al crear la actividad.
@@ -59,13 +68,14 @@ public class FavoritesActivity extends BaseActivity {
         SQLiteDatabase db = DBManager.getInstance(this).getWritableDatabase();
         viviendaEntity = new ViviendaEntity(db);
         favoritosEntity = new FavoritosEntity(db);
-        fotosEntity = new FotosEntity(db);
 
         viviendasFavoritas = new ArrayList<>();
 
-        // Si el usuario está autenticado, cargar las viviendas favoritas
+        // Si el usuario está autenticado, cargar las viviendas favoritas y seguir sus cambios
         if (idUsuario != -1) {
             cargarFavoritosEnHilo();
+            BusCambios.observar(this, this::aplicarCambio,
+                    FavoritosEntity.NOMBRE_TABLA, ViviendaEntity.NOMBRE_TABLA, FotosEntity.NOMBRE_TABLA);
         }
 
         // Configurar el adaptador para el ListView
@@ -80,69 +90,110 @@ public class FavoritesActivity extends BaseActivity {
     }
 
     /**
-     * Carga las viviendas favoritas del usuario en un hilo secundario
-     * para evitar bloqueos en la interfaz de usuario.
+     * Carga las viviendas favoritas del usuario en el carril de lectura de {@link Planificador}
+     * para evitar bloqueos en la interfaz de usuario. Las cargas se hacen en orden, así que la
+     * última en entregarse es siempre la más reciente.
      */
     private void cargarFavoritosEnHilo() {
-        new Thread(() -> {
-            // Obtener IDs de las viviendas favoritas del usuario
-            List<Integer> listaFavUser = favoritosEntity.obtenerFavoritosPorUsuario(idUsuario);
-
-            // Cargar detalles de las viviendas
-            List<Vivienda> listaCargada = cargarFavoritosPorUsuario(listaFavUser);
-
-            // Actualizar la lista en el hilo principal
-            runOnUiThread(() -> {
-                viviendasFavoritas.clear();
-                viviendasFavoritas.addAll(listaCargada);
-                viviendaAdapter.notifyDataSetChanged();
-            });
-        }).start();
+        Planificador.ejecutar(cargas, this,
+                // Obtener IDs de las viviendas favoritas del usuario y cargar sus detalles
+                () -> cargarFavoritosPorUsuario(favoritosEntity.obtenerFavoritosPorUsuario(idUsuario)),
+                listaCargada -> {
+                    viviendasFavoritas.clear();
+                    viviendasFavoritas.addAll(listaCargada);
+                    viviendaAdapter.notifyDataSetChanged();
+                });
     }
 
     /**
-     * Carga los detalles de las viviendas favoritas a partir de una lista de IDs.
+     * Actualiza las viviendas mostradas a las que afecta un cambio.
+     * Solo el usuario de la sesión añade favoritos en este dispositivo, así que una inserción en
+     * los favoritos es una vivienda nueva en la lista y se recarga la lista completa.
      *
-     * @param idViviendasFavoritas Lista de IDs de viviendas favoritas.
-     * @return Lista de objetos Vivienda con los detalles cargados.
+     * @param cambio Cambio publicado en {@link BusCambios}.
      */
-    protected List<Vivienda> cargarFavoritosPorUsuario(List<Integer> idViviendasFavoritas) {
-        List<Vivienda> listaViviendas = new ArrayList<>();
+    private void aplicarCambio(BusCambios.Cambio cambio) {
+        boolean enFavoritos = cambio.getTabla().equals(FavoritosEntity.NOMBRE_TABLA);
+        if (enFavoritos && cambio.getOperacion() == BusCambios.Operacion.INSERTAR) {
+            cargarFavoritosEnHilo();
+            return;
+        }
 
-        for (int idVivienda : idViviendasFavoritas) {
-            listaViviendas.add(getVivienda(idVivienda));
+        Set<Integer> afectadas = new HashSet<>();
+        for (Vivienda vivienda : viviendasFavoritas) {
+            if (cambio.afectaA(vivienda.getId())) {
+                afectadas.add(vivienda.getId());
+            }
+        }
+        if (afectadas.isEmpty()) {
+            return;
         }
 
-        return listaViviendas;
+        // Una vivienda eliminada se quita de la lista sin consultar nada
+        if (cambio.getTabla().equals(ViviendaEntity.NOMBRE_TABLA) && cambio.getOperacion() == BusCambios.Operacion.ELIMINAR) {
+            quitarDeLaLista(afectadas);
+            return;
+        }
+
+        if (enFavoritos) {
+            // El favorito borrado puede ser de otro usuario: se quitan las que ya no son del usuario
+            Planificador.ejecutar(cargas, this, () -> {
+                Set<Integer> quitadas = new HashSet<>(afectadas);
+                quitadas.removeAll(favoritosEntity.obtenerFavoritosPorUsuario(idUsuario));
+                return quitadas;
+            }, this::quitarDeLaLista);
+            return;
+        }
+
+        // Releer solo las viviendas afectadas; las que ya no existen se quitan
+        Planificador.ejecutar(cargas, this, () -> {
+            Map<Integer, Vivienda> actualizadas = new HashMap<>();
+            for (Vivienda vivienda : cargarFavoritosPorUsuario(new ArrayList<>(afectadas))) {
+                actualizadas.put(vivienda.getId(), vivienda);
+            }
+            return actualizadas;
+        }, actualizadas -> {
+            for (int i = viviendasFavoritas.size() - 1; i >= 0; i--) {
+                int id = viviendasFavoritas.get(i).getId();
+                if (!afectadas.contains(id)) {
+                    continue;
+                }
+                if (actualizadas.containsKey(id)) {
+                    viviendasFavoritas.set(i, actualizadas.get(id));
+                } else {
+                    viviendasFavoritas.remove(i);
+                }
+            }
+            viviendaAdapter.notifyDataSetChanged();
+        });
     }
 
     /**
-     * Obtiene los detalles de una vivienda específica desde la base de datos.
+     * Quita de la lista las viviendas indicadas.
      *
-     * @param viviendaId ID de la vivienda.
-     * @return Objeto Vivienda con los detalles cargados o null si no se encuentra.
+     * @param ids IDs de las viviendas a quitar.
      */
-    public Vivienda getVivienda(int viviendaId) {
-        Cursor cursor = viviendaEntity.buscarPorId(viviendaId);
-
-        if (cursor != null && cursor.moveToFirst()) {
-            do {
-                String titulo = cursor.getString(cursor.getColumnIndexOrThrow("titulo"));
-                String tipo = cursor.getString(cursor.getColumnIndexOrThrow("tipo_vivienda"));
-                Double precio = cursor.getDouble(cursor.getColumnIndexOrThrow("precio"));
-                String direccion = cursor.getString(cursor.getColumnIndexOrThrow("direccion"));
-                String estado = cursor.getString(cursor.getColumnIndexOrThrow("estado"));
-                String descripcion = cursor.getString(cursor.getColumnIndexOrThrow("descripcion"));
-                String contacto = cursor.getString(cursor.getColumnIndexOrThrow("contacto"));
-                int propietarioId = cursor.getInt(cursor.getColumnIndexOrThrow("propietario_id"));
-
-                // Obtener fotos de la vivienda
-                List<String> fotos = fotosEntity.obtenerListaFotos(viviendaId);
-
-                return new Vivienda(viviendaId, titulo, tipo, precio, direccion, estado, contacto, descripcion, propietarioId, true, fotos);
-            } while (cursor.moveToNext());
+    private void quitarDeLaLista(Set<Integer> ids) {
+        if (viviendasFavoritas.removeIf(vivienda -> ids.contains(vivienda.getId()))) {
+            viviendaAdapter.notifyDataSetChanged();
         }
-        return null;
+    }
+
+    /**
+     * Carga los detalles de las viviendas favoritas a partir de una lista de IDs.
+     * Las viviendas que ya se habían leído salen de la caché de viviendas sin consultar la base de datos.
+     *
+     * @param idViviendasFavoritas Lista de IDs de viviendas favoritas.
+     * @return Lista de objetos Vivienda con los detalles cargados.
+     */
+    protected List<Vivienda> cargarFavoritosPorUsuario(List<Integer> idViviendasFavoritas) {
+        List<Vivienda> listaViviendas = viviendaEntity.obtenerPorIds(idViviendasFavoritas);
+
+        for (Vivienda vivienda : listaViviendas) {
+            vivienda.setFavorite(true);
+        }
+
+        return listaViviendas;
     }
 
     /**
@@ -165,14 +216,4 @@ public class FavoritesActivity extends BaseActivity {
     protected int getLayoutResId() {
         return R.layout.activity_favorites;
     }
-
-    /**
-     * Método llamado al reanudar la actividad.
-     * Recarga las viviendas favoritas para actualizar los datos.
-     */
-    @Override
-    protected void onResume() {
-        super.onResume();
-        cargarFavoritosEnHilo();
-    }
 }
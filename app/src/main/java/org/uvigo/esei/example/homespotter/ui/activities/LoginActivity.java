@@ -11,6 +11,7 @@ import android.widget.Toast;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
 
 /**
@@ -110,7 +111,7 @@ public class LoginActivity extends BaseActivity {
 
     /**
      * Realiza el inicio de sesión del usuario, validando las credenciales
-     * ingresadas contra la base de datos.
+     * ingresadas contra la base de datos en el carril de lectura de {@link Planificador}.
      *
      * @param username Nombre de usuario ingresado.
      * @param password Contraseña ingresada.
@@ -121,33 +122,50 @@ public class LoginActivity extends BaseActivity {
         filters.put("nombre_usuario", username);
         filters.put("password", password);
 
+        Planificador.leer(this, () -> buscarSesion(filters), sesion -> {
+            if (sesion != null) {
+                // Guardar los datos del usuario en SharedPreferences
+                SharedPreferences.Editor editor = sharedPreferences.edit();
+                editor.putInt(USER_ID_KEY, sesion.getAsInteger(USER_ID_KEY));
+                editor.putString(USERNAME_KEY, sesion.getAsString(USERNAME_KEY));
+                editor.apply();
+
+                // Navegar a PerfilActivity
+                Intent intent = new Intent(LoginActivity.this, PerfilActivity.class);
+                startActivity(intent);
+                finish();
+            } else {
+                // Mostrar mensaje de error si las credenciales son inválidas
+                Toast.makeText(LoginActivity.this, getString(R.string.invalid_credentials), Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Busca el usuario que coincide con las credenciales. Se ejecuta en segundo plano.
+     *
+     * @param filters Nombre de usuario y contraseña.
+     * @return ID y nombre del usuario con las claves de SharedPreferences, o null si las credenciales son inválidas.
+     */
+    private ContentValues buscarSesion(ContentValues filters) {
+        ContentValues sesion = null;
+
         // Consultar la base de datos
         Cursor cursor = usuarios.buscar(filters);
 
         if (cursor != null && cursor.moveToFirst()) {
             // Obtener datos del usuario si las credenciales son válidas
-            int userId = cursor.getInt(cursor.getColumnIndexOrThrow("id_usuario"));
-            String savedUsername = cursor.getString(cursor.getColumnIndexOrThrow("nombre_usuario"));
-
-            // Guardar los datos del usuario en SharedPreferences
-            SharedPreferences.Editor editor = sharedPreferences.edit();
-            editor.putInt(USER_ID_KEY, userId);
-            editor.putString(USERNAME_KEY, savedUsername);
-            editor.apply();
-
-            // Navegar a PerfilActivity
-            Intent intent = new Intent(LoginActivity.this, PerfilActivity.class);
-            startActivity(intent);
-            finish();
-        } else {
-            // Mostrar mensaje de error si las credenciales son inválidas
-            Toast.makeText(LoginActivity.this, getString(R.string.invalid_credentials), Toast.LENGTH_SHORT).show();
+            sesion = new ContentValues();
+            sesion.put(USER_ID_KEY, cursor.getInt(cursor.getColumnIndexOrThrow("id_usuario")));
+            sesion.put(USERNAME_KEY, cursor.getString(cursor.getColumnIndexOrThrow("nombre_usuario")));
         }
 
         // Cerrar el cursor si no es nulo
         if (cursor != null) {
             cursor.close();
         }
+
+        return sesion;
     }
 
     /**
@@ -1,13 +1,14 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.widget.Toolbar;
@@ -17,24 +18,43 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.bumptech.glide.Glide;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.BandejaSalida;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
 import org.uvigo.esei.example.homespotter.database.DBManager;
 import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.models.Mensaje;
 import org.uvigo.esei.example.homespotter.ui.adapters.MensajeAdapter;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * MensajeActivity
  *
  * Actividad para gestionar la visualización y el envío de mensajes entre dos usuarios.
  * Permite ver el historial de mensajes, enviar nuevos mensajes y manejar eventos en la interfaz.
+ * Los mensajes que llegan con la conversación abierta se añaden al recibir el aviso de
+ * {@link BusCambios}.
  */
 public class MensajeActivity extends BaseActivity {
 
+    // Mensajes que se cargan cada vez desde la base de datos
+    private static final int TAM_PAGINA = 50;
+
+    // Mensajes que se mantienen en memoria como máximo: al cargar una página por un extremo se
+    // descartan los del extremo contrario, que quedan lejos de la parte visible
+    private static final int MAX_MENSAJES = 3 * TAM_PAGINA;
+
+    // Distancia (en mensajes) al extremo de la lista a la que se empieza a cargar la página siguiente
+    private static final int UMBRAL_CARGA = 10;
+
     // Elementos de la interfaz de usuario
     private RecyclerView recyclerView;
+    private LinearLayoutManager layoutManager;
     private EditText editTextMessage;
     private Button buttonSend;
 
@@ -47,6 +67,33 @@ public class MensajeActivity extends BaseActivity {
     // Entidad para interactuar con la base de datos de mensajes
     private MensajesEntity mensajesEntity;
 
+    // IDs del usuario actual, del otro usuario de la conversación y de la vivienda del hilo (0 si no tiene)
+    private int usuarioId;
+    private int contactoId;
+    private int viviendaId;
+
+    // ID del último mensaje cargado desde la base de datos: solo se piden los posteriores
+    private int ultimoIdCargado = 0;
+
+    // Si quedan mensajes por cargar por encima o por debajo de los que están en memoria
+    private boolean hayAnteriores = false;
+    private boolean hayPosteriores = false;
+
+    // Si hay una página en camino (se carga una cada vez)
+    private boolean cargandoPagina = false;
+
+    // Cambia al vaciar la lista para volver a la última página: las páginas pedidas antes se descartan
+    private int generacion = 0;
+
+    // IDs de los mensajes ya mostrados, para no repetir los enviados desde esta pantalla
+    private final Set<Integer> idsMostrados = new HashSet<>();
+
+    // Mensajes enviados desde esta pantalla que la bandeja de salida aún no ha guardado
+    private int enviosPendientes = 0;
+
+    // Lecturas en segundo plano: se ejecutan en orden, así que las páginas llegan en el orden en que se pidieron
+    private final Executor lecturas = Planificador.secuencia();
+
     /**
      * Método llamado al crear la actividad.
      * Configura la interfaz, inicializa la lista de mensajes y establece los eventos de clic.
@@ -66,30 +113,57 @@ public class MensajeActivity extends BaseActivity {
         // Configurar RecyclerView con un adaptador
         mensajes = new ArrayList<>();
         adapter = new MensajeAdapter(mensajes);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.setAdapter(adapter);
 
+        // Cargar más mensajes al acercarse a un extremo de la lista
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                if (cargandoPagina || mensajes.isEmpty()) {
+                    return;
+                }
+                if (dy < 0 && hayAnteriores && layoutManager.findFirstVisibleItemPosition() <= UMBRAL_CARGA) {
+                    cargarPaginaAnterior();
+                } else if (dy > 0 && hayPosteriores
+                        && layoutManager.findLastVisibleItemPosition() >= mensajes.size() - 1 - UMBRAL_CARGA) {
+                    cargarPaginaSiguiente();
+                }
+            }
+        });
+
         // Inicializar la entidad para manejar mensajes
         mensajesEntity = new MensajesEntity(DBManager.getInstance(this).getWritableDatabase());
 
-        // Cargar mensajes existentes
-        cargarMensajes();
+        // Obtener IDs del usuario actual y del destinatario
+        SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+        usuarioId = sharedPreferences.getInt("user_id", -1);
+        contactoId = getIntent().getIntExtra("chat_id", -1);
+        viviendaId = getIntent().getIntExtra("chat_vivienda_id", 0);
+        adapter.setCurrentUserId(usuarioId);
+
+        // Cargar los mensajes más recientes, o los que rodean al mensaje elegido en el buscador
+        int mensajeBuscadoId = getIntent().getIntExtra("mensaje_id", 0);
+        if (mensajeBuscadoId > 0) {
+            cargarAlrededor(mensajeBuscadoId, getIntent().getLongExtra("mensaje_fecha", 0));
+        } else {
+            cargarUltimaPagina();
+        }
+
+        // Añadir los mensajes que se guarden mientras la conversación está abierta
+        BusCambios.observar(this, cambio -> {
+            if (cambio.getOperacion() == BusCambios.Operacion.INSERTAR) {
+                cargarMensajesNuevos();
+            }
+        }, MensajesEntity.NOMBRE_TABLA);
 
         // Configurar el botón de envío
         buttonSend.setOnClickListener(v -> {
             String contenido = editTextMessage.getText().toString();
-            if (!contenido.isEmpty()) {
-                // Obtener IDs del remitente y destinatario
-                SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-                int remitenteId = sharedPreferences.getInt("user_id", -1);
-                int destinatarioId = getIntent().getIntExtra("chat_id", -1);
-
-                if (destinatarioId > 0 && remitenteId > 0) {
-                    // Insertar mensaje en la base de datos y recargar mensajes
-                    mensajesEntity.insertar(remitenteId, destinatarioId, contenido);
-                    editTextMessage.setText("");
-                    cargarMensajes();
-                }
+            if (!contenido.isEmpty() && contactoId > 0 && usuarioId > 0) {
+                editTextMessage.setText("");
+                enviarMensaje(contenido);
             }
         });
 
@@ -112,39 +186,306 @@ public class MensajeActivity extends BaseActivity {
     }
 
     /**
-     * Carga los mensajes entre el usuario actual y el destinatario.
-     * Actualiza la lista de mensajes y notifica al adaptador.
+     * Carga en segundo plano la página más reciente de la conversación y la coloca delante de los
+     * mensajes que haya en la lista, que solo pueden ser mensajes enviados pendientes de guardar.
      */
-    private void cargarMensajes() {
-        // Obtener ID del usuario actual desde SharedPreferences
-        SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-        int currentUserId = sharedPreferences.getInt("user_id", -1);
+    private void cargarUltimaPagina() {
+        cargandoPagina = true;
 
-        // Obtener ID del destinatario desde el Intent
-        int destinatarioId = getIntent().getIntExtra("chat_id", -1);
+        lecturas.execute(() -> {
+            List<Mensaje> pagina = mensajesEntity.obtenerUltimaPagina(usuarioId, contactoId, viviendaId, TAM_PAGINA);
 
-        // Obtener mensajes desde la base de datos
-        Cursor cursor = mensajesEntity.obtenerMensajesEntreUsuarios(currentUserId, destinatarioId);
+            Planificador.enPrincipal(this, () -> {
+                cargandoPagina = false;
+                hayAnteriores = pagina.size() == TAM_PAGINA;
+                hayPosteriores = false;
+                registrarCargados(pagina);
 
-        if (cursor != null) {
+                mensajes.addAll(0, pagina);
+                adapter.notifyItemRangeInserted(0, pagina.size());
+                if (!mensajes.isEmpty()) {
+                    recyclerView.scrollToPosition(mensajes.size() - 1);
+                }
+                marcarLeidos();
+            });
+        });
+    }
+
+    /**
+     * Carga en segundo plano una página centrada en un mensaje y lo muestra, sin cargar el resto de
+     * la conversación: los mensajes anteriores y posteriores se cargan al desplazarse.
+     *
+     * @param idMensaje ID del mensaje.
+     * @param fecha Fecha del mensaje.
+     */
+    private void cargarAlrededor(int idMensaje, long fecha) {
+        cargandoPagina = true;
+        int antes = TAM_PAGINA / 2 + 1; // Incluye el propio mensaje
+        int despues = TAM_PAGINA - antes;
+
+        lecturas.execute(() -> {
+            // La clave (fecha, idMensaje + 1) deja el propio mensaje entre los anteriores
+            List<Mensaje> anteriores = mensajesEntity.obtenerPaginaAnterior(usuarioId, contactoId, viviendaId,
+                    fecha, idMensaje + 1, antes);
+            List<Mensaje> posteriores = mensajesEntity.obtenerPaginaSiguiente(usuarioId, contactoId, viviendaId,
+                    fecha, idMensaje, despues);
+
+            Planificador.enPrincipal(this, () -> {
+                cargandoPagina = false;
+                hayAnteriores = anteriores.size() == antes;
+                hayPosteriores = posteriores.size() == despues;
+                List<Mensaje> pagina = new ArrayList<>(anteriores);
+                pagina.addAll(posteriores);
+                registrarCargados(pagina);
+
+                mensajes.addAll(0, pagina);
+                adapter.notifyItemRangeInserted(0, pagina.size());
+                if (!anteriores.isEmpty()) {
+                    layoutManager.scrollToPositionWithOffset(anteriores.size() - 1, recyclerView.getHeight() / 3);
+                }
+                marcarLeidos();
+            });
+        });
+    }
+
+    /**
+     * Carga en segundo plano la página anterior al primer mensaje de la lista y la inserta al
+     * principio, sin mover los mensajes que se están viendo. Si se supera {@link #MAX_MENSAJES}, se
+     * descartan los del final.
+     */
+    private void cargarPaginaAnterior() {
+        Mensaje primero = mensajes.get(0);
+        cargandoPagina = true;
+
+        int generacionPedida = generacion;
+        lecturas.execute(() -> {
+            List<Mensaje> pagina = mensajesEntity.obtenerPaginaAnterior(usuarioId, contactoId, viviendaId,
+                    primero.getFecha(), primero.getIdMensaje(), TAM_PAGINA);
+
+            Planificador.enPrincipal(this, () -> {
+                if (generacionPedida != generacion) {
+                    return;
+                }
+                cargandoPagina = false;
+                hayAnteriores = pagina.size() == TAM_PAGINA;
+                if (pagina.isEmpty()) {
+                    return;
+                }
+                registrarCargados(pagina);
+
+                // Mantener en su sitio el primer mensaje visible
+                int posicion = Math.max(layoutManager.findFirstVisibleItemPosition(), 0);
+                View vista = layoutManager.findViewByPosition(posicion);
+                int desplazamiento = vista != null ? vista.getTop() : 0;
+
+                mensajes.addAll(0, pagina);
+                adapter.notifyItemRangeInserted(0, pagina.size());
+                layoutManager.scrollToPositionWithOffset(posicion + pagina.size(), desplazamiento);
+
+                int sobrantes = mensajes.size() - MAX_MENSAJES;
+                if (sobrantes > 0) {
+                    descartar(mensajes.size() - sobrantes, sobrantes);
+                    hayPosteriores = true;
+                }
+            });
+        });
+    }
+
+    /**
+     * Carga en segundo plano la página siguiente al último mensaje de la lista, cuando se habían
+     * descartado los más recientes, y la añade al final. Si se supera {@link #MAX_MENSAJES}, se
+     * descartan los del principio.
+     */
+    private void cargarPaginaSiguiente() {
+        Mensaje ultimo = mensajes.get(mensajes.size() - 1);
+        cargandoPagina = true;
+
+        int generacionPedida = generacion;
+        lecturas.execute(() -> {
+            List<Mensaje> pagina = mensajesEntity.obtenerPaginaSiguiente(usuarioId, contactoId, viviendaId,
+                    ultimo.getFecha(), ultimo.getIdMensaje(), TAM_PAGINA);
+
+            Planificador.enPrincipal(this, () -> {
+                if (generacionPedida != generacion) {
+                    return;
+                }
+                cargandoPagina = false;
+                hayPosteriores = pagina.size() == TAM_PAGINA;
+                registrarCargados(pagina);
+
+                int inicio = mensajes.size();
+                mensajes.addAll(pagina);
+                adapter.notifyItemRangeInserted(inicio, pagina.size());
+                recortarPrincipio();
+            });
+        });
+    }
+
+    /**
+     * Marca como leídos en segundo plano los mensajes recibidos hasta el último cargado, con una
+     * sola actualización, y descuenta los marcados de la insignia de mensajes sin leer.
+     */
+    private void marcarLeidos() {
+        int hastaId = ultimoIdCargado;
+        if (hastaId <= 0) {
+            return;
+        }
+
+        descontarNoLeidos(() -> mensajesEntity.marcarConversacionLeida(usuarioId, contactoId, viviendaId, hastaId));
+    }
+
+    /**
+     * Anota los mensajes cargados de la base de datos como mostrados.
+     *
+     * @param pagina Mensajes cargados.
+     */
+    private void registrarCargados(List<Mensaje> pagina) {
+        for (Mensaje mensaje : pagina) {
+            idsMostrados.add(mensaje.getIdMensaje());
+            ultimoIdCargado = Math.max(ultimoIdCargado, mensaje.getIdMensaje());
+        }
+    }
+
+    /**
+     * Descarta los mensajes más antiguos si la lista supera {@link #MAX_MENSAJES}, manteniendo en su
+     * sitio el primer mensaje visible.
+     */
+    private void recortarPrincipio() {
+        int sobrantes = mensajes.size() - MAX_MENSAJES;
+        if (sobrantes <= 0) {
+            return;
+        }
+
+        int posicion = Math.max(layoutManager.findFirstVisibleItemPosition(), 0);
+        View vista = layoutManager.findViewByPosition(posicion);
+        int desplazamiento = vista != null ? vista.getTop() : 0;
+
+        descartar(0, sobrantes);
+        hayAnteriores = true;
+        layoutManager.scrollToPositionWithOffset(Math.max(posicion - sobrantes, 0), desplazamiento);
+    }
+
+    /**
+     * Quita de la lista un rango de mensajes que ya no se muestran.
+     *
+     * @param inicio Posición del primer mensaje a quitar.
+     * @param cantidad Número de mensajes a quitar.
+     */
+    private void descartar(int inicio, int cantidad) {
+        List<Mensaje> rango = mensajes.subList(inicio, inicio + cantidad);
+        for (Mensaje mensaje : rango) {
+            idsMostrados.remove(mensaje.getIdMensaje());
+        }
+        rango.clear();
+        adapter.notifyItemRangeRemoved(inicio, cantidad);
+    }
+
+    /**
+     * Carga en segundo plano los mensajes de la conversación posteriores al último cargado y los
+     * añade al final de la lista, sin volver a leer ni redibujar los que ya se muestran. Mientras
+     * haya envíos pendientes no se añade nada: el último en guardarse vuelve a llamar a este método.
+     */
+    private void cargarMensajesNuevos() {
+        final int desdeId = ultimoIdCargado;
+
+        lecturas.execute(() -> {
+            List<Mensaje> nuevos = mensajesEntity.obtenerMensajesPosteriores(usuarioId, contactoId, viviendaId, desdeId);
+
+            Planificador.enPrincipal(this, () -> {
+                // Si se descartaron los más recientes, los nuevos llegarán al bajar con su página
+                if (hayPosteriores) {
+                    return;
+                }
+                // Un mensaje propio aún pendiente se mostraría dos veces
+                if (enviosPendientes > 0) {
+                    return;
+                }
+
+                int inicio = mensajes.size();
+                for (Mensaje mensaje : nuevos) {
+                    // Los ya cargados por una página que se pidió mientras tanto
+                    if (mensaje.getIdMensaje() <= ultimoIdCargado) {
+                        continue;
+                    }
+                    ultimoIdCargado = mensaje.getIdMensaje();
+                    // Los enviados desde esta pantalla ya están en la lista
+                    if (idsMostrados.add(mensaje.getIdMensaje())) {
+                        mensajes.add(mensaje);
+                    }
+                }
+
+                int insertados = mensajes.size() - inicio;
+                if (insertados > 0) {
+                    adapter.notifyItemRangeInserted(inicio, insertados);
+                    recortarPrincipio();
+                    recyclerView.scrollToPosition(mensajes.size() - 1);
+                    marcarLeidos();
+                }
+            });
+        });
+    }
+
+    /**
+     * Muestra el mensaje en la lista inmediatamente, como pendiente, y lo deja en la bandeja de
+     * salida. Cuando se guarda, el mensaje pendiente se sustituye por el guardado (con su ID y su
+     * fecha) y se cargan los mensajes que hayan llegado mientras tanto; si no se pudo guardar, se quita.
+     *
+     * @param contenido Contenido del mensaje.
+     */
+    private void enviarMensaje(String contenido) {
+        // Si se descartaron los más recientes, volver a la última página: el mensaje va al final
+        if (hayPosteriores) {
+            int cantidad = mensajes.size();
+            generacion++;
+            idsMostrados.clear();
             mensajes.clear();
-            while (cursor.moveToNext()) {
-                // Crear objeto Mensaje a partir de los datos del cursor
-                int id_mensaje = cursor.getInt(cursor.getColumnIndexOrThrow("id_mensaje"));
-                int remitente_id = cursor.getInt(cursor.getColumnIndexOrThrow("remitente_id"));
-                int destinatario_id = cursor.getInt(cursor.getColumnIndexOrThrow("destinatario_id"));
-                String contenido = cursor.getString(cursor.getColumnIndexOrThrow("contenido"));
-                String fecha = cursor.getString(cursor.getColumnIndexOrThrow("fecha"));
-                boolean leido = cursor.getInt(cursor.getColumnIndexOrThrow("leido")) == 1;
-
-                mensajes.add(new Mensaje(id_mensaje, remitente_id, destinatario_id, contenido, fecha, leido));
+            adapter.notifyItemRangeRemoved(0, cantidad);
+            cargarUltimaPagina();
+        }
+
+        Mensaje pendiente = new Mensaje(0, usuarioId, contactoId, contenido, System.currentTimeMillis(), false);
+        pendiente.setViviendaId(viviendaId);
+        mensajes.add(pendiente);
+        adapter.notifyItemInserted(mensajes.size() - 1);
+        recyclerView.scrollToPosition(mensajes.size() - 1);
+
+        enviosPendientes++;
+        BandejaSalida.getInstance(this).enviar(pendiente, new BandejaSalida.ResultadoEnvio() {
+            @Override
+            public void onGuardado(Mensaje guardado) {
+                if (isDestroyed()) {
+                    return;
+                }
+
+                enviosPendientes--;
+                int posicion = mensajes.indexOf(pendiente);
+                if (posicion != -1) {
+                    idsMostrados.add(guardado.getIdMensaje());
+                    mensajes.set(posicion, guardado);
+                    adapter.notifyItemChanged(posicion);
+                }
+                cargarMensajesNuevos();
             }
-            cursor.close();
 
-            // Configurar el ID del usuario actual en el adaptador y notificar cambios
-            adapter.setCurrentUserId(currentUserId);
-            adapter.notifyDataSetChanged();
-        }
+            @Override
+            public void onError(Mensaje noEnviado) {
+                if (isDestroyed()) {
+                    return;
+                }
+
+                enviosPendientes--;
+                int posicion = mensajes.indexOf(pendiente);
+                if (posicion != -1) {
+                    mensajes.remove(posicion);
+                    adapter.notifyItemRemoved(posicion);
+                }
+                cargarMensajesNuevos();
+                if (editTextMessage.getText().length() == 0) {
+                    editTextMessage.setText(contenido);
+                }
+                Toast.makeText(MensajeActivity.this, "Error al enviar el mensaje.", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     /**
@@ -1,9 +1,7 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
 import android.content.ContentResolver;
-import android.content.ContentValues;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
@@ -24,6 +22,7 @@ import com.bumptech.glide.Glide;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
 import org.uvigo.esei.example.homespotter.imgbb.ImageUploader;
 
@@ -39,7 +38,7 @@ import java.nio.file.Files;
  * correo electrónico, contraseña, teléfono y foto de perfil.
  *
  * Funcionalidades principales:
- * - Cargar los datos del perfil desde la base de datos.
+ * - Cargar los datos del perfil desde la base de datos en segundo plano.
  * - Permitir la edición y actualización de los datos del perfil.
  * - Subir una nueva imagen de perfil usando ImgBB.
  */
@@ -71,13 +70,15 @@ public class ModifyProfileActivity extends AppCompatActivity {
             new ActivityResultContracts.GetContent(),
             uri -> {
                 if (uri != null) {
-                    String imagePath = getRealPathFromURI(uri);
-                    if (imagePath != null) {
-                        uploadImageToImgBB(imagePath);
-                    } else {
-                        Log.e(TAG, "Failed to get image path.");
-                        Toast.makeText(this, this.getString(R.string.error_image_path), Toast.LENGTH_SHORT).show();
-                    }
+                    // Copiar la imagen en el carril de red y ficheros
+                    Planificador.ejecutar(Planificador.io(), this, () -> getRealPathFromURI(uri), imagePath -> {
+                        if (imagePath != null) {
+                            uploadImageToImgBB(imagePath);
+                        } else {
+                            Log.e(TAG, "Failed to get image path.");
+                            Toast.makeText(this, this.getString(R.string.error_image_path), Toast.LENGTH_SHORT).show();
+                        }
+                    });
                 }
             }
     );
@@ -136,7 +137,8 @@ public class ModifyProfileActivity extends AppCompatActivity {
     }
 
     /**
-     * Carga los datos del perfil desde la base de datos y los muestra en la interfaz.
+     * Carga los datos del perfil desde la base de datos, en el carril de lectura de
+     * {@link Planificador}, y los muestra en la interfaz.
      */
     private void loadProfileData() {
         int userId = sharedPreferences.getInt("user_id", -1);
@@ -145,17 +147,21 @@ public class ModifyProfileActivity extends AppCompatActivity {
             return;
         }
 
-        ContentValues filters = new ContentValues();
-        filters.put("id_usuario", userId);
-        Cursor cursor = usuarios.buscar(filters);
+        Planificador.leer(this, () -> usuarios.obtenerUsuarioPorId(userId), usuario -> {
+            if (usuario == null) {
+                Toast.makeText(this, this.getString(R.string.error_profile_charging), Toast.LENGTH_SHORT).show();
+                return;
+            }
 
-        if (cursor != null && cursor.moveToFirst()) {
-            fullnameEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow("nombre_completo")));
-            usernameEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow("nombre_usuario")));
-            emailEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow("email")));
-            tlfnoEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow("tlfno")));
-            passwordEditText.setText(cursor.getString(cursor.getColumnIndexOrThrow("password")));
-            currentImageUrl = cursor.getString(cursor.getColumnIndexOrThrow("foto_perfil"));
+            fullnameEditText.setText(usuario.getNombreCompleto());
+            usernameEditText.setText(usuario.getNombre());
+            emailEditText.setText(usuario.getEmail());
+            tlfnoEditText.setText(usuario.getTlfno());
+            passwordEditText.setText(usuario.getPassword());
+            // Una foto subida mientras se cargaba el perfil no se sustituye por la anterior
+            if (currentImageUrl == null) {
+                currentImageUrl = usuario.getFoto();
+            }
 
             if (currentImageUrl != null && !currentImageUrl.isEmpty()) {
                 Glide.with(this)
@@ -165,10 +171,7 @@ public class ModifyProfileActivity extends AppCompatActivity {
             } else {
                 profileImageView.setImageResource(R.drawable.ic_profile_default);
             }
-            cursor.close();
-        } else {
-            Toast.makeText(this, this.getString(R.string.error_profile_charging), Toast.LENGTH_SHORT).show();
-        }
+        });
     }
 
     /**
@@ -202,7 +205,8 @@ public class ModifyProfileActivity extends AppCompatActivity {
     }
 
     /**
-     * Guarda los cambios realizados en el perfil en la base de datos.
+     * Guarda los cambios realizados en el perfil en la base de datos, en el carril de escritura
+     * de {@link Planificador}.
      */
     private void saveProfileChanges() {
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
@@ -222,23 +226,24 @@ public class ModifyProfileActivity extends AppCompatActivity {
 
                     int userId = sharedPreferences.getInt("user_id", -1);
                     if (userId != -1) {
-                        boolean isUpdated = usuarios.modificar(
+                        String newPhoto = newImageUrl != null ? newImageUrl : currentImageUrl;
+                        Planificador.escribir(this, () -> usuarios.modificar(
                                 userId,
                                 newUsername,
                                 newFullname,
                                 newEmail,
                                 newPassword,
-                                newImageUrl != null ? newImageUrl : currentImageUrl,
+                                newPhoto,
                                 newTlfno
-                        );
-
-                        if (isUpdated) {
-                            Toast.makeText(ModifyProfileActivity.this, this.getString(R.string.profile_updated), Toast.LENGTH_SHORT).show();
-                            setResult(RESULT_OK);
-                            finish();
-                        } else {
-                            Toast.makeText(ModifyProfileActivity.this, this.getString(R.string.error_profile_update), Toast.LENGTH_SHORT).show();
-                        }
+                        ), isUpdated -> {
+                            if (isUpdated) {
+                                Toast.makeText(ModifyProfileActivity.this, this.getString(R.string.profile_updated), Toast.LENGTH_SHORT).show();
+                                setResult(RESULT_OK);
+                                finish();
+                            } else {
+                                Toast.makeText(ModifyProfileActivity.this, this.getString(R.string.error_profile_update), Toast.LENGTH_SHORT).show();
+                            }
+                        });
                     }
                 })
                 .setNegativeButton(this.getString(R.string.no), (dialog, which) -> dialog.dismiss())
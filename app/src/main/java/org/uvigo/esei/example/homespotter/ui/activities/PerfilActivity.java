@@ -1,9 +1,7 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
-import android.content.ContentValues;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.os.Bundle;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -17,11 +15,9 @@ import com.bumptech.glide.Glide;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-
 /**
  * Clase que representa la actividad del perfil del usuario.
  * Muestra y permite editar la información del usuario autenticado.
@@ -41,7 +37,6 @@ public class PerfilActivity extends BaseActivity {
 
     private SharedPreferences sharedPreferences; // Preferencias para datos del usuario
     private UsuarioEntity usuarios; // Gestión de datos del usuario en la base de datos
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor(); // Ejecutor para tareas de fondo
 
     /**
      * Método llamado al crear la actividad.
@@ -101,43 +96,27 @@ public class PerfilActivity extends BaseActivity {
             return; // Salir si no hay usuario autenticado
         }
 
-        // Cargar datos en un hilo de fondo
-        executorService.execute(() -> {
-            ContentValues filters = new ContentValues();
-            filters.put("id_usuario", userId);
-            Cursor cursor = usuarios.buscar(filters);
-
-            if (cursor != null && cursor.moveToFirst()) {
-                String fullname = cursor.getString(cursor.getColumnIndexOrThrow("nombre_completo"));
-                String username = cursor.getString(cursor.getColumnIndexOrThrow("nombre_usuario"));
-                String email = cursor.getString(cursor.getColumnIndexOrThrow("email"));
-                String password = cursor.getString(cursor.getColumnIndexOrThrow("password"));
-                String tlfno = cursor.getString(cursor.getColumnIndexOrThrow("tlfno"));
-                String profile = cursor.getString(cursor.getColumnIndexOrThrow("foto_perfil"));
-
-                cursor.close();
-
-                // Actualizar la interfaz en el hilo principal
-                runOnUiThread(() -> {
-                    fullnameTextView.setText(fullname);
-                    usernameTextView.setText(username);
-                    emailTextView.setText(email);
-                    tlfnoTextView.setText(tlfno);
-                    passwordTextView.setText(password);
-
-                    if (profile != null && !profile.isEmpty()) {
-                        Glide.with(this)
-                                .load(profile)
-                                .placeholder(R.drawable.ic_profile_default)
-                                .into(profileImageView);
-                    } else {
-                        profileImageView.setImageResource(R.drawable.ic_profile_default);
-                    }
-                });
+        // Cargar datos en el carril de lectura; el perfil se lee de la caché de usuarios salvo la primera vez
+        Planificador.leer(this, () -> usuarios.obtenerUsuarioPorId(userId), usuario -> {
+            if (usuario == null) {
+                Toast.makeText(PerfilActivity.this, this.getString(R.string.error_loading_profile), Toast.LENGTH_SHORT).show();
+                return;
+            }
+
+            fullnameTextView.setText(usuario.getNombreCompleto());
+            usernameTextView.setText(usuario.getNombre());
+            emailTextView.setText(usuario.getEmail());
+            tlfnoTextView.setText(usuario.getTlfno());
+            passwordTextView.setText(usuario.getPassword());
+
+            String profile = usuario.getFoto();
+            if (profile != null && !profile.isEmpty()) {
+                Glide.with(this)
+                        .load(profile)
+                        .placeholder(R.drawable.ic_profile_default)
+                        .into(profileImageView);
             } else {
-                runOnUiThread(() ->
-                        Toast.makeText(PerfilActivity.this, this.getString(R.string.error_loading_profile), Toast.LENGTH_SHORT).show()
-                );
+                profileImageView.setImageResource(R.drawable.ic_profile_default);
             }
         });
     }
@@ -209,16 +188,6 @@ public class PerfilActivity extends BaseActivity {
                 .show();
     }
 
-    /**
-     * Método llamado al destruir la actividad.
-     * Libera los recursos del ejecutor de hilos.
-     */
-    @Override
-    protected void onDestroy() {
-        super.onDestroy();
-        executorService.shutdown();
-    }
-
     /**
      * Método llamado al reanudar la actividad.
      * Recarga los datos del perfil.
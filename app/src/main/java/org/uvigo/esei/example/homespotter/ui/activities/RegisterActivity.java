@@ -19,6 +19,8 @@ import androidx.appcompat.app.AppCompatActivity;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.Planificador;
+import org.uvigo.esei.example.homespotter.database.ResultadoInsercion;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
 import org.uvigo.esei.example.homespotter.imgbb.ImageUploader;
 
@@ -145,7 +147,8 @@ public class RegisterActivity extends AppCompatActivity {
     }
 
     /**
-     * Sube la imagen seleccionada a ImgBB y registra al usuario en la base de datos.
+     * Sube la imagen seleccionada a ImgBB y registra al usuario en la base de datos. La imagen se
+     * copia en el carril de red y ficheros de {@link Planificador}.
      *
      * @param name Nombre completo.
      * @param username Nombre de usuario.
@@ -154,24 +157,29 @@ public class RegisterActivity extends AppCompatActivity {
      * @param contact Contacto.
      */
     private void subirImagenAImgBB(String name, String username, String email, String password, String contact) {
-        try {
-            File file = getFileFromUri(selectedImageUri);
-            ImageUploader imageUploader = new ImageUploader();
-
-            imageUploader.uploadImage(file.getAbsolutePath(), new ImageUploader.UploadCallback() {
-                @Override
-                public void onSuccess(String imageUrl, String deleteUrl) {
-                    registrarUsuario(name, username, email, password, imageUrl, contact);
-                }
-
-                @Override
-                public void onError(String errorMessage) {
-                    Toast.makeText(RegisterActivity.this, "Error al subir la imagen: " + errorMessage, Toast.LENGTH_SHORT).show();
-                }
-            });
-        } catch (IOException e) {
-            Toast.makeText(this, "Error al procesar la imagen: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+        Uri uri = selectedImageUri;
+        Planificador.io().execute(() -> {
+            try {
+                File file = getFileFromUri(uri);
+                ImageUploader imageUploader = new ImageUploader();
+
+                // Los resultados de la subida llegan en el hilo principal
+                imageUploader.uploadImage(file.getAbsolutePath(), new ImageUploader.UploadCallback() {
+                    @Override
+                    public void onSuccess(String imageUrl, String deleteUrl) {
+                        registrarUsuario(name, username, email, password, imageUrl, contact);
+                    }
+
+                    @Override
+                    public void onError(String errorMessage) {
+                        Toast.makeText(RegisterActivity.this, "Error al subir la imagen: " + errorMessage, Toast.LENGTH_SHORT).show();
+                    }
+                });
+            } catch (IOException e) {
+                Planificador.enPrincipal(this, () ->
+                        Toast.makeText(this, "Error al procesar la imagen: " + e.getMessage(), Toast.LENGTH_SHORT).show());
+            }
+        });
     }
 
     /**
@@ -200,7 +208,7 @@ public class RegisterActivity extends AppCompatActivity {
     }
 
     /**
-     * Registra al usuario en la base de datos.
+     * Registra al usuario en la base de datos, en el carril de escritura de {@link Planificador}.
      *
      * @param name Nombre completo.
      * @param username Nombre de usuario.
@@ -218,24 +226,24 @@ public class RegisterActivity extends AppCompatActivity {
         values.put("foto_perfil", photoUrl);
         values.put("tlfno", contact);
 
-        UsuarioEntity.insertUsuarioEstado result = usuarios.insertar(values);
-        int userId = usuarios.getUltimoUsuarioId();
-
-        if (result == UsuarioEntity.insertUsuarioEstado.COMPLETADO) {
-            SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
-            SharedPreferences.Editor editor = sharedPreferences.edit();
-            editor.putInt("user_id", userId);
-            editor.putString("username", username);
-            editor.apply();
-
-            Toast.makeText(this, "Usuario registrado exitosamente", Toast.LENGTH_SHORT).show();
-            Intent intent = new Intent(RegisterActivity.this, LoginActivity.class);
-            startActivity(intent);
-            finish();
-        } else if (result == UsuarioEntity.insertUsuarioEstado.USUARIO_EXISTENTE) {
-            Toast.makeText(this, "Usuario ya existente en la App", Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(this, "Error al registrar el usuario", Toast.LENGTH_SHORT).show();
-        }
+        Planificador.escribir(this, () -> usuarios.insertarConId(values), result -> {
+            if (result.isInsertado()) {
+                int userId = (int) result.getId();
+                SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
+                SharedPreferences.Editor editor = sharedPreferences.edit();
+                editor.putInt("user_id", userId);
+                editor.putString("username", username);
+                editor.apply();
+
+                Toast.makeText(this, "Usuario registrado exitosamente", Toast.LENGTH_SHORT).show();
+                Intent intent = new Intent(RegisterActivity.this, LoginActivity.class);
+                startActivity(intent);
+                finish();
+            } else if (result.getEstado() == ResultadoInsercion.Estado.YA_EXISTIA) {
+                Toast.makeText(this, "Usuario ya existente en la App", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Error al registrar el usuario", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
@@ -7,6 +7,8 @@ import android.os.Looper;
 import androidx.appcompat.app.AppCompatActivity;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.ArchivoMensajes;
+import org.uvigo.esei.example.homespotter.database.RegistroCambios;
 
 /**
  * Actividad que muestra una pantalla de carga (Splash Screen) al iniciar la aplicación.
@@ -30,6 +32,12 @@ public class SplashActivity extends AppCompatActivity {
         // Establece el diseño de la pantalla desde un archivo XML.
         setContentView(R.layout.splash_screen);
 
+        // Archiva los mensajes antiguos en segundo plano mientras arranca la aplicación.
+        ArchivoMensajes.archivarEnSegundoPlano(this);
+
+        // Compacta también el registro de cambios de la base de datos.
+        RegistroCambios.compactarEnSegundoPlano(this);
+
         // Utiliza un Handler para retrasar la ejecución de un bloque de código.
         new android.os.Handler(Looper.getMainLooper()).postDelayed(() -> {
             // Crea un Intent para iniciar la actividad principal.
@@ -1,6 +1,5 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
-import android.content.ContentValues;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
@@ -14,12 +13,13 @@ import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 
 import androidx.fragment.app.Fragment;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
 import org.uvigo.esei.example.homespotter.ui.fragments.MisViviendasFragment;
 import org.uvigo.esei.example.homespotter.ui.fragments.ViviendasFragment;
 
@@ -148,24 +148,24 @@ public class ViviendaActivity extends BaseActivity {
         builder.setTitle(this.getString(R.string.filters))
                 .setView(dialogView)
                 .setPositiveButton(this.getString(R.string.apply), (dialogInterface, i) -> {
-                    ContentValues filtros = new ContentValues();
+                    ViviendaQuery.Builder filtros = new ViviendaQuery.Builder();
                     boolean buscar = false;
 
                     // Procesar los campos de texto y preparar los filtros.
                     if (!titleEditText.getText().toString().trim().isEmpty()) {
-                        filtros.put("titulo", titleEditText.getText().toString().trim());
+                        filtros.titulo(titleEditText.getText().toString().trim());
                         buscar = true;
                     }
                     if (!addressEditText.getText().toString().trim().isEmpty()) {
-                        filtros.put("direccion", addressEditText.getText().toString().trim());
+                        filtros.direccion(addressEditText.getText().toString().trim());
                         buscar = true;
                     }
                     if (!typeEditText.getText().toString().trim().isEmpty()) {
-                        filtros.put("tipo_vivienda", typeEditText.getText().toString().trim());
+                        filtros.tipo(typeEditText.getText().toString().trim());
                         buscar = true;
                     }
                     if (!stateEditText.getText().toString().trim().isEmpty()) {
-                        filtros.put("estado", stateEditText.getText().toString().trim());
+                        filtros.estado(stateEditText.getText().toString().trim());
                         buscar = true;
                     }
 
@@ -185,11 +185,17 @@ public class ViviendaActivity extends BaseActivity {
                         return;
                     }
 
+                    // Con rango de precios se ordena por precio para aprovechar su índice.
+                    filtros.precioMin(minPrice).precioMax(maxPrice);
+                    if (minPrice != null || maxPrice != null) {
+                        filtros.orden(ViviendaEntity.Orden.PRECIO);
+                    }
+
                     // Aplicar los filtros al fragmento actual si es válido.
                     Fragment fragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
                     if (buscar && fragment instanceof ViviendasFragment) {
                         Toast.makeText(ViviendaActivity.this, "Filtro aplicado", Toast.LENGTH_SHORT).show();
-                        ((ViviendasFragment) fragment).applyFilters(filtros, minPrice, maxPrice);
+                        ((ViviendasFragment) fragment).applyFilters(filtros);
                     } else {
                         Toast.makeText(ViviendaActivity.this, "Los campos están vacíos", Toast.LENGTH_SHORT).show();
                         ((ViviendasFragment) fragment).cargarPropiedades();
@@ -200,32 +206,11 @@ public class ViviendaActivity extends BaseActivity {
                 .show();
     }
 
-    /**
-     * Maneja el resultado de actividades lanzadas desde esta actividad.
-     *
-     * @param requestCode Código de solicitud enviado.
-     * @param resultCode Código de resultado devuelto.
-     * @param data Intent con datos adicionales.
-     */
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-
-        if (requestCode == 1 && resultCode == RESULT_OK && data != null) {
-            boolean isFavoriteChanged = data.getBooleanExtra("isFavoriteChanged", false);
-
-            if (isFavoriteChanged) {
-                Fragment currentFragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
-                if (currentFragment instanceof ViviendasFragment) {
-                    ((ViviendasFragment) currentFragment).cargarPropiedades();
-                }
-            }
-        }
-    }
-
     /**
      * Método llamado al reanudar la actividad.
-     * Actualiza los datos según el usuario autenticado y recarga el fragmento actual si es necesario.
+     * Si cambió el usuario autenticado, vuelve a crear el fragmento de viviendas. Los cambios en
+     * viviendas, fotos y favoritos los aplican los propios fragmentos al recibirlos de
+     * {@link org.uvigo.esei.example.homespotter.database.BusCambios}.
      */
     @Override
     protected void onResume() {
@@ -240,13 +225,6 @@ public class ViviendaActivity extends BaseActivity {
             getSupportFragmentManager().beginTransaction()
                     .replace(R.id.fragment_container, ViviendasFragment.newInstance(idUsuario))
                     .commit();
-        } else {
-            Fragment currentFragment = getSupportFragmentManager().findFragmentById(R.id.fragment_container);
-            if (currentFragment instanceof ViviendasFragment) {
-                ((ViviendasFragment) currentFragment).cargarPropiedades();
-            } else if (currentFragment instanceof MisViviendasFragment) {
-                ((MisViviendasFragment) currentFragment).cargarPropiedades();
-            }
         }
     }
 }
@@ -21,7 +21,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
-import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
 import org.uvigo.esei.example.homespotter.imgbb.ImageUploader;
 import org.uvigo.esei.example.homespotter.ui.adapters.PhotoAdapter;
@@ -31,7 +31,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * ViviendaAddActivity
@@ -41,7 +43,6 @@ import java.util.List;
  */
 public class ViviendaAddActivity extends AppCompatActivity {
     private ViviendaEntity viviendaEntity; // Entidad para manejar la tabla de viviendas
-    private FotosEntity fotosEntity; // Entidad para manejar la tabla de fotos
     private final List<Uri> photoUris = new ArrayList<>(); // Lista de URIs de las fotos seleccionadas
     private PhotoAdapter photoAdapter; // Adaptador para mostrar las fotos seleccionadas
     private int userId; // ID del usuario propietario de la vivienda
@@ -59,7 +60,6 @@ public class ViviendaAddActivity extends AppCompatActivity {
 
         // Inicializar entidades de base de datos
         viviendaEntity = new ViviendaEntity(DBManager.getInstance(this).getWritableDatabase());
-        fotosEntity = new FotosEntity(DBManager.getInstance(this).getWritableDatabase());
 
         // Obtener el ID del usuario desde el Intent
         userId = getIntent().getIntExtra("userId", -1);
@@ -141,20 +141,24 @@ public class ViviendaAddActivity extends AppCompatActivity {
                 return;
             }
 
-            // Insertar la vivienda en la base de datos
-            boolean success = viviendaEntity.insertar(title, type, price, address, state, contact, description, userId);
-            if (success) {
-                int viviendaId = viviendaEntity.obtenerUltimaVivienda();
-
-                // Subir las fotos y guardar los enlaces en la base de datos
-                uploadPhotosToImgBB(viviendaId, () -> {
-                    Toast.makeText(ViviendaAddActivity.this, "Vivienda y fotos añadidas con éxito.", Toast.LENGTH_SHORT).show();
-                    setResult(RESULT_OK);
-                    finish();
-                });
-            } else {
-                Toast.makeText(this, "Error al añadir la vivienda. Inténtalo de nuevo.", Toast.LENGTH_SHORT).show();
-            }
+            // Subir primero las fotos y guardar después la vivienda con sus enlaces de una sola vez
+            saveButton.setEnabled(false);
+            uploadPhotosToImgBB(urls -> Planificador.escribir(this,
+                    () -> viviendaEntity.insertarConFotos(title, type, price, address, state, contact, description, userId, urls),
+                    viviendaId -> {
+                        if (viviendaId != -1) {
+                            Toast.makeText(ViviendaAddActivity.this, "Vivienda y fotos añadidas con éxito.", Toast.LENGTH_SHORT).show();
+                            setResult(RESULT_OK);
+                            finish();
+                        } else {
+                            saveButton.setEnabled(true);
+                            Toast.makeText(ViviendaAddActivity.this, "Error al añadir la vivienda. Inténtalo de nuevo.", Toast.LENGTH_SHORT).show();
+                        }
+                    },
+                    error -> {
+                        saveButton.setEnabled(true);
+                        Toast.makeText(ViviendaAddActivity.this, "Error al añadir la vivienda. Inténtalo de nuevo.", Toast.LENGTH_SHORT).show();
+                    }), () -> saveButton.setEnabled(true));
         });
 
         // Listener para el botón de cancelar
@@ -170,43 +174,69 @@ public class ViviendaAddActivity extends AppCompatActivity {
     }
 
     /**
-     * Sube las fotos seleccionadas a ImgBB y guarda los enlaces en la base de datos.
+     * Sube las fotos seleccionadas a ImgBB y entrega sus enlaces, en el orden en que se
+     * seleccionaron las fotos, cuando han terminado todas las subidas.
+     * La vivienda solo se guarda si todas las fotos se subieron correctamente. Las fotos se copian
+     * en el carril de red y ficheros de {@link Planificador}; el recuento de subidas terminadas se
+     * lleva en el hilo principal, donde llegan los resultados.
      *
-     * @param viviendaId ID de la vivienda asociada.
-     * @param onComplete Callback que se ejecuta cuando todas las fotos han sido subidas.
+     * @param onSubidas Callback que recibe los enlaces de todas las fotos subidas.
+     * @param onError Callback que se ejecuta si alguna foto no se pudo subir.
      */
-    private void uploadPhotosToImgBB(int viviendaId, Runnable onComplete) {
+    private void uploadPhotosToImgBB(Consumer<List<String>> onSubidas, Runnable onError) {
         ImageUploader imageUploader = new ImageUploader();
         int totalFotos = photoUris.size();
-        int[] fotosSubidas = {0};
+        String[] urlsSubidas = new String[totalFotos];
+        int[] fotosTerminadas = {0};
+        boolean[] hayErrores = {false};
 
         ProgressBar progressBar = findViewById(R.id.progress_bar);
         progressBar.setVisibility(View.VISIBLE);
 
-        for (Uri uri : photoUris) {
-            try {
-                File file = getFileFromUri(uri);
-                imageUploader.uploadImage(file.getAbsolutePath(), new ImageUploader.UploadCallback() {
-                    @Override
-                    public void onSuccess(String imageUrl, String deleteUrl) {
-                        fotosEntity.insertar(viviendaId, imageUrl);
-                        fotosSubidas[0]++;
-                        if (fotosSubidas[0] == totalFotos) {
-                            progressBar.setVisibility(View.GONE);
-                            onComplete.run();
-                        }
-                    }
+        // Se ejecuta al terminar cada subida, con éxito o con error
+        Runnable fotoTerminada = () -> {
+            fotosTerminadas[0]++;
+            if (fotosTerminadas[0] < totalFotos) {
+                return;
+            }
+            progressBar.setVisibility(View.GONE);
 
-                    @Override
-                    public void onError(String error) {
-                        progressBar.setVisibility(View.GONE);
-                        Toast.makeText(ViviendaAddActivity.this, "Error al subir una foto: " + error, Toast.LENGTH_SHORT).show();
-                    }
-                });
-            } catch (IOException e) {
-                progressBar.setVisibility(View.GONE);
-                Toast.makeText(this, "Error al procesar la imagen: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            if (hayErrores[0]) {
+                onError.run();
+            } else {
+                onSubidas.accept(Arrays.asList(urlsSubidas));
             }
+        };
+
+        for (int i = 0; i < totalFotos; i++) {
+            final int indice = i;
+            Uri uri = photoUris.get(i);
+            Planificador.io().execute(() -> {
+                try {
+                    File file = getFileFromUri(uri);
+                    imageUploader.uploadImage(file.getAbsolutePath(), new ImageUploader.UploadCallback() {
+                        @Override
+                        public void onSuccess(String imageUrl, String deleteUrl) {
+                            urlsSubidas[indice] = imageUrl;
+                            fotoTerminada.run();
+                        }
+
+                        @Override
+                        public void onError(String error) {
+                            hayErrores[0] = true;
+                            Toast.makeText(ViviendaAddActivity.this, "Error al subir una foto: " + error, Toast.LENGTH_SHORT).show();
+                            fotoTerminada.run();
+                        }
+                    });
+                } catch (IOException | RuntimeException e) {
+                    // Cualquier fallo cuenta como subida terminada: si no, la barra de progreso no se ocultaría
+                    Planificador.enPrincipal(this, () -> {
+                        hayErrores[0] = true;
+                        Toast.makeText(this, "Error al procesar la imagen: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                        fotoTerminada.run();
+                    });
+                }
+            });
         }
     }
 
@@ -1,6 +1,5 @@
 package org.uvigo.esei.example.homespotter.ui.activities;
 
-import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.os.Bundle;
@@ -17,12 +16,14 @@ import androidx.viewpager2.widget.ViewPager2;
 
 import com.bumptech.glide.Glide;
 
-import org.uvigo.esei.example.homespotter.database.MensajesEntity;
+import org.uvigo.esei.example.homespotter.database.BandejaSalida;
 import org.uvigo.esei.example.homespotter.database.UsuarioEntity;
+import org.uvigo.esei.example.homespotter.models.Mensaje;
 import org.uvigo.esei.example.homespotter.models.Usuario;
 import org.uvigo.esei.example.homespotter.ui.adapters.ImagePagerAdapter;
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.database.DBManager;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
 
 import java.text.NumberFormat;
@@ -48,7 +49,7 @@ import java.util.Locale;
  * Dependencias:
  * - Modelo: {@link Usuario}.
  * - Adaptador: {@link ImagePagerAdapter}.
- * - Entidades: {@link FavoritosEntity}, {@link UsuarioEntity}, {@link MensajesEntity}.
+ * - Entidades: {@link FavoritosEntity}, {@link UsuarioEntity}; mensajes con {@link BandejaSalida}.
  * - Biblioteca: Glide (para cargar imágenes).
  */
 public class ViviendaDetailActivity extends AppCompatActivity {
@@ -56,7 +57,6 @@ public class ViviendaDetailActivity extends AppCompatActivity {
     private FavoritosEntity favoritosEntity;
     private boolean isFavorite;
     private UsuarioEntity usuarioEntity;
-    private MensajesEntity mensajesEntity;
 
     /**
      * Método llamado al crear la actividad.
@@ -81,9 +81,8 @@ public class ViviendaDetailActivity extends AppCompatActivity {
         int idPropietario = getIntent().getIntExtra("propietarioId", -1);
         isFavorite = getIntent().getBooleanExtra("favorito", false);
 
-        // Obtener detalles del propietario
-        Usuario user = usuarioEntity.obtenerUsuarioPorId(idPropietario);
-        loadData(user);
+        // Obtener detalles del propietario en el carril de lectura
+        Planificador.leer(this, () -> usuarioEntity.obtenerUsuarioPorId(idPropietario), this::loadData);
 
         // Configurar el ViewPager para las imágenes
         ViewPager2 viewPager = findViewById(R.id.viewPager_images);
@@ -101,7 +100,7 @@ public class ViviendaDetailActivity extends AppCompatActivity {
             if (message.isEmpty()) {
                 Toast.makeText(this, "Por favor, escribe un mensaje", Toast.LENGTH_SHORT).show();
             } else {
-                enviarMensaje(message, idPropietario);
+                enviarMensaje(message, idPropietario, viviendaId);
             }
         });
 
@@ -146,6 +145,7 @@ public class ViviendaDetailActivity extends AppCompatActivity {
 
     /**
      * Configura el botón de favorito para permitir al usuario marcar o desmarcar la vivienda como favorita.
+     * El botón cambia al momento y el favorito se guarda en el carril de escritura de {@link Planificador}.
      *
      * @param idUsuario   ID del usuario actual.
      * @param idPropietario ID del propietario de la vivienda.
@@ -164,22 +164,16 @@ public class ViviendaDetailActivity extends AppCompatActivity {
             if (idUsuario <= 0) {
                 Toast.makeText(this, "Inicia sesión para añadir a favoritos", Toast.LENGTH_SHORT).show();
             } else if (!isFavorite) {
-                favoritosEntity.insertar(idUsuario, viviendaId);
+                Planificador.escritura().execute(() -> favoritosEntity.insertar(idUsuario, viviendaId));
                 favoriteButton.setImageResource(R.drawable.ic_favorites_selected);
                 Toast.makeText(this, "Añadido a favoritos", Toast.LENGTH_SHORT).show();
                 isFavorite = true;
             } else {
-                favoritosEntity.eliminar(idUsuario, viviendaId);
+                Planificador.escritura().execute(() -> favoritosEntity.eliminar(idUsuario, viviendaId));
                 favoriteButton.setImageResource(R.drawable.ic_favorites_default);
                 Toast.makeText(this, "Eliminado de favoritos", Toast.LENGTH_SHORT).show();
                 isFavorite = false;
             }
-
-            // Actualizar el estado de favorito al volver a la actividad anterior
-            Intent resultIntent = new Intent();
-            resultIntent.putExtra("viviendaId", viviendaId);
-            resultIntent.putExtra("isFavoriteChanged", true);
-            setResult(RESULT_OK, resultIntent);
         });
     }
 
@@ -203,18 +197,34 @@ public class ViviendaDetailActivity extends AppCompatActivity {
     }
 
     /**
-     * Envía un mensaje al propietario de la vivienda.
+     * Envía un mensaje al propietario de la vivienda, en el hilo de esa vivienda.
      *
      * @param message       Contenido del mensaje.
      * @param propietarioID ID del propietario.
+     * @param viviendaId    ID de la vivienda sobre la que trata el mensaje.
      */
-    private void enviarMensaje(String message, int propietarioID) {
-        mensajesEntity = new MensajesEntity(DBManager.getInstance(this).getWritableDatabase());
-
+    private void enviarMensaje(String message, int propietarioID, int viviendaId) {
         SharedPreferences sharedPreferences = getSharedPreferences("UserPrefs", MODE_PRIVATE);
         int usuarioId = sharedPreferences.getInt("user_id", -1);
 
-        mensajesEntity.insertar(usuarioId, propietarioID, message);
+        // Guardar el mensaje en segundo plano con la bandeja de salida
+        Mensaje pendiente = new Mensaje(0, usuarioId, propietarioID, message, System.currentTimeMillis(), false);
+        pendiente.setViviendaId(Math.max(viviendaId, 0));
+        BandejaSalida.getInstance(this).enviar(pendiente, new BandejaSalida.ResultadoEnvio() {
+            @Override
+            public void onGuardado(Mensaje guardado) {
+                if (!isDestroyed()) {
+                    Toast.makeText(ViviendaDetailActivity.this, "Mensaje enviado", Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onError(Mensaje noEnviado) {
+                if (!isDestroyed()) {
+                    Toast.makeText(ViviendaDetailActivity.this, "Error al enviar el mensaje.", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
 
         // Limpiar el campo de texto después de enviar
         EditText editTextMessage = findViewById(R.id.vivienda_edit_text);
@@ -12,6 +12,7 @@ import com.bumptech.glide.Glide;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.models.Chat;
+import org.uvigo.esei.example.homespotter.ui.utils.FormatoFecha;
 
 import java.util.List;
 
@@ -19,7 +20,8 @@ import java.util.List;
  * ChatAdapter
  *
  * Adaptador para un RecyclerView que muestra una lista de chats.
- * Cada elemento incluye el nombre del usuario, el último mensaje, la fecha y su foto de perfil.
+ * Cada elemento incluye el nombre del usuario, la vivienda sobre la que hablan (si la hay), el
+ * último mensaje, la fecha, su foto de perfil y, si los hay, el número de mensajes sin leer.
  */
 public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder> {
 
@@ -88,7 +90,7 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
     static class ChatViewHolder extends RecyclerView.ViewHolder {
 
         // Elementos de la vista del chat
-        private TextView textViewUserName, textViewLastMessage, textViewDate;
+        private TextView textViewUserName, textViewVivienda, textViewLastMessage, textViewDate, textViewNoLeidos;
         private ImageView imageViewFoto;
 
         /**
@@ -99,8 +101,10 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
         public ChatViewHolder(View itemView) {
             super(itemView);
             textViewUserName = itemView.findViewById(R.id.textViewChatUserName);
+            textViewVivienda = itemView.findViewById(R.id.textViewChatVivienda);
             textViewLastMessage = itemView.findViewById(R.id.textViewChatLastMessage);
             textViewDate = itemView.findViewById(R.id.textViewChatDate);
+            textViewNoLeidos = itemView.findViewById(R.id.textViewChatNoLeidos);
             imageViewFoto = itemView.findViewById(R.id.imageViewChatAvatar);
         }
 
@@ -112,8 +116,25 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.ChatViewHolder
          */
         public void bind(Chat chat, OnChatClickListener listener) {
             textViewUserName.setText(chat.getNombreUsuario());
+
+            // Mostrar la vivienda del hilo solo si trata de una
+            if (chat.getTituloVivienda() != null) {
+                textViewVivienda.setText(chat.getTituloVivienda());
+                textViewVivienda.setVisibility(View.VISIBLE);
+            } else {
+                textViewVivienda.setVisibility(View.GONE);
+            }
+
             textViewLastMessage.setText(chat.getUltimoMensaje());
-            textViewDate.setText(chat.getFechaUltimoMensaje());
+            textViewDate.setText(FormatoFecha.formatear(chat.getFechaUltimoMensaje()));
+
+            // Mostrar el número de mensajes sin leer solo si hay alguno
+            if (chat.getNoLeidos() > 0) {
+                textViewNoLeidos.setText(String.valueOf(chat.getNoLeidos()));
+                textViewNoLeidos.setVisibility(View.VISIBLE);
+            } else {
+                textViewNoLeidos.setVisibility(View.GONE);
+            }
 
             // Cargar la foto de perfil con Glide
             Glide.with(itemView.getContext())
@@ -9,6 +9,7 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.models.Mensaje;
+import org.uvigo.esei.example.homespotter.ui.utils.FormatoFecha;
 
 import java.util.List;
 
@@ -114,7 +115,10 @@ public class MensajeAdapter extends RecyclerView.Adapter<MensajeAdapter.MensajeV
          */
         public void bind(Mensaje mensaje) {
             textViewContenido.setText(mensaje.getContenido());
-            textViewFecha.setText(mensaje.getFecha());
+            textViewFecha.setText(FormatoFecha.formatear(mensaje.getFecha()));
+
+            // Los mensajes enviados que aún no se han guardado se muestran atenuados
+            itemView.setAlpha(mensaje.isPendiente() ? 0.5f : 1f);
         }
     }
 }
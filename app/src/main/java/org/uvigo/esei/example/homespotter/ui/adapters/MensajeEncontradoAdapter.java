@@ -0,0 +1,147 @@
+package org.uvigo.esei.example.homespotter.ui.adapters;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+
+import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.models.MensajeEncontrado;
+import org.uvigo.esei.example.homespotter.ui.utils.FormatoFecha;
+
+import java.util.List;
+
+/**
+ * MensajeEncontradoAdapter
+ *
+ * Adaptador para un RecyclerView que muestra los mensajes encontrados al buscar en los chats.
+ * Cada elemento usa el diseño de un chat: el contacto, su foto, la fecha del mensaje y un fragmento
+ * del mensaje con las palabras buscadas en negrita.
+ */
+public class MensajeEncontradoAdapter extends RecyclerView.Adapter<MensajeEncontradoAdapter.MensajeEncontradoViewHolder> {
+
+    // Mensajes encontrados a mostrar
+    private List<MensajeEncontrado> encontrados;
+
+    // Listener para manejar clics en los mensajes encontrados
+    private OnMensajeEncontradoClickListener listener;
+
+    /**
+     * Interfaz para manejar los clics en los mensajes encontrados.
+     */
+    public interface OnMensajeEncontradoClickListener {
+        void onMensajeEncontradoClick(MensajeEncontrado encontrado);
+    }
+
+    /**
+     * Constructor del adaptador.
+     *
+     * @param encontrados Lista de mensajes encontrados.
+     * @param listener Listener para manejar los clics en los mensajes.
+     */
+    public MensajeEncontradoAdapter(List<MensajeEncontrado> encontrados, OnMensajeEncontradoClickListener listener) {
+        this.encontrados = encontrados;
+        this.listener = listener;
+    }
+
+    @Override
+    public MensajeEncontradoViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_chat, parent, false);
+        return new MensajeEncontradoViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(MensajeEncontradoViewHolder holder, int position) {
+        holder.bind(encontrados.get(position), listener);
+    }
+
+    @Override
+    public int getItemCount() {
+        return encontrados.size();
+    }
+
+    /**
+     * Convierte un fragmento con marcas de resaltado en texto con las palabras encontradas en negrita.
+     *
+     * @param fragmento Fragmento con las marcas de {@link MensajeEncontrado}.
+     * @return Texto para mostrar, sin las marcas.
+     */
+    static CharSequence resaltar(String fragmento) {
+        SpannableStringBuilder texto = new SpannableStringBuilder();
+        if (fragmento == null) {
+            return texto;
+        }
+
+        int posicion = 0;
+        while (posicion < fragmento.length()) {
+            int inicio = fragmento.indexOf(MensajeEncontrado.INICIO_RESALTADO, posicion);
+            int fin = inicio == -1 ? -1 : fragmento.indexOf(MensajeEncontrado.FIN_RESALTADO, inicio);
+            if (fin == -1) {
+                texto.append(fragmento.substring(posicion));
+                break;
+            }
+
+            texto.append(fragmento, posicion, inicio);
+            int inicioNegrita = texto.length();
+            texto.append(fragmento, inicio + MensajeEncontrado.INICIO_RESALTADO.length(), fin);
+            texto.setSpan(new StyleSpan(Typeface.BOLD), inicioNegrita, texto.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            posicion = fin + MensajeEncontrado.FIN_RESALTADO.length();
+        }
+        return texto;
+    }
+
+    /**
+     * ViewHolder para representar un mensaje encontrado en el RecyclerView.
+     */
+    static class MensajeEncontradoViewHolder extends RecyclerView.ViewHolder {
+
+        // Elementos de la vista (la de un chat)
+        private TextView textViewUserName, textViewVivienda, textViewFragmento, textViewDate, textViewNoLeidos;
+        private ImageView imageViewFoto;
+
+        /**
+         * Constructor del ViewHolder.
+         *
+         * @param itemView Vista del mensaje encontrado.
+         */
+        public MensajeEncontradoViewHolder(View itemView) {
+            super(itemView);
+            textViewUserName = itemView.findViewById(R.id.textViewChatUserName);
+            textViewVivienda = itemView.findViewById(R.id.textViewChatVivienda);
+            textViewFragmento = itemView.findViewById(R.id.textViewChatLastMessage);
+            textViewDate = itemView.findViewById(R.id.textViewChatDate);
+            textViewNoLeidos = itemView.findViewById(R.id.textViewChatNoLeidos);
+            imageViewFoto = itemView.findViewById(R.id.imageViewChatAvatar);
+        }
+
+        /**
+         * Vincula los datos de un mensaje encontrado a la vista.
+         *
+         * @param encontrado Mensaje encontrado.
+         * @param listener Listener para manejar clics en el mensaje.
+         */
+        public void bind(MensajeEncontrado encontrado, OnMensajeEncontradoClickListener listener) {
+            textViewUserName.setText(encontrado.getNombreContacto());
+            textViewFragmento.setText(resaltar(encontrado.getFragmento()));
+            textViewDate.setText(FormatoFecha.formatear(encontrado.getFecha()));
+            textViewVivienda.setVisibility(View.GONE);
+            textViewNoLeidos.setVisibility(View.GONE);
+
+            Glide.with(itemView.getContext())
+                    .load(encontrado.getFotoContacto())
+                    .placeholder(R.drawable.ic_profile_default)
+                    .into(imageViewFoto);
+
+            itemView.setOnClickListener(v -> listener.onMensajeEncontradoClick(encontrado));
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package org.uvigo.esei.example.homespotter.ui.adapters;
 
-import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.database.sqlite.SQLiteDatabase;
@@ -21,6 +20,7 @@ import com.bumptech.glide.Glide;
 import org.uvigo.esei.example.homespotter.R;
 import org.uvigo.esei.example.homespotter.ui.activities.ViviendaDetailActivity;
 import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 
 import java.text.NumberFormat;
@@ -118,12 +118,12 @@ public class ViviendaAdapter extends ArrayAdapter<Vivienda> {
                         Toast.makeText(getContext(), getContext().getString(R.string.user_not_logged), Toast.LENGTH_LONG).show();
                     } else if (!currentlyFavorite) {
                         favoriteButton.setImageResource(R.drawable.ic_favorites_selected);
-                        favoritosEntity.insertar(idUsuario, viviendaId); // Añadir a favoritos
+                        Planificador.escritura().execute(() -> favoritosEntity.insertar(idUsuario, viviendaId)); // Añadir a favoritos
                         vivienda.setFavorite(true);
                         Toast.makeText(getContext(), vivienda.getTitulo() + " añadido a favoritos", Toast.LENGTH_SHORT).show();
                     } else {
                         favoriteButton.setImageResource(R.drawable.ic_favorites_default);
-                        favoritosEntity.eliminar(idUsuario, viviendaId); // Eliminar de favoritos
+                        Planificador.escritura().execute(() -> favoritosEntity.eliminar(idUsuario, viviendaId)); // Eliminar de favoritos
                         vivienda.setFavorite(false);
                         Toast.makeText(getContext(), vivienda.getTitulo() + " eliminado de favoritos", Toast.LENGTH_SHORT).show();
                     }
@@ -142,7 +142,7 @@ public class ViviendaAdapter extends ArrayAdapter<Vivienda> {
                 intent.putExtra("descripcion", vivienda.getDescripcion());
                 intent.putExtra("favorito", vivienda.isFavorite());
                 intent.putStringArrayListExtra("fotos", new ArrayList<>(vivienda.getFotos()));
-                ((Activity) getContext()).startActivityForResult(intent, 1);
+                getContext().startActivity(intent);
             });
         }
 
@@ -1,28 +1,32 @@
 package org.uvigo.esei.example.homespotter.ui.fragments;
 
 import android.os.Bundle;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ListView;
-import android.os.Handler;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
 import org.uvigo.esei.example.homespotter.database.DBManager;
-import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
 import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 import org.uvigo.esei.example.homespotter.ui.adapters.ViviendaAdapter;
 import org.uvigo.esei.example.homespotter.ui.utils.ViviendaLoader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Fragmento que muestra la lista de propiedades asociadas al usuario actual.
@@ -31,23 +35,21 @@ import java.util.List;
  * Funcionalidades principales:
  * - Cargar y mostrar las propiedades del usuario en un ListView.
  * - Sincronizar los datos de viviendas desde la base de datos.
+ * - Actualizar solo las viviendas mostradas que cambian, avisado por {@link BusCambios}.
  *
  * Dependencias:
  * - Modelos: {@link Vivienda}.
  * - Adaptador: {@link ViviendaAdapter}.
  * - Utilidades: {@link ViviendaLoader}.
- * - Entidades de base de datos: {@link ViviendaEntity}, {@link FotosEntity}, {@link FavoritosEntity}.
+ * - Entidades de base de datos: {@link ViviendaEntity}.
  */
 public class MisViviendasFragment extends Fragment {
 
     private ViviendaAdapter adapter; // Adaptador para manejar las viviendas en el ListView.
-    private final Handler mainHandler = new Handler(Looper.getMainLooper()); // Handler para ejecutar tareas en el hilo principal.
     private List<Vivienda> propertyList; // Lista de viviendas a mostrar.
     private int idUsuario; // ID del usuario actual.
     private ViviendaEntity viviendaEntity; // Entidad para gestionar las viviendas en la base de datos.
-    private FotosEntity fotosEntity; // Entidad para gestionar las fotos asociadas a las viviendas.
-    private FavoritosEntity favoritosEntity; // Entidad para gestionar las viviendas marcadas como favoritas.
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(); // Executor para manejar tareas en segundo plano.
+    private final Executor lecturas = Planificador.secuencia(); // Lecturas en segundo plano, en el orden en que se piden.
 
     /**
      * Método estático para crear una nueva instancia del fragmento.
@@ -82,10 +84,8 @@ public class MisViviendasFragment extends Fragment {
             idUsuario = getArguments().getInt("idUsuario", -1);
         }
 
-        // Inicializar las entidades de base de datos.
+        // Inicializar la entidad de base de datos.
         viviendaEntity = new ViviendaEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
-        fotosEntity = new FotosEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
-        favoritosEntity = new FavoritosEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
 
         // Configurar el ListView y el adaptador.
         ListView listView = view.findViewById(R.id.my_property_list);
@@ -99,21 +99,87 @@ public class MisViviendasFragment extends Fragment {
         return view;
     }
 
+    /**
+     * Método llamado cuando la vista ya está creada.
+     * Se suscribe a los cambios de viviendas y fotos mientras exista la vista.
+     *
+     * @param view               Vista creada en {@link #onCreateView}.
+     * @param savedInstanceState Estado previamente guardado del fragmento.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        BusCambios.observar(getViewLifecycleOwner(), this::aplicarCambio,
+                ViviendaEntity.NOMBRE_TABLA, FotosEntity.NOMBRE_TABLA);
+    }
+
+    /**
+     * Actualiza las viviendas mostradas a las que afecta un cambio. Solo el usuario de la sesión
+     * crea viviendas, así que una vivienda nueva es suya y se recarga la lista completa.
+     *
+     * @param cambio Cambio publicado en {@link BusCambios}.
+     */
+    private void aplicarCambio(BusCambios.Cambio cambio) {
+        boolean enViviendas = cambio.getTabla().equals(ViviendaEntity.NOMBRE_TABLA);
+        if (enViviendas && cambio.getOperacion() == BusCambios.Operacion.INSERTAR) {
+            cargarPropiedades();
+            return;
+        }
+
+        Set<Integer> afectadas = new HashSet<>();
+        for (Vivienda vivienda : propertyList) {
+            if (cambio.afectaA(vivienda.getId())) {
+                afectadas.add(vivienda.getId());
+            }
+        }
+        if (afectadas.isEmpty()) {
+            return;
+        }
+
+        // Una vivienda eliminada se quita de la lista sin consultar nada.
+        if (enViviendas && cambio.getOperacion() == BusCambios.Operacion.ELIMINAR) {
+            propertyList.removeIf(vivienda -> afectadas.contains(vivienda.getId()));
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        // Releer solo las viviendas afectadas; las que ya no existen se quitan.
+        Planificador.ejecutar(lecturas, getViewLifecycleOwner(), () -> {
+            Map<Integer, Vivienda> actualizadas = new HashMap<>();
+            for (Vivienda vivienda : viviendaEntity.obtenerPorIds(new ArrayList<>(afectadas))) {
+                actualizadas.put(vivienda.getId(), vivienda);
+            }
+            return actualizadas;
+        }, actualizadas -> {
+            for (int i = propertyList.size() - 1; i >= 0; i--) {
+                int id = propertyList.get(i).getId();
+                if (!afectadas.contains(id)) {
+                    continue;
+                }
+                if (actualizadas.containsKey(id)) {
+                    propertyList.set(i, actualizadas.get(id));
+                } else {
+                    propertyList.remove(i);
+                }
+            }
+            adapter.notifyDataSetChanged();
+        });
+    }
+
     /**
      * Método para cargar las propiedades del usuario desde la base de datos.
-     * Este método ejecuta la carga en un hilo de fondo y actualiza la interfaz gráfica en el hilo principal.
+     * Este método ejecuta la carga en el carril de lectura de {@link Planificador} y actualiza la
+     * interfaz gráfica en el hilo principal, mientras exista la vista.
      */
     public void cargarPropiedades() {
-        executor.execute(() -> {
-            // Cargar las propiedades utilizando el ViviendaLoader.
-            List<Vivienda> propiedades = ViviendaLoader.cargarViviendas(viviendaEntity, fotosEntity, favoritosEntity, idUsuario, true);
-
-            // Actualizar la lista y notificar cambios al adaptador en el hilo principal.
-            mainHandler.post(() -> {
-                propertyList.clear();
-                propertyList.addAll(propiedades);
-                adapter.notifyDataSetChanged();
-            });
-        });
+        // Cargar las propiedades utilizando el ViviendaLoader.
+        Planificador.ejecutar(lecturas, getViewLifecycleOwner(),
+                () -> ViviendaLoader.cargarViviendas(viviendaEntity, idUsuario, true),
+                propiedades -> {
+                    // Actualizar la lista y notificar cambios al adaptador.
+                    propertyList.clear();
+                    propertyList.addAll(propiedades);
+                    adapter.notifyDataSetChanged();
+                });
     }
 }
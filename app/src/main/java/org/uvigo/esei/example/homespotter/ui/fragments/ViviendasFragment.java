@@ -1,30 +1,36 @@
 package org.uvigo.esei.example.homespotter.ui.fragments;
 
-import android.content.ContentValues;
-import android.database.Cursor;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AbsListView;
 import android.widget.ListView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LifecycleOwner;
 
 import org.uvigo.esei.example.homespotter.R;
+import org.uvigo.esei.example.homespotter.database.BusCambios;
 import org.uvigo.esei.example.homespotter.database.DBManager;
 import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
 import org.uvigo.esei.example.homespotter.database.FotosEntity;
+import org.uvigo.esei.example.homespotter.database.Planificador;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 import org.uvigo.esei.example.homespotter.ui.adapters.ViviendaAdapter;
 import org.uvigo.esei.example.homespotter.ui.utils.ViviendaLoader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
 /**
  * Fragmento para mostrar una lista de todas las viviendas disponibles en la aplicación.
@@ -32,25 +38,33 @@ import java.util.concurrent.Executors;
  * propiedades favoritas desde la base de datos.
  *
  * Funcionalidades principales:
- * - Cargar todas las viviendas desde la base de datos.
+ * - Cargar las viviendas desde la base de datos por páginas a medida que el usuario se desplaza.
  * - Aplicar filtros para buscar propiedades específicas.
  * - Visualizar estado de favorito en las viviendas.
+ * - Actualizar solo las viviendas mostradas que cambian en otras pantallas, avisado por {@link BusCambios}.
  *
  * Dependencias:
  * - Adaptador: {@link ViviendaAdapter}.
- * - Entidades: {@link ViviendaEntity}, {@link FotosEntity}, {@link FavoritosEntity}.
+ * - Entidades: {@link ViviendaEntity}, {@link FavoritosEntity}.
  * - Utilidades: {@link ViviendaLoader}.
  */
 public class ViviendasFragment extends Fragment {
 
-    private final ExecutorService executor = Executors.newSingleThreadExecutor(); // Manejo de tareas en segundo plano.
-    private final Handler mainHandler = new Handler(Looper.getMainLooper()); // Handler para actualizaciones en la UI.
+    private static final int TAM_PAGINA = 20; // Número de viviendas cargadas por página.
+    private static final int UMBRAL_CARGA = 5; // Filas restantes hasta el final para pedir la siguiente página.
+
+    private final Executor lecturas = Planificador.secuencia(); // Lecturas en segundo plano, en el orden en que se piden.
     private ViviendaAdapter adapter; // Adaptador para mostrar las viviendas.
     private List<Vivienda> propertyList; // Lista de propiedades cargadas.
     private int idUsuario; // ID del usuario actual.
     private ViviendaEntity viviendaEntity; // Entidad para gestionar las viviendas en la base de datos.
-    private FotosEntity fotosEntity; // Entidad para gestionar las fotos de las viviendas.
-    private FavoritosEntity favoritosEntity; // Entidad para gestionar los favoritos.
+    private FavoritosEntity favoritosEntity; // Entidad para consultar los favoritos del usuario.
+
+    // Estado de la búsqueda paginada actual.
+    private ViviendaQuery consulta; // Consulta de la primera página de la búsqueda actual.
+    private boolean cargando; // Hay una página en carga.
+    private boolean hayMas; // Quedan páginas por cargar.
+    private int generacion; // Se incrementa en cada búsqueda nueva para descartar páginas obsoletas.
 
     /**
      * Crea una nueva instancia del fragmento con el ID del usuario como argumento.
@@ -84,9 +98,8 @@ public class ViviendasFragment extends Fragment {
             idUsuario = getArguments().getInt("idUsuario", -1);
         }
 
-        // Inicializar entidades de base de datos.
+        // Inicializar las entidades de base de datos.
         viviendaEntity = new ViviendaEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
-        fotosEntity = new FotosEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
         favoritosEntity = new FavoritosEntity(DBManager.getInstance(requireContext()).getWritableDatabase());
 
         // Configurar el ListView y el adaptador.
@@ -95,67 +108,159 @@ public class ViviendasFragment extends Fragment {
         adapter = new ViviendaAdapter(requireContext(), propertyList, DBManager.getInstance(requireContext()).getWritableDatabase(), idUsuario);
         listView.setAdapter(adapter);
 
+        // Cargar la siguiente página cuando el usuario se acerca al final de la lista.
+        listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {
+            }
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (totalItemCount > 0 && firstVisibleItem + visibleItemCount >= totalItemCount - UMBRAL_CARGA) {
+                    cargarSiguientePagina();
+                }
+            }
+        });
+
         // Cargar las propiedades.
         cargarPropiedades();
 
         return view;
     }
 
+    /**
+     * Método llamado cuando la vista ya está creada.
+     * Se suscribe a los cambios de viviendas, fotos y favoritos mientras exista la vista.
+     *
+     * @param view               Vista creada en {@link #onCreateView}.
+     * @param savedInstanceState Estado previamente guardado.
+     */
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        BusCambios.observar(getViewLifecycleOwner(), this::aplicarCambio,
+                ViviendaEntity.NOMBRE_TABLA, FotosEntity.NOMBRE_TABLA, FavoritosEntity.NOMBRE_TABLA);
+    }
+
     /**
      * Aplica filtros a la búsqueda de propiedades y actualiza la lista mostrada.
      *
-     * @param filtros   Criterios de filtrado como valores clave-valor.
-     * @param minPrice  Precio mínimo de la propiedad (puede ser nulo).
-     * @param maxPrice  Precio máximo de la propiedad (puede ser nulo).
+     * @param filtros Consulta con los filtros elegidos; el fragmento completa el usuario y el tamaño de página.
      */
-    public void applyFilters(ContentValues filtros, Double minPrice, Double maxPrice) {
-        executor.execute(() -> {
-            Cursor cursor = viviendaEntity.buscar(filtros, minPrice, maxPrice);
-            List<Vivienda> filteredViviendas = new ArrayList<>();
-            List<Integer> favoritosList = favoritosEntity.obtenerFavoritosPorUsuario(idUsuario);
-
-            // Procesar los resultados de la consulta.
-            if (cursor != null && cursor.moveToFirst()) {
-                do {
-                    int id = cursor.getInt(cursor.getColumnIndexOrThrow("id_vivienda"));
-                    List<String> fotos = fotosEntity.obtenerListaFotos(id);
-                    int idPropietario = cursor.getInt(cursor.getColumnIndexOrThrow("propietario_id"));
-                    String titulo = cursor.getString(cursor.getColumnIndexOrThrow("titulo"));
-                    String tipo = cursor.getString(cursor.getColumnIndexOrThrow("tipo_vivienda"));
-                    double precio = cursor.getDouble(cursor.getColumnIndexOrThrow("precio"));
-                    String direccion = cursor.getString(cursor.getColumnIndexOrThrow("direccion"));
-                    String estado = cursor.getString(cursor.getColumnIndexOrThrow("estado"));
-                    String contacto = cursor.getString(cursor.getColumnIndexOrThrow("contacto"));
-                    String descripcion = cursor.getString(cursor.getColumnIndexOrThrow("descripcion"));
-                    boolean favorito = favoritosList.contains(id);
-
-                    // Crear objeto Vivienda y agregarlo a la lista filtrada.
-                    filteredViviendas.add(new Vivienda(id, titulo, tipo, precio, direccion, estado, contacto, descripcion, idPropietario, favorito, fotos));
-                } while (cursor.moveToNext());
-                cursor.close();
-            }
+    public void applyFilters(ViviendaQuery.Builder filtros) {
+        iniciarBusqueda(filtros);
+    }
 
-            // Actualizar la UI con los resultados filtrados.
-            mainHandler.post(() -> {
-                propertyList.clear();
-                propertyList.addAll(filteredViviendas);
-                adapter.notifyDataSetChanged();
-            });
+    /**
+     * Carga las propiedades de los demás usuarios desde la base de datos y actualiza la lista mostrada.
+     */
+    public void cargarPropiedades() {
+        iniciarBusqueda(new ViviendaQuery.Builder().excluirPropietario(idUsuario));
+    }
+
+    /**
+     * Reinicia la búsqueda paginada con la consulta indicada y carga su primera página.
+     */
+    private void iniciarBusqueda(ViviendaQuery.Builder filtros) {
+        consulta = filtros.usuario(idUsuario).limite(TAM_PAGINA).build();
+        generacion++;
+        cargando = false;
+        hayMas = true;
+
+        propertyList.clear();
+        adapter.notifyDataSetChanged();
+        cargarSiguientePagina();
+    }
+
+    /**
+     * Carga la página que sigue a la última vivienda mostrada, si no hay otra carga en curso
+     * y quedan viviendas por cargar. Debe llamarse desde el hilo principal.
+     */
+    private void cargarSiguientePagina() {
+        if (cargando || !hayMas) {
+            return;
+        }
+        cargando = true;
+
+        // Capturar el estado de la búsqueda en el hilo principal.
+        final int generacionPagina = generacion;
+        final ViviendaQuery consultaPagina = propertyList.isEmpty()
+                ? consulta
+                : consulta.siguientePagina(propertyList.get(propertyList.size() - 1));
+
+        // Cargar la página, sus fotos y favoritos en una sola consulta.
+        Planificador.ejecutar(lecturas, getViewLifecycleOwner(), () -> ViviendaLoader.cargarPagina(viviendaEntity, consultaPagina), pagina -> {
+            // Añadir la página a la lista si la búsqueda no ha cambiado mientras tanto.
+            if (generacionPagina != generacion) {
+                return;
+            }
+            cargando = false;
+            hayMas = pagina.size() == TAM_PAGINA;
+            propertyList.addAll(pagina);
+            adapter.notifyDataSetChanged();
         });
     }
 
     /**
-     * Carga todas las propiedades desde la base de datos y actualiza la lista mostrada.
+     * Actualiza las viviendas mostradas a las que afecta un cambio, sin recargar la búsqueda.
+     * Las viviendas nuevas no se añaden: solo el usuario de la sesión crea viviendas y esta lista
+     * excluye las suyas.
+     *
+     * @param cambio Cambio publicado en {@link BusCambios}.
      */
-    public void cargarPropiedades() {
-        executor.execute(() -> {
-            // Cargar propiedades utilizando el ViviendaLoader.
-            List<Vivienda> propiedades = ViviendaLoader.cargarViviendas(viviendaEntity, fotosEntity, favoritosEntity, idUsuario, false);
-
-            // Actualizar la UI con las propiedades cargadas.
-            mainHandler.post(() -> {
-                propertyList.clear();
-                propertyList.addAll(propiedades);
+    private void aplicarCambio(BusCambios.Cambio cambio) {
+        Set<Integer> afectadas = new HashSet<>();
+        for (Vivienda vivienda : propertyList) {
+            if (cambio.afectaA(vivienda.getId())) {
+                afectadas.add(vivienda.getId());
+            }
+        }
+        if (afectadas.isEmpty()) {
+            return;
+        }
+
+        // Una vivienda eliminada se quita de la lista sin consultar nada.
+        if (cambio.getTabla().equals(ViviendaEntity.NOMBRE_TABLA) && cambio.getOperacion() == BusCambios.Operacion.ELIMINAR) {
+            propertyList.removeIf(vivienda -> afectadas.contains(vivienda.getId()));
+            adapter.notifyDataSetChanged();
+            return;
+        }
+
+        final int generacionCambio = generacion;
+        final boolean soloFavoritos = cambio.getTabla().equals(FavoritosEntity.NOMBRE_TABLA);
+        final LifecycleOwner vista = getViewLifecycleOwner();
+
+        lecturas.execute(() -> {
+            // Releer solo lo que cambió: los favoritos del usuario o los datos de las viviendas afectadas.
+            Set<Integer> favoritas = soloFavoritos
+                    ? new HashSet<>(favoritosEntity.obtenerFavoritosPorUsuario(idUsuario))
+                    : null;
+            Map<Integer, Vivienda> actualizadas = new HashMap<>();
+            if (!soloFavoritos) {
+                for (Vivienda vivienda : viviendaEntity.obtenerPorIds(new ArrayList<>(afectadas))) {
+                    actualizadas.put(vivienda.getId(), vivienda);
+                }
+            }
+
+            Planificador.enPrincipal(vista, () -> {
+                if (generacionCambio != generacion) {
+                    return;
+                }
+                for (int i = propertyList.size() - 1; i >= 0; i--) {
+                    Vivienda actual = propertyList.get(i);
+                    if (!afectadas.contains(actual.getId())) {
+                        continue;
+                    }
+                    if (soloFavoritos) {
+                        actual.setFavorite(favoritas.contains(actual.getId()));
+                    } else if (actualizadas.containsKey(actual.getId())) {
+                        Vivienda nueva = actualizadas.get(actual.getId());
+                        nueva.setFavorite(actual.isFavorite());
+                        propertyList.set(i, nueva);
+                    } else {
+                        propertyList.remove(i);
+                    }
+                }
                 adapter.notifyDataSetChanged();
             });
         });
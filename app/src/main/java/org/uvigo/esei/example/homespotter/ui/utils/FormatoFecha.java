@@ -0,0 +1,29 @@
+package org.uvigo.esei.example.homespotter.ui.utils;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * FormatoFecha
+ *
+ * Utilidad para mostrar las fechas de los mensajes, que la base de datos guarda como
+ * milisegundos desde epoch. El formateador es inmutable y seguro entre hilos, así que se crea
+ * una sola vez y se comparte; las fechas se formatean solo al mostrar cada fila.
+ */
+public class FormatoFecha {
+    private static final DateTimeFormatter FORMATO = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private FormatoFecha() {
+    }
+
+    /**
+     * Formatea una fecha en la zona horaria del dispositivo.
+     *
+     * @param epochMillis Fecha en milisegundos desde epoch.
+     * @return Fecha con el formato "yyyy-MM-dd HH:mm:ss".
+     */
+    public static String formatear(long epochMillis) {
+        return FORMATO.format(Instant.ofEpochMilli(epochMillis).atZone(ZoneId.systemDefault()));
+    }
+}
@@ -2,20 +2,25 @@ package org.uvigo.esei.example.homespotter.ui.utils;
 
 import android.database.Cursor;
 
-import org.uvigo.esei.example.homespotter.database.FavoritosEntity;
-import org.uvigo.esei.example.homespotter.database.FotosEntity;
 import org.uvigo.esei.example.homespotter.database.ViviendaEntity;
+import org.uvigo.esei.example.homespotter.database.ViviendaQuery;
 import org.uvigo.esei.example.homespotter.models.Vivienda;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * ViviendaLoader
  *
  * Utilidad para cargar viviendas desde la base de datos.
  * Proporciona métodos para obtener listas de viviendas con sus datos completos,
- * incluyendo fotos y estado de favoritos.
+ * incluyendo fotos y estado de favoritos, usando una única consulta por lista.
+ *
+ * Las listas que se recargan al volver a una pantalla (la página de viviendas y las viviendas
+ * propias) consultan solo los IDs y completan los datos con {@link ViviendaEntity#obtenerPorIds(List)},
+ * que lee de la base de datos únicamente las viviendas que no estaban ya en caché.
  */
 public class ViviendaLoader {
 
@@ -23,71 +28,97 @@ public class ViviendaLoader {
      * Carga una lista de viviendas desde la base de datos.
      *
      * @param viviendaEntity    La entidad para acceder a las viviendas.
-     * @param fotosEntity       La entidad para acceder a las fotos de las viviendas.
-     * @param favoritosEntity   La entidad para acceder a los favoritos de los usuarios.
      * @param idUsuario         El ID del usuario actual.
      * @param filtrarPropias    Si es true, filtra solo las viviendas propias; de lo contrario, excluye las propias.
      * @return Una lista de objetos Vivienda con todos los datos, incluidas fotos y estado de favoritos.
      */
-    public static List<Vivienda> cargarViviendas(ViviendaEntity viviendaEntity, FotosEntity fotosEntity, FavoritosEntity favoritosEntity, int idUsuario, boolean filtrarPropias) {
-        List<Vivienda> viviendas = new ArrayList<>();
-        List<Integer> favList = favoritosEntity.obtenerFavoritosPorUsuario(idUsuario); // Lista de IDs de viviendas favoritas del usuario
-        Cursor cursor = null;
+    public static List<Vivienda> cargarViviendas(ViviendaEntity viviendaEntity, int idUsuario, boolean filtrarPropias) {
+        // Las viviendas propias nunca se muestran como favoritas, así que bastan sus IDs
+        if (filtrarPropias) {
+            return viviendaEntity.obtenerPorIds(viviendaEntity.buscarIdsPorPropietario(idUsuario));
+        }
 
-        try {
-            // Obtener cursor con las viviendas según el filtro
-            if (filtrarPropias) {
-                cursor = viviendaEntity.buscarPorPropietario(idUsuario);
-            } else {
-                cursor = viviendaEntity.buscar(null, null, null);
+        return agruparViviendas(viviendaEntity.buscarConFotosPorPropietario(idUsuario, false));
+    }
+
+    /**
+     * Carga una página de viviendas de una consulta tipada.
+     *
+     * @param viviendaEntity La entidad para acceder a las viviendas.
+     * @param consulta       Consulta de la página (ver {@link ViviendaQuery#siguientePagina(Vivienda)}).
+     * @return Una lista con como mucho {@link ViviendaQuery#getLimite()} viviendas, con sus fotos y estado de favoritos.
+     */
+    public static List<Vivienda> cargarPagina(ViviendaEntity viviendaEntity, ViviendaQuery consulta) {
+        List<Integer> ids = new ArrayList<>();
+        Set<Integer> favoritas = new HashSet<>();
+
+        try (Cursor cursor = viviendaEntity.buscarIds(consulta)) {
+            int colId = cursor.getColumnIndexOrThrow("id_vivienda");
+            int colFavorito = cursor.getColumnIndexOrThrow("favorito");
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(colId));
+                if (cursor.getInt(colFavorito) == 1) {
+                    favoritas.add(cursor.getInt(colId));
+                }
             }
+        }
 
-            // Procesar los resultados del cursor
-            if (cursor != null && cursor.moveToFirst()) {
-                do {
-                    int idPropietario = cursor.getInt(cursor.getColumnIndexOrThrow("propietario_id"));
+        List<Vivienda> viviendas = viviendaEntity.obtenerPorIds(ids);
+        for (Vivienda vivienda : viviendas) {
+            vivienda.setFavorite(favoritas.contains(vivienda.getId()));
+        }
+        return viviendas;
+    }
+
+    /**
+     * Convierte un cursor de viviendas unidas a sus fotos (una fila por foto, ordenadas por vivienda)
+     * en una lista de viviendas con sus fotos ya agrupadas. Cierra el cursor.
+     *
+     * @param cursor Cursor devuelto por {@link ViviendaEntity#buscarConFotosPorPropietario}.
+     * @return Lista de viviendas en el orden del cursor.
+     */
+    public static List<Vivienda> agruparViviendas(Cursor cursor) {
+        List<Vivienda> viviendas = new ArrayList<>();
+        Vivienda actual = null;
 
-                    // Aplicar filtro según el valor de `filtrarPropias`
-                    if ((filtrarPropias && idPropietario == idUsuario) || (!filtrarPropias && idPropietario != idUsuario)) {
-                        int id = cursor.getInt(cursor.getColumnIndexOrThrow("id_vivienda"));
-                        String titulo = cursor.getString(cursor.getColumnIndexOrThrow("titulo"));
-                        String tipo = cursor.getString(cursor.getColumnIndexOrThrow("tipo_vivienda"));
-                        double precio = cursor.getDouble(cursor.getColumnIndexOrThrow("precio"));
-                        String direccion = cursor.getString(cursor.getColumnIndexOrThrow("direccion"));
-                        String estado = cursor.getString(cursor.getColumnIndexOrThrow("estado"));
-                        String contacto = cursor.getString(cursor.getColumnIndexOrThrow("contacto"));
-                        String descripcion = cursor.getString(cursor.getColumnIndexOrThrow("descripcion"));
+        try {
+            if (cursor != null && cursor.moveToFirst()) {
+                int colId = cursor.getColumnIndexOrThrow("id_vivienda");
+                int colUrl = cursor.getColumnIndexOrThrow("url_foto");
 
-                        boolean favorito = !filtrarPropias && favList.contains(id); // Determinar si la vivienda es favorita
+                do {
+                    int id = cursor.getInt(colId);
 
-                        // Obtener fotos asociadas a la vivienda
-                        List<String> fotos = new ArrayList<>();
-                        Cursor fotosCursor = null;
-                        try {
-                            fotosCursor = fotosEntity.obtenerFotosPorVivienda(id);
-                            if (fotosCursor != null && fotosCursor.moveToFirst()) {
-                                do {
-                                    String urlFoto = fotosCursor.getString(fotosCursor.getColumnIndexOrThrow("url_foto"));
-                                    fotos.add(urlFoto); // Agregar la URL de la foto a la lista
-                                } while (fotosCursor.moveToNext());
-                            }
-                        } finally {
-                            if (fotosCursor != null) {
-                                fotosCursor.close(); // Cerrar el cursor de fotos
-                            }
-                        }
+                    // Una vivienda nueva empieza cuando cambia el id
+                    if (actual == null || actual.getId() != id) {
+                        actual = new Vivienda(
+                                id,
+                                cursor.getString(cursor.getColumnIndexOrThrow("titulo")),
+                                cursor.getString(cursor.getColumnIndexOrThrow("tipo_vivienda")),
+                                cursor.getDouble(cursor.getColumnIndexOrThrow("precio")),
+                                cursor.getString(cursor.getColumnIndexOrThrow("direccion")),
+                                cursor.getString(cursor.getColumnIndexOrThrow("estado")),
+                                cursor.getString(cursor.getColumnIndexOrThrow("contacto")),
+                                cursor.getString(cursor.getColumnIndexOrThrow("descripcion")),
+                                cursor.getInt(cursor.getColumnIndexOrThrow("propietario_id")),
+                                cursor.getInt(cursor.getColumnIndexOrThrow("favorito")) == 1,
+                                new ArrayList<>()
+                        );
+                        viviendas.add(actual);
+                    }
 
-                        // Crear objeto Vivienda y agregarlo a la lista
-                        viviendas.add(new Vivienda(id, titulo, tipo, precio, direccion, estado, contacto, descripcion, idPropietario, favorito, fotos));
+                    // Agregar la URL de la foto si la vivienda tiene fotos
+                    if (!cursor.isNull(colUrl)) {
+                        actual.getFotos().add(cursor.getString(colUrl));
                     }
                 } while (cursor.moveToNext());
             }
         } finally {
             if (cursor != null) {
-                cursor.close(); // Cerrar el cursor principal
+                cursor.close();
             }
         }
 
-        return viviendas; // Retornar la lista de viviendas
+        return viviendas;
     }
 }